@@ -0,0 +1,60 @@
+// lbjScheme
+// An experimental Scheme subset interpreter in Java, based on SchemeNet.cs
+// Copyright (c) 2013, Leif Bruder <leifbruder@gmail.com>
+//
+// Permission to use, copy, modify, and/or distribute this software for any
+// purpose with or without fee is hereby granted, provided that the above
+// copyright notice and this permission notice appear in all copies.
+//
+// THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+// WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+// MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+// ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+// WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+// ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+// OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+
+package benchmarks;
+
+import java.lang.management.*;
+import org.lb.lbjscheme.*;
+
+// Measures the bytes allocated by a loop heavy script, most of which are
+// numbers and characters. Needs a JVM that supports
+// com.sun.management.ThreadMXBean. Usage: AllocationBenchmark [iterations]
+public final class AllocationBenchmark {
+	private static final String _workload = ""
+			+ "(define (count-up n) (let loop ((i 0) (sum 0)) (if (= i n) sum (loop (+ i 1) (+ sum (remainder i 100))))))"
+			+ "(define (count-chars s) (let loop ((i 0) (count 0)) (if (= i (string-length s)) count (loop (+ i 1) (if (char=? (string-ref s i) #\\a) (+ count 1) count)))))"
+			+ "(define (run n) (let loop ((i 0) (acc 0)) (if (= i n) acc (loop (+ i 1) (+ acc (count-up 100) (count-chars \"abracadabra\"))))))";
+
+	private static final com.sun.management.ThreadMXBean _threads = (com.sun.management.ThreadMXBean) ManagementFactory
+			.getThreadMXBean();
+
+	private static void run(String name, Evaluator e, int iterations)
+			throws SchemeException {
+		e.eval(_workload);
+		final long threadId = Thread.currentThread().getId();
+		final long bytes = _threads.getThreadAllocatedBytes(threadId);
+		final long start = System.nanoTime();
+		final SchemeObject result = e.eval("(run " + iterations + ")");
+		final long ms = (System.nanoTime() - start) / 1000000;
+		final long allocated = _threads.getThreadAllocatedBytes(threadId)
+				- bytes;
+		if (!result.toString().equals(Integer.toString(iterations * 4955)))
+			throw new SchemeException("Unexpected result " + result);
+		System.out.println(name + ": " + ms + " ms, " + allocated / iterations
+				+ " bytes per iteration");
+	}
+
+	public static void main(String[] args) throws Exception {
+		final int iterations = args.length > 0 ? Integer.parseInt(args[0])
+				: 20000;
+		for (int i = 0; i < 3; ++i) {
+			run("Analyzing       ", new AnalyzingEvaluator(
+					Environment.newInteractionEnvironment(null)), iterations);
+			run("ClosureCompiling", new ClosureCompilingEvaluator(
+					Environment.newInteractionEnvironment(null)), iterations);
+		}
+	}
+}
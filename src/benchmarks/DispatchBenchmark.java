@@ -0,0 +1,90 @@
+// lbjScheme
+// An experimental Scheme subset interpreter in Java, based on SchemeNet.cs
+// Copyright (c) 2013, Leif Bruder <leifbruder@gmail.com>
+//
+// Permission to use, copy, modify, and/or distribute this software for any
+// purpose with or without fee is hereby granted, provided that the above
+// copyright notice and this permission notice appear in all copies.
+//
+// THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+// WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+// MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+// ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+// WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+// ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+// OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+
+package benchmarks;
+
+import java.io.*;
+import java.nio.file.*;
+import org.lb.lbjscheme.*;
+import org.lb.lbjscheme.Compiler;
+import org.lb.lbjscheme.Reader;
+import org.lb.lbjscheme.vm.VirtualMachine;
+
+// Compares the int coded switch loop of the VirtualMachine with the dispatch
+// through Opcode objects. Usage: DispatchBenchmark [script] [iterations]
+public final class DispatchBenchmark {
+	private final String _script;
+	private final boolean _useOpcodes;
+	private Analyzer _analyzer;
+	private CompiledProgram _program;
+	private Compiler _compiler;
+	private VirtualMachine _vm;
+
+	private DispatchBenchmark(String script, boolean useOpcodes) {
+		_script = script;
+		_useOpcodes = useOpcodes;
+	}
+
+	private SchemeObject compileAndRun(String commands) throws SchemeException {
+		final int startIp = _useOpcodes ? _program.getNumberOfStatements()
+				: _program.getCodeLength();
+		final Reader r = new Reader(new InputPort(new StringReader(commands)));
+		while (true) {
+			try {
+				_compiler.compile(_analyzer.analyze(r.read()), false);
+			} catch (EOFException ex) {
+				break;
+			}
+		}
+		return _useOpcodes ? _vm.runOpcodes(_program, startIp) : _vm.run(
+				_program, startIp);
+	}
+
+	private void setUp() throws SchemeException {
+		final Environment global = new Environment();
+		global.addBuiltins();
+		global.setOutputPort(new OutputPort(new StringWriter()));
+		_analyzer = new Analyzer();
+		_program = new CompiledProgram();
+		_compiler = new Compiler(_program);
+		_vm = new VirtualMachine(global);
+		compileAndRun(Environment.getHigherOrderProceduresScript() + " "
+				+ Environment.getInteractionInitScript());
+		global.addRedefinableBuiltins();
+		global.lock();
+	}
+
+	private long time() throws SchemeException {
+		setUp();
+		final long start = System.nanoTime();
+		compileAndRun(_script);
+		return (System.nanoTime() - start) / 1000000;
+	}
+
+	public static void main(String[] args) throws Exception {
+		final String fileName = args.length > 0 ? args[0] : "tests/primes.scm";
+		final int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+		final String script = new String(Files.readAllBytes(Paths
+				.get(fileName)));
+		final DispatchBenchmark opcodes = new DispatchBenchmark(script, true);
+		final DispatchBenchmark bytecode = new DispatchBenchmark(script, false);
+
+		for (int i = 0; i < iterations; ++i) {
+			System.out.println("Opcode objects: " + opcodes.time() + " ms");
+			System.out.println("Int bytecode:   " + bytecode.time() + " ms");
+		}
+	}
+}
@@ -0,0 +1,61 @@
+// lbjScheme
+// An experimental Scheme subset interpreter in Java, based on SchemeNet.cs
+// Copyright (c) 2013, Leif Bruder <leifbruder@gmail.com>
+//
+// Permission to use, copy, modify, and/or distribute this software for any
+// purpose with or without fee is hereby granted, provided that the above
+// copyright notice and this permission notice appear in all copies.
+//
+// THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+// WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+// MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+// ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+// WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+// ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+// OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+
+package benchmarks;
+
+import java.io.*;
+import java.nio.file.*;
+import org.lb.lbjscheme.*;
+
+// Compares the JvmCompilingEvaluator with the VirtualMachine and the closure
+// compiler. Each evaluator runs the script once, then the expression several
+// times, so that the later runs show the code after JIT compilation.
+// Usage: JvmBackendBenchmark [script] [expression] [iterations]
+public final class JvmBackendBenchmark {
+	private static Environment newGlobalEnvironment() throws SchemeException {
+		final Environment ret = Environment.newInteractionEnvironment(null);
+		ret.setOutputPort(new OutputPort(new StringWriter()));
+		return ret;
+	}
+
+	private static void run(String name, Evaluator evaluator, String script,
+			String expression, int iterations) throws SchemeException {
+		evaluator.eval(script);
+		for (int i = 0; i < iterations; ++i) {
+			final long start = System.nanoTime();
+			evaluator.eval(expression);
+			System.out.println(name + (System.nanoTime() - start) / 1000000
+					+ " ms");
+		}
+	}
+
+	public static void main(String[] args) throws Exception {
+		final String fileName = args.length > 0 ? args[0] : "tests/fib.scm";
+		final String expression = args.length > 1 ? args[1] : "(fib 27)";
+		final int iterations = args.length > 2 ? Integer.parseInt(args[2])
+				: 10;
+		final String script = new String(Files.readAllBytes(Paths
+				.get(fileName)));
+
+		run("Virtual machine:  ", new CompilingEvaluator(new InputPort(
+				new StringReader("")), new OutputPort(new StringWriter())),
+				script, expression, iterations);
+		run("Closure compiler: ", new ClosureCompilingEvaluator(
+				newGlobalEnvironment()), script, expression, iterations);
+		run("JVM bytecode:     ", new JvmCompilingEvaluator(
+				newGlobalEnvironment()), script, expression, iterations);
+	}
+}
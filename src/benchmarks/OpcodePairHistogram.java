@@ -0,0 +1,98 @@
+// lbjScheme
+// An experimental Scheme subset interpreter in Java, based on SchemeNet.cs
+// Copyright (c) 2013, Leif Bruder <leifbruder@gmail.com>
+//
+// Permission to use, copy, modify, and/or distribute this software for any
+// purpose with or without fee is hereby granted, provided that the above
+// copyright notice and this permission notice appear in all copies.
+//
+// THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+// WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+// MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+// ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+// WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+// ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+// OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+
+package benchmarks;
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+import org.lb.lbjscheme.*;
+import org.lb.lbjscheme.Compiler;
+import org.lb.lbjscheme.Reader;
+import org.lb.lbjscheme.vm.VirtualMachine;
+
+// Runs scripts on the VirtualMachine and prints the opcode pairs executed
+// most often in sequence, i.e. the candidates for superinstructions.
+// Usage: OpcodePairHistogram [script...]
+public final class OpcodePairHistogram {
+	private final Map<String, Long> _histogram = new HashMap<>();
+	private Analyzer _analyzer;
+	private CompiledProgram _program;
+	private PeepholeOptimizer _optimizer;
+	private Compiler _compiler;
+	private VirtualMachine _vm;
+
+	private void compileAndRun(String commands) throws SchemeException {
+		final int startIp = _program.getNumberOfStatements();
+		final Reader r = new Reader(new InputPort(new StringReader(commands)));
+		while (true) {
+			try {
+				_compiler.compile(_analyzer.analyze(r.read()), false);
+				_optimizer.flush();
+			} catch (EOFException ex) {
+				break;
+			}
+		}
+		_vm.runOpcodes(_program, startIp);
+	}
+
+	private void run(String script) throws SchemeException {
+		final Environment global = new Environment();
+		global.addBuiltins();
+		global.setOutputPort(new OutputPort(new StringWriter()));
+		_analyzer = new Analyzer();
+		_program = new CompiledProgram();
+		_optimizer = new PeepholeOptimizer(_program);
+		_compiler = new Compiler(_optimizer);
+		_vm = new VirtualMachine(global);
+		compileAndRun(Environment.getHigherOrderProceduresScript() + " "
+				+ Environment.getInteractionInitScript());
+		global.addRedefinableBuiltins();
+		global.lock();
+		_vm.setPairHistogram(_histogram);
+		compileAndRun(script);
+	}
+
+	private void print(int count) {
+		final List<Map.Entry<String, Long>> pairs = new ArrayList<>(
+				_histogram.entrySet());
+		Collections.sort(pairs, new Comparator<Map.Entry<String, Long>>() {
+			@Override
+			public int compare(Map.Entry<String, Long> a,
+					Map.Entry<String, Long> b) {
+				return b.getValue().compareTo(a.getValue());
+			}
+		});
+
+		long total = 0;
+		for (Map.Entry<String, Long> i : pairs)
+			total += i.getValue();
+		System.out.println(total + " sequential opcode pairs executed");
+		for (Map.Entry<String, Long> i : pairs.subList(0,
+				Math.min(count, pairs.size())))
+			System.out.printf("%12d %5.1f%%  %s%n", i.getValue(),
+					100.0 * i.getValue() / total, i.getKey());
+	}
+
+	public static void main(String[] args) throws Exception {
+		final List<String> fileNames = args.length > 0 ? Arrays.asList(args)
+				: Arrays.asList("tests/primes.scm");
+		final OpcodePairHistogram histogram = new OpcodePairHistogram();
+		for (String fileName : fileNames)
+			histogram.run(new String(Files.readAllBytes(Paths.get(fileName))));
+		histogram.print(20);
+	}
+}
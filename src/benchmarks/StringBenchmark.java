@@ -0,0 +1,64 @@
+// lbjScheme
+// An experimental Scheme subset interpreter in Java, based on SchemeNet.cs
+// Copyright (c) 2013, Leif Bruder <leifbruder@gmail.com>
+//
+// Permission to use, copy, modify, and/or distribute this software for any
+// purpose with or without fee is hereby granted, provided that the above
+// copyright notice and this permission notice appear in all copies.
+//
+// THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+// WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+// MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+// ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+// WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+// ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+// OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+
+package benchmarks;
+
+import org.lb.lbjscheme.*;
+
+// Compares the string builtins with the list based definitions they replaced
+// in the init script. Usage: StringBenchmark [iterations]
+public final class StringBenchmark {
+	private static final String _listBasedDefinitions = ""
+			+ "(define (string=? a b) (define (check i max) (if (>= i max) #t (if (char=? (string-ref a i) (string-ref b i)) (check (+ i 1) max) #f))) (if (= (string-length a) (string-length b)) (check 0 (string-length a)) #f))"
+			+ "(define (string-ci=? a b) (define (check i max) (if (>= i max) #t (if (char-ci=? (string-ref a i) (string-ref b i)) (check (+ i 1) max) #f))) (if (= (string-length a) (string-length b)) (check 0 (string-length a)) #f))"
+			+ "(define (string>? a b) (define (check i max-a max-b) (if (>= i max-a) #f (if (>= i max-b) #t (if (char=? (string-ref a i) (string-ref b i)) (check (+ i 1) max-a max-b) (char>? (string-ref a i) (string-ref b i)))))) (check 0 (string-length a) (string-length b)))"
+			+ "(define (string<? a b) (if (string=? a b) #f (not (string>? a b))))"
+			+ "(define (string->list x) (define (iter i max acc) (if (>= i max) (reverse acc) (iter (+ i 1) max (cons (string-ref x i) acc)))) (iter 0 (string-length x) '()))"
+			+ "(define (list->string lst) (define (iter i l acc) (if (null? l) acc (begin (string-set! acc i (car l)) (iter (+ i 1) (cdr l) acc)))) (iter 0 lst (make-string (length lst))))"
+			+ "(define (substring s start end) (list->string (take (list-tail (string->list s) start) (- end start))))"
+			+ "(define (string-append . strings) (list->string (##fold append '() (##map1 string->list (reverse strings)))))"
+			+ "(define (string-copy s) (list->string (string->list s)))";
+
+	private static final String _workload = ""
+			+ "(define (make-words n) (let loop ((i 0) (acc '())) (if (= i n) acc (loop (+ i 1) (cons (string-append \"Word-\" (number->string i) \"-\" (number->string (* i i))) acc)))))"
+			+ "(define (count-matches words) (let loop ((w words) (count 0)) (if (null? w) count (loop (cdr w) (if (and (string<? (substring (car w) 5 (string-length (car w))) \"5\") (string-ci=? (string-copy (substring (car w) 0 4)) \"WORD\")) (+ count 1) count)))))"
+			+ "(define (reverse-words words) (map (lambda (w) (list->string (reverse (string->list w)))) words))"
+			+ "(define (run n) (let loop ((i 0) (count 0)) (if (= i n) count (loop (+ i 1) (+ count (count-matches (make-words 100)) (length (reverse-words (make-words 20))))))))";
+
+	private static long time(boolean listBased, int iterations)
+			throws SchemeException {
+		final Evaluator e = new AnalyzingEvaluator(
+				Environment.newInteractionEnvironment(null));
+		if (listBased) e.eval(_listBasedDefinitions);
+		e.eval(_workload);
+		final long start = System.nanoTime();
+		final SchemeObject result = e.eval("(run " + iterations + ")");
+		final long ret = (System.nanoTime() - start) / 1000000;
+		if (!result.toString().equals(Integer.toString(iterations * 65)))
+			throw new SchemeException("Unexpected result " + result);
+		return ret;
+	}
+
+	public static void main(String[] args) throws Exception {
+		final int iterations = args.length > 0 ? Integer.parseInt(args[0])
+				: 200;
+		for (int i = 0; i < 5; ++i) {
+			System.out.println("List based: " + time(true, iterations) + " ms");
+			System.out.println("Builtins:   " + time(false, iterations)
+					+ " ms");
+		}
+	}
+}
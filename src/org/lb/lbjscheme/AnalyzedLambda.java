@@ -20,18 +20,23 @@ import java.util.List;
 import org.lb.lbjscheme.ast.BeginForm;
 
 public final class AnalyzedLambda extends SchemeObject {
+	private static final long serialVersionUID = 1L;
+
 	private final String _name;
 	private final List<Symbol> _parameterNames;
 	private final boolean _hasRestParameter;
 	private final BeginForm _forms;
-	private final Environment _captured;
+	private final int _frameSize;
+	private final Frame _captured;
 
 	public AnalyzedLambda(String name, List<Symbol> parameterNames,
-			boolean hasRestParameter, BeginForm forms, Environment captured) {
+			boolean hasRestParameter, BeginForm forms, int frameSize,
+			Frame captured) {
 		_name = name;
 		_parameterNames = parameterNames;
 		_hasRestParameter = hasRestParameter;
 		_forms = forms;
+		_frameSize = frameSize;
 		_captured = captured;
 	}
 
@@ -51,7 +56,11 @@ public final class AnalyzedLambda extends SchemeObject {
 		return _forms;
 	}
 
-	public Environment getCaptured() {
+	public int getFrameSize() {
+		return _frameSize;
+	}
+
+	public Frame getCaptured() {
 		return _captured;
 	}
 
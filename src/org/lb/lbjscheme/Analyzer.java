@@ -16,8 +16,12 @@
 
 package org.lb.lbjscheme;
 
+import java.io.EOFException;
+import java.io.StringReader;
 import java.util.*;
 import org.lb.lbjscheme.ast.*;
+import org.lb.lbjscheme.builtins.Eval;
+import org.lb.lbjscheme.builtins.HigherOrderBuiltin;
 
 public final class Analyzer {
 	private static final Symbol _quoteSymbol = Symbol.fromString("quote");
@@ -30,57 +34,316 @@ public final class Analyzer {
 	private static final Symbol _applySymbol = Symbol.fromString("sys:apply");
 	private static final Symbol _callccSymbol = Symbol
 			.fromString("sys:call/cc");
+	private static final Symbol _letSymbol = Symbol.fromString("let");
+	private static final Symbol _letStarSymbol = Symbol.fromString("let*");
+	private static final Symbol _letrecSymbol = Symbol.fromString("letrec");
+	private static final Symbol _condSymbol = Symbol.fromString("cond");
+	private static final Symbol _elseSymbol = Symbol.fromString("else");
+	private static final Symbol _andSymbol = Symbol.fromString("and");
+	private static final Symbol _orSymbol = Symbol.fromString("or");
+	private static final Symbol _caseSymbol = Symbol.fromString("case");
+	private static final Symbol _doSymbol = Symbol.fromString("do");
+	private static final Symbol _quasiquoteSymbol = Symbol
+			.fromString("quasiquote");
+	private static final Symbol _unquoteSymbol = Symbol.fromString("unquote");
+	private static final Symbol _unquoteSplicingSymbol = Symbol
+			.fromString("unquote-splicing");
+	private static final Symbol _undefinedSymbol = Symbol
+			.fromString("undefined");
+	private static final Symbol _consSymbol = Symbol.fromString("##cons");
+	private static final Symbol _appendSymbol = Symbol.fromString("##append");
+	private static final Symbol _memvSymbol = Symbol.fromString("##memv");
 
-	private final InterpretingEvaluator _macroEvaluator;
-	private final Environment _macroEnvironment;
+	// Derived forms the Analyzer handles itself as long as their macros of
+	// the init script have not been redefined
+	private static final Set<Symbol> _derivedForms = new HashSet<>(
+			Arrays.asList(_letSymbol, _letStarSymbol, _letrecSymbol,
+					_condSymbol, _andSymbol, _orSymbol, _caseSymbol, _doSymbol,
+					_quasiquoteSymbol));
+
+	// Builtins that don't call back into Scheme code, so a call of one of
+	// them can not capture a continuation
+	private static Set<Symbol> _firstOrderBuiltins;
+
+	// Thrown when a let that is bound in place turns out to contain a closure
+	// or a possible capture point; the outermost one is analyzed again as a
+	// lambda
+	private static final class CapturePointInLet extends RuntimeException {
+		private static final long serialVersionUID = 1L;
+
+		CapturePointInLet() {
+			super(null, null, false, false);
+		}
+	}
+
+	private final MacroExpander _macroExpander;
+	private final MacroExpansionCache _expansionCache = new MacroExpansionCache(
+			4096);
 
 	public Analyzer() throws SchemeException {
-		_macroEvaluator = new InterpretingEvaluator(
-				Environment.newInteractionEnvironment(null));
-		_macroEnvironment = _macroEvaluator.getGlobalEnvironment();
+		_macroExpander = new MacroExpander();
+	}
+
+	// Analyzer of the transformers of a MacroExpander
+	Analyzer(MacroExpander macroExpander) {
+		_macroExpander = macroExpander;
+	}
+
+	// Variables bound by one lambda, in the order of their frame slots:
+	// Parameters first, then internal defines. A lambda that is bound in place
+	// gets a block scope, which adds its variables to the frame of the
+	// enclosing lambda, its owner.
+	private static final class Scope {
+		private final Scope _outer;
+		private final Scope _owner;
+		private final boolean _isBlock;
+		private final List<Symbol> _slots;
+		private final Map<Symbol, Integer> _names = new HashMap<>();
+
+		// Owner only: Number of defines and set!s per slot, and the loops of
+		// lambdas bound to a slot, which are valid if that is the only
+		// assignment
+		private final Map<Integer, Integer> _assignments;
+		private final Map<LoopLabel, Integer> _loops;
+
+		public Scope(Scope outer, List<Symbol> parameterNames)
+				throws SchemeException {
+			_outer = outer;
+			_owner = this;
+			_isBlock = false;
+			_slots = new ArrayList<>();
+			_assignments = new HashMap<>();
+			_loops = new HashMap<>();
+			for (Symbol i : parameterNames)
+				addSlot(i);
+		}
+
+		public Scope(Scope outer) {
+			_outer = outer;
+			_owner = outer._owner;
+			_isBlock = true;
+			_slots = outer._slots;
+			_assignments = null;
+			_loops = null;
+		}
+
+		public void assign(int slot) {
+			final Integer count = _owner._assignments.get(slot);
+			_owner._assignments.put(slot, count == null ? 1 : count + 1);
+		}
+
+		public void addLoop(LoopLabel label, int slot) {
+			_owner._loops.put(label, slot);
+		}
+
+		private int addSlot(Symbol name) throws SchemeException {
+			Environment.assertIsNotSpecialForm(name);
+			_slots.add(name);
+			final int slot = _slots.size() - 1;
+			if (!_names.containsKey(name)) _names.put(name, slot);
+			return slot;
+		}
+
+		public int define(Symbol name) throws SchemeException {
+			final Integer slot = _names.get(name);
+			return slot != null ? slot : addSlot(name);
+		}
+	}
+
+	// The parts of the owner scopes that analyzing a let body can change
+	private static final class ScopeState {
+		private final Scope _owner;
+		private final int _slotCount;
+		private final Map<Integer, Integer> _assignments;
+		private final Map<LoopLabel, Integer> _loops;
+
+		ScopeState(Scope owner) {
+			_owner = owner;
+			_slotCount = owner._slots.size();
+			_assignments = new HashMap<>(owner._assignments);
+			_loops = new HashMap<>(owner._loops);
+		}
+
+		void restore() {
+			_owner._slots.subList(_slotCount, _owner._slots.size()).clear();
+			_owner._assignments.clear();
+			_owner._assignments.putAll(_assignments);
+			_owner._loops.clear();
+			_owner._loops.putAll(_loops);
+		}
+	}
+
+	private int _lambdaCount;
+	private int _lambdasBoundInPlace;
+	private int _capturePoints;
+	private int _loopCount;
+	private int _selfTailCalls;
+	private boolean _reentrantContinuations;
+	private int _letsBeingBoundInPlace;
+
+	// Set for evaluators whose continuations can be reentered. Reentering
+	// one runs a let again that may have been run in the same frame before,
+	// and continues a loop in a frame that later iterations have changed. So
+	// lets are only bound in place and self tail calls only reuse the frame
+	// if no continuation can be captured in their body, by call/cc or by any
+	// call that may reach it: calls of everything but builtins. Calls in tail
+	// position of a let body don't count, as the let's variables are dead
+	// once they are made; neither do the self tail calls of a loop.
+	public void setReentrantContinuations(boolean value) {
+		_reentrantContinuations = value;
+	}
+
+	// Number of lambda forms analyzed, including those bound in place
+	public int getLambdaCount() {
+		return _lambdaCount;
+	}
+
+	// Number of immediately applied lambda forms whose parameters have been
+	// bound in the frame of the enclosing lambda instead of a closure
+	public int getLambdasBoundInPlace() {
+		return _lambdasBoundInPlace;
+	}
+
+	// Number of lambdas whose self tail calls run as loops in their frame
+	public int getLoopCount() {
+		return _loopCount;
+	}
+
+	public MacroExpansionCache getMacroExpansionCache() {
+		return _expansionCache;
+	}
+
+	// The forms of the init scripts, for the evaluators compiling them. Their
+	// macros already are the builtin macros of the expander; defining them
+	// again would hide the native analysis of the derived forms.
+	public static List<SchemeObject> getInitScriptForms()
+			throws SchemeException {
+		final Reader r = new Reader(new InputPort(new StringReader(
+				Environment.getHigherOrderProceduresScript() + " "
+						+ Environment.getInteractionInitScript())));
+		final List<SchemeObject> ret = new ArrayList<>();
+		while (true) {
+			try {
+				final SchemeObject form = r.read();
+				if (!(form instanceof Pair)
+						|| ((Pair) form).getCar() != _defmacroSymbol)
+					ret.add(form);
+			} catch (EOFException ex) {
+				return ret;
+			}
+		}
 	}
 
 	public SyntaxTreeObject analyze(SchemeObject obj) throws SchemeException {
+		return analyze(obj, null);
+	}
+
+	public LambdaForm analyzeLambda(String name, List<Symbol> parameterNames,
+			boolean hasRestParameter, Pair forms) throws SchemeException {
+		return analyzeLambda(name, parameterNames, hasRestParameter, forms,
+				null, -1);
+	}
+
+	private SyntaxTreeObject analyze(SchemeObject obj, Scope scope)
+			throws SchemeException {
 		if (obj instanceof Nil)
 			throw new SchemeException("Empty list can not be evaluated");
 		if (obj instanceof Vector)
 			throw new SchemeException("Vectors must be quoted");
-		if (obj instanceof Symbol) return new LiteralSymbol((Symbol) obj);
+		if (obj instanceof Symbol) return resolve((Symbol) obj, scope);
 		if (!(obj instanceof Pair)) return new SelfEvaluatingLiteral(obj);
 
 		final Pair p = (Pair) obj;
 		final SchemeObject car = p.getCar();
 
-		if (car instanceof Symbol
-				&& _macroEnvironment.getDefinedSymbols().contains(car)
-				&& _macroEnvironment.get((Symbol) car) instanceof Macro) {
-			// System.out.println("Macro expansion:");
-			// System.out.println(p.toString(false));
-			// System.out.println("=>");
-			final SchemeObject evald = _macroEvaluator.eval(p,
-					_macroEnvironment, true);
-			// System.out.println(evald.toString(false));
-			// System.out.println("");
-			return analyze(evald);
-		}
-
-		if (car == _lambdaSymbol) return analyzeLambdaForm(p.getCdr());
-		if (car == _defineSymbol) return analyzeDefineForm(p.getCdr());
+		final Macro macro = getMacro(p, scope);
+		if (macro != null) {
+			if (isDerivedForm(p, macro)) return analyzeDerivedForm(p, scope);
+			return analyze(expandMacro(macro, p), scope);
+		}
+
+		if (car == _lambdaSymbol) return analyzeLambdaForm(p.getCdr(), scope);
+		if (car == _defineSymbol) return analyzeDefineForm(p.getCdr(), scope);
 		if (car == _defmacroSymbol) return defmacro(p);
-		if (car == _applySymbol) return analyzeApplyForm(p);
+		if (car == _applySymbol) return analyzeApplyForm(p, scope);
 
 		final List<SchemeObject> form = p.toJavaList();
 		if (car == _quoteSymbol) return new SelfEvaluatingLiteral(form.get(1));
-		if (car == _setSymbol) return analyzeSetForm(form);
-		if (car == _callccSymbol) return analyzeCallccForm(form);
-		if (car == _ifSymbol) return analyzeIfForm(form);
-		if (car == _beginSymbol) return analyzeBeginForm(form);
+		if (car == _setSymbol) return analyzeSetForm(form, scope);
+		if (car == _callccSymbol) return analyzeCallccForm(form, scope);
+		if (car == _ifSymbol) return analyzeIfForm(form, scope);
+		if (car == _beginSymbol) return analyzeBeginForm(form, scope);
 
-		return analyzeFuncall(p);
+		return analyzeFuncall(p, scope);
 	}
 
-	private LambdaForm analyzeLambdaForm(SchemeObject obj)
+	private static VariableReference resolve(Symbol name, Scope scope) {
+		int depth = 0;
+		for (Scope s = scope; s != null; s = s._outer) {
+			final Integer slot = s._names.get(name);
+			if (slot != null) {
+				if (depth == 0) return new LocalVariable(name, slot);
+				return new FreeVariable(name, depth, slot);
+			}
+			if (!s._isBlock) ++depth;
+		}
+		return new LiteralSymbol(name);
+	}
+
+	private static void markAssigned(Symbol name, Scope scope) {
+		for (Scope s = scope; s != null; s = s._outer) {
+			final Integer slot = s._names.get(name);
+			if (slot != null) {
+				s.assign(slot);
+				return;
+			}
+		}
+	}
+
+	private static boolean isBoundLexically(Symbol name, Scope scope) {
+		for (Scope s = scope; s != null; s = s._outer)
+			if (s._names.containsKey(name)) return true;
+		return false;
+	}
+
+	// Returns the macro used by the form, or null if it is no macro use
+	private Macro getMacro(Pair p, Scope scope) throws SchemeException {
+		final SchemeObject car = p.getCar();
+		if (!(car instanceof Symbol)) return null;
+		final Macro macro = _macroExpander.getMacro((Symbol) car);
+		if (macro == null || isBoundLexically((Symbol) car, scope))
+			return null;
+		return macro;
+	}
+
+	private boolean isDerivedForm(Pair p, Macro macro) {
+		return _derivedForms.contains(p.getCar())
+				&& _macroExpander.isBuiltinMacro(macro);
+	}
+
+	private SchemeObject expandMacro(Macro macro, Pair p)
+			throws SchemeException {
+		final SchemeObject cached = _expansionCache.get(macro, p);
+		if (cached != null) return cached;
+		// System.out.println("Macro expansion:");
+		// System.out.println(p.toString(false));
+		// System.out.println("=>");
+		final SchemeObject evald = _macroExpander.expand(macro, p);
+		// System.out.println(evald.toString(false));
+		// System.out.println("");
+		_expansionCache.put(macro, p, evald);
+		return evald;
+	}
+
+	private LambdaForm analyzeLambdaForm(SchemeObject obj, Scope scope)
 			throws SchemeException {
+		return analyzeLambdaForm(obj, scope, -1);
+	}
+
+	// selfSlot is the slot of the enclosing frame the lambda is assigned to,
+	// or -1 if it is not assigned to a local variable
+	private LambdaForm analyzeLambdaForm(SchemeObject obj, Scope scope,
+			int selfSlot) throws SchemeException {
 		if (!(obj instanceof Pair))
 			throw new SchemeException(
 					"Invalid lambda form: Expected at least a parameter list and one form");
@@ -95,11 +358,8 @@ public final class Analyzer {
 
 		if (parameterNameObject instanceof Symbol) { // (lambda x forms)
 			parameterNames.add((Symbol) parameterNameObject);
-			return new LambdaForm(
-					"lambda",
-					parameterNames,
-					true,
-					analyzeBeginForm(new Pair(_beginSymbol, forms).toJavaList()));
+			return analyzeLambda("lambda", parameterNames, true, forms, scope,
+					selfSlot);
 		}
 		if (parameterNameObject instanceof SchemeList) { // (lambda (a b) forms)
 			final boolean hasRestParameter = ((SchemeList) parameterNameObject)
@@ -111,29 +371,161 @@ public final class Analyzer {
 					throw new SchemeException(
 							"Invalid lambda form: Only symbols allowed in parameter name list");
 			}
-			return new LambdaForm(
-					"lambda",
-					parameterNames,
-					hasRestParameter,
-					analyzeBeginForm(new Pair(_beginSymbol, forms).toJavaList()));
+			return analyzeLambda("lambda", parameterNames, hasRestParameter,
+					forms, scope, selfSlot);
 		}
 		throw new SchemeException("Invalid lambda form");
 	}
 
-	private DefineForm analyzeDefineForm(SchemeObject obj)
+	private LambdaForm analyzeLambda(String name, List<Symbol> parameterNames,
+			boolean hasRestParameter, Pair forms, Scope outer, int selfSlot)
+			throws SchemeException {
+		if (_letsBeingBoundInPlace > 0) throw new CapturePointInLet();
+		++_lambdaCount;
+		final int closuresBefore = _lambdaCount - _lambdasBoundInPlace;
+		final int capturePointsBefore = _capturePoints;
+		final Scope scope = new Scope(outer, parameterNames);
+		final List<SchemeObject> body = new ArrayList<>();
+		scanOutDefines(forms, scope, body);
+		BeginForm analyzedBody = analyzeSequence(body, scope);
+
+		for (Map.Entry<LoopLabel, Integer> i : scope._loops.entrySet()) {
+			final Integer assignments = scope._assignments.get(i.getValue());
+			if (assignments != null && assignments == 1)
+				++_loopCount;
+			else
+				i.getKey().invalidate();
+		}
+
+		// The frame is reused by the loop, so nothing may capture it. The self
+		// tail calls themselves have been counted as capture points if all
+		// calls are.
+		if (selfSlot != -1 && !hasRestParameter
+				&& _lambdaCount - _lambdasBoundInPlace == closuresBefore) {
+			final LoopLabel label = new LoopLabel();
+			_selfTailCalls = 0;
+			final BeginForm loopBody = (BeginForm) markSelfTailCalls(
+					analyzedBody, label, selfSlot, parameterNames.size());
+			final int capturePoints = _capturePoints - capturePointsBefore
+					- (_reentrantContinuations ? _selfTailCalls : 0);
+			if (loopBody != analyzedBody && capturePoints == 0) {
+				outer.addLoop(label, selfSlot);
+				analyzedBody = new BeginForm(
+						new ArrayList<SyntaxTreeObject>(), new LoopForm(label,
+								loopBody));
+			}
+		}
+
+		return new LambdaForm(name, parameterNames, hasRestParameter,
+				analyzedBody, scope._slots.size());
+	}
+
+	// Replaces calls in tail position through the variable in slot selfSlot of
+	// the enclosing frame. Returns the form itself if there are none.
+	private SyntaxTreeObject markSelfTailCalls(SyntaxTreeObject form,
+			LoopLabel label, int selfSlot, int parameterCount) {
+		if (form instanceof BeginForm) {
+			final BeginForm begin = (BeginForm) form;
+			final SyntaxTreeObject last = markSelfTailCalls(
+					begin.getLastForm(), label, selfSlot, parameterCount);
+			if (last == begin.getLastForm()) return form;
+			return new BeginForm(begin.getFormsWithoutLast(), last);
+		}
+		if (form instanceof IfForm) {
+			final IfForm ifForm = (IfForm) form;
+			final SyntaxTreeObject thenPart = markSelfTailCalls(
+					ifForm.getThenPart(), label, selfSlot, parameterCount);
+			final SyntaxTreeObject elsePart = markSelfTailCalls(
+					ifForm.getElsePart(), label, selfSlot, parameterCount);
+			if (thenPart == ifForm.getThenPart()
+					&& elsePart == ifForm.getElsePart()) return form;
+			return new IfForm(ifForm.getCondition(), thenPart, elsePart);
+		}
+		if (form instanceof LetForm) {
+			final LetForm let = (LetForm) form;
+			final SyntaxTreeObject body = markSelfTailCalls(let.getBody(),
+					label, selfSlot, parameterCount);
+			if (body == let.getBody()) return form;
+			return new LetForm(let.getVariables(), let.getValues(),
+					(BeginForm) body);
+		}
+		if (form instanceof Funcall) {
+			final Funcall call = (Funcall) form;
+			if (!(call.getProcedure() instanceof FreeVariable)
+					|| call.getParameters().size() != parameterCount)
+				return form;
+			final FreeVariable procedure = (FreeVariable) call.getProcedure();
+			if (procedure.getDepth() != 1 || procedure.getSlot() != selfSlot)
+				return form;
+			++_selfTailCalls;
+			return new SelfTailCall(label, call);
+		}
+		return form;
+	}
+
+	// Analyzes the value of a define or set!. Lambdas assigned to a local
+	// variable may become loops.
+	private SyntaxTreeObject analyzeValue(SchemeObject value,
+			VariableReference target, Scope scope) throws SchemeException {
+		if (target instanceof LocalVariable && value instanceof Pair
+				&& ((Pair) value).getCar() == _lambdaSymbol)
+			return analyzeLambdaForm(((Pair) value).getCdr(), scope,
+					((LocalVariable) target).getSlot());
+		return analyze(value, scope);
+	}
+
+	// Expands macros on the body level and assigns frame slots to internal
+	// defines before the body is analyzed, so that forward references to
+	// them resolve to the lambda's own frame
+	private void scanOutDefines(SchemeList forms, Scope scope,
+			List<SchemeObject> body) throws SchemeException {
+		for (SchemeObject o : forms) {
+			while (o instanceof Pair) {
+				final Macro macro = getMacro((Pair) o, scope);
+				if (macro == null || isDerivedForm((Pair) o, macro)) break;
+				o = expandMacro(macro, (Pair) o);
+			}
+
+			if (o instanceof Pair) {
+				final Pair p = (Pair) o;
+				if (p.getCar() == _beginSymbol && p.getCdr() instanceof Pair) {
+					scanOutDefines((Pair) p.getCdr(), scope, body);
+					continue;
+				}
+				if (p.getCar() == _defineSymbol && p.getCdr() instanceof Pair) {
+					SchemeObject target = ((Pair) p.getCdr()).getCar();
+					if (target instanceof Pair)
+						target = ((Pair) target).getCar();
+					if (target instanceof Symbol) scope.define((Symbol) target);
+				}
+			}
+			body.add(o);
+		}
+	}
+
+	private DefineForm analyzeDefineForm(SchemeObject obj, Scope scope)
 			throws SchemeException {
 		if (!(obj instanceof Pair))
 			throw new SchemeException(
 					"Invalid define form: Expected target and value");
 
 		final Pair p1 = (Pair) obj;
-		if (p1.getCar().isSymbol()) return analyzeDefineValue(p1);
-		if (p1.getCar().isPair()) return analyzeDefineProcedure(p1);
+		if (p1.getCar().isSymbol()) return analyzeDefineValue(p1, scope);
+		if (p1.getCar().isPair()) return analyzeDefineProcedure(p1, scope);
 		throw new SchemeException(
 				"Invalid define form: Expected symbol or list as target");
 	}
 
-	private DefineForm analyzeDefineValue(Pair p1) throws SchemeException {
+	private static VariableReference defineTarget(Symbol name, Scope scope)
+			throws SchemeException {
+		if (scope == null) return new LiteralSymbol(name);
+		final int slot = scope.define(name);
+		scope.assign(slot);
+		return new LocalVariable(name, slot);
+	}
+
+	private DefineForm analyzeDefineValue(Pair p1, Scope scope)
+			throws SchemeException {
 		final Symbol sym = (Symbol) p1.getCar();
 		final SchemeObject valueObject = p1.getCdr();
 		if (!(valueObject instanceof Pair))
@@ -143,10 +535,13 @@ public final class Analyzer {
 			throw new SchemeException(
 					"Invalid define form: Too many parameters");
 
-		return new DefineForm(sym, analyze(((Pair) valueObject).getCar()));
+		final VariableReference target = defineTarget(sym, scope);
+		return new DefineForm(target, analyzeValue(
+				((Pair) valueObject).getCar(), target, scope));
 	}
 
-	private DefineForm analyzeDefineProcedure(Pair p1) throws SchemeException {
+	private DefineForm analyzeDefineProcedure(Pair p1, Scope scope)
+			throws SchemeException {
 		final SchemeList target = (SchemeList) p1.getCar();
 		final SchemeObject forms = p1.getCdr();
 		if (!(forms.isPair()))
@@ -164,18 +559,23 @@ public final class Analyzer {
 				parameterNames.add((Symbol) o);
 		}
 
-		return new DefineForm(sym, new LambdaForm(sym.toString(),
-				parameterNames, target.isDottedList(),
-				analyzeBeginForm(new Pair(_beginSymbol, forms).toJavaList())));
+		final VariableReference targetVariable = defineTarget(sym, scope);
+		int selfSlot = -1;
+		if (targetVariable instanceof LocalVariable)
+			selfSlot = ((LocalVariable) targetVariable).getSlot();
+		return new DefineForm(targetVariable, analyzeLambda(sym.toString(),
+				parameterNames, target.isDottedList(), (Pair) forms, scope,
+				selfSlot));
 	}
 
 	private SelfEvaluatingLiteral defmacro(SchemeObject obj)
 			throws SchemeException {
-		Symbol macroName = (Symbol) _macroEvaluator.eval(obj);
+		Symbol macroName = _macroExpander.defineMacro(obj);
+		_expansionCache.invalidate(macroName.toString());
 		return new SelfEvaluatingLiteral(macroName);
 	}
 
-	private SetForm analyzeSetForm(List<SchemeObject> form)
+	private SetForm analyzeSetForm(List<SchemeObject> form, Scope scope)
 			throws SchemeException {
 		if (form.size() != 3)
 			throw new SchemeException(
@@ -185,19 +585,22 @@ public final class Analyzer {
 			throw new SchemeException(
 					"Invalid set! form: Expected symbol as target");
 
-		return new SetForm((Symbol) form.get(1), analyze(form.get(2)));
+		final VariableReference target = resolve((Symbol) form.get(1), scope);
+		markAssigned(target.getSymbol(), scope);
+		return new SetForm(target, analyzeValue(form.get(2), target, scope));
 	}
 
-	private SyntaxTreeObject analyzeCallccForm(List<SchemeObject> form)
-			throws SchemeException {
+	private SyntaxTreeObject analyzeCallccForm(List<SchemeObject> form,
+			Scope scope) throws SchemeException {
 		if (form.size() != 2)
 			throw new SchemeException(
 					"Invalid call/cc form: Expected 1 parameter, got "
 							+ (form.size() - 1));
-		return new CallccForm(analyze(form.get(1)));
+		++_capturePoints;
+		return new CallccForm(analyze(form.get(1), scope));
 	}
 
-	private SyntaxTreeObject analyzeApplyForm(Pair rawForm)
+	private SyntaxTreeObject analyzeApplyForm(Pair rawForm, Scope scope)
 			throws SchemeException {
 		final List<SchemeObject> form = rawForm.toJavaList();
 
@@ -206,48 +609,503 @@ public final class Analyzer {
 					"Invalid apply form: Expected 2 parameters, got "
 							+ (form.size() - 1));
 
-		final SyntaxTreeObject procedure = analyze(form.get(1));
-		final SyntaxTreeObject parameterList = analyze(form.get(2));
+		final SyntaxTreeObject procedure = analyze(form.get(1), scope);
+		final SyntaxTreeObject parameterList = analyze(form.get(2), scope);
+		if (_reentrantContinuations) ++_capturePoints;
 
 		return new Apply(procedure, parameterList);
 	}
 
-	private IfForm analyzeIfForm(final List<SchemeObject> form)
+	private IfForm analyzeIfForm(final List<SchemeObject> form, Scope scope)
 			throws SchemeException {
 		if (form.size() == 3)
-			return new IfForm(analyze(form.get(1)), analyze(form.get(2)),
-					analyze(False.getInstance()));
+			return new IfForm(analyze(form.get(1), scope), analyze(
+					form.get(2), scope), analyze(False.getInstance(), scope));
 		if (form.size() == 4)
-			return new IfForm(analyze(form.get(1)), analyze(form.get(2)),
-					analyze(form.get(3)));
+			return new IfForm(analyze(form.get(1), scope), analyze(
+					form.get(2), scope), analyze(form.get(3), scope));
 		throw new SchemeException(
 				"Invalid if form: Expected 3 or 4 parameters, got "
 						+ (form.size() - 1));
 	}
 
-	private BeginForm analyzeBeginForm(List<SchemeObject> form)
+	private BeginForm analyzeBeginForm(List<SchemeObject> form, Scope scope)
 			throws SchemeException {
 		if (form.size() == 1)
 			throw new SchemeException("Invalid begin form: Empty");
+		return analyzeSequence(form.subList(1, form.size()), scope);
+	}
+
+	private BeginForm analyzeSequence(List<SchemeObject> forms, Scope scope)
+			throws SchemeException {
+		if (forms.isEmpty())
+			throw new SchemeException("Invalid begin form: Empty");
 
-		List<SyntaxTreeObject> analyzedForms = new ArrayList<>();
-		for (SchemeObject o : form.subList(1, form.size()))
-			analyzedForms.add(analyze(o));
+		final List<SyntaxTreeObject> analyzedForms = new ArrayList<>();
+		for (SchemeObject o : forms.subList(0, forms.size() - 1))
+			analyzedForms.add(analyze(o, scope));
 
-		return new BeginForm(
-				analyzedForms.subList(0, analyzedForms.size() - 1),
-				analyzedForms.get(analyzedForms.size() - 1));
+		return new BeginForm(analyzedForms, analyze(
+				forms.get(forms.size() - 1), scope));
 	}
 
-	private SyntaxTreeObject analyzeFuncall(Pair rawForm)
+	private SyntaxTreeObject analyzeFuncall(Pair rawForm, Scope scope)
 			throws SchemeException {
 		final SchemeObject procedure = rawForm.getCar();
 
 		final List<SchemeObject> form = rawForm.toJavaList();
 		final ArrayList<SyntaxTreeObject> parameters = new ArrayList<>();
 		for (int i = 1; i < form.size(); ++i)
-			parameters.add(analyze(form.get(i)));
+			parameters.add(analyze(form.get(i), scope));
+
+		if (scope != null && canBeBoundInPlace(procedure, parameters.size())) {
+			final Pair lambdaForm = (Pair) ((Pair) procedure).getCdr();
+			final List<Symbol> names = new ArrayList<>();
+			for (SchemeObject o : (SchemeList) lambdaForm.getCar())
+				names.add((Symbol) o);
+			return analyzeLetForm(names, parameters,
+					(SchemeList) lambdaForm.getCdr(), scope);
+		}
+
+		final Funcall ret = new Funcall(analyze(procedure, scope), parameters);
+		if (_reentrantContinuations && isPossibleCapturePoint(ret))
+			++_capturePoints;
+		return ret;
+	}
+
+	// Lambdas called in place have their own frame
+	private static boolean isPossibleCapturePoint(Funcall call)
+			throws SchemeException {
+		final SyntaxTreeObject procedure = call.getProcedure();
+		if (procedure instanceof LambdaForm) return false;
+		return !(procedure instanceof LiteralSymbol && isFirstOrderBuiltin(
+				((LiteralSymbol) procedure).getSymbol()));
+	}
+
+	// Number of possible capture points in tail position of the form
+	private static int countTailCapturePoints(SyntaxTreeObject form)
+			throws SchemeException {
+		if (form instanceof BeginForm)
+			return countTailCapturePoints(((BeginForm) form).getLastForm());
+		if (form instanceof IfForm)
+			return countTailCapturePoints(((IfForm) form).getThenPart())
+					+ countTailCapturePoints(((IfForm) form).getElsePart());
+		if (form instanceof LetForm)
+			return countTailCapturePoints(((LetForm) form).getBody());
+		if (form instanceof Funcall)
+			return isPossibleCapturePoint((Funcall) form) ? 1 : 0;
+		if (form instanceof Apply || form instanceof CallccForm) return 1;
+		return 0;
+	}
 
-		return new Funcall(analyze(procedure), parameters);
+	private static boolean isFirstOrderBuiltin(Symbol procedure)
+			throws SchemeException {
+		synchronized (Analyzer.class) {
+			if (_firstOrderBuiltins == null) {
+				final Environment builtins = new Environment();
+				builtins.addBuiltins();
+				final Set<Symbol> names = new HashSet<>();
+				for (Symbol name : builtins.getDefinedSymbols()) {
+					final SchemeObject value = builtins.get(name);
+					if (!(value instanceof Builtin)
+							|| value instanceof HigherOrderBuiltin
+							|| value instanceof Eval) continue;
+					names.add(name);
+					if (name.toString().startsWith("##"))
+						names.add(Symbol.fromString(name.toString()
+								.substring(2)));
+				}
+				_firstOrderBuiltins = names;
+			}
+		}
+		return _firstOrderBuiltins.contains(procedure);
+	}
+
+	// An immediately applied lambda can't escape, so a closure is not needed
+	// as long as there is an enclosing frame to hold its variables. Lambdas
+	// with a rest parameter or a wrong number of arguments are left to the
+	// normal call, which reports the error.
+	private static boolean canBeBoundInPlace(SchemeObject procedure,
+			int argumentCount) {
+		if (!(procedure instanceof Pair)) return false;
+		final Pair p = (Pair) procedure;
+		if (p.getCar() != _lambdaSymbol || !(p.getCdr() instanceof Pair))
+			return false;
+		final Pair p1 = (Pair) p.getCdr();
+		if (!(p1.getCdr() instanceof Pair)) return false;
+		if (!(p1.getCar() instanceof SchemeList)
+				|| ((SchemeList) p1.getCar()).isDottedList()) return false;
+		int count = 0;
+		for (SchemeObject o : (SchemeList) p1.getCar()) {
+			if (!(o instanceof Symbol)) return false;
+			++count;
+		}
+		return count == argumentCount;
+	}
+
+	// With reentrant continuations, a let whose body contains a possible
+	// capture point becomes a lambda call again. Lets and lambdas in its body
+	// may be analyzed twice, so the counters and the enclosing scopes are
+	// restored before.
+	private SyntaxTreeObject analyzeLetForm(List<Symbol> names,
+			List<SyntaxTreeObject> values, SchemeList forms, Scope outer)
+			throws SchemeException {
+		if (!_reentrantContinuations)
+			return bindInPlace(names, values, forms, outer);
+		if (_letsBeingBoundInPlace > 0) {
+			++_letsBeingBoundInPlace;
+			try {
+				return bindInPlace(names, values, forms, outer);
+			} finally {
+				--_letsBeingBoundInPlace;
+			}
+		}
+
+		final int lambdaCount = _lambdaCount;
+		final int lambdasBoundInPlace = _lambdasBoundInPlace;
+		final int capturePoints = _capturePoints;
+		final int loopCount = _loopCount;
+		final List<ScopeState> scopes = new ArrayList<>();
+		for (Scope s = outer; s != null; s = s._outer)
+			if (s._owner == s) scopes.add(new ScopeState(s));
+
+		_letsBeingBoundInPlace = 1;
+		try {
+			return bindInPlace(names, values, forms, outer);
+		} catch (CapturePointInLet ex) {
+			_lambdaCount = lambdaCount;
+			_lambdasBoundInPlace = lambdasBoundInPlace;
+			_capturePoints = capturePoints;
+			_loopCount = loopCount;
+			for (ScopeState s : scopes)
+				s.restore();
+		} finally {
+			_letsBeingBoundInPlace = 0;
+		}
+
+		if (!(forms instanceof Pair))
+			throw new SchemeException("Invalid begin form: Empty");
+		return new Funcall(analyzeLambda("lambda", names, false,
+				(Pair) forms, outer, -1), values);
+	}
+
+	private LetForm bindInPlace(List<Symbol> names,
+			List<SyntaxTreeObject> values, SchemeList forms, Scope outer)
+			throws SchemeException {
+		++_lambdaCount;
+		++_lambdasBoundInPlace;
+		final int capturePointsBefore = _capturePoints;
+		final Scope scope = new Scope(outer);
+		final List<LocalVariable> variables = new ArrayList<>();
+		for (Symbol name : names)
+			variables.add(new LocalVariable(name, scope.addSlot(name)));
+		final List<SchemeObject> body = new ArrayList<>();
+		scanOutDefines(forms, scope, body);
+		final BeginForm analyzedBody = analyzeSequence(body, scope);
+		if (_letsBeingBoundInPlace > 0
+				&& _capturePoints - capturePointsBefore > countTailCapturePoints(
+						analyzedBody)) throw new CapturePointInLet();
+		return new LetForm(variables, values, analyzedBody);
+	}
+
+	// The derived forms are analyzed into the forms their macros would expand
+	// to, without running the macros. Those binding variables need a frame,
+	// so on the top level they become the body of a lambda.
+	private SyntaxTreeObject analyzeDerivedForm(Pair p, Scope scope)
+			throws SchemeException {
+		final SchemeObject car = p.getCar();
+		if (car == _quasiquoteSymbol) return analyzeQuasiquoteForm(p, scope);
+		if (car == _andSymbol) return analyzeAndForm(p.getCdr(), scope);
+		if (car == _condSymbol) return analyzeCondForm(p.getCdr(), scope);
+
+		if (scope == null)
+			return new Funcall(analyzeLambda("lambda", new ArrayList<Symbol>(),
+					false, new Pair(p, Nil.getInstance()), null, -1),
+					new ArrayList<SyntaxTreeObject>());
+
+		if (car == _orSymbol) return analyzeOrForm(p.getCdr(), null, scope);
+		if (car == _caseSymbol) return analyzeCaseForm(p, scope);
+		if (car == _doSymbol) return analyzeDoForm(p, scope);
+		final Pair form = expectArguments(p, car + " form");
+		if (car == _letStarSymbol)
+			return analyzeLetStarForm(form.getCar(), form.getCdr(), scope);
+		if (car == _letrecSymbol)
+			return analyzeLetrecForm(form.getCar(), form.getCdr(), scope);
+		if (form.getCar() instanceof Symbol) {
+			final Pair namedLet = expectArguments(form, "named let form");
+			return analyzeNamedLetForm((Symbol) form.getCar(),
+					namedLet.getCar(), namedLet.getCdr(), scope);
+		}
+		return analyzeLetForm(form.getCar(), form.getCdr(), scope);
+	}
+
+	private static Pair expectArguments(Pair form, String name)
+			throws SchemeException {
+		if (!(form.getCdr() instanceof Pair))
+			throw new SchemeException("Invalid " + name
+					+ ": Expected more parameters");
+		return (Pair) form.getCdr();
+	}
+
+	private static SchemeList expectList(SchemeObject obj, String name)
+			throws SchemeException {
+		if (!(obj instanceof SchemeList) || ((SchemeList) obj).isDottedList())
+			throw new SchemeException("Invalid " + name + ": Expected list");
+		return (SchemeList) obj;
+	}
+
+	private static SchemeObject list(SchemeObject... elements) {
+		return Pair.fromIterable(Arrays.asList(elements));
+	}
+
+	// Variable for a value the analyzed code keeps in the frame. The symbol
+	// is uninterned, so the variable can not be referenced by name.
+	private static LocalVariable temporary(Symbol name, Scope scope)
+			throws SchemeException {
+		final Symbol symbol = Symbol.uninterned(name.toString());
+		return new LocalVariable(symbol, scope.addSlot(symbol));
+	}
+
+	// Splits the bindings of a let form into variable names and value forms
+	private static void parseBindings(SchemeObject bindings,
+			List<Symbol> names, List<SchemeObject> values)
+			throws SchemeException {
+		for (SchemeObject o : expectList(bindings, "let form")) {
+			if (!(o instanceof Pair) || !(((Pair) o).getCar() instanceof Symbol)
+					|| !(((Pair) o).getCdr() instanceof Pair))
+				throw new SchemeException(
+						"Invalid let form: Expected (name value) as binding");
+			names.add((Symbol) ((Pair) o).getCar());
+			values.add(((Pair) ((Pair) o).getCdr()).getCar());
+		}
+	}
+
+	private SyntaxTreeObject analyzeLetForm(SchemeObject bindings, SchemeObject body,
+			Scope scope) throws SchemeException {
+		final List<Symbol> names = new ArrayList<>();
+		final List<SchemeObject> values = new ArrayList<>();
+		parseBindings(bindings, names, values);
+		return analyzeLetForm(names, analyzeValues(values, scope),
+				expectList(body, "let form"), scope);
+	}
+
+	private SyntaxTreeObject analyzeLetStarForm(SchemeObject bindings,
+			SchemeObject body, Scope scope) throws SchemeException {
+		final List<Symbol> names = new ArrayList<>();
+		final List<SchemeObject> values = new ArrayList<>();
+		parseBindings(bindings, names, values);
+		if (names.size() < 2)
+			return analyzeLetForm(names, analyzeValues(values, scope),
+					expectList(body, "let* form"), scope);
+
+		final SchemeObject inner = new Pair(_letStarSymbol, new Pair(
+				((Pair) bindings).getCdr(), body));
+		return analyzeLetForm(names.subList(0, 1),
+				analyzeValues(values.subList(0, 1), scope),
+				(SchemeList) list(inner), scope);
+	}
+
+	private List<SyntaxTreeObject> analyzeValues(List<SchemeObject> values,
+			Scope scope) throws SchemeException {
+		final List<SyntaxTreeObject> ret = new ArrayList<>();
+		for (SchemeObject o : values)
+			ret.add(analyze(o, scope));
+		return ret;
+	}
+
+	// The variables are bound to #f and then set!, just like the macro did
+	private SyntaxTreeObject analyzeLetrecForm(SchemeObject bindings,
+			SchemeObject body, Scope scope) throws SchemeException {
+		final List<Symbol> names = new ArrayList<>();
+		final List<SchemeObject> values = new ArrayList<>();
+		parseBindings(bindings, names, values);
+		final List<SyntaxTreeObject> initialValues = new ArrayList<>();
+		final List<SchemeObject> forms = new ArrayList<>();
+		for (int i = 0; i < names.size(); ++i) {
+			initialValues.add(new SelfEvaluatingLiteral(False.getInstance()));
+			forms.add(list(_setSymbol, names.get(i), values.get(i)));
+		}
+		forms.addAll(expectList(body, "letrec form").toJavaList());
+		return analyzeLetForm(names, initialValues, Pair.fromIterable(forms),
+				scope);
+	}
+
+	// (let name ((var init) ...) body) is analyzed as
+	// (letrec ((name (lambda (var ...) body))) (name init ...)), so the self
+	// tail calls of the lambda become a loop
+	private SyntaxTreeObject analyzeNamedLetForm(Symbol name, SchemeObject bindings,
+			SchemeObject body, Scope scope) throws SchemeException {
+		final List<Symbol> names = new ArrayList<>();
+		final List<SchemeObject> values = new ArrayList<>();
+		parseBindings(bindings, names, values);
+		return analyzeNamedLet(name, names, values,
+				expectList(body, "named let form"), scope);
+	}
+
+	private SyntaxTreeObject analyzeNamedLet(Symbol name, List<Symbol> names,
+			List<SchemeObject> values, SchemeList body, Scope scope)
+			throws SchemeException {
+		final SchemeObject lambda = new Pair(_lambdaSymbol, new Pair(
+				Pair.fromIterable(new ArrayList<SchemeObject>(names)), body));
+		final SchemeObject call = new Pair(name, Pair.fromIterable(values));
+		return analyzeLetForm(Collections.singletonList(name),
+				Collections.<SyntaxTreeObject> singletonList(
+						new SelfEvaluatingLiteral(False.getInstance())),
+				(SchemeList) list(list(_setSymbol, name, lambda), call), scope);
+	}
+
+	// (do ((var init step) ...) (test result ...) body ...) is analyzed as a
+	// named let, looping through a variable that can't be referenced by name
+	private SyntaxTreeObject analyzeDoForm(Pair p, Scope scope)
+			throws SchemeException {
+		final Pair form = expectArguments(p, "do form");
+		final Pair rest = expectArguments(form, "do form");
+		final List<Symbol> names = new ArrayList<>();
+		final List<SchemeObject> values = new ArrayList<>();
+		final List<SchemeObject> steps = new ArrayList<>();
+		for (SchemeObject o : expectList(form.getCar(), "do form")) {
+			final List<SchemeObject> binding = expectList(o, "do form")
+					.toJavaList();
+			if (binding.size() < 2 || binding.size() > 3
+					|| !(binding.get(0) instanceof Symbol))
+				throw new SchemeException(
+						"Invalid do form: Expected (name init step) as binding");
+			names.add((Symbol) binding.get(0));
+			values.add(binding.get(1));
+			steps.add(binding.get(binding.size() == 3 ? 2 : 0));
+		}
+
+		if (!(rest.getCar() instanceof Pair))
+			throw new SchemeException(
+					"Invalid do form: Expected (test result ...)");
+		final Pair test = (Pair) rest.getCar();
+		SchemeObject result = test.getCdr();
+		if (result instanceof Nil)
+			result = list(list(_quoteSymbol, _undefinedSymbol));
+
+		final Symbol loop = Symbol.uninterned(_doSymbol.toString());
+		final List<SchemeObject> forms = new ArrayList<>(expectList(
+				rest.getCdr(), "do form").toJavaList());
+		forms.add(new Pair(loop, Pair.fromIterable(steps)));
+		final SchemeObject body = list(_ifSymbol, test.getCar(), new Pair(
+				_beginSymbol, result), new Pair(_beginSymbol,
+				Pair.fromIterable(forms)));
+		return analyzeNamedLet(loop, names, values, (SchemeList) list(body),
+				scope);
+	}
+
+	private SyntaxTreeObject analyzeAndForm(SchemeObject forms, Scope scope)
+			throws SchemeException {
+		if (forms instanceof Nil)
+			return new SelfEvaluatingLiteral(True.getInstance());
+		if (!(forms instanceof Pair))
+			throw new SchemeException("Invalid and form: Expected list");
+		final Pair p = (Pair) forms;
+		if (p.getCdr() instanceof Nil) return analyze(p.getCar(), scope);
+		return new IfForm(analyze(p.getCar(), scope), analyzeAndForm(
+				p.getCdr(), scope), new SelfEvaluatingLiteral(
+				False.getInstance()));
+	}
+
+	// (or a b) is analyzed as (let ((value a)) (if value value b)). All
+	// clauses share the same frame slot.
+	private SyntaxTreeObject analyzeOrForm(SchemeObject forms,
+			LocalVariable value, Scope scope) throws SchemeException {
+		if (forms instanceof Nil)
+			return new SelfEvaluatingLiteral(False.getInstance());
+		if (!(forms instanceof Pair))
+			throw new SchemeException("Invalid or form: Expected list");
+		final Pair p = (Pair) forms;
+		if (p.getCdr() instanceof Nil) return analyze(p.getCar(), scope);
+		if (value == null) value = temporary(_orSymbol, scope);
+		final SyntaxTreeObject first = analyze(p.getCar(), scope);
+		final IfForm test = new IfForm(value, value, analyzeOrForm(p.getCdr(),
+				value, scope));
+		return new LetForm(Collections.singletonList(value),
+				Collections.singletonList(first), new BeginForm(
+						new ArrayList<SyntaxTreeObject>(), test));
+	}
+
+	private SyntaxTreeObject analyzeCondForm(SchemeObject clauses, Scope scope)
+			throws SchemeException {
+		if (clauses instanceof Nil)
+			return new SelfEvaluatingLiteral(False.getInstance());
+		if (!(clauses instanceof Pair)
+				|| !(((Pair) clauses).getCar() instanceof Pair))
+			throw new SchemeException(
+					"Invalid cond form: Expected list of clauses");
+		final Pair clause = (Pair) ((Pair) clauses).getCar();
+		final List<SchemeObject> body = expectList(clause.getCdr(),
+				"cond form").toJavaList();
+		if (clause.getCar() == _elseSymbol)
+			return analyzeSequence(body, scope);
+		return new IfForm(analyze(clause.getCar(), scope), analyzeSequence(
+				body, scope), analyzeCondForm(((Pair) clauses).getCdr(), scope));
+	}
+
+	// The key is kept in the frame and tested with memv, like the macro did
+	private LetForm analyzeCaseForm(Pair p, Scope scope)
+			throws SchemeException {
+		final Pair form = expectArguments(p, "case form");
+		final LocalVariable key = temporary(_caseSymbol, scope);
+		final SyntaxTreeObject value = analyze(form.getCar(), scope);
+		return new LetForm(Collections.singletonList(key),
+				Collections.singletonList(value), new BeginForm(
+						new ArrayList<SyntaxTreeObject>(), analyzeCaseClauses(
+								form.getCdr(), key, scope)));
+	}
+
+	private SyntaxTreeObject analyzeCaseClauses(SchemeObject clauses,
+			LocalVariable key, Scope scope) throws SchemeException {
+		if (clauses instanceof Nil)
+			return new SelfEvaluatingLiteral(False.getInstance());
+		if (!(clauses instanceof Pair)
+				|| !(((Pair) clauses).getCar() instanceof Pair))
+			throw new SchemeException(
+					"Invalid case form: Expected list of clauses");
+		final Pair clause = (Pair) ((Pair) clauses).getCar();
+		final List<SchemeObject> body = expectList(clause.getCdr(),
+				"case form").toJavaList();
+		if (clause.getCar() == _elseSymbol)
+			return analyzeSequence(body, scope);
+		final List<SyntaxTreeObject> parameters = new ArrayList<>();
+		parameters.add(key);
+		parameters.add(new SelfEvaluatingLiteral(clause.getCar()));
+		final Funcall test = new Funcall(new LiteralSymbol(_memvSymbol),
+				parameters);
+		return new IfForm(test, analyzeSequence(body, scope),
+				analyzeCaseClauses(((Pair) clauses).getCdr(), key, scope));
+	}
+
+	private SyntaxTreeObject analyzeQuasiquoteForm(Pair p, Scope scope)
+			throws SchemeException {
+		final List<SchemeObject> form = p.toJavaList();
+		if (form.size() != 2)
+			throw new SchemeException(
+					"Invalid quasiquote form: Expected 1 parameter, got "
+							+ (form.size() - 1));
+		return analyzeQuasiquoted(form.get(1), scope);
+	}
+
+	// Unquote forms are evaluated, everything else is rebuilt with ##cons
+	// from quoted parts. Nested quasiquote forms are not treated specially.
+	private SyntaxTreeObject analyzeQuasiquoted(SchemeObject obj, Scope scope)
+			throws SchemeException {
+		if (!(obj instanceof Pair)) return new SelfEvaluatingLiteral(obj);
+		final Pair p = (Pair) obj;
+		if (p.getCar() == _unquoteSymbol)
+			return analyze(expectArguments(p, "unquote form").getCar(), scope);
+
+		final List<SyntaxTreeObject> parameters = new ArrayList<>();
+		if (p.getCar() instanceof Pair
+				&& ((Pair) p.getCar()).getCar() == _unquoteSplicingSymbol) {
+			parameters.add(analyze(expectArguments((Pair) p.getCar(),
+					"unquote-splicing form").getCar(), scope));
+			parameters.add(analyzeQuasiquoted(p.getCdr(), scope));
+			return new Funcall(new LiteralSymbol(_appendSymbol), parameters);
+		}
+		parameters.add(analyzeQuasiquoted(p.getCar(), scope));
+		parameters.add(analyzeQuasiquoted(p.getCdr(), scope));
+		return new Funcall(new LiteralSymbol(_consSymbol), parameters);
 	}
 }
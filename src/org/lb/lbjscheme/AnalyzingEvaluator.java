@@ -20,37 +20,92 @@ import java.io.*;
 import java.util.*;
 import org.lb.lbjscheme.ast.*;
 
-public final class AnalyzingEvaluator extends Evaluator {
+public final class AnalyzingEvaluator extends Evaluator implements
+		ProcedureCaller {
 	private final static Symbol _undefinedSymbol = Symbol
 			.fromString("undefined");
-	private final static Symbol _beginSymbol = Symbol.fromString("begin");
 
 	private final Analyzer _analyzer;
+	private final SyntaxTreeOptimizer _optimizer;
+	private final Map<Lambda, AnalyzedLambda> _analyzedLambdas;
+	private long _inlineCacheHits;
+	private long _inlineCacheMisses;
 
 	public AnalyzingEvaluator(final Environment global) throws SchemeException {
+		this(global, true);
+	}
+
+	public AnalyzingEvaluator(final Environment global, final boolean optimize)
+			throws SchemeException {
 		super(global);
 		_analyzer = new Analyzer();
+		_optimizer = new SyntaxTreeOptimizer();
+		_analyzedLambdas = new WeakHashMap<>();
+		_optimizer.setEnabled(optimize);
 		analyzeBuiltinLambdas();
 	}
 
+	// Evaluator for macro transformers. The procedures of the environment are
+	// left to the interpreter and analyzed when they are first called.
+	AnalyzingEvaluator(final Environment global, final Analyzer analyzer) {
+		super(global);
+		_analyzer = analyzer;
+		_optimizer = new SyntaxTreeOptimizer();
+		_analyzedLambdas = new WeakHashMap<>();
+	}
+
 	private void analyzeBuiltinLambdas() throws SchemeException {
 		final Environment global = getGlobalEnvironment();
 		global.unlock();
-		for (final Symbol sym : global.getDefinedSymbols()) {
-			if (global.get(sym) instanceof Lambda) {
-				final Lambda l = (Lambda) global.get(sym);
-				final BeginForm beginForm = (BeginForm) _analyzer
-						.analyze(new Pair(_beginSymbol, l.getForms()));
-				global.set(
-						sym,
-						new AnalyzedLambda(l.getName(), l.getParameterNames(),
-								l.hasRestParameter(), beginForm, l
-										.getCaptured()));
-			}
-		}
+		for (final Symbol sym : global.getDefinedSymbols())
+			if (global.get(sym) instanceof Lambda)
+				global.set(sym, analyzeLambda((Lambda) global.get(sym)));
 		global.lock();
 	}
 
+	// Stores the analyzed and optimized forms in the lambdas of the
+	// environment, to be shared by the evaluators of its copies
+	static void analyzeLambdas(Environment global) throws SchemeException {
+		final Analyzer analyzer = new Analyzer(new MacroExpander(global,
+				global));
+		final SyntaxTreeOptimizer optimizer = new SyntaxTreeOptimizer();
+		for (Symbol sym : global.getDefinedSymbols()) {
+			if (!(global.get(sym) instanceof Lambda)) continue;
+			final Lambda l = (Lambda) global.get(sym);
+			if (l.getAnalyzedForm() != null) continue;
+			l.setAnalyzedForm(optimizer.optimize(analyzer.analyzeLambda(
+					l.getName(), l.getParameterNames(), l.hasRestParameter(),
+					l.getForms())));
+		}
+	}
+
+	private AnalyzedLambda getAnalyzedLambda(Lambda l) throws SchemeException {
+		AnalyzedLambda ret = _analyzedLambdas.get(l);
+		if (ret == null) {
+			ret = analyzeLambda(l);
+			_analyzedLambdas.put(l, ret);
+		}
+		return ret;
+	}
+
+	private AnalyzedLambda analyzeLambda(Lambda l) throws SchemeException {
+		LambdaForm form = _optimizer.isEnabled() ? l.getAnalyzedForm() : null;
+		if (form == null)
+			form = _optimizer.optimize(_analyzer.analyzeLambda(l.getName(),
+					l.getParameterNames(), l.hasRestParameter(), l.getForms()));
+		return new AnalyzedLambda(form.getName(), form.getParameterNames(),
+				form.HasRestParameter(), form.getAnalyzedForms(),
+				form.getFrameSize(), new Frame(l.getCaptured()));
+	}
+
+	public long getInlineCacheHits() {
+		return _inlineCacheHits;
+	}
+
+	public long getInlineCacheMisses() {
+		return _inlineCacheMisses;
+	}
+
 	@Override
 	public SchemeObject eval(String commands) throws SchemeException {
 		final Reader r = new Reader(new InputPort(new StringReader(commands)));
@@ -67,123 +122,145 @@ public final class AnalyzingEvaluator extends Evaluator {
 	@Override
 	public SchemeObject eval(SchemeObject o, Environment env)
 			throws SchemeException {
-		return eval(_analyzer.analyze(o), env);
+		return eval(_optimizer.optimize(_analyzer.analyze(o)),
+				new Frame(env));
+	}
+
+	@Override
+	public SchemeObject call(SchemeObject procedure,
+			List<SchemeObject> parameters) throws SchemeException {
+		final SchemeObject callee = getCallee(procedure);
+		if (callee instanceof Builtin)
+			return ((Builtin) callee).apply(this, parameters);
+		return apply((AnalyzedLambda) callee, parameters);
+	}
+
+	SchemeObject apply(AnalyzedLambda l, List<SchemeObject> parameters)
+			throws SchemeException {
+		return eval(l.getForms(), newFrame(l, parameters));
+	}
+
+	private static Frame newFrame(AnalyzedLambda l,
+			List<SchemeObject> parameters) throws SchemeException {
+		final Frame frame = new Frame(l.getCaptured(), l.getFrameSize());
+		frame.expand(l.getParameterNames().size(), l.hasRestParameter(),
+				parameters);
+		return frame;
+	}
+
+	// The builtin or analyzed lambda to call for the procedure
+	private SchemeObject getCallee(SchemeObject procedure)
+			throws SchemeException {
+		if (procedure instanceof Builtin
+				|| procedure instanceof AnalyzedLambda) return procedure;
+
+		// Ugly hack: Can only happen on lambdas returned by (eval) or
+		// procedures of the environment of macro transformers
+		if (procedure instanceof Lambda)
+			return getAnalyzedLambda((Lambda) procedure);
+
+		throw new SchemeException("Don't know how to call object of type "
+				+ procedure.getClass());
+	}
+
+	// The callee of a Funcall; sites calling a global link it in their cache
+	private SchemeObject getCallee(Funcall form, Frame frame)
+			throws SchemeException {
+		final SyntaxTreeObject operator = form.getProcedure();
+		if (!(operator instanceof LiteralSymbol))
+			return getCallee(checkOperator(eval(operator, frame)));
+
+		final Binding binding = ((LiteralSymbol) operator).getBinding(frame
+				.getEnvironment());
+		final SchemeObject procedure = binding.getValue();
+		final InlineCache cache = form.getInlineCache();
+		SchemeObject callee = cache.lookup(binding, procedure);
+		if (callee != null) {
+			++_inlineCacheHits;
+			return callee;
+		}
+
+		++_inlineCacheMisses;
+		callee = getCallee(checkOperator(procedure));
+		cache.update(binding, procedure, callee);
+		return callee;
+	}
+
+	private static SchemeObject checkOperator(SchemeObject procedure)
+			throws SchemeException {
+		if (procedure.isNull())
+			throw new SchemeException("Empty list can not be evaluated");
+		if (procedure.isVector())
+			throw new SchemeException("Vectors must be quoted");
+		return procedure;
 	}
 
-	private SchemeObject eval(SyntaxTreeObject o, Environment env)
+	private SchemeObject eval(SyntaxTreeObject o, Frame frame)
 			throws SchemeException {
+		LoopForm loop = null;
+		// Arguments of the next iteration, evaluated before any is rebound
+		SchemeObject[] loopArguments = null;
 		tailCall: for (;;) {
 			if (o instanceof BeginForm) {
 				final BeginForm form = (BeginForm) o;
 				for (SyntaxTreeObject i : form.getFormsWithoutLast())
-					eval(i, env);
+					eval(i, frame);
 				o = form.getLastForm();
 				continue tailCall;
 			}
 
 			if (o instanceof DefineForm) {
 				final DefineForm form = (DefineForm) o;
-				env.define(form.getTarget(), eval(form.getAnalyzedForm(), env));
+				final VariableReference target = form.getTarget();
+				final SchemeObject value = eval(form.getAnalyzedForm(), frame);
+				if (target instanceof LocalVariable)
+					frame.define(((LocalVariable) target).getSlot(), value);
+				else
+					frame.getEnvironment().define(target.getSymbol(), value);
 				return _undefinedSymbol;
 			}
 
-			if (o instanceof Funcall) {
-				final Funcall form = (Funcall) o;
-				final SchemeObject procedure = eval(form.getProcedure(), env);
-				if (procedure.isNull())
-					throw new SchemeException("Empty list can not be evaluated");
-				if (procedure.isVector())
-					throw new SchemeException("Vectors must be quoted");
-				final List<SchemeObject> parameters = new ArrayList<>(form
-						.getParameters().size());
-				for (SyntaxTreeObject i : form.getParameters())
-					parameters.add(eval(i, env));
-
-				if (procedure instanceof Builtin)
-					return ((Builtin) procedure).apply(parameters);
-
-				// Ugly hack: Can only happen on lambdas returned by (eval)
-				if (procedure instanceof Lambda) {
-					final Lambda l = (Lambda) procedure;
-					o = _analyzer.analyze(new Pair(_beginSymbol, l.getForms()));
-					env = new Environment(l.getCaptured());
-					env.expand(l.getParameterNames(), l.hasRestParameter(),
-							parameters);
-					continue tailCall;
-				}
-
-				if (procedure instanceof AnalyzedLambda) {
-					final AnalyzedLambda l = (AnalyzedLambda) procedure;
-
-					env = new Environment(l.getCaptured());
-					env.expand(l.getParameterNames(), l.hasRestParameter(),
-							parameters);
-
-					for (SyntaxTreeObject i : l.getForms()
-							.getFormsWithoutLast())
-						eval(i, env);
-					o = l.getForms().getLastForm();
-					continue tailCall;
-				}
-
-				throw new SchemeException(
-						"Don't know how to call object of type "
-								+ procedure.getClass());
-			}
-
 			if (o instanceof CallccForm)
 				throw new SchemeException(
 						"AnalyzingEvaluator doesn't support continuations");
 
-			if (o instanceof Apply) {
-				final Apply form = (Apply) o;
-				final SchemeObject procedure = eval(form.getProcedure(), env);
-				if (procedure.isNull())
-					throw new SchemeException("Empty list can not be applied");
-				final SchemeObject parameterList = eval(form.getParameters(),
-						env);
-				if (!(parameterList instanceof SchemeList))
-					throw new SchemeException(
-							"Invalid apply form: Expected argument list, got "
-									+ parameterList.getClass());
-				final List<SchemeObject> parameters = ((SchemeList) parameterList)
-						.toJavaList();
-
-				if (procedure instanceof Builtin)
-					return ((Builtin) procedure).apply(parameters);
-
-				// Ugly hack: Can only happen on lambdas returned by (eval)
-				if (procedure instanceof Lambda) {
-					final Lambda l = (Lambda) procedure;
-					o = _analyzer.analyze(new Pair(_beginSymbol, l.getForms()));
-					env = new Environment(l.getCaptured());
-					env.expand(l.getParameterNames(), l.hasRestParameter(),
-							parameters);
-					continue tailCall;
-				}
-
-				if (procedure instanceof AnalyzedLambda) {
-					final AnalyzedLambda l = (AnalyzedLambda) procedure;
-
-					env = new Environment(l.getCaptured());
-					env.expand(l.getParameterNames(), l.hasRestParameter(),
-							parameters);
-
-					for (SyntaxTreeObject i : l.getForms()
-							.getFormsWithoutLast())
-						eval(i, env);
-					o = l.getForms().getLastForm();
-					continue tailCall;
+			if (o instanceof Funcall || o instanceof Apply) {
+				final SchemeObject callee;
+				final List<SchemeObject> parameters;
+				if (o instanceof Funcall) {
+					final Funcall form = (Funcall) o;
+					callee = getCallee(form, frame);
+					parameters = new ArrayList<>(form.getParameters().size());
+					for (SyntaxTreeObject i : form.getParameters())
+						parameters.add(eval(i, frame));
+				} else {
+					final Apply form = (Apply) o;
+					final SchemeObject procedure = eval(form.getProcedure(),
+							frame);
+					if (procedure.isNull())
+						throw new SchemeException(
+								"Empty list can not be applied");
+					callee = getCallee(procedure);
+					final SchemeObject parameterList = eval(
+							form.getParameters(), frame);
+					if (!(parameterList instanceof SchemeList))
+						throw new SchemeException(
+								"Invalid apply form: Expected argument list, got "
+										+ parameterList.getClass());
+					parameters = ((SchemeList) parameterList).toJavaList();
 				}
 
-				throw new SchemeException(
-						"Don't know how to call object of type "
-								+ procedure.getClass());
+				if (callee instanceof Builtin)
+					return ((Builtin) callee).apply(this, parameters);
+				final AnalyzedLambda l = (AnalyzedLambda) callee;
+				frame = newFrame(l, parameters);
+				o = l.getForms();
+				continue tailCall;
 			}
 
 			if (o instanceof IfForm) {
 				final IfForm form = (IfForm) o;
-				o = eval(form.getCondition(), env) != False.getInstance() ? form
+				o = eval(form.getCondition(), frame) != False.getInstance() ? form
 						.getThenPart() : form.getElsePart();
 				continue tailCall;
 			}
@@ -192,18 +269,78 @@ public final class AnalyzingEvaluator extends Evaluator {
 				final LambdaForm form = (LambdaForm) o;
 				return new AnalyzedLambda(form.getName(),
 						form.getParameterNames(), form.HasRestParameter(),
-						form.getAnalyzedForms(), env);
+						form.getAnalyzedForms(), form.getFrameSize(), frame);
+			}
+
+			if (o instanceof LetForm) {
+				final LetForm form = (LetForm) o;
+				final List<LocalVariable> variables = form.getVariables();
+				final List<SyntaxTreeObject> values = form.getValues();
+				for (int i = 0; i < variables.size(); ++i)
+					frame.define(variables.get(i).getSlot(),
+							eval(values.get(i), frame));
+				o = form.getBody();
+				continue tailCall;
+			}
+
+			if (o instanceof LoopForm) {
+				loop = (LoopForm) o;
+				o = loop.getBody();
+				continue tailCall;
+			}
+
+			if (o instanceof SelfTailCall) {
+				final SelfTailCall form = (SelfTailCall) o;
+				if (loop == null || loop.getLabel() != form.getLabel()
+						|| !form.getLabel().isValid()) {
+					o = form.getCall();
+					continue tailCall;
+				}
+				final List<SyntaxTreeObject> parameters = form.getCall()
+						.getParameters();
+				final int count = parameters.size();
+				if (loopArguments == null || loopArguments.length != count)
+					loopArguments = new SchemeObject[count];
+				for (int i = 0; i < count; ++i)
+					loopArguments[i] = eval(parameters.get(i), frame);
+				for (int i = 0; i < count; ++i)
+					frame.define(i, loopArguments[i]);
+				frame.clear(count);
+				o = loop.getBody();
+				continue tailCall;
+			}
+
+			if (o instanceof LocalVariable) {
+				final LocalVariable form = (LocalVariable) o;
+				return frame.get(form.getSlot(), form.getSymbol());
+			}
+
+			if (o instanceof FreeVariable) {
+				final FreeVariable form = (FreeVariable) o;
+				return frame.getOuter(form.getDepth()).get(form.getSlot(),
+						form.getSymbol());
 			}
 
 			if (o instanceof LiteralSymbol)
-				return env.get(((LiteralSymbol) o).getSymbol());
+				return ((LiteralSymbol) o).getBinding(frame.getEnvironment())
+						.getValue();
 
 			if (o instanceof SelfEvaluatingLiteral)
 				return ((SelfEvaluatingLiteral) o).getValue();
 
 			if (o instanceof SetForm) {
 				final SetForm form = (SetForm) o;
-				env.set(form.getTarget(), eval(form.getValue(), env));
+				final VariableReference target = form.getTarget();
+				final SchemeObject value = eval(form.getValue(), frame);
+				if (target instanceof LocalVariable)
+					frame.set(((LocalVariable) target).getSlot(),
+							target.getSymbol(), value);
+				else if (target instanceof FreeVariable)
+					frame.getOuter(((FreeVariable) target).getDepth()).set(
+							((FreeVariable) target).getSlot(),
+							target.getSymbol(), value);
+				else
+					frame.getEnvironment().set(target.getSymbol(), value);
 				return _undefinedSymbol;
 			}
 
@@ -19,10 +19,7 @@ package org.lb.lbjscheme;
 import java.math.BigInteger;
 
 public final class Bignum extends SchemeNumber {
-	private final static BigInteger MAX_INT = BigInteger
-			.valueOf(Integer.MAX_VALUE);
-	private final static BigInteger MIN_INT = BigInteger
-			.valueOf(Integer.MIN_VALUE);
+	private static final long serialVersionUID = 1L;
 
 	private final BigInteger _value;
 
@@ -54,9 +51,8 @@ public final class Bignum extends SchemeNumber {
 	}
 
 	public static SchemeNumber valueOf(BigInteger value) {
-		if (value.compareTo(MAX_INT) > 0 || value.compareTo(MIN_INT) < 0)
-			return new Bignum(value);
-		return new Fixnum(value.intValue());
+		if (value.bitLength() > 63) return new Bignum(value);
+		return Fixnum.valueOf(value.longValue());
 	}
 
 	@Override
@@ -0,0 +1,54 @@
+// lbjScheme
+// An experimental Scheme subset interpreter in Java, based on SchemeNet.cs
+// Copyright (c) 2013, Leif Bruder <leifbruder@gmail.com>
+//
+// Permission to use, copy, modify, and/or distribute this software for any
+// purpose with or without fee is hereby granted, provided that the above
+// copyright notice and this permission notice appear in all copies.
+//
+// THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+// WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+// MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+// ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+// WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+// ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+// OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+
+package org.lb.lbjscheme;
+
+import java.io.Serializable;
+
+// Value cell of a top-level variable. References resolve to the cell once and
+// read it directly afterwards; define and set! update it in place. A cell that
+// has not been defined yet falls through to the binding of the same name in
+// the outer environment.
+public final class Binding implements Serializable {
+	private static final long serialVersionUID = 1L;
+
+	private final Symbol _name;
+	private final Binding _outer;
+	private SchemeObject _value;
+
+	public Binding(Symbol name, Binding outer) {
+		_name = name;
+		_outer = outer;
+	}
+
+	public Symbol getName() {
+		return _name;
+	}
+
+	public boolean isBound() {
+		return _value != null;
+	}
+
+	public SchemeObject getValue() throws SchemeException {
+		if (_value != null) return _value;
+		if (_outer != null) return _outer.getValue();
+		throw new SchemeException("Unknown symbol " + _name.toString());
+	}
+
+	void set(SchemeObject value) {
+		_value = value;
+	}
+}
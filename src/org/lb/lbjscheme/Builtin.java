@@ -19,6 +19,8 @@ package org.lb.lbjscheme;
 import java.util.List;
 
 public abstract class Builtin extends SchemeObject {
+	private static final long serialVersionUID = 1L;
+
 	protected static final True _true = True.getInstance();
 	protected static final False _false = False.getInstance();
 	protected static final Symbol _undefined = Symbol.fromString("undefined");
@@ -28,6 +30,13 @@ public abstract class Builtin extends SchemeObject {
 	public abstract SchemeObject apply(List<SchemeObject> parameters)
 			throws SchemeException;
 
+	// The evaluators call builtins through this method, so that those taking
+	// procedures as parameters can call them
+	public SchemeObject apply(ProcedureCaller caller,
+			List<SchemeObject> parameters) throws SchemeException {
+		return apply(parameters);
+	}
+
 	@Override
 	public final boolean isProcedure() {
 		return true;
@@ -74,6 +83,14 @@ public abstract class Builtin extends SchemeObject {
 				+ expected.getSimpleName() + ", got: " + got.getSimpleName());
 	}
 
+	// The object a list ends in after walking its cdrs, which must be ()
+	protected final void assertIsListEnd(SchemeObject o)
+			throws SchemeException {
+		if (!o.isNull())
+			throw new SchemeException(getName()
+					+ ": Invalid parameter type; expected: list");
+	}
+
 	protected final SchemeNumber getNumber(SchemeObject o)
 			throws SchemeException {
 		assertParameterType(o, SchemeNumber.class);
@@ -95,9 +112,21 @@ public abstract class Builtin extends SchemeObject {
 		return (Symbol) o;
 	}
 
+	// Fixnums hold longs, but all builtins taking one use it as an index,
+	// length, radix or character code
 	protected final int getFixnum(SchemeObject o) throws SchemeException {
 		assertParameterType(o, Fixnum.class);
-		return ((Fixnum) o).getValue();
+		final long value = ((Fixnum) o).getValue();
+		if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE)
+			throw new SchemeException(getName() + ": Value out of range: "
+					+ value);
+		return (int) value;
+	}
+
+	protected final SchemeString getString(SchemeObject o)
+			throws SchemeException {
+		assertParameterType(o, SchemeString.class);
+		return (SchemeString) o;
 	}
 
 	protected final char getCharacter(SchemeObject o) throws SchemeException {
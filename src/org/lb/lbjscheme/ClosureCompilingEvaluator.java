@@ -0,0 +1,211 @@
+// lbjScheme
+// An experimental Scheme subset interpreter in Java, based on SchemeNet.cs
+// Copyright (c) 2013, Leif Bruder <leifbruder@gmail.com>
+//
+// Permission to use, copy, modify, and/or distribute this software for any
+// purpose with or without fee is hereby granted, provided that the above
+// copyright notice and this permission notice appear in all copies.
+//
+// THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+// WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+// MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+// ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+// WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+// ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+// OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+
+package org.lb.lbjscheme;
+
+import java.io.*;
+import java.util.List;
+import org.lb.lbjscheme.ast.*;
+import org.lb.lbjscheme.nodes.*;
+
+// Converts each analyzed form once into a tree of executable nodes, so that
+// evaluation is a chain of virtual calls instead of a type test per form
+public final class ClosureCompilingEvaluator extends Evaluator implements
+		ProcedureCaller {
+	private final Analyzer _analyzer;
+	private final SyntaxTreeOptimizer _optimizer;
+
+	public ClosureCompilingEvaluator(final Environment global)
+			throws SchemeException {
+		this(global, true);
+	}
+
+	public ClosureCompilingEvaluator(final Environment global,
+			final boolean optimize) throws SchemeException {
+		super(global);
+		_analyzer = new Analyzer();
+		_optimizer = new SyntaxTreeOptimizer();
+		_optimizer.setEnabled(optimize);
+		compileBuiltinLambdas();
+	}
+
+	private void compileBuiltinLambdas() throws SchemeException {
+		final Environment global = getGlobalEnvironment();
+		global.unlock();
+		for (final Symbol sym : global.getDefinedSymbols())
+			if (global.get(sym) instanceof Lambda)
+				global.set(sym, compileLambda((Lambda) global.get(sym)));
+		global.lock();
+	}
+
+	public NodeLambda compileLambda(Lambda l) throws SchemeException {
+		LambdaForm form = _optimizer.isEnabled() ? l.getAnalyzedForm() : null;
+		if (form == null)
+			form = _optimizer.optimize(_analyzer.analyzeLambda(l.getName(),
+					l.getParameterNames(), l.hasRestParameter(), l.getForms()));
+		return new NodeLambda(form.getName(), form.getParameterNames(),
+				form.HasRestParameter(), compile(form.getAnalyzedForms(), true),
+				form.getFrameSize(), new Frame(l.getCaptured()));
+	}
+
+	@Override
+	public SchemeObject call(SchemeObject procedure,
+			List<SchemeObject> parameters) throws SchemeException {
+		if (procedure instanceof Builtin)
+			return ((Builtin) procedure).apply(this, parameters);
+		if (procedure instanceof Lambda)
+			procedure = compileLambda((Lambda) procedure);
+		if (procedure instanceof NodeLambda) {
+			final NodeLambda l = (NodeLambda) procedure;
+			final Frame frame = new Frame(l.getCaptured(), l.getFrameSize());
+			frame.expand(l.getParameterNames().size(), l.hasRestParameter(),
+					parameters);
+			return TailCall.trampoline(l.getBody().execute(frame));
+		}
+		throw new SchemeException("Don't know how to call object of type "
+				+ procedure.getClass());
+	}
+
+	@Override
+	public SchemeObject eval(String commands) throws SchemeException {
+		final Reader r = new Reader(new InputPort(new StringReader(commands)));
+		SchemeObject ret = Symbol.fromString("undefined");
+		while (true) {
+			try {
+				ret = eval(r.read());
+			} catch (EOFException ex) {
+				return ret;
+			}
+		}
+	}
+
+	@Override
+	public SchemeObject eval(SchemeObject o, Environment env)
+			throws SchemeException {
+		return TailCall.trampoline(compile(
+				_optimizer.optimize(_analyzer.analyze(o)), false).execute(
+				new Frame(env)));
+	}
+
+	private Node compile(SyntaxTreeObject o, boolean tail)
+			throws SchemeException {
+		if (o instanceof BeginForm) {
+			final BeginForm form = (BeginForm) o;
+			return new BeginNode(compileAll(form.getFormsWithoutLast()),
+					compile(form.getLastForm(), tail));
+		}
+
+		if (o instanceof DefineForm) {
+			final DefineForm form = (DefineForm) o;
+			final VariableReference target = form.getTarget();
+			final Node value = compile(form.getAnalyzedForm(), false);
+			if (target instanceof LocalVariable)
+				return new DefineLocalNode(((LocalVariable) target).getSlot(),
+						value);
+			return new DefineGlobalNode(target.getSymbol(), value);
+		}
+
+		if (o instanceof Funcall) {
+			final Funcall form = (Funcall) o;
+			return new CallNode(this, compile(form.getProcedure(), false),
+					compileAll(form.getParameters()), tail);
+		}
+
+		if (o instanceof CallccForm) return new CallccNode();
+
+		if (o instanceof Apply) {
+			final Apply form = (Apply) o;
+			return new ApplyNode(this, compile(form.getProcedure(), false),
+					compile(form.getParameters(), false), tail);
+		}
+
+		if (o instanceof IfForm) {
+			final IfForm form = (IfForm) o;
+			return new IfNode(compile(form.getCondition(), false), compile(
+					form.getThenPart(), tail), compile(form.getElsePart(), tail));
+		}
+
+		if (o instanceof LambdaForm) {
+			final LambdaForm form = (LambdaForm) o;
+			return new LambdaNode(form.getName(), form.getParameterNames(),
+					form.HasRestParameter(), form.getFrameSize(), compile(
+							form.getAnalyzedForms(), true));
+		}
+
+		if (o instanceof LetForm) {
+			final LetForm form = (LetForm) o;
+			final int[] slots = new int[form.getVariables().size()];
+			for (int i = 0; i < slots.length; ++i)
+				slots[i] = form.getVariables().get(i).getSlot();
+			return new LetNode(slots, compileAll(form.getValues()), compile(
+					form.getBody(), tail));
+		}
+
+		if (o instanceof LoopForm)
+			return new LoopNode(compile(((LoopForm) o).getBody(), tail));
+
+		if (o instanceof SelfTailCall) {
+			final SelfTailCall form = (SelfTailCall) o;
+			if (!tail || !form.getLabel().isValid())
+				return compile(form.getCall(), tail);
+			return new SelfTailCallNode(compileAll(form.getCall()
+					.getParameters()));
+		}
+
+		if (o instanceof LocalVariable) {
+			final LocalVariable form = (LocalVariable) o;
+			return new LocalVariableNode(form.getSymbol(), form.getSlot());
+		}
+
+		if (o instanceof FreeVariable) {
+			final FreeVariable form = (FreeVariable) o;
+			return new FreeVariableNode(form.getSymbol(), form.getDepth(),
+					form.getSlot());
+		}
+
+		if (o instanceof LiteralSymbol)
+			return new GlobalVariableNode(((LiteralSymbol) o).getSymbol());
+
+		if (o instanceof SelfEvaluatingLiteral)
+			return new ConstantNode(((SelfEvaluatingLiteral) o).getValue());
+
+		if (o instanceof SetForm) {
+			final SetForm form = (SetForm) o;
+			final VariableReference target = form.getTarget();
+			final Node value = compile(form.getValue(), false);
+			if (target instanceof LocalVariable)
+				return new SetLocalNode(target.getSymbol(), 0,
+						((LocalVariable) target).getSlot(), value);
+			if (target instanceof FreeVariable)
+				return new SetLocalNode(target.getSymbol(),
+						((FreeVariable) target).getDepth(),
+						((FreeVariable) target).getSlot(), value);
+			return new SetGlobalNode(target.getSymbol(), value);
+		}
+
+		throw new SchemeException(
+				"Internal error: Don't know how to handle object of type "
+						+ o.getClass());
+	}
+
+	private Node[] compileAll(List<SyntaxTreeObject> forms)
+			throws SchemeException {
+		final Node[] ret = new Node[forms.size()];
+		for (int i = 0; i < ret.length; ++i)
+			ret[i] = compile(forms.get(i), false);
+		return ret;
+	}
+}
@@ -19,19 +19,24 @@ package org.lb.lbjscheme;
 import java.util.List;
 
 public class CompiledLambda extends SchemeObject {
-	public final Environment captured;
+	private static final long serialVersionUID = 1L;
+
+	public final Frame captured;
 	public final int pc;
 	public final List<Symbol> parameterNames;
 	public final boolean hasRestParameter;
+	public final int frameSize;
 	public final String name;
 
-	public CompiledLambda(String name, Environment captured, int pc,
-			List<Symbol> parameterNames, boolean hasRestParameter) {
+	public CompiledLambda(String name, Frame captured, int pc,
+			List<Symbol> parameterNames, boolean hasRestParameter,
+			int frameSize) {
 		this.name = name;
 		this.captured = captured;
 		this.pc = pc;
 		this.parameterNames = parameterNames;
 		this.hasRestParameter = hasRestParameter;
+		this.frameSize = frameSize;
 	}
 
 	@Override
@@ -19,96 +19,300 @@ package org.lb.lbjscheme;
 import java.util.*;
 import org.lb.lbjscheme.vm.*;
 
+// Keeps two views of the compiled code: The int coded program with its
+// constant pool, executed by VirtualMachine.run(), and a list of Opcode
+// objects for disassembly and for VirtualMachine.runOpcodes(). Frequent
+// instruction sequences are fused into superinstructions in the int code only.
 public final class CompiledProgram implements Emitter {
 	private final ArrayList<Opcode> _opcodes = new ArrayList<Opcode>();
+	private int[] _code = new int[1024];
+	private int _codeLength = 0;
+	private final ArrayList<Object> _constants = new ArrayList<Object>();
+	private final HashMap<Object, Integer> _constantIndices = new HashMap<>();
+	private final HashMap<String, List<Integer>> _unresolvedTargets = new HashMap<>();
+	private final HashMap<String, Integer> _labelPositions = new HashMap<>();
+	private final HashMap<String, Integer> _labelOpcodes = new HashMap<>();
+	private int _instructionStart = -1;
+	private int _previousInstructionStart = -1;
+	private int _labelPosition = -1;
 
 	public int getNumberOfStatements() {
 		return _opcodes.size();
 	}
 
+	public int getCodeLength() {
+		return _codeLength;
+	}
+
+	public int[] getCode() {
+		return _code;
+	}
+
+	public Object[] getConstants() {
+		return _constants.toArray();
+	}
+
+	private void code(int value) {
+		if (_codeLength == _code.length)
+			_code = Arrays.copyOf(_code, _codeLength * 2);
+		_code[_codeLength++] = value;
+	}
+
+	private void code(int opcode, Opcode op) {
+		_opcodes.add(op);
+		_previousInstructionStart = _instructionStart;
+		_instructionStart = _codeLength;
+		code(opcode);
+	}
+
+	// Opcode of the last instruction in the int code if the next one may be
+	// fused with it, i.e. if the next one is no jump target, else -1
+	private int fusibleOpcode() {
+		if (_instructionStart == -1 || _labelPosition == _codeLength)
+			return -1;
+		return _code[_instructionStart];
+	}
+
+	// Replaces the last instruction in the int code by a superinstruction
+	// with the same operands. The Opcode object view is not fused.
+	private void fuse(int superinstruction, Opcode op) {
+		_opcodes.add(op);
+		_code[_instructionStart] = superinstruction;
+	}
+
+	private void moveTarget(int from, int to) {
+		for (List<Integer> positions : _unresolvedTargets.values()) {
+			final int index = positions.indexOf(from);
+			if (index != -1) positions.set(index, to);
+		}
+		_code[to] = _code[from];
+	}
+
+	// Labels stay known after they have been placed: Loops jump back to them,
+	// and known procedures are called from the code of later top level forms
+	private void target(String label) {
+		final Integer position = _labelPositions.get(label);
+		if (position != null) {
+			code(position);
+			return;
+		}
+		List<Integer> positions = _unresolvedTargets.get(label);
+		if (positions == null) {
+			positions = new ArrayList<Integer>();
+			_unresolvedTargets.put(label, positions);
+		}
+		positions.add(_codeLength);
+		code(-1);
+	}
+
+	private int constant(Object value) {
+		_constants.add(value);
+		return _constants.size() - 1;
+	}
+
+	private int sharedConstant(Symbol value) {
+		final Integer existing = _constantIndices.get(value);
+		if (existing != null) return existing;
+		final int ret = constant(value);
+		_constantIndices.put(value, ret);
+		return ret;
+	}
+
 	@Override
 	public void emitCall() {
-		_opcodes.add(new Call());
+		switch (fusibleOpcode()) {
+		case Bytecode.GETVAR:
+			fuse(Bytecode.CALLVAR, new Call());
+			return;
+		case Bytecode.SETCONT:
+			if (_previousInstructionStart != -1
+					&& _labelPosition != _instructionStart
+					&& _code[_previousInstructionStart] == Bytecode.GETVAR) {
+				// GETVAR symbol SETCONT target -> CALLVARCONT symbol target
+				moveTarget(_instructionStart + 1, _instructionStart);
+				_codeLength = _instructionStart + 1;
+				_instructionStart = _previousInstructionStart;
+				_previousInstructionStart = -1;
+				fuse(Bytecode.CALLVARCONT, new Call());
+			} else {
+				fuse(Bytecode.CALLCONT, new Call());
+			}
+			return;
+		default:
+			code(Bytecode.CALL, new Call());
+		}
+	}
+
+	@Override
+	public void emitCallWithCurrentContinuation() {
+		code(Bytecode.CALLCC, new CallWithCurrentContinuation());
+	}
+
+	@Override
+	public void emitCallKnownProcedure(Symbol procedure, String entryLabel) {
+		final LabeledOpcode op = new CallKnownProcedure(procedure, entryLabel);
+		if (fusibleOpcode() == Bytecode.SETCONT)
+			fuse(Bytecode.CALLKNOWNCONT, op);
+		else
+			code(Bytecode.CALLKNOWN, op);
+		addLabeledOpcode(op, entryLabel);
+		code(sharedConstant(procedure));
+		target(entryLabel);
 	}
 
 	@Override
 	public void emitContinue() {
-		_opcodes.add(new Continue());
+		code(Bytecode.CONTINUE, new Continue());
 	}
 
 	@Override
 	public void emitDefineVariable(Symbol variable) {
-		_opcodes.add(new DefineVariable(variable));
+		code(Bytecode.DEFVAR, new DefineVariable(variable));
+		code(sharedConstant(variable));
+	}
+
+	@Override
+	public void emitDefineLocalVariable(Symbol variable, int slot) {
+		code(Bytecode.DEFLOCAL, new DefineLocalVariable(variable, slot));
+		code(slot);
 	}
 
 	@Override
 	public void emitGetVariable(Symbol variable) {
-		_opcodes.add(new GetVariable(variable));
+		code(Bytecode.GETVAR, new GetVariable(variable));
+		code(sharedConstant(variable));
+	}
+
+	@Override
+	public void emitGetLocalVariable(Symbol variable, int depth, int slot) {
+		code(Bytecode.GETLOCAL, new GetLocalVariable(variable, depth, slot));
+		code(depth);
+		code(slot);
+		code(sharedConstant(variable));
 	}
 
 	@Override
 	public void emitInitArgs() {
-		_opcodes.add(new InitArgs());
+		if (fusibleOpcode() == Bytecode.PUSHALL)
+			fuse(Bytecode.PUSHALLINITARGS, new InitArgs());
+		else
+			code(Bytecode.INITARGS, new InitArgs());
 	}
 
 	@Override
 	public void emitJump(String label) {
 		LabeledOpcode op = new Jump(label);
-		_opcodes.add(op);
-		addLabeledOpcode(op);
+		code(Bytecode.JUMP, op);
+		addLabeledOpcode(op, label);
+		target(label);
 	}
 
 	@Override
 	public void emitJumpIfFalse(String label) {
 		LabeledOpcode op = new JumpIfFalse(label);
-		_opcodes.add(op);
-		addLabeledOpcode(op);
+		code(Bytecode.JUMPIFFALSE, op);
+		addLabeledOpcode(op, label);
+		target(label);
 	}
 
 	@Override
 	public void emitLiteral(SchemeObject value) {
-		_opcodes.add(new Literal(value));
+		code(Bytecode.LITERAL, new Literal(value));
+		code(constant(value));
 	}
 
 	@Override
 	public void emitMakeClosure(String name, String closureLabel,
-			boolean hasRestParameter, List<Symbol> parameterNames) {
+			boolean hasRestParameter, List<Symbol> parameterNames,
+			int frameSize) {
 		LabeledOpcode op = new MakeClosure(name, closureLabel,
-				hasRestParameter, parameterNames);
-		_opcodes.add(op);
-		addLabeledOpcode(op);
+				hasRestParameter, parameterNames, frameSize);
+		code(Bytecode.MAKECLOSURE, op);
+		addLabeledOpcode(op, closureLabel);
+		code(constant(new CompiledLambda(name, null, -1, parameterNames,
+				hasRestParameter, frameSize)));
+		target(closureLabel);
 	}
 
 	@Override
 	public void emitPopAll() {
-		_opcodes.add(new PopAll());
+		code(Bytecode.POPALL, new PopAll());
+	}
+
+	@Override
+	public boolean isPrimitive(Symbol procedure, int argumentCount) {
+		return Bytecode.getPrimitive(procedure, argumentCount) != -1;
+	}
+
+	@Override
+	public void emitPrimitive(Symbol procedure, int argumentCount,
+			String doneLabel) {
+		final int opcode = Bytecode.getPrimitive(procedure, argumentCount);
+		LabeledOpcode op = new CallPrimitive(opcode, procedure, doneLabel);
+		code(opcode, op);
+		addLabeledOpcode(op, doneLabel);
+		code(sharedConstant(procedure));
+		target(doneLabel);
 	}
 
 	@Override
 	public void emitPushAll() {
-		_opcodes.add(new PushAll());
+		code(Bytecode.PUSHALL, new PushAll());
+	}
+
+	@Override
+	public void emitRestoreAll() {
+		code(Bytecode.RESTOREALL, new RestoreAll());
 	}
 
 	@Override
 	public void emitPushArg() {
-		_opcodes.add(new PushArg());
+		switch (fusibleOpcode()) {
+		case Bytecode.GETLOCAL:
+			fuse(Bytecode.PUSHLOCAL, new PushArg());
+			return;
+		case Bytecode.LITERAL:
+			fuse(Bytecode.PUSHLITERAL, new PushArg());
+			return;
+		case Bytecode.POPALL:
+			fuse(Bytecode.POPALLPUSHARG, new PushArg());
+			return;
+		default:
+			code(Bytecode.PUSHARG, new PushArg());
+		}
+	}
+
+	@Override
+	public void emitRebindArguments(int parameterCount) {
+		code(Bytecode.REBIND, new RebindArguments(parameterCount));
+		code(parameterCount);
 	}
 
 	@Override
 	public void emitSetContinuationRegisterToLabel(String label) {
 		LabeledOpcode op = new SetContinuationRegisterToLabel(label);
-		_opcodes.add(op);
-		addLabeledOpcode(op);
+		code(Bytecode.SETCONT, op);
+		addLabeledOpcode(op, label);
+		target(label);
 	}
 
 	@Override
 	public void emitSetArgsToValueRegister() {
-		_opcodes.add(new SetArgsToValueRegister());
+		code(Bytecode.SETARGS, new SetArgsToValueRegister());
 	}
 
 	@Override
 	public void emitSetVariable(Symbol variable) {
-		_opcodes.add(new SetVariable(variable));
+		code(Bytecode.SETVAR, new SetVariable(variable));
+		code(sharedConstant(variable));
+	}
+
+	@Override
+	public void emitSetLocalVariable(Symbol variable, int depth, int slot) {
+		code(Bytecode.SETLOCAL, new SetLocalVariable(variable, depth, slot));
+		code(depth);
+		code(slot);
+		code(sharedConstant(variable));
 	}
 
 	private final List<LabeledOpcode> _labeledOpcodes = new ArrayList<LabeledOpcode>();
@@ -123,14 +327,25 @@ public final class CompiledProgram implements Emitter {
 				i--;
 			}
 		}
+
+		_labelPosition = _codeLength;
+		_labelPositions.put(label, _codeLength);
+		_labelOpcodes.put(label, _opcodes.size());
+		final List<Integer> positions = _unresolvedTargets.remove(label);
+		if (positions != null) for (int i : positions)
+			_code[i] = _codeLength;
 	}
 
-	private void addLabeledOpcode(LabeledOpcode op) {
-		_labeledOpcodes.add(op);
+	private void addLabeledOpcode(LabeledOpcode op, String label) {
+		final Integer position = _labelOpcodes.get(label);
+		if (position != null)
+			op.setPosition(position);
+		else
+			_labeledOpcodes.add(op);
 	}
 
 	public boolean isRunnable() {
-		return _labeledOpcodes.isEmpty();
+		return _labeledOpcodes.isEmpty() && _unresolvedTargets.isEmpty();
 	}
 
 	public void setVm(VirtualMachine vm) {
@@ -138,6 +353,10 @@ public final class CompiledProgram implements Emitter {
 			i.setVm(vm);
 	}
 
+	public Opcode getOpcode(int index) {
+		return _opcodes.get(index);
+	}
+
 	public void executeOpcode(int ip) throws SchemeException {
 		// System.out.println(ip + ": " + _opcodes.get(ip).toString());
 		_opcodes.get(ip).execute();
@@ -20,7 +20,21 @@ import java.util.*;
 import org.lb.lbjscheme.ast.*;
 
 public final class Compiler {
+	// Top-level procedure whose calls can jump straight to its code
+	private static final class KnownProcedure {
+		final String entryLabel;
+		final int parameterCount;
+
+		KnownProcedure(String entryLabel, int parameterCount) {
+			this.entryLabel = entryLabel;
+			this.parameterCount = parameterCount;
+		}
+	}
+
 	private final Emitter _emitter;
+	private final Map<Symbol, KnownProcedure> _knownProcedures = new HashMap<>();
+	private final Set<Symbol> _assignedVariables = new HashSet<>();
+	private final Map<LoopLabel, String> _loopLabels = new HashMap<>();
 
 	public Compiler(final Emitter emitter) {
 		_emitter = emitter;
@@ -33,7 +47,7 @@ public final class Compiler {
 		} else if (form instanceof BeginForm) {
 			compileBeginForm((BeginForm) form, tailPosition);
 		} else if (form instanceof CallccForm) {
-			compileCallccForm((CallccForm) form);
+			compileCallccForm((CallccForm) form, tailPosition);
 		} else if (form instanceof DefineForm) {
 			compileDefineForm((DefineForm) form);
 		} else if (form instanceof Funcall) {
@@ -42,8 +56,14 @@ public final class Compiler {
 			compileIfForm((IfForm) form, tailPosition);
 		} else if (form instanceof LambdaForm) {
 			compileLambdaForm((LambdaForm) form);
-		} else if (form instanceof LiteralSymbol) {
-			compileLiteralSymbol((LiteralSymbol) form);
+		} else if (form instanceof LetForm) {
+			compileLetForm((LetForm) form, tailPosition);
+		} else if (form instanceof LoopForm) {
+			compileLoopForm((LoopForm) form, tailPosition);
+		} else if (form instanceof SelfTailCall) {
+			compileSelfTailCall((SelfTailCall) form, tailPosition);
+		} else if (form instanceof VariableReference) {
+			compileVariableReference((VariableReference) form);
 		} else if (form instanceof SelfEvaluatingLiteral) {
 			compileSelfEvaluatingLiteral((SelfEvaluatingLiteral) form);
 		} else if (form instanceof SetForm) {
@@ -79,19 +99,84 @@ public final class Compiler {
 		compile(form.getLastForm(), tailPosition);
 	}
 
-	private void compileCallccForm(final CallccForm form)
-			throws SchemeException {
-		throw new SchemeException("TODO: call/cc form not compilable yet");
+	private void compileCallccForm(final CallccForm form,
+			final boolean tailPosition) throws SchemeException {
+		if (!tailPosition) _emitter.emitPushAll();
+		_emitter.emitInitArgs();
+		compile(form.getTarget(), false);
+
+		if (tailPosition) {
+			_emitter.emitCallWithCurrentContinuation();
+		} else {
+			final String jumpLabel = newLabel();
+			_emitter.emitSetContinuationRegisterToLabel(jumpLabel);
+			_emitter.emitCallWithCurrentContinuation();
+			_emitter.setLabelPositionToHere(jumpLabel);
+			_emitter.emitPopAll();
+		}
 	}
 
 	private void compileDefineForm(final DefineForm form)
 			throws SchemeException {
-		compile(form.getAnalyzedForm(), false);
-		_emitter.emitDefineVariable(form.getTarget());
+		final VariableReference target = form.getTarget();
+		if (target instanceof LiteralSymbol)
+			compileTopLevelDefinition(target.getSymbol(),
+					form.getAnalyzedForm());
+		else
+			compile(form.getAnalyzedForm(), false);
+		if (target instanceof LocalVariable)
+			_emitter.emitDefineLocalVariable(target.getSymbol(),
+					((LocalVariable) target).getSlot());
+		else
+			_emitter.emitDefineVariable(target.getSymbol());
+	}
+
+	// A procedure defined at the top level and never assigned with set! is
+	// known: Calls with the right number of arguments are compiled to a
+	// direct jump to its code, guarded at run time by a check that the
+	// variable is still bound to the closure created from this definition.
+	// Redefining the procedure links later calls to the new code.
+	private void compileTopLevelDefinition(final Symbol name,
+			final SyntaxTreeObject value) throws SchemeException {
+		_knownProcedures.remove(name);
+		if (!(value instanceof LambdaForm)
+				|| ((LambdaForm) value).HasRestParameter()
+				|| _assignedVariables.contains(name)) {
+			compile(value, false);
+			return;
+		}
+
+		final LambdaForm lambda = (LambdaForm) value;
+		final String entryLabel = newLabel();
+		_knownProcedures.put(name, new KnownProcedure(entryLabel, lambda
+				.getParameterNames().size()));
+		try {
+			compileLambdaForm(lambda, entryLabel);
+		} catch (SchemeException ex) {
+			_knownProcedures.remove(name);
+			throw ex;
+		}
 	}
 
 	private void compileFuncall(final Funcall form, final boolean tailPosition)
 			throws SchemeException {
+		if (form.getProcedure() instanceof LiteralSymbol
+				&& _emitter.isPrimitive(
+						((LiteralSymbol) form.getProcedure()).getSymbol(), form
+								.getParameters().size())) {
+			compilePrimitiveCall(form);
+			return;
+		}
+
+		KnownProcedure known = null;
+		if (form.getProcedure() instanceof LiteralSymbol) {
+			known = _knownProcedures.get(((LiteralSymbol) form.getProcedure())
+					.getSymbol());
+			if (known != null
+					&& known.parameterCount != form.getParameters().size())
+				known = null;
+		}
+
 		if (!tailPosition) _emitter.emitPushAll();
 		_emitter.emitInitArgs();
 
@@ -102,19 +187,45 @@ public final class Compiler {
 			compile(i, false);
 			_emitter.emitPushArg();
 		}
-		compile(form.getProcedure(), false);
+		if (known == null) compile(form.getProcedure(), false);
 
 		if (tailPosition) {
-			_emitter.emitCall();
+			emitCall(form, known);
 		} else {
 			final String jumpLabel = newLabel();
 			_emitter.emitSetContinuationRegisterToLabel(jumpLabel);
-			_emitter.emitCall();
+			emitCall(form, known);
 			_emitter.setLabelPositionToHere(jumpLabel);
 			_emitter.emitPopAll();
 		}
 	}
 
+	private void emitCall(final Funcall form, final KnownProcedure known) {
+		if (known == null)
+			_emitter.emitCall();
+		else
+			_emitter.emitCallKnownProcedure(
+					((LiteralSymbol) form.getProcedure()).getSymbol(),
+					known.entryLabel);
+	}
+
+	private void compilePrimitiveCall(final Funcall form)
+			throws SchemeException {
+		final List<SyntaxTreeObject> params = form.getParameters();
+		for (int i = params.size() - 1; i > 0; --i) {
+			compile(params.get(i), false);
+			_emitter.emitPushArg();
+		}
+		compile(params.get(0), false);
+
+		final String doneLabel = newLabel();
+		_emitter.emitPrimitive(
+				((LiteralSymbol) form.getProcedure()).getSymbol(),
+				params.size(), doneLabel);
+		_emitter.emitPopAll();
+		_emitter.setLabelPositionToHere(doneLabel);
+	}
+
 	private void compileIfForm(final IfForm form, final boolean tailPosition)
 			throws SchemeException {
 		final String falseLabel = newLabel();
@@ -130,11 +241,16 @@ public final class Compiler {
 
 	private void compileLambdaForm(final LambdaForm form)
 			throws SchemeException {
-		final String closureLabel = newLabel();
+		compileLambdaForm(form, newLabel());
+	}
+
+	private void compileLambdaForm(final LambdaForm form,
+			final String closureLabel) throws SchemeException {
 		final String afterClosureLabel = newLabel();
 
 		_emitter.emitMakeClosure(form.getName(), closureLabel,
-				form.HasRestParameter(), form.getParameterNames());
+				form.HasRestParameter(), form.getParameterNames(),
+				form.getFrameSize());
 		_emitter.emitJump(afterClosureLabel);
 		_emitter.setLabelPositionToHere(closureLabel);
 		compile(form.getAnalyzedForms(), true);
@@ -143,8 +259,58 @@ public final class Compiler {
 
 	}
 
-	private void compileLiteralSymbol(final LiteralSymbol form) {
-		_emitter.emitGetVariable(form.getSymbol());
+	private void compileLetForm(final LetForm form, final boolean tailPosition)
+			throws SchemeException {
+		final List<LocalVariable> variables = form.getVariables();
+		final List<SyntaxTreeObject> values = form.getValues();
+		for (int i = 0; i < variables.size(); ++i) {
+			compile(values.get(i), false);
+			_emitter.emitDefineLocalVariable(variables.get(i).getSymbol(),
+					variables.get(i).getSlot());
+		}
+		compile(form.getBody(), tailPosition);
+	}
+
+	private void compileLoopForm(final LoopForm form,
+			final boolean tailPosition) throws SchemeException {
+		final String loopLabel = newLabel();
+		_emitter.setLabelPositionToHere(loopLabel);
+		_loopLabels.put(form.getLabel(), loopLabel);
+		try {
+			compile(form.getBody(), tailPosition);
+		} finally {
+			_loopLabels.remove(form.getLabel());
+		}
+	}
+
+	private void compileSelfTailCall(final SelfTailCall form,
+			final boolean tailPosition) throws SchemeException {
+		final String loopLabel = _loopLabels.get(form.getLabel());
+		if (loopLabel == null || !tailPosition || !form.getLabel().isValid()) {
+			compile(form.getCall(), tailPosition);
+			return;
+		}
+
+		_emitter.emitInitArgs();
+		final List<SyntaxTreeObject> params = form.getCall().getParameters();
+		for (int i = params.size() - 1; i >= 0; --i) {
+			compile(params.get(i), false);
+			_emitter.emitPushArg();
+		}
+		_emitter.emitRebindArguments(params.size());
+		_emitter.emitJump(loopLabel);
+	}
+
+	private void compileVariableReference(final VariableReference form) {
+		if (form instanceof LocalVariable)
+			_emitter.emitGetLocalVariable(form.getSymbol(), 0,
+					((LocalVariable) form).getSlot());
+		else if (form instanceof FreeVariable)
+			_emitter.emitGetLocalVariable(form.getSymbol(),
+					((FreeVariable) form).getDepth(),
+					((FreeVariable) form).getSlot());
+		else
+			_emitter.emitGetVariable(form.getSymbol());
 	}
 
 	private void compileSelfEvaluatingLiteral(final SelfEvaluatingLiteral form) {
@@ -153,7 +319,19 @@ public final class Compiler {
 
 	private void compileSetForm(final SetForm form) throws SchemeException {
 		compile(form.getValue(), false);
-		_emitter.emitSetVariable(form.getTarget());
+		final VariableReference target = form.getTarget();
+		if (target instanceof LocalVariable)
+			_emitter.emitSetLocalVariable(target.getSymbol(), 0,
+					((LocalVariable) target).getSlot());
+		else if (target instanceof FreeVariable)
+			_emitter.emitSetLocalVariable(target.getSymbol(),
+					((FreeVariable) target).getDepth(),
+					((FreeVariable) target).getSlot());
+		else {
+			_knownProcedures.remove(target.getSymbol());
+			_assignedVariables.add(target.getSymbol());
+			_emitter.emitSetVariable(target.getSymbol());
+		}
 	}
 
 	private int label = 1;
@@ -22,25 +22,34 @@ import org.lb.lbjscheme.vm.VirtualMachine;
 public final class CompilingEvaluator extends Evaluator {
 	private final Analyzer _analyzer;
 	private final CompiledProgram _program;
+	private final SyntaxTreeOptimizer _syntaxTreeOptimizer;
+	private final PeepholeOptimizer _optimizer;
 	private final Compiler _compiler;
 	private final VirtualMachine _vm;
 
 	public CompilingEvaluator(final InputPort in, final OutputPort out)
 			throws SchemeException {
+		this(in, out, true);
+	}
+
+	public CompilingEvaluator(final InputPort in, final OutputPort out,
+			final boolean optimize) throws SchemeException {
 		super(new Environment());
 
 		_analyzer = new Analyzer();
+		_analyzer.setReentrantContinuations(true);
 		_program = new CompiledProgram();
-		_compiler = new Compiler(_program);
+		_syntaxTreeOptimizer = new SyntaxTreeOptimizer();
+		_syntaxTreeOptimizer.setEnabled(optimize);
+		_optimizer = new PeepholeOptimizer(_program);
+		_optimizer.setEnabled(optimize);
+		_compiler = new Compiler(_optimizer);
 
-		final Reader r = new Reader(new InputPort(new StringReader(
-				Environment.getInteractionInitScript())));
-		while (true) {
-			try {
-				_compiler.compile(_analyzer.analyze(r.read()), false);
-			} catch (EOFException ex) {
-				break;
-			}
+		for (SchemeObject form : Analyzer.getInitScriptForms()) {
+			_compiler.compile(
+					_syntaxTreeOptimizer.optimize(_analyzer.analyze(form)),
+					false);
+			_optimizer.flush();
 		}
 
 		final Environment global = getGlobalEnvironment();
@@ -69,8 +78,17 @@ public final class CompilingEvaluator extends Evaluator {
 	@Override
 	public SchemeObject eval(SchemeObject o, Environment env)
 			throws SchemeException {
-		final int startIp = _program.getNumberOfStatements();
-		_compiler.compile(_analyzer.analyze(o), false);
+		final int startIp = _program.getCodeLength();
+		_compiler.compile(_syntaxTreeOptimizer.optimize(_analyzer.analyze(o)),
+				false);
+		// Continuations captured in the form may be reentered by later forms,
+		// they must end with the form instead of falling through to its code
+		_optimizer.emitContinue();
+		_optimizer.flush();
 		return _vm.run(_program, startIp);
 	}
+
+	public PeepholeOptimizer getOptimizer() {
+		return _optimizer;
+	}
 }
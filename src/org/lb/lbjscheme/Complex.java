@@ -17,6 +17,8 @@
 package org.lb.lbjscheme;
 
 public final class Complex extends SchemeNumber {
+	private static final long serialVersionUID = 1L;
+
 	private final SchemeNumber _real;
 	private final SchemeNumber _imag;
 
@@ -28,7 +28,11 @@ public final class ConsoleRepl {
 			System.out.println("-c      Use compiling evaluator");
 			System.out.println("-h, -?  Show this text");
 			System.out.println("-i      Use interpreting evaluator (default)");
+			System.out.println("-j      Use JVM bytecode compiling evaluator");
+			System.out.println("-n      Use closure-compiling evaluator");
 			System.out.println("-r      Enter REPL after executing files");
+			System.out
+					.println("-u      Don't optimize analyzed or compiled code");
 			System.out.println("-v      Print version info, then quit");
 			return;
 		}
@@ -81,6 +85,9 @@ public final class ConsoleRepl {
 				|| getFileNames(args).size() == 0;
 		final boolean useAnalyzingEvaluator = hasArgument(args, "-a");
 		final boolean useCompilingEvaluator = hasArgument(args, "-c");
+		final boolean useClosureCompilingEvaluator = hasArgument(args, "-n");
+		final boolean useJvmCompilingEvaluator = hasArgument(args, "-j");
+		final boolean optimize = !hasArgument(args, "-u");
 
 		final InputPort inputPort = new InputPort(new InputStreamReader(
 				System.in));
@@ -90,8 +97,11 @@ public final class ConsoleRepl {
 		global.setInputPort(inputPort);
 		global.setOutputPort(outputPort);
 		final Evaluator e = useAnalyzingEvaluator ? new AnalyzingEvaluator(
-				global) : useCompilingEvaluator ? new CompilingEvaluator(
-				inputPort, outputPort) : new InterpretingEvaluator(global);
+				global, optimize) : useCompilingEvaluator ? new CompilingEvaluator(
+				inputPort, outputPort, optimize)
+				: useClosureCompilingEvaluator ? new ClosureCompilingEvaluator(
+						global, optimize) : useJvmCompilingEvaluator ? new JvmCompilingEvaluator(
+						global, optimize) : new InterpretingEvaluator(global);
 
 		for (String fileName : getFileNames(args)) {
 			final FileReader r = new FileReader(fileName);
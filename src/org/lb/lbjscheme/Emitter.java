@@ -21,12 +21,20 @@ import java.util.List;
 public interface Emitter {
 	public void emitCall();
 
+	// Like CALL, but instead of the pushed arguments the procedure gets the
+	// current continuation as its only argument
+	public void emitCallWithCurrentContinuation();
+
 	public void emitContinue();
 
 	public void emitDefineVariable(final Symbol variable);
 
+	public void emitDefineLocalVariable(final Symbol variable, int slot);
+
 	public void emitGetVariable(final Symbol variable);
 
+	public void emitGetLocalVariable(final Symbol variable, int depth, int slot);
+
 	public void emitInitArgs();
 
 	public void emitJump(String doneLabel);
@@ -36,19 +44,45 @@ public interface Emitter {
 	public void emitLiteral(final SchemeObject value);
 
 	public void emitMakeClosure(String string, String closureLabel,
-			boolean hasRestParameter, List<Symbol> parameterNames);
+			boolean hasRestParameter, List<Symbol> parameterNames,
+			int frameSize);
 
 	public void emitPopAll();
 
+	// Same as GETVAR procedure followed by CALL, for a procedure defined at
+	// the top level by a lambda whose closure label is entryLabel. The target
+	// may jump straight to entryLabel as long as the variable is still bound
+	// to a closure created there; the Compiler has checked the argument count.
+	public void emitCallKnownProcedure(Symbol procedure, String entryLabel);
+
+	// Primitives are builtins the target can run without a CALL, as long as
+	// the variable is still bound to the original builtin. The first argument
+	// is in the value register, the others have been pushed with PUSHARG, last
+	// argument first. emitPrimitive() is followed by a POPALL and doneLabel;
+	// the POPALL is only reached when falling back to a normal call.
+	public boolean isPrimitive(Symbol procedure, int argumentCount);
+
+	public void emitPrimitive(Symbol procedure, int argumentCount,
+			String doneLabel);
+
 	public void emitPushAll();
 
 	public void emitPushArg();
 
+	// Moves the pushed arguments of a self tail call into the parameter slots
+	// of the current frame and unbinds its other slots, so that the body of
+	// the procedure can run again in the same frame
+	public void emitRebindArguments(int parameterCount);
+
+	public void emitRestoreAll();
+
 	public void emitSetArgsToValueRegister();
 
 	public void emitSetContinuationRegisterToLabel(final String label);
 
 	public void emitSetVariable(final Symbol variable);
 
+	public void emitSetLocalVariable(final Symbol variable, int depth, int slot);
+
 	public void setLabelPositionToHere(final String label);
 }
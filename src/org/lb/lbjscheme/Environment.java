@@ -20,11 +20,17 @@ import java.util.*;
 import org.lb.lbjscheme.builtins.*;
 
 public final class Environment extends SchemeObject {
+	private static final long serialVersionUID = 1L;
+
 	private final Environment _outer;
-	private final HashMap<Symbol, SchemeObject> _values = new HashMap<>();
+	private final HashMap<Symbol, Binding> _values = new HashMap<>();
 	private boolean _locked;
-	private InputPort _currentInputPort;
-	private OutputPort _currentOutputPort;
+	private boolean _frozen;
+	private transient InputPort _currentInputPort;
+	private transient OutputPort _currentOutputPort;
+
+	private static Environment _baseEnvironment;
+	private static Environment _reportBaseEnvironment;
 
 	public Environment() {
 		_outer = null;
@@ -40,54 +46,123 @@ public final class Environment extends SchemeObject {
 	}
 
 	public SchemeObject get(Symbol name) throws SchemeException {
-		if (_values.containsKey(name)) return _values.get(name);
+		final Binding binding = _values.get(name);
+		if (binding != null) return binding.getValue();
 		if (_outer != null) return _outer.get(name);
 		throw new SchemeException("Unknown symbol " + name.toString());
 	}
 
+	public Binding getBinding(Symbol name) {
+		Binding ret = _values.get(name);
+		if (ret == null) {
+			ret = new Binding(name, _outer == null ? null
+					: _outer.getBinding(name));
+			// Frozen environments are read by several threads at once
+			if (!_frozen) _values.put(name, ret);
+		}
+		return ret;
+	}
+
+	// Returns the value of the name here or in an outer environment, or null
+	public SchemeObject lookup(Symbol name) throws SchemeException {
+		final Binding binding = findBinding(name);
+		return binding == null ? null : binding.getValue();
+	}
+
+	private Binding findBinding(Symbol name) {
+		for (Environment env = this; env != null; env = env._outer) {
+			final Binding binding = env._values.get(name);
+			if (binding != null && binding.isBound()) return binding;
+		}
+		return null;
+	}
+
 	public void define(Symbol name, SchemeObject value) throws SchemeException {
+		assertNotFrozen();
 		assertSymbolMayBeRedefined(name);
-		_values.put(name, value);
+		final Binding binding = _values.get(name);
+		if (binding != null)
+			binding.set(value);
+		else {
+			final Binding newBinding = new Binding(name, null);
+			newBinding.set(value);
+			_values.put(name, newBinding);
+		}
+	}
+
+
+	private void assertNotFrozen() throws SchemeException {
+		if (_frozen)
+			throw new SchemeException(
+					"The base environment can not be changed");
 	}
 
 	private void assertSymbolMayBeRedefined(Symbol name) throws SchemeException {
-		if (!mayBeRedefined(name))
-			throw new SchemeException("Symbol '" + name.toString()
-					+ "' is constant and must not be changed");
+		if (!mayBeRedefined(name)) throwConstantSymbol(name);
 	}
 
-	private boolean mayBeRedefined(Symbol name) {
-		final String nameAsString = name.toString();
+	// The names of the special forms can not be bound in any environment, nor
+	// lexically by the Analyzer
+	static void assertIsNotSpecialForm(Symbol name) throws SchemeException {
+		if (isSpecialForm(name)) throwConstantSymbol(name);
+	}
 
-		switch (nameAsString) {
+	private static void throwConstantSymbol(Symbol name)
+			throws SchemeException {
+		throw new SchemeException("Symbol '" + name.toString()
+				+ "' is constant and must not be changed");
+	}
+
+	private static boolean isSpecialForm(Symbol name) {
+		switch (name.toString()) {
 		case "if":
 		case "define":
 		case "set!":
 		case "lambda":
 		case "quote":
 		case "begin":
-			return false;
-		default:
-			if (nameAsString.startsWith("##gensym##")) return true;
-			if (_locked && nameAsString.startsWith("##")
-					&& _values.containsKey(name)) return false;
 			return true;
+		default:
+			return false;
 		}
 	}
 
+	private boolean mayBeRedefined(Symbol name) {
+		if (isSpecialForm(name)) return false;
+		final String nameAsString = name.toString();
+		if (nameAsString.startsWith("##gensym##")) return true;
+		if (_locked && nameAsString.startsWith("##")
+				&& findBinding(name) != null) return false;
+		return true;
+	}
+
 	public void set(Symbol name, SchemeObject value) throws SchemeException {
+		assertNotFrozen();
 		assertSymbolMayBeRedefined(name);
 
-		if (_values.containsKey(name))
-			_values.put(name, value);
-		else if (_outer != null)
+		final Binding binding = _values.get(name);
+		if (binding != null && binding.isBound())
+			binding.set(value);
+		else if (_outer == null)
+			throw new SchemeException("Unknown symbol " + name.toString());
+		else if (!_outer._frozen)
 			_outer.set(name, value);
+		else if (_outer.findBinding(name) != null)
+			define(name, value); // Copy on write
 		else
 			throw new SchemeException("Unknown symbol " + name.toString());
 	}
 
 	public Set<Symbol> getDefinedSymbols() {
-		return _values.keySet();
+		final Set<Symbol> ret = new HashSet<>();
+		for (Binding binding : _values.values())
+			if (binding.isBound()) ret.add(binding.getName());
+		return ret;
+	}
+
+	public boolean isDefined(Symbol name) {
+		final Binding binding = _values.get(name);
+		return binding != null && binding.isBound();
 	}
 
 	public void expand(List<Symbol> parameterNames, boolean hasRestParameter,
@@ -112,23 +187,28 @@ public final class Environment extends SchemeObject {
 		}
 	}
 
+	// The ports belong to the outermost environment that is not frozen
+	private boolean hasOwnPorts() {
+		return _outer == null || _outer._frozen;
+	}
+
 	public InputPort getInputPort() {
-		return _outer == null ? _currentInputPort : _outer.getInputPort();
+		return hasOwnPorts() ? _currentInputPort : _outer.getInputPort();
 	}
 
 	public OutputPort getOutputPort() {
-		return _outer == null ? _currentOutputPort : _outer.getOutputPort();
+		return hasOwnPorts() ? _currentOutputPort : _outer.getOutputPort();
 	}
 
 	public void setInputPort(InputPort value) {
-		if (_outer == null)
+		if (hasOwnPorts())
 			_currentInputPort = value;
 		else
 			_outer.setInputPort(value);
 	}
 
 	public void setOutputPort(OutputPort value) {
-		if (_outer == null)
+		if (hasOwnPorts())
 			_currentOutputPort = value;
 		else
 			_outer.setOutputPort(value);
@@ -147,16 +227,81 @@ public final class Environment extends SchemeObject {
 		if (version != 5)
 			throw new SchemeException(
 					"scheme-report-environment: Only version 5 supported");
-		final Environment ret = new Environment(global);
-		ret.addBuiltins();
-		new InterpretingEvaluator(ret).eval(getReportInitScript());
-		ret.addRedefinableBuiltins();
-		ret.lock();
+		final Environment ret = newLayer(getReportBaseEnvironment());
+		if (global != null) {
+			ret.setInputPort(global.getInputPort());
+			ret.setOutputPort(global.getOutputPort());
+		}
 		return ret;
 	}
 
+	private static synchronized Environment getReportBaseEnvironment()
+			throws SchemeException {
+		if (_reportBaseEnvironment == null) {
+			final Environment ret = new Environment();
+			ret.addBuiltins();
+			new InterpretingEvaluator(ret).eval(getReportInitScript());
+			ret.addRedefinableBuiltins();
+			ret.lock();
+			ret._frozen = true;
+			_reportBaseEnvironment = ret;
+		}
+		return _reportBaseEnvironment;
+	}
+
+	// Without an outer environment, the new environment is a layer over the
+	// base environment: Definitions and set! go to the layer, everything else
+	// is shared.
 	public static Environment newInteractionEnvironment(final Environment global)
 			throws SchemeException {
+		if (global == null) return newLayer(getBaseEnvironment());
+		return evalInteractionEnvironment(global);
+	}
+
+	// The environment of the init scripts, created once per process from the
+	// heap image or by evaluating the scripts. Its lambdas carry their
+	// analyzed forms. It is frozen, so that any number of threads may read it.
+	public static synchronized Environment getBaseEnvironment()
+			throws SchemeException {
+		if (_baseEnvironment == null) {
+			Environment ret = HeapImage.restoreInteractionEnvironment();
+			if (ret == null) {
+				ret = evalInteractionEnvironment(null);
+				AnalyzingEvaluator.analyzeLambdas(ret);
+			}
+			ret._frozen = true;
+			_baseEnvironment = ret;
+		}
+		return _baseEnvironment;
+	}
+
+	// The builtins using the ports and the lambdas of the init scripts refer
+	// to their environment, so the layer gets copies of them. The copies of
+	// the lambdas share the forms and analyzed forms of the originals.
+	private static Environment newLayer(Environment base)
+			throws SchemeException {
+		final Environment ret = new Environment(base);
+		ret.addEnvironmentBuiltins();
+		final Map<Lambda, Lambda> copies = new IdentityHashMap<>();
+		for (Symbol sym : base.getDefinedSymbols()) {
+			final SchemeObject value = base.get(sym);
+			if (!(value instanceof Lambda)
+					|| ((Lambda) value).getCaptured() != base) continue;
+			Lambda copy = copies.get(value);
+			if (copy == null) {
+				copy = ((Lambda) value).withCaptured(ret);
+				copies.put((Lambda) value, copy);
+			}
+			ret.define(sym, copy);
+		}
+		ret.addRedefinableBuiltins();
+		ret.lock();
+		return ret;
+	}
+
+	// Evaluates the init scripts, even if there is a heap image
+	public static Environment evalInteractionEnvironment(
+			final Environment global) throws SchemeException {
 		final Environment ret = new Environment(global);
 		ret.addBuiltins();
 		new InterpretingEvaluator(ret).eval(getInteractionInitScript());
@@ -173,6 +318,13 @@ public final class Environment extends SchemeObject {
 		return _reportInitScript + " " + _interactionInitScript;
 	}
 
+	// Scheme definitions of the builtins taking procedures, for the evaluators
+	// whose machines builtins can not call back. They are to be evaluated with
+	// the init scripts, after the builtins have been added.
+	public static String getHigherOrderProceduresScript() {
+		return _higherOrderProceduresScript;
+	}
+
 	public void lock() {
 		_locked = true;
 	}
@@ -182,34 +334,43 @@ public final class Environment extends SchemeObject {
 	}
 
 	public void addBuiltins() throws SchemeException {
+		addEnvironmentBuiltins();
 		addBuiltin(new Acos());
 		addBuiltin(new Add());
+		addBuiltin(new Any());
+		addBuiltin(new Append());
 		addBuiltin(new Asin());
+		addBuiltin(new Assoc());
+		addBuiltin(new Assq());
+		addBuiltin(new Assv());
 		addBuiltin(new Atan());
 		addBuiltin(new BooleanP());
 		addBuiltin(new Car());
 		addBuiltin(new Cdr());
 		addBuiltin(new Ceiling());
 		addBuiltin(new CharP());
-		addBuiltin(new CharReadyP(this));
 		addBuiltin(new CharToInteger());
 		addBuiltin(new CloseInputPort());
 		addBuiltin(new CloseOutputPort());
 		addBuiltin(new Cons());
 		addBuiltin(new Cos());
-		addBuiltin(new CurrentInputPort(this));
-		addBuiltin(new CurrentOutputPort(this));
 		addBuiltin(new Denominator());
-		addBuiltin(new Display(this));
 		addBuiltin(new Div());
 		addBuiltin(new EofObjectP());
 		addBuiltin(new EqP());
+		addBuiltin(new EqualP());
+		addBuiltin(new EqvP());
 		addBuiltin(new Eval());
+		addBuiltin(new Every());
 		addBuiltin(new ExactP());
 		addBuiltin(new ExactToInexact());
 		addBuiltin(new Exp());
+		addBuiltin(new Filter());
 		addBuiltin(new Floor());
+		addBuiltin(new Fold());
+		addBuiltin(new ForEach());
 		addBuiltin(new Ge());
+		addBuiltin(new Gensym());
 		addBuiltin(new Gt());
 		addBuiltin(new ImagPart());
 		addBuiltin(new InexactP());
@@ -217,12 +378,19 @@ public final class Environment extends SchemeObject {
 		addBuiltin(new InputPortP());
 		addBuiltin(new IntegerP());
 		addBuiltin(new IntegerToChar());
-		addBuiltin(new InteractionEnvironment(this));
 		addBuiltin(new Le());
+		addBuiltin(new Length());
+		addBuiltin(new ListRef());
+		addBuiltin(new ListTail());
+		addBuiltin(new ListToString());
 		addBuiltin(new Log());
 		addBuiltin(new Lt());
 		addBuiltin(new MakeString());
 		addBuiltin(new MakeVector());
+		addBuiltin(new MapList());
+		addBuiltin(new Member());
+		addBuiltin(new Memq());
+		addBuiltin(new Memv());
 		addBuiltin(new Mul());
 		addBuiltin(new NullEnvironment());
 		addBuiltin(new NullP());
@@ -234,37 +402,47 @@ public final class Environment extends SchemeObject {
 		addBuiltin(new OpenOutputFile());
 		addBuiltin(new OutputPortP());
 		addBuiltin(new PairP());
-		addBuiltin(new PeekChar(this));
 		addBuiltin(new ProcedureP());
 		addBuiltin(new Quotient());
 		addBuiltin(new Rationalize());
 		addBuiltin(new RationalP());
-		addBuiltin(new Read(this));
-		addBuiltin(new ReadChar(this));
 		addBuiltin(new RealP());
 		addBuiltin(new RealPart());
 		addBuiltin(new Remainder());
+		addBuiltin(new Reverse());
 		addBuiltin(new Round());
-		addBuiltin(new SchemeReportEnvironment(this));
 		addBuiltin(new SetCar());
 		addBuiltin(new SetCdr());
 		addBuiltin(new Sin());
+		addBuiltin(new StringAppend());
+		addBuiltin(new StringCiEq());
+		addBuiltin(new StringCiGe());
+		addBuiltin(new StringCiGt());
+		addBuiltin(new StringCiLe());
+		addBuiltin(new StringCiLt());
+		addBuiltin(new StringCopy());
+		addBuiltin(new StringEq());
+		addBuiltin(new StringFill());
+		addBuiltin(new StringGe());
+		addBuiltin(new StringGt());
+		addBuiltin(new StringLe());
 		addBuiltin(new StringLength());
+		addBuiltin(new StringLt());
 		addBuiltin(new StringP());
 		addBuiltin(new StringRef());
 		addBuiltin(new StringSet());
+		addBuiltin(new StringToList());
 		addBuiltin(new StringToNumber());
 		addBuiltin(new StringToSymbol());
 		addBuiltin(new Sub());
+		addBuiltin(new Substring());
 		addBuiltin(new SymbolP());
 		addBuiltin(new SymbolToString());
 		addBuiltin(new SysCall());
 		addBuiltin(new SysError());
 		addBuiltin(new SysExpt());
 		addBuiltin(new SysGetMethodNames());
-		addBuiltin(new SysSetCurrentInputPort(this));
 		addBuiltin(new SysNew());
-		addBuiltin(new SysSetCurrentOutputPort(this));
 		addBuiltin(new SysSqrt());
 		addBuiltin(new Tan());
 		addBuiltin(new Truncate());
@@ -272,14 +450,29 @@ public final class Environment extends SchemeObject {
 		addBuiltin(new VectorP());
 		addBuiltin(new VectorRef());
 		addBuiltin(new VectorSet());
+		addBuiltin(new ZeroP());
+	}
+
+	// Builtins that refer to this environment
+	private void addEnvironmentBuiltins() throws SchemeException {
+		addBuiltin(new CharReadyP(this));
+		addBuiltin(new CurrentInputPort(this));
+		addBuiltin(new CurrentOutputPort(this));
+		addBuiltin(new Display(this));
+		addBuiltin(new InteractionEnvironment(this));
+		addBuiltin(new PeekChar(this));
+		addBuiltin(new Read(this));
+		addBuiltin(new ReadChar(this));
+		addBuiltin(new SchemeReportEnvironment(this));
+		addBuiltin(new SysSetCurrentInputPort(this));
+		addBuiltin(new SysSetCurrentOutputPort(this));
 		addBuiltin(new Write(this));
 		addBuiltin(new WriteChar(this));
-		addBuiltin(new ZeroP());
 	}
 
 	private void addBuiltin(Builtin builtin) throws SchemeException {
 		final Symbol builtinSymbol = Symbol.fromString(builtin.getName());
-		if (_values.containsKey(builtinSymbol))
+		if (isDefined(builtinSymbol))
 			throw new SchemeException("Internal error: Builtin '"
 					+ builtin.getName() + "' is being defined twice!");
 		define(builtinSymbol, builtin);
@@ -307,7 +500,6 @@ public final class Environment extends SchemeObject {
 			+ "(define (##last lst) (##car (##last-pair lst)))"
 			+ "(define (##dotted-list? lst) (if (##null? lst) #f (if (##pair? lst) (##dotted-list? (##cdr lst)) #t)))"
 			+ "(define ##drop ##list-tail)"
-			+ "(define (##filter f lst) (define (iter l acc) (if (##null? l) (##reverse acc) (if (f (##car l)) (iter (##cdr l) (##cons (##car l) acc)) (iter (##cdr l) acc)))) (iter lst '()))"
 			+ "(define (##range from to) (define (iter t acc) (if (##> from t) acc (iter (##- t 1) (##cons t acc)))) (iter to '()))"
 			+ "(define (##find-tail f lst) (if (##null? lst) #f (if (f (##car lst)) lst (##find-tail f (##cdr lst)))))"
 			+ "(define (##find f lst) (if (##null? lst) #f (if (f (##car lst)) (##car lst) (##find f (##cdr lst)))))"
@@ -325,6 +517,14 @@ public final class Environment extends SchemeObject {
 			+ "(defmacro while (exp . body) (##cons 'do (##cons '() (##cons `((##not ,exp) 'undefined) body))))"
 			+ "(define (##id x) x)";
 
+	private final static String _higherOrderProceduresScript = ""
+			+ "(define (##map f . lists) (define (iter acc ls) (if (##any ##null? ls) (##reverse acc) (iter (##cons (##apply f (##map1 ##car ls)) acc) (##map1 ##cdr ls)))) (iter '() lists))"
+			+ "(define (##for-each f lst) (##fold (lambda (i acc) (f i) 'undefined) 'undefined lst))"
+			+ "(define (##fold f acc lst) (if (##null? lst) acc (##fold f (f (##car lst) acc) (##cdr lst))))"
+			+ "(define (##filter f lst) (define (iter l acc) (if (##null? l) (##reverse acc) (if (f (##car l)) (iter (##cdr l) (##cons (##car l) acc)) (iter (##cdr l) acc)))) (iter lst '()))"
+			+ "(define (##any f lst) (if (##null? lst) #f (if (f (##car lst)) #t (##any f (##cdr lst)))))"
+			+ "(define (##every f lst) (if (##null? lst) #t (if (f (##car lst)) (##every f (##cdr lst)) #f)))";
+
 	private final static String _reportInitScript = ""
 			+ "(define (##newline . args) (if (##null? args) (##display \"\\n\") (##display \"\\n\" (##car args))))"
 			+ "(define ##complex? ##number?)"
@@ -362,19 +562,13 @@ public final class Environment extends SchemeObject {
 			+ "(define (##abs x) (if (##positive? x) x (##- 0 x)))"
 			+ "(define (##modulo a b) (define (sgn x) (if (##>= x 0) 1 -1)) (if (##= (sgn a) (sgn b)) (##remainder a b) (##+ b (##remainder a b))))"
 			+ "(define (##not x) (if x #f #t))"
-			+ "(define (##fold f acc lst) (if (##null? lst) acc (##fold f (f (##car lst) acc) (##cdr lst))))"
-			+ "(define (##reverse lst) (##fold ##cons '() lst))"
 			+ "(define (##map1 f lst) (##reverse (##fold (lambda (i acc) (##cons (f i) acc)) '() lst)))"
-			+ "(define (##for-each f lst) (##fold (lambda (i acc) (f i) 'undefined) 'undefined lst))"
 			+ "(define (##even? x) (##zero? (##remainder x 2)))"
 			+ "(define (##odd? x) (if (##even? x) #f #t))"
 			+ "(define (##gcd2 a b) (if (##zero? b) a (##gcd2 b (##remainder a b))))"
 			+ "(define (##lcm2 a b) (##/ (##* a b) (##gcd2 a b)))"
 			+ "(define (##gcd . args) (if (##null? args) 0 (##abs (##fold ##gcd2 (##car args) (##cdr args)))))"
 			+ "(define (##lcm . args) (if (##null? args) 1 (##abs (##fold ##lcm2 (##car args) (##cdr args)))))"
-			+ "(define (##every f lst) (if (##null? lst) #t (if (f (##car lst)) (##every f (##cdr lst)) #f)))"
-			+ "(define (##any f lst) (if (##null? lst) #f (if (f (##car lst)) #t (##any f (##cdr lst)))))"
-			+ "(define (##length lst) (define (iter l acc) (if (##null? l) acc (iter (##cdr l) (##+ acc 1)))) (iter lst 0))"
 			+ "(define (##char=? a b) (##= (##char->integer a) (##char->integer b)))"
 			+ "(define (##char>? a b) (##> (##char->integer a) (##char->integer b)))"
 			+ "(define (##char<? a b) (##< (##char->integer a) (##char->integer b)))"
@@ -392,24 +586,7 @@ public final class Environment extends SchemeObject {
 			+ "(define (##char-alphabetic? x) (if (##char-upper-case? x) #t (##char-lower-case? x)))"
 			+ "(define (##char-numeric? x) (if (##>= (##char->integer x) 48) (##<= (##char->integer x) 57) #f))"
 			+ "(define (##char-whitespace? x) (if (##char=? x #\\space) #t (if (##char=? x #\\tab) #t (if (##char=? x #\\newline) #t (##char=? x #\\cr)))))"
-			+ "(define (##append . lists) (define (add-list lst acc) (if (##null? lst) acc (add-list (##cdr lst) (##cons (##car lst) acc)))) (define (iter rest-lists acc) (if (##null? rest-lists) acc (iter (##cdr rest-lists) (add-list (##car rest-lists) acc)))) (if (##null? lists) lists (let* ((reversed (##reverse lists)) (last-list (##car reversed)) (rest-lists (##map1 ##reverse (##cdr reversed)))) (iter rest-lists last-list))))"
-			+ "(define (##string=? a b) (define (check i max) (if (##>= i max) #t (if (##char=? (##string-ref a i) (##string-ref b i)) (check (##+ i 1) max) #f))) (if (##= (##string-length a) (##string-length b)) (check 0 (##string-length a)) #f))"
-			+ "(define (##string-ci=? a b) (define (check i max) (if (##>= i max) #t (if (##char-ci=? (##string-ref a i) (##string-ref b i)) (check (##+ i 1) max) #f))) (if (##= (##string-length a) (##string-length b)) (check 0 (##string-length a)) #f))"
-			+ "(define (##string>? a b) (define (check i max-a max-b) (if (##>= i max-a) #f (if (##>= i max-b) #t (if (##char=? (##string-ref a i) (##string-ref b i)) (check (##+ i 1) max-a max-b) (##char>? (##string-ref a i) (##string-ref b i)))))) (check 0 (##string-length a) (##string-length b)))"
-			+ "(define (##string-ci>? a b) (define (check i max-a max-b) (if (##>= i max-a) #f (if (##>= i max-b) #t (if (##char-ci=? (##string-ref a i) (##string-ref b i)) (check (##+ i 1) max-a max-b) (##char-ci>? (##string-ref a i) (##string-ref b i)))))) (check 0 (##string-length a) (##string-length b)))"
-			+ "(define (##string<? a b) (if (##string=? a b) #f (##not (##string>? a b))))"
-			+ "(define (##string-ci<? a b) (if (##string-ci=? a b) #f (##not (##string-ci>? a b))))"
-			+ "(define (##string>=? a b) (##not (##string<? a b)))"
-			+ "(define (##string<=? a b) (##not (##string>? a b)))"
-			+ "(define (##string-ci>=? a b) (##not (##string-ci<? a b)))"
-			+ "(define (##string-ci<=? a b) (##not (##string-ci>? a b)))"
-			+ "(define (##string->list x) (define (iter i max acc) (if (##>= i max) (##reverse acc) (iter (##+ i 1) max (##cons (##string-ref x i) acc)))) (iter 0 (##string-length x) '()))"
-			+ "(define (##list->string lst) (define (iter i l acc) (if (##null? l) acc (begin (##string-set! acc i (##car l)) (iter (##+ i 1) (##cdr l) acc)))) (iter 0 lst (##make-string (##length lst))))"
 			+ "(define (##string . values) (##list->string values))"
-			+ "(define (##substring s start end) (##list->string (take (##list-tail (##string->list s) start) (##- end start))))"
-			+ "(define (##string-append . strings) (##list->string (##fold ##append '() (##map1 ##string->list (##reverse strings)))))"
-			+ "(define (##string-copy s) (##list->string (##string->list s)))"
-			+ "(define (##string-fill! s c) (define (iter i max) (if (##>= i max) s (begin (##string-set! s i c) (iter (##+ i 1) max)))) (iter 0 (##string-length s)))"
 			+ "(defmacro letrec (lst . forms) (##cons (##append '(lambda) (##list (##map1 ##car lst)) (##map1 (lambda (i) (##list 'set! (##car i) (##cadr i))) lst) forms) (##map1 (lambda (x) #f) lst)))"
 			+ "(defmacro let data (if (##symbol? (##car data)) (##cons 'letrec (##cons (##list (##cons (##car data) (##list (##cons 'lambda (##cons (##map1 ##car (##cadr data)) (##cddr data)))))) (##list (##cons (##car data) (##map1 ##cadr (##cadr data)))))) (##cons (##cons 'lambda (##cons (##map1 ##car (##car data)) (##cdr data))) (##map1 ##cadr (##car data)))))"
 			+ "(defmacro let* (lst . forms) (if (##null? lst) (##cons 'begin forms) (##list 'let (##list (##car lst)) (##cons 'let* (##cons (##cdr lst) forms)))))"
@@ -422,16 +599,7 @@ public final class Environment extends SchemeObject {
 			+ "(define (##min . args) (define (min-of-two a b) (if (##< a b) a b)) (let ((l (##length args))) (cond ((##zero? l) (##error \"min called without parameters\")) ((##= 1 l) (##car args)) (else (let ((ret (##fold min-of-two (##car args) (##cdr args)))) (if (##any ##inexact? args) (##exact->inexact ret) ret))))))"
 			+ "(define (##max . args) (define (max-of-two a b) (if (##> a b) a b)) (let ((l (##length args))) (cond ((##zero? l) (##error \"max called without parameters\")) ((##= 1 l) (##car args)) (else (let ((ret (##fold max-of-two (##car args) (##cdr args)))) (if (##any ##inexact? args) (##exact->inexact ret) ret))))))"
 			+ "(defmacro or args (if (##null? (##cdr args)) (##car args) (##list 'aif (##car args) 'it (##cons 'or (##cdr args)))))"
-			+ "(define (##eqv? a b) (define (bool=? a b) (if a b (##not b))) (cond ((##eq? a b) #t) ((and (##number? a) (##number? b)) (and (bool=? (##exact? a) (##exact? b)) (##= a b))) ((and (##char? a) (##char? b)) (##char=? a b)) ((and (##boolean? a) (##boolean? b)) (bool=? a b)) (else #f)))"
-			+ "(define (##equal? a b) (cond ((##eqv? a b) #t) ((and (##string? a) (##string? b)) (##string=? a b)) ((and (##pair? a) (##pair? b)) (if (##equal? (##car a) (##car b)) (##equal? (##cdr a) (##cdr b)) #f)) ((and (##vector? a) (##vector? b)) (##equal? (##vector->list a) (##vector->list b))) (else #f)))"
-			+ "(define (##memq obj lst) (if (##pair? lst) (if (##eq? obj (##car lst)) lst (##memq obj (##cdr lst))) #f))"
-			+ "(define (##memv obj lst) (if (##pair? lst) (if (##eqv? obj (##car lst)) lst (##memv obj (##cdr lst))) #f))"
-			+ "(define (##member obj lst) (if (##pair? lst) (if (##equal? obj (##car lst)) lst (##member obj (##cdr lst))) #f))"
-			+ "(define (##assq obj lst) (if (##pair? lst) (if (##eq? obj (##caar lst)) (##car lst) (##assq obj (##cdr lst))) #f))"
-			+ "(define (##assv obj lst) (if (##pair? lst) (if (##eqv? obj (##caar lst)) (##car lst) (##assv obj (##cdr lst))) #f))"
-			+ "(define (##assoc obj lst) (if (##pair? lst) (if (##equal? obj (##caar lst)) (##car lst) (##assoc obj (##cdr lst))) #f))"
 			+ "(defmacro case (exp . clauses) (define (make-thunk-symbol index) (##string->symbol (##string-append \"thunk\" (##number->string index)))) (define (expand-case-thunks c index) (if (##null? c) '() (##cons (##list (make-thunk-symbol index) (##cons 'lambda (##cons '() (##cdar c)))) (expand-case-thunks (##cdr c) (##+ index 1))))) (define (expand-case-cond c index) (if (##null? c) '() (##cons (##list (if (##eq? (##caar c) 'else) 'else (##list '##memv 'key (##list 'quote (##caar c)))) (##list (make-thunk-symbol index))) (expand-case-cond (##cdr c) (##+ index 1))))) (##list 'let (##cons (##list 'key exp) (expand-case-thunks clauses 1)) (##cons 'cond (expand-case-cond clauses 1))))"
-			+ "(define ##gensym (let ((sym 0)) (lambda () (set! sym (##+ sym 1)) (##string->symbol (##string-append \"##gensym##\" (##number->string sym))))))"
 			+ "(defmacro do (vars pred . body) (define (caddr-or-car x) (if (##null? (##cddr x)) (##car x) (##caddr x))) (let ((symbol (##gensym))) `(let ((,symbol '())) (set! ,symbol (lambda ,(##map1 ##car vars) (if ,(##car pred) ,(##cadr pred) ,(##cons 'begin (##append body (##list (##cons symbol (##map1 caddr-or-car vars)))))))) ,(##cons symbol (##map1 ##cadr vars))))) "
 			+ "(define (##vector-fill! v obj) (define (iter i max) (if (##>= i max) v (begin (##vector-set! v i obj) (iter (##+ i 1) max)))) (iter 0 (##vector-length v)))"
 			+ "(define (##list->vector lst) (define (iter v i vals) (##vector-set! v i (##car vals)) (if (##zero? i) v (iter v (##- i 1) (##cdr vals)))) (let ((v (##make-vector (##length lst)))) (if (##zero? (##vector-length v)) v (iter v (##- (##vector-length v) 1) (##reverse lst)))))"
@@ -452,14 +620,10 @@ public final class Environment extends SchemeObject {
 			+ "(define (##expt a b) (cond ((##zero? b) 1) ((##= 1 b) a) ((##not (##integer? b)) (sys:expt a b)) ((##negative? b) (##/ (##expt a (##- b)))) ((##even? b) (##square (##expt a (##quotient b 2)))) (else (##* a (##expt a (##- b 1))))))"
 			+ "(define ##values ##list)"
 			+ "(define (##call-with-values generator consumer) (let ((v (generator))) (if (##list? v) (##apply consumer v) (consumer v))))"
-			+ "(define (##call-with-current-continuation f) #f)"
-			// (sys:call/cc f))"
-			+ "(define (##call/cc f) #f)"// (sys:call/cc f))"
+			+ "(define (##call-with-current-continuation f) (sys:call/cc f))"
+			+ "(define (##call/cc f) (sys:call/cc f))"
 			+ "(define (##error . args) (sys:error args))"
-			+ "(define (##port? x) (if (##input-port? x) #t (##output-port? x)))"
-			+ "(define (##map f . lists) (define (iter acc ls) (if (##any ##null? ls) (##reverse acc) (iter (##cons (##apply f (##map1 ##car ls)) acc) (##map1 ##cdr ls)))) (iter '() lists))"
-			+ "(define (##list-tail lst k) (if (##zero? k) lst (##list-tail (##cdr lst) (##- k 1))))"
-			+ "(define (##list-ref lst k) (##car (##list-tail lst k)))";
+			+ "(define (##port? x) (if (##input-port? x) #t (##output-port? x)))";
 
 	@Override
 	public Object toJavaObject() throws SchemeException {
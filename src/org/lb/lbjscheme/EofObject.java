@@ -17,6 +17,8 @@
 package org.lb.lbjscheme;
 
 public final class EofObject extends SchemeObject {
+	private static final long serialVersionUID = 1L;
+
 	private EofObject() {
 	}
 
@@ -26,6 +28,10 @@ public final class EofObject extends SchemeObject {
 		return _instance;
 	}
 
+	private Object readResolve() {
+		return _instance;
+	}
+
 	public boolean isEofObject() {
 		return true;
 	}
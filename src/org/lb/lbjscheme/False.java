@@ -17,6 +17,8 @@
 package org.lb.lbjscheme;
 
 public final class False extends SchemeObject {
+	private static final long serialVersionUID = 1L;
+
 	private False() {
 	}
 
@@ -26,6 +28,10 @@ public final class False extends SchemeObject {
 		return _instance;
 	}
 
+	private Object readResolve() {
+		return _instance;
+	}
+
 	@Override
 	public boolean isBool() {
 		return true;
@@ -16,14 +16,38 @@
 
 package org.lb.lbjscheme;
 
+import java.math.BigInteger;
+
 public final class Fixnum extends SchemeNumber {
-	private final int _value;
+	private static final long serialVersionUID = 1L;
+
+	private static final int _cacheLow = -1024;
+	private static final int _cacheHigh = 1024;
+	private static final Fixnum[] _cache = new Fixnum[_cacheHigh - _cacheLow
+			+ 1];
+
+	static {
+		for (int i = 0; i < _cache.length; ++i)
+			_cache[i] = new Fixnum(i + _cacheLow);
+	}
+
+	private final long _value;
 
-	public Fixnum(int value) {
+	private Fixnum(long value) {
 		_value = value;
 	}
 
-	public int getValue() {
+	public static Fixnum valueOf(long value) {
+		if (value >= _cacheLow && value <= _cacheHigh)
+			return _cache[(int) value - _cacheLow];
+		return new Fixnum(value);
+	}
+
+	private Object readResolve() {
+		return valueOf(_value);
+	}
+
+	public long getValue() {
 		return _value;
 	}
 
@@ -34,7 +58,7 @@ public final class Fixnum extends SchemeNumber {
 
 	@Override
 	public String toString(boolean forDisplay, int base) {
-		return Integer.toString(_value, base);
+		return Long.toString(_value, base);
 	}
 
 	@Override
@@ -43,28 +67,42 @@ public final class Fixnum extends SchemeNumber {
 	}
 
 	public static Fixnum valueOf(String value, int base) {
-		return new Fixnum(Integer.parseInt(value, base));
-	}
-
-	public static SchemeNumber valueOf(long value) {
-		if (value > Integer.MAX_VALUE || value < Integer.MIN_VALUE)
-			return new Bignum(value);
-		return new Fixnum((int) value);
+		return valueOf(Long.parseLong(value, base));
 	}
 
+	// The results of the arithmetic operations are only promoted to Bignums
+	// if they overflow a long
 	@Override
 	protected SchemeNumber doAdd(SchemeNumber other) {
-		return valueOf((long) _value + (long) ((Fixnum) other)._value);
+		final long o = ((Fixnum) other)._value;
+		try {
+			return valueOf(Math.addExact(_value, o));
+		} catch (ArithmeticException ex) {
+			return Bignum.valueOf(BigInteger.valueOf(_value).add(
+					BigInteger.valueOf(o)));
+		}
 	}
 
 	@Override
 	public SchemeNumber doSub(SchemeNumber other) {
-		return valueOf((long) _value - (long) ((Fixnum) other)._value);
+		final long o = ((Fixnum) other)._value;
+		try {
+			return valueOf(Math.subtractExact(_value, o));
+		} catch (ArithmeticException ex) {
+			return Bignum.valueOf(BigInteger.valueOf(_value).subtract(
+					BigInteger.valueOf(o)));
+		}
 	}
 
 	@Override
 	public SchemeNumber doMul(SchemeNumber other) {
-		return valueOf((long) _value * (long) ((Fixnum) other)._value);
+		final long o = ((Fixnum) other)._value;
+		try {
+			return valueOf(Math.multiplyExact(_value, o));
+		} catch (ArithmeticException ex) {
+			return Bignum.valueOf(BigInteger.valueOf(_value).multiply(
+					BigInteger.valueOf(o)));
+		}
 	}
 
 	@Override
@@ -74,12 +112,15 @@ public final class Fixnum extends SchemeNumber {
 
 	@Override
 	public SchemeNumber doIdiv(SchemeNumber other) {
-		return valueOf((long) _value / (long) ((Fixnum) other)._value);
+		final long o = ((Fixnum) other)._value;
+		if (_value == Long.MIN_VALUE && o == -1)
+			return new Bignum(BigInteger.valueOf(_value).negate());
+		return valueOf(_value / o);
 	}
 
 	@Override
 	public SchemeNumber doMod(SchemeNumber other) {
-		return valueOf((long) _value % (long) ((Fixnum) other)._value);
+		return valueOf(_value % ((Fixnum) other)._value);
 	}
 
 	@Override
@@ -146,6 +187,8 @@ public final class Fixnum extends SchemeNumber {
 
 	@Override
 	public Object toJavaObject() throws SchemeException {
+		if (_value >= Integer.MIN_VALUE && _value <= Integer.MAX_VALUE)
+			return (int) _value;
 		return _value;
 	}
 }
@@ -0,0 +1,99 @@
+// lbjScheme
+// An experimental Scheme subset interpreter in Java, based on SchemeNet.cs
+// Copyright (c) 2013, Leif Bruder <leifbruder@gmail.com>
+//
+// Permission to use, copy, modify, and/or distribute this software for any
+// purpose with or without fee is hereby granted, provided that the above
+// copyright notice and this permission notice appear in all copies.
+//
+// THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+// WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+// MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+// ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+// WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+// ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+// OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+
+package org.lb.lbjscheme;
+
+import java.io.Serializable;
+import java.util.*;
+
+// Activation record of an analyzed or compiled lambda. Slots are assigned by
+// the Analyzer: parameters first, then internal defines. Variables that are
+// not bound lexically live in the top-level Environment at the root.
+public final class Frame implements Serializable {
+	private static final long serialVersionUID = 1L;
+
+	private final Frame _outer;
+	private final Environment _environment;
+	private final SchemeObject[] _slots;
+
+	public Frame(Environment environment) {
+		_outer = null;
+		_environment = environment;
+		_slots = new SchemeObject[0];
+	}
+
+	public Frame(Frame outer, int size) {
+		_outer = outer;
+		_environment = outer._environment;
+		_slots = new SchemeObject[size];
+	}
+
+	public Environment getEnvironment() {
+		return _environment;
+	}
+
+	public Frame getOuter(int depth) {
+		Frame ret = this;
+		for (int i = 0; i < depth; ++i)
+			ret = ret._outer;
+		return ret;
+	}
+
+	public SchemeObject get(int slot, Symbol name) throws SchemeException {
+		final SchemeObject ret = _slots[slot];
+		if (ret == null)
+			throw new SchemeException("Unknown symbol " + name.toString());
+		return ret;
+	}
+
+	public void define(int slot, SchemeObject value) {
+		_slots[slot] = value;
+	}
+
+	public void set(int slot, Symbol name, SchemeObject value)
+			throws SchemeException {
+		if (_slots[slot] == null)
+			throw new SchemeException("Unknown symbol " + name.toString());
+		_slots[slot] = value;
+	}
+
+	// Unbinds the slots from firstSlot on, e.g. the internal defines before a
+	// loop runs the body of its lambda again in the same frame
+	public void clear(int firstSlot) {
+		Arrays.fill(_slots, firstSlot, _slots.length, null);
+	}
+
+	public void expand(int parameterCount, boolean hasRestParameter,
+			List<SchemeObject> parameters) throws SchemeException {
+		if (hasRestParameter) {
+			final int required = parameterCount - 1;
+			if (required > parameters.size())
+				throw new SchemeException(
+						"Invalid parameter count: Expected at least "
+								+ required + ", got " + parameters.size());
+			for (int i = 0; i < required; ++i)
+				_slots[i] = parameters.get(i);
+			_slots[required] = Pair.fromIterable(parameters.subList(required,
+					parameters.size()));
+		} else {
+			if (parameterCount != parameters.size())
+				throw new SchemeException("Invalid parameter count: Expected "
+						+ parameterCount + ", got " + parameters.size());
+			for (int i = 0; i < parameterCount; ++i)
+				_slots[i] = parameters.get(i);
+		}
+	}
+}
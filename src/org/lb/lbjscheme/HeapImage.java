@@ -0,0 +1,191 @@
+// lbjScheme
+// An experimental Scheme subset interpreter in Java, based on SchemeNet.cs
+// Copyright (c) 2013, Leif Bruder <leifbruder@gmail.com>
+//
+// Permission to use, copy, modify, and/or distribute this software for any
+// purpose with or without fee is hereby granted, provided that the above
+// copyright notice and this permission notice appear in all copies.
+//
+// THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+// WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+// MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+// ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+// WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+// ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+// OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+
+package org.lb.lbjscheme;
+
+import java.io.*;
+import java.util.*;
+
+// Serialized interaction environment, written at build time, so that the
+// base environment need not be created by evaluating the init scripts. The
+// lambdas of the image carry their analyzed and optimized forms for the
+// AnalyzingEvaluator.
+//
+// Builtins are written by name and created anew when the image is restored,
+// as are the global environment and its bindings, which the builtins and
+// closures refer to. The rest of the graph is plain Java serialization.
+//
+// An image is only used if it was written from the same init scripts and
+// with the same format version. The serialized classes declare their
+// serialVersionUID, so that it need not be computed when the image is read:
+// Increment the format version whenever the fields of one of them change.
+// Otherwise the scripts are evaluated as before.
+public final class HeapImage {
+	private static final String _resourceName = "init.image";
+	private static final String _magic = "lbjScheme heap image";
+	private static final int _formatVersion = 2;
+
+	private HeapImage() {
+	}
+
+	public static void main(String[] args) throws Exception {
+		if (args.length != 1) {
+			System.out.println("Usage: HeapImage <image file>");
+			return;
+		}
+		final OutputStream out = new FileOutputStream(args[0]);
+		try {
+			write(Environment.evalInteractionEnvironment(null), out);
+		} finally {
+			out.close();
+		}
+	}
+
+	public static void write(Environment global, OutputStream out)
+			throws SchemeException, IOException {
+		AnalyzingEvaluator.analyzeLambdas(global);
+		final Map<Symbol, SchemeObject> values = new HashMap<>();
+		for (Symbol sym : global.getDefinedSymbols())
+			values.put(sym, global.get(sym));
+		final ObjectOutputStream o = new ImageOutputStream(
+				new BufferedOutputStream(out), global);
+		o.writeUTF(_magic);
+		o.writeInt(_formatVersion);
+		o.writeInt(Environment.getInteractionInitScript().hashCode());
+		o.writeObject(values);
+		o.flush();
+	}
+
+	// Returns null if the image is stale
+	public static Environment read(InputStream in) throws IOException {
+		final Environment global = new Environment();
+		try {
+			global.addBuiltins();
+		} catch (SchemeException ex) {
+			throw new RuntimeException(ex);
+		}
+
+		final ObjectInputStream i = new ImageInputStream(
+				new BufferedInputStream(in), global);
+		if (!i.readUTF().equals(_magic) || i.readInt() != _formatVersion
+				|| i.readInt() != Environment.getInteractionInitScript()
+						.hashCode()) return null;
+		final Map<?, ?> values;
+		try {
+			values = (Map<?, ?>) i.readObject();
+			for (Map.Entry<?, ?> e : values.entrySet())
+				global.define((Symbol) e.getKey(), (SchemeObject) e.getValue());
+		} catch (InvalidClassException | ClassNotFoundException
+				| SchemeException ex) {
+			return null;
+		}
+		global.lock();
+		return global;
+	}
+
+	private static final class BuiltinReference implements Serializable {
+		private static final long serialVersionUID = 1L;
+
+		private final String _name;
+
+		public BuiltinReference(String name) {
+			_name = name;
+		}
+	}
+
+	private static final class BindingReference implements Serializable {
+		private static final long serialVersionUID = 1L;
+
+		private final Symbol _name;
+
+		public BindingReference(Symbol name) {
+			_name = name;
+		}
+	}
+
+	private static final class GlobalReference implements Serializable {
+		private static final long serialVersionUID = 1L;
+	}
+
+	private static final class ImageOutputStream extends ObjectOutputStream {
+		private final Environment _global;
+
+		public ImageOutputStream(OutputStream out, Environment global)
+				throws IOException {
+			super(out);
+			_global = global;
+			enableReplaceObject(true);
+		}
+
+		@Override
+		protected Object replaceObject(Object obj) {
+			if (obj == _global) return new GlobalReference();
+			if (obj instanceof Builtin)
+				return new BuiltinReference(((Builtin) obj).getName());
+			if (obj instanceof Binding
+					&& _global.getBinding(((Binding) obj).getName()) == obj)
+				return new BindingReference(((Binding) obj).getName());
+			return obj;
+		}
+	}
+
+	private static final class ImageInputStream extends ObjectInputStream {
+		private final Environment _global;
+
+		public ImageInputStream(InputStream in, Environment global)
+				throws IOException {
+			super(in);
+			_global = global;
+			enableResolveObject(true);
+		}
+
+		@Override
+		protected Object resolveObject(Object obj) throws IOException {
+			if (obj instanceof GlobalReference) return _global;
+			if (obj instanceof BindingReference)
+				return _global.getBinding(((BindingReference) obj)._name);
+			if (obj instanceof BuiltinReference) {
+				final Symbol name = Symbol
+						.fromString(((BuiltinReference) obj)._name);
+				try {
+					if (_global.get(name) instanceof Builtin)
+						return _global.get(name);
+				} catch (SchemeException ex) {
+					// Reported below
+				}
+				throw new InvalidObjectException("Unknown builtin " + name);
+			}
+			return obj;
+		}
+	}
+
+	// Restores the image stored next to this class, or returns null if there
+	// is none or it is stale
+	static Environment restoreInteractionEnvironment() {
+		final InputStream in = HeapImage.class
+				.getResourceAsStream(_resourceName);
+		if (in == null) return null;
+		try {
+			try {
+				return read(in);
+			} finally {
+				in.close();
+			}
+		} catch (IOException ex) {
+			return null; // Treated like a stale image
+		}
+	}
+}
@@ -19,6 +19,8 @@ package org.lb.lbjscheme;
 import java.io.IOException;
 
 public final class InputPort extends SchemeObject {
+	private static final long serialVersionUID = 1L;
+
 	private final java.io.Reader _reader;
 	private int _nextChar = -2;
 
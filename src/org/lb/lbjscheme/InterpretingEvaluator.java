@@ -19,7 +19,8 @@ package org.lb.lbjscheme;
 import java.io.*;
 import java.util.*;
 
-public final class InterpretingEvaluator extends Evaluator {
+public final class InterpretingEvaluator extends Evaluator implements
+		ProcedureCaller {
 	private static final Symbol _undefinedSymbol = Symbol
 			.fromString("undefined");
 	private static final Symbol _quoteSymbol = Symbol.fromString("quote");
@@ -91,7 +92,7 @@ public final class InterpretingEvaluator extends Evaluator {
 							.toJavaList();
 
 					if (procedure instanceof Builtin)
-						return ((Builtin) procedure).apply(parameters);
+						return ((Builtin) procedure).apply(this, parameters);
 
 					if (procedure instanceof Lambda) {
 						final Lambda l = (Lambda) procedure;
@@ -160,7 +161,7 @@ public final class InterpretingEvaluator extends Evaluator {
 					parameters.add(eval(form.get(i), env));
 
 				if (procedure instanceof Builtin)
-					return ((Builtin) procedure).apply(parameters);
+					return ((Builtin) procedure).apply(this, parameters);
 
 				if (procedure instanceof Lambda) {
 					final Lambda l = (Lambda) procedure;
@@ -179,6 +180,23 @@ public final class InterpretingEvaluator extends Evaluator {
 		}
 	}
 
+	@Override
+	public SchemeObject call(SchemeObject procedure,
+			List<SchemeObject> parameters) throws SchemeException {
+		if (procedure instanceof Builtin)
+			return ((Builtin) procedure).apply(this, parameters);
+
+		if (procedure instanceof Lambda) {
+			final Lambda l = (Lambda) procedure;
+			final Environment env = new Environment(l.getCaptured());
+			env.expand(l.getParameterNames(), l.hasRestParameter(), parameters);
+			return eval(new Pair(_beginSymbol, l.getForms()), env);
+		}
+
+		throw new SchemeException("Don't know how to call object of type "
+				+ procedure.getClass());
+	}
+
 	private static SchemeObject makeLambda(SchemeObject form, Environment env)
 			throws SchemeException {
 		if (!(form instanceof Pair))
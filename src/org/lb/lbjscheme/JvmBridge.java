@@ -21,6 +21,8 @@ import java.math.BigInteger;
 import java.util.*;
 
 public final class JvmBridge extends SchemeObject {
+	private static final long serialVersionUID = 1L;
+
 	private final Object _obj;
 
 	public JvmBridge(Object obj) {
@@ -122,6 +124,8 @@ public final class JvmBridge extends SchemeObject {
 			// Argh.
 			if (parameterTypes[i] == Integer.class)
 				parameterTypes[i] = int.class;
+			if (parameterTypes[i] == Long.class)
+				parameterTypes[i] = long.class;
 			if (parameterTypes[i] == Double.class)
 				parameterTypes[i] = double.class;
 			if (parameterTypes[i] == Boolean.class)
@@ -145,19 +149,19 @@ public final class JvmBridge extends SchemeObject {
 	}
 
 	public static SchemeObject fromJavaObject(char o) {
-		return new SchemeCharacter(o);
+		return SchemeCharacter.valueOf(o);
 	}
 
 	public static SchemeObject fromJavaObject(byte o) {
-		return new Fixnum(o);
+		return Fixnum.valueOf(o);
 	}
 
 	public static SchemeObject fromJavaObject(short o) {
-		return new Fixnum(o);
+		return Fixnum.valueOf(o);
 	}
 
 	public static SchemeObject fromJavaObject(int o) {
-		return new Fixnum(o);
+		return Fixnum.valueOf(o);
 	}
 
 	public static SchemeObject fromJavaObject(long o) {
@@ -173,7 +177,7 @@ public final class JvmBridge extends SchemeObject {
 	}
 
 	public static SchemeObject fromJavaObject(BigInteger o) {
-		return new Bignum(o);
+		return Bignum.valueOf(o);
 	}
 
 	public static SchemeObject fromJavaObject(String o) {
@@ -0,0 +1,98 @@
+// lbjScheme
+// An experimental Scheme subset interpreter in Java, based on SchemeNet.cs
+// Copyright (c) 2013, Leif Bruder <leifbruder@gmail.com>
+//
+// Permission to use, copy, modify, and/or distribute this software for any
+// purpose with or without fee is hereby granted, provided that the above
+// copyright notice and this permission notice appear in all copies.
+//
+// THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+// WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+// MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+// ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+// WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+// ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+// OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+
+package org.lb.lbjscheme;
+
+import java.io.*;
+import java.util.List;
+import org.lb.lbjscheme.ast.LambdaForm;
+import org.lb.lbjscheme.jvm.*;
+
+// Compiles every top level form and lambda into JVM classes via the
+// JvmCompiler, so that Scheme procedures run as JIT compiled Java methods.
+// Calls run on the Java stack, so continuations can only escape.
+public final class JvmCompilingEvaluator extends Evaluator implements
+		ProcedureCaller {
+	private final Analyzer _analyzer;
+	private final SyntaxTreeOptimizer _optimizer;
+
+	public JvmCompilingEvaluator(final Environment global)
+			throws SchemeException {
+		this(global, true);
+	}
+
+	public JvmCompilingEvaluator(final Environment global,
+			final boolean optimize) throws SchemeException {
+		super(global);
+		_analyzer = new Analyzer();
+		_optimizer = new SyntaxTreeOptimizer();
+		_optimizer.setEnabled(optimize);
+		compileBuiltinLambdas();
+	}
+
+	private void compileBuiltinLambdas() throws SchemeException {
+		final Environment global = getGlobalEnvironment();
+		global.unlock();
+		for (final Symbol sym : global.getDefinedSymbols())
+			if (global.get(sym) instanceof Lambda)
+				global.set(sym, JvmCompiler.compileLambdaOnFirstCall(
+						analyzeLambda((Lambda) global.get(sym)),
+						new Frame(((Lambda) global.get(sym)).getCaptured())));
+		global.lock();
+	}
+
+	public JvmProcedure compileLambda(Lambda l) throws SchemeException {
+		return JvmCompiler.compileLambda(analyzeLambda(l),
+				new Frame(l.getCaptured()));
+	}
+
+	private LambdaForm analyzeLambda(Lambda l) throws SchemeException {
+		final LambdaForm ret = _optimizer.isEnabled() ? l.getAnalyzedForm()
+				: null;
+		if (ret != null) return ret;
+		return _optimizer.optimize(_analyzer.analyzeLambda(l.getName(),
+				l.getParameterNames(), l.hasRestParameter(), l.getForms()));
+	}
+
+	@Override
+	public SchemeObject call(SchemeObject procedure,
+			List<SchemeObject> parameters) throws SchemeException {
+		if (procedure instanceof Lambda)
+			procedure = compileLambda((Lambda) procedure);
+		return JvmRuntime.call(procedure,
+				parameters.toArray(new SchemeObject[parameters.size()]));
+	}
+
+	@Override
+	public SchemeObject eval(String commands) throws SchemeException {
+		final Reader r = new Reader(new InputPort(new StringReader(commands)));
+		SchemeObject ret = Symbol.fromString("undefined");
+		while (true) {
+			try {
+				ret = eval(r.read());
+			} catch (EOFException ex) {
+				return ret;
+			}
+		}
+	}
+
+	@Override
+	public SchemeObject eval(SchemeObject o, Environment env)
+			throws SchemeException {
+		return JvmTailCall.trampoline(JvmCompiler.compile(
+				_optimizer.optimize(_analyzer.analyze(o)), env).call0());
+	}
+}
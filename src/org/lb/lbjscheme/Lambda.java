@@ -17,14 +17,20 @@
 package org.lb.lbjscheme;
 
 import java.util.List;
+import org.lb.lbjscheme.ast.LambdaForm;
 
 public final class Lambda extends SchemeObject {
+	private static final long serialVersionUID = 1L;
+
 	private final String _name;
 	private final List<Symbol> _parameterNames;
 	private final boolean _hasRestParameter;
 	private final Pair _forms;
 	private final Environment _captured;
 
+	// The analyzed and optimized forms, if stored in a HeapImage
+	private LambdaForm _analyzedForm;
+
 	public Lambda(String name, List<Symbol> parameterNames,
 			boolean hasRestParameter, Pair forms, Environment captured) {
 		_name = name;
@@ -54,6 +60,22 @@ public final class Lambda extends SchemeObject {
 		return _captured;
 	}
 
+	// The same procedure in another environment
+	public Lambda withCaptured(Environment captured) {
+		final Lambda ret = new Lambda(_name, _parameterNames,
+				_hasRestParameter, _forms, captured);
+		ret._analyzedForm = _analyzedForm;
+		return ret;
+	}
+
+	public LambdaForm getAnalyzedForm() {
+		return _analyzedForm;
+	}
+
+	public void setAnalyzedForm(LambdaForm value) {
+		_analyzedForm = value;
+	}
+
 	@Override
 	public boolean isProcedure() {
 		return true;
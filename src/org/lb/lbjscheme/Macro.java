@@ -19,11 +19,14 @@ package org.lb.lbjscheme;
 import java.util.List;
 
 public final class Macro extends SchemeObject {
+	private static final long serialVersionUID = 1L;
+
 	private final String _name;
 	private final List<Symbol> _parameterNames;
 	private final boolean _hasRestParameter;
 	private final Pair _forms;
 	private final Environment _captured;
+	private transient AnalyzedLambda _transformer;
 
 	public Macro(String name, List<Symbol> parameterNames,
 			boolean hasRestParameter, Pair forms, Environment captured) {
@@ -54,6 +57,15 @@ public final class Macro extends SchemeObject {
 		return _captured;
 	}
 
+	// The analyzed forms, once the MacroExpander has run the macro
+	public AnalyzedLambda getTransformer() {
+		return _transformer;
+	}
+
+	public void setTransformer(AnalyzedLambda transformer) {
+		_transformer = transformer;
+	}
+
 	@Override
 	public String toString(boolean forDisplay) {
 		return "<macro " + _name + ">";
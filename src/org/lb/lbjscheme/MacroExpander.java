@@ -0,0 +1,101 @@
+// lbjScheme
+// An experimental Scheme subset interpreter in Java, based on SchemeNet.cs
+// Copyright (c) 2013, Leif Bruder <leifbruder@gmail.com>
+//
+// Permission to use, copy, modify, and/or distribute this software for any
+// purpose with or without fee is hereby granted, provided that the above
+// copyright notice and this permission notice appear in all copies.
+//
+// THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+// WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+// MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+// ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+// WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+// ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+// OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+
+package org.lb.lbjscheme;
+
+import java.util.*;
+import org.lb.lbjscheme.ast.LambdaForm;
+
+// Runs macro transformers for the Analyzer. defmacro is evaluated by an
+// interpreter, which keeps the environment of the transformers. The forms of
+// a macro are analyzed the first time it is used and kept in the Macro; the
+// transformer then runs on an AnalyzingEvaluator, which analyzes the
+// procedures of that environment as they are called.
+//
+// Transformers using their own macro are interpreted, as analyzing them
+// would need the transformer that is being analyzed.
+public final class MacroExpander {
+	private final InterpretingEvaluator _interpreter;
+	private final Environment _macroEnvironment;
+	private final Analyzer _analyzer;
+	private final AnalyzingEvaluator _evaluator;
+	private final Set<Macro> _interpreted = Collections
+			.newSetFromMap(new IdentityHashMap<Macro, Boolean>());
+	private final Environment _builtinEnvironment;
+
+	public MacroExpander() throws SchemeException {
+		this(Environment.newInteractionEnvironment(null), Environment
+				.getBaseEnvironment());
+	}
+
+	// Expander for the macros of an environment, those defined in the
+	// builtin environment being the ones of the init script
+	MacroExpander(Environment macroEnvironment, Environment builtinEnvironment) {
+		_interpreter = new InterpretingEvaluator(macroEnvironment);
+		_macroEnvironment = macroEnvironment;
+		_builtinEnvironment = builtinEnvironment;
+		_analyzer = new Analyzer(this);
+		_evaluator = new AnalyzingEvaluator(_macroEnvironment, _analyzer);
+	}
+
+	// Whether the macro is one of the init script and has not been redefined
+	public boolean isBuiltinMacro(Macro macro) {
+		return macro.getCaptured() == _builtinEnvironment;
+	}
+
+	// Returns the macro named by the symbol, or null
+	public Macro getMacro(Symbol name) throws SchemeException {
+		final SchemeObject value = _macroEnvironment.lookup(name);
+		return value instanceof Macro ? (Macro) value : null;
+	}
+
+	// Evaluates a defmacro form, returns the name of the macro
+	public Symbol defineMacro(SchemeObject form) throws SchemeException {
+		return (Symbol) _interpreter.eval(form, _macroEnvironment);
+	}
+
+	public SchemeObject expand(Macro macro, Pair form) throws SchemeException {
+		final AnalyzedLambda transformer = getTransformer(macro);
+		if (transformer == null)
+			return _interpreter.eval(form, _macroEnvironment, true);
+
+		final List<SchemeObject> parameters = form.toJavaList();
+		return _evaluator.apply(transformer,
+				parameters.subList(1, parameters.size()));
+	}
+
+	private AnalyzedLambda getTransformer(Macro macro) throws SchemeException {
+		if (macro.getTransformer() != null || _interpreted.contains(macro))
+			return macro.getTransformer();
+
+		_interpreted.add(macro);
+		final LambdaForm form;
+		try {
+			form = _analyzer.analyzeLambda(macro.getName(),
+					macro.getParameterNames(), macro.hasRestParameter(),
+					macro.getForms());
+		} catch (SchemeException ex) {
+			// The interpreter only reports errors in forms it actually runs
+			return null;
+		}
+		_interpreted.remove(macro);
+		macro.setTransformer(new AnalyzedLambda(form.getName(), form
+				.getParameterNames(), form.HasRestParameter(), form
+				.getAnalyzedForms(), form.getFrameSize(), new Frame(macro
+				.getCaptured())));
+		return macro.getTransformer();
+	}
+}
@@ -0,0 +1,201 @@
+// lbjScheme
+// An experimental Scheme subset interpreter in Java, based on SchemeNet.cs
+// Copyright (c) 2013, Leif Bruder <leifbruder@gmail.com>
+//
+// Permission to use, copy, modify, and/or distribute this software for any
+// purpose with or without fee is hereby granted, provided that the above
+// copyright notice and this permission notice appear in all copies.
+//
+// THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+// WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+// MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+// ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+// WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+// ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+// OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+
+package org.lb.lbjscheme;
+
+import java.util.*;
+
+// Results of macro expansions, looked up by the macro and the structure of
+// the form: Lists are compared element by element, strings by their contents,
+// numbers and characters by value and everything else by identity. When the
+// cache is full, the least recently used expansion is dropped. Large forms
+// are not cached at all: They seldom come again, and hashing and copying them
+// at every level of nested macros would cost more than it saves.
+//
+// Forms and expansions are copied before they are stored, so that changing a
+// list passed to eval later doesn't change the cache. Transformers are assumed
+// to depend on their arguments only; one that calls gensym returns the same
+// symbols for equal forms, which is fine for local bindings.
+public final class MacroExpansionCache {
+	private static final int _maximumFormSize = 128;
+
+	private static final class Key {
+		final Macro macro;
+		final SchemeObject form;
+		final int hash;
+
+		Key(Macro macro, SchemeObject form) {
+			this.macro = macro;
+			this.form = form;
+			hash = 31 * System.identityHashCode(macro) + hash(form);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof Key)) return false;
+			final Key other = (Key) obj;
+			return macro == other.macro && hash == other.hash
+					&& isEqual(form, other.form);
+		}
+	}
+
+	private final int _maximumSize;
+	private final LinkedHashMap<Key, SchemeObject> _expansions;
+	private long _hits;
+	private long _misses;
+
+	public MacroExpansionCache(final int maximumSize) {
+		_maximumSize = maximumSize;
+		_expansions = new LinkedHashMap<Key, SchemeObject>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(
+					Map.Entry<Key, SchemeObject> eldest) {
+				return size() > _maximumSize;
+			}
+		};
+	}
+
+	public int getMaximumSize() {
+		return _maximumSize;
+	}
+
+	public int size() {
+		return _expansions.size();
+	}
+
+	public long getHits() {
+		return _hits;
+	}
+
+	public long getMisses() {
+		return _misses;
+	}
+
+	public double getHitRate() {
+		final long lookups = _hits + _misses;
+		return lookups == 0 ? 0.0 : (double) _hits / lookups;
+	}
+
+	// Returns the stored expansion of the form, or null
+	public SchemeObject get(Macro macro, SchemeObject form) {
+		if (!isSmall(form)) return null;
+		final SchemeObject ret = _expansions.get(new Key(macro, form));
+		if (ret == null)
+			++_misses;
+		else
+			++_hits;
+		return ret;
+	}
+
+	public void put(Macro macro, SchemeObject form, SchemeObject expansion) {
+		if (_maximumSize <= 0 || !isSmall(form) || !isSmall(expansion))
+			return;
+		final Map<SchemeObject, SchemeObject> copies = new IdentityHashMap<>();
+		_expansions.put(new Key(macro, copy(form, copies)),
+				copy(expansion, copies));
+	}
+
+	// Drops the expansions of all macros of that name, e.g. when it is
+	// redefined
+	public void invalidate(String macroName) {
+		for (final Iterator<Key> i = _expansions.keySet().iterator(); i
+				.hasNext();)
+			if (i.next().macro.getName().equals(macroName)) i.remove();
+	}
+
+	public void clear() {
+		_expansions.clear();
+	}
+
+	private static boolean isSmall(SchemeObject form) {
+		return countNodes(form, _maximumFormSize + 1) <= _maximumFormSize;
+	}
+
+	// Number of pairs and atoms in the form, counting stops at limit
+	private static int countNodes(SchemeObject o, int limit) {
+		int ret = 0;
+		while (o instanceof Pair && ret < limit) {
+			ret += 1 + countNodes(((Pair) o).getCar(), limit - ret);
+			o = ((Pair) o).getCdr();
+		}
+		return ret + 1;
+	}
+
+	private static boolean isValue(SchemeObject o) {
+		return o instanceof SchemeNumber || o instanceof SchemeCharacter
+				|| o instanceof SchemeString;
+	}
+
+	private static int hash(SchemeObject o) {
+		int ret = 1;
+		while (o instanceof Pair) {
+			ret = 31 * ret + hash(((Pair) o).getCar());
+			o = ((Pair) o).getCdr();
+		}
+		if (o instanceof Fixnum)
+			return 31 * ret + Long.hashCode(((Fixnum) o).getValue());
+		if (isValue(o)) return 31 * ret + o.toString(false).hashCode();
+		return 31 * ret + System.identityHashCode(o);
+	}
+
+	private static boolean isEqual(SchemeObject a, SchemeObject b) {
+		while (a instanceof Pair && b instanceof Pair) {
+			if (a == b) return true;
+			if (!isEqual(((Pair) a).getCar(), ((Pair) b).getCar()))
+				return false;
+			a = ((Pair) a).getCdr();
+			b = ((Pair) b).getCdr();
+		}
+		if (a == b) return true;
+		return isValue(a) && a.getClass() == b.getClass()
+				&& a.toString(false).equals(b.toString(false));
+	}
+
+	// Copies lists and strings, keeping shared structure shared
+	private static SchemeObject copy(SchemeObject o,
+			Map<SchemeObject, SchemeObject> copies) {
+		if (!(o instanceof Pair) && !(o instanceof SchemeString)) return o;
+		final SchemeObject existing = copies.get(o);
+		if (existing != null) return existing;
+		if (o instanceof SchemeString) {
+			final SchemeObject ret = new SchemeString(
+					((SchemeString) o).getValue());
+			copies.put(o, ret);
+			return ret;
+		}
+
+		final Pair ret = new Pair(Nil.getInstance(), Nil.getInstance());
+		Pair last = null;
+		while (o instanceof Pair && !copies.containsKey(o)) {
+			final Pair pair = last == null ? ret : new Pair(Nil.getInstance(),
+					Nil.getInstance());
+			copies.put(o, pair);
+			if (last != null) last.setCdr(pair);
+			pair.setCar(copy(((Pair) o).getCar(), copies));
+			last = pair;
+			o = ((Pair) o).getCdr();
+		}
+		last.setCdr(copy(o, copies));
+		return ret;
+	}
+}
@@ -19,6 +19,8 @@ package org.lb.lbjscheme;
 import java.util.*;
 
 public final class Nil extends SchemeList {
+	private static final long serialVersionUID = 1L;
+
 	private Nil() {
 	}
 
@@ -28,6 +30,10 @@ public final class Nil extends SchemeList {
 		return _instance;
 	}
 
+	private Object readResolve() {
+		return _instance;
+	}
+
 	@Override
 	public boolean isNull() {
 		return true;
@@ -0,0 +1,81 @@
+// lbjScheme
+// An experimental Scheme subset interpreter in Java, based on SchemeNet.cs
+// Copyright (c) 2013, Leif Bruder <leifbruder@gmail.com>
+//
+// Permission to use, copy, modify, and/or distribute this software for any
+// purpose with or without fee is hereby granted, provided that the above
+// copyright notice and this permission notice appear in all copies.
+//
+// THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+// WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+// MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+// ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+// WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+// ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+// OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+
+package org.lb.lbjscheme;
+
+import java.util.List;
+import org.lb.lbjscheme.nodes.Node;
+
+public final class NodeLambda extends SchemeObject {
+	private static final long serialVersionUID = 1L;
+
+	private final String _name;
+	private final List<Symbol> _parameterNames;
+	private final boolean _hasRestParameter;
+	private final Node _body;
+	private final int _frameSize;
+	private final Frame _captured;
+
+	public NodeLambda(String name, List<Symbol> parameterNames,
+			boolean hasRestParameter, Node body, int frameSize, Frame captured) {
+		_name = name;
+		_parameterNames = parameterNames;
+		_hasRestParameter = hasRestParameter;
+		_body = body;
+		_frameSize = frameSize;
+		_captured = captured;
+	}
+
+	public String getName() {
+		return _name;
+	}
+
+	public List<Symbol> getParameterNames() {
+		return _parameterNames;
+	}
+
+	public boolean hasRestParameter() {
+		return _hasRestParameter;
+	}
+
+	public Node getBody() {
+		return _body;
+	}
+
+	public int getFrameSize() {
+		return _frameSize;
+	}
+
+	public Frame getCaptured() {
+		return _captured;
+	}
+
+	@Override
+	public boolean isProcedure() {
+		return true;
+	}
+
+	@Override
+	public String toString(boolean forDisplay) {
+		return "<procedure " + _name + ">";
+	}
+
+	@Override
+	public Object toJavaObject() throws SchemeException {
+		throw new SchemeException(
+				"Lambda expression cannot be converted into a plain Java object");
+	}
+}
@@ -26,6 +26,12 @@ public final class NullEmitter implements Emitter {
 
 	}
 
+	@Override
+	public void emitCallWithCurrentContinuation() {
+		// TODO Auto-generated method stub
+
+	}
+
 	@Override
 	public void emitContinue() {
 		// TODO Auto-generated method stub
@@ -38,12 +44,24 @@ public final class NullEmitter implements Emitter {
 
 	}
 
+	@Override
+	public void emitDefineLocalVariable(Symbol variable, int slot) {
+		// TODO Auto-generated method stub
+
+	}
+
 	@Override
 	public void emitGetVariable(Symbol variable) {
 		// TODO Auto-generated method stub
 
 	}
 
+	@Override
+	public void emitGetLocalVariable(Symbol variable, int depth, int slot) {
+		// TODO Auto-generated method stub
+
+	}
+
 	@Override
 	public void emitInitArgs() {
 		// TODO Auto-generated method stub
@@ -70,7 +88,8 @@ public final class NullEmitter implements Emitter {
 
 	@Override
 	public void emitMakeClosure(String string, String closureLabel,
-			boolean hasRestParameter, List<Symbol> parameterNames) {
+			boolean hasRestParameter, List<Symbol> parameterNames,
+			int frameSize) {
 		// TODO Auto-generated method stub
 
 	}
@@ -81,12 +100,43 @@ public final class NullEmitter implements Emitter {
 
 	}
 
+	@Override
+	public void emitCallKnownProcedure(Symbol procedure, String entryLabel) {
+		// TODO Auto-generated method stub
+
+	}
+
+	@Override
+	public void emitRebindArguments(int parameterCount) {
+		// TODO Auto-generated method stub
+
+	}
+
+	@Override
+	public boolean isPrimitive(Symbol procedure, int argumentCount) {
+		// TODO Auto-generated method stub
+		return false;
+	}
+
+	@Override
+	public void emitPrimitive(Symbol procedure, int argumentCount,
+			String doneLabel) {
+		// TODO Auto-generated method stub
+
+	}
+
 	@Override
 	public void emitPushAll() {
 		// TODO Auto-generated method stub
 
 	}
 
+	@Override
+	public void emitRestoreAll() {
+		// TODO Auto-generated method stub
+
+	}
+
 	@Override
 	public void emitPushArg() {
 		// TODO Auto-generated method stub
@@ -111,6 +161,12 @@ public final class NullEmitter implements Emitter {
 
 	}
 
+	@Override
+	public void emitSetLocalVariable(Symbol variable, int depth, int slot) {
+		// TODO Auto-generated method stub
+
+	}
+
 	@Override
 	public void setLabelPositionToHere(String label) {
 		// TODO Auto-generated method stub
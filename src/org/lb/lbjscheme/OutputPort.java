@@ -19,6 +19,8 @@ package org.lb.lbjscheme;
 import java.io.*;
 
 public final class OutputPort extends SchemeObject {
+	private static final long serialVersionUID = 1L;
+
 	private final Writer _writer;
 
 	public OutputPort(Writer writer) {
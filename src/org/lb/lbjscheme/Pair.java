@@ -19,6 +19,8 @@ package org.lb.lbjscheme;
 import java.util.*;
 
 public final class Pair extends SchemeList {
+	private static final long serialVersionUID = 1L;
+
 	private SchemeObject _car;
 	private SchemeObject _cdr;
 
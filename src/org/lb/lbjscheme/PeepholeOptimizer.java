@@ -0,0 +1,538 @@
+// lbjScheme
+// An experimental Scheme subset interpreter in Java, based on SchemeNet.cs
+// Copyright (c) 2013, Leif Bruder <leifbruder@gmail.com>
+//
+// Permission to use, copy, modify, and/or distribute this software for any
+// purpose with or without fee is hereby granted, provided that the above
+// copyright notice and this permission notice appear in all copies.
+//
+// THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+// WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+// MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+// ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+// WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+// ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+// OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+
+package org.lb.lbjscheme;
+
+import java.util.*;
+
+// Emitter that buffers the code of one top level form, removes wasteful
+// instruction sequences and hands the result to another Emitter on flush():
+//
+// - Closure bodies are moved behind the code of the form, so creating a
+//   closure no longer needs a jump around its body
+// - Jumps to jumps are threaded, jumps to CONTINUE become CONTINUE
+// - Code following CALL, CALLCC, CONTINUE or JUMP is dropped up to the next
+//   label still referenced, as are jumps to the next instruction
+// - POPALL directly followed by PUSHALL becomes RESTOREALL
+// - INITARGS directly followed by SETARGS is dropped
+public final class PeepholeOptimizer implements Emitter {
+	private static final int CALL = 0;
+	private static final int CONTINUE = 1;
+	private static final int DEFVAR = 2;
+	private static final int DEFLOCAL = 3;
+	private static final int GETVAR = 4;
+	private static final int GETLOCAL = 5;
+	private static final int INITARGS = 6;
+	private static final int JUMP = 7;
+	private static final int JUMPIFFALSE = 8;
+	private static final int LITERAL = 9;
+	private static final int MAKECLOSURE = 10;
+	private static final int POPALL = 11;
+	private static final int PUSHALL = 12;
+	private static final int PUSHARG = 13;
+	private static final int SETARGS = 14;
+	private static final int SETCONT = 15;
+	private static final int SETVAR = 16;
+	private static final int SETLOCAL = 17;
+	private static final int RESTOREALL = 18;
+	private static final int PRIMITIVE = 19;
+	private static final int CALLKNOWN = 20;
+	private static final int REBIND = 21;
+	private static final int CALLCC = 22;
+	private static final int LABEL = 23;
+
+	private static final class Instruction {
+		int opcode;
+		String label;
+		Symbol symbol;
+		SchemeObject value;
+		int depth;
+		int slot;
+		String name;
+		boolean hasRestParameter;
+		List<Symbol> parameterNames;
+		int frameSize;
+		int argumentCount;
+
+		Instruction(int opcode) {
+			this.opcode = opcode;
+		}
+
+		boolean isLabel(String name) {
+			return opcode == LABEL && label.equals(name);
+		}
+
+		boolean transfersControl() {
+			return opcode == CALL || opcode == CALLKNOWN || opcode == CALLCC
+					|| opcode == CONTINUE || opcode == JUMP;
+		}
+
+		boolean hasTarget() {
+			return opcode == JUMP || opcode == JUMPIFFALSE
+					|| opcode == MAKECLOSURE || opcode == SETCONT
+					|| opcode == PRIMITIVE || opcode == CALLKNOWN;
+		}
+
+		void emitTo(Emitter e) {
+			switch (opcode) {
+			case CALL:
+				e.emitCall();
+				break;
+			case CONTINUE:
+				e.emitContinue();
+				break;
+			case DEFVAR:
+				e.emitDefineVariable(symbol);
+				break;
+			case DEFLOCAL:
+				e.emitDefineLocalVariable(symbol, slot);
+				break;
+			case GETVAR:
+				e.emitGetVariable(symbol);
+				break;
+			case GETLOCAL:
+				e.emitGetLocalVariable(symbol, depth, slot);
+				break;
+			case INITARGS:
+				e.emitInitArgs();
+				break;
+			case JUMP:
+				e.emitJump(label);
+				break;
+			case JUMPIFFALSE:
+				e.emitJumpIfFalse(label);
+				break;
+			case LITERAL:
+				e.emitLiteral(value);
+				break;
+			case MAKECLOSURE:
+				e.emitMakeClosure(name, label, hasRestParameter,
+						parameterNames, frameSize);
+				break;
+			case POPALL:
+				e.emitPopAll();
+				break;
+			case PUSHALL:
+				e.emitPushAll();
+				break;
+			case PUSHARG:
+				e.emitPushArg();
+				break;
+			case SETARGS:
+				e.emitSetArgsToValueRegister();
+				break;
+			case SETCONT:
+				e.emitSetContinuationRegisterToLabel(label);
+				break;
+			case SETVAR:
+				e.emitSetVariable(symbol);
+				break;
+			case SETLOCAL:
+				e.emitSetLocalVariable(symbol, depth, slot);
+				break;
+			case RESTOREALL:
+				e.emitRestoreAll();
+				break;
+			case PRIMITIVE:
+				e.emitPrimitive(symbol, argumentCount, label);
+				break;
+			case CALLKNOWN:
+				e.emitCallKnownProcedure(symbol, label);
+				break;
+			case REBIND:
+				e.emitRebindArguments(argumentCount);
+				break;
+			case CALLCC:
+				e.emitCallWithCurrentContinuation();
+				break;
+			case LABEL:
+				e.setLabelPositionToHere(label);
+				break;
+			}
+		}
+	}
+
+	private final Emitter _target;
+	private boolean _enabled = true;
+	private List<Instruction> _buffer = new ArrayList<Instruction>();
+	private int _nextLabel = 1;
+	private long _instructionsIn;
+	private long _instructionsOut;
+
+	public PeepholeOptimizer(final Emitter target) {
+		_target = target;
+	}
+
+	public boolean isEnabled() {
+		return _enabled;
+	}
+
+	public void setEnabled(boolean enabled) {
+		_enabled = enabled;
+	}
+
+	public long getInstructionsIn() {
+		return _instructionsIn;
+	}
+
+	public long getInstructionsOut() {
+		return _instructionsOut;
+	}
+
+	public long getRemovedInstructions() {
+		return _instructionsIn - _instructionsOut;
+	}
+
+	// Passes the buffered code on to the target emitter. Must be called after
+	// each top level form, as only complete forms can be optimized.
+	public void flush() {
+		final List<Instruction> code = _enabled ? optimize(_buffer) : _buffer;
+		_instructionsIn += countInstructions(_buffer);
+		_instructionsOut += countInstructions(code);
+		for (final Instruction i : code)
+			i.emitTo(_target);
+		_buffer = new ArrayList<Instruction>();
+	}
+
+	private static int countInstructions(List<Instruction> code) {
+		int ret = 0;
+		for (final Instruction i : code)
+			if (i.opcode != LABEL) ++ret;
+		return ret;
+	}
+
+	private List<Instruction> optimize(List<Instruction> code) {
+		code = moveClosureBodiesToEnd(code);
+		boolean changed;
+		do {
+			changed = threadJumps(code);
+			changed |= removeUnreferencedLabels(code);
+			changed |= removeUnreachableCode(code);
+			changed |= removeJumpsToNextInstruction(code);
+		} while (changed);
+		combineAdjacentInstructions(code);
+		return code;
+	}
+
+	// MAKECLOSURE Lbody; JUMP Lafter; Lbody: ... CONTINUE; Lafter:
+	private List<Instruction> moveClosureBodiesToEnd(List<Instruction> code) {
+		final List<Instruction> ret = new ArrayList<Instruction>();
+		final LinkedList<List<Instruction>> bodies = new LinkedList<>();
+		final String endLabel = "P" + _nextLabel++;
+		boolean moved = false;
+		List<Instruction> block = code;
+
+		while (block != null) {
+			for (int i = 0; i < block.size(); ++i) {
+				final Instruction op = block.get(i);
+				ret.add(op);
+				if (op.opcode != MAKECLOSURE || i + 2 >= block.size()) continue;
+				final Instruction jump = block.get(i + 1);
+				if (jump.opcode != JUMP || !block.get(i + 2).isLabel(op.label))
+					continue;
+				final int end = indexOfLabel(block, jump.label, i + 3);
+				if (end == -1 || !block.get(end - 1).transfersControl())
+					continue;
+				bodies.add(block.subList(i + 2, end));
+				moved = true;
+				i = end - 1;
+			}
+
+			if (block == code && moved) {
+				final Instruction jump = new Instruction(JUMP);
+				jump.label = endLabel;
+				ret.add(jump);
+			}
+
+			block = bodies.pollFirst();
+		}
+
+		if (!moved) return ret;
+		final Instruction end = new Instruction(LABEL);
+		end.label = endLabel;
+		ret.add(end);
+		return ret;
+	}
+
+	private static int indexOfLabel(List<Instruction> code, String label,
+			int start) {
+		for (int i = start; i < code.size(); ++i)
+			if (code.get(i).isLabel(label)) return i;
+		return -1;
+	}
+
+	private static Instruction instructionAtLabel(List<Instruction> code,
+			String label) {
+		for (int i = indexOfLabel(code, label, 0); i != -1
+				&& i < code.size(); ++i)
+			if (code.get(i).opcode != LABEL) return code.get(i);
+		return null;
+	}
+
+	private static boolean threadJumps(List<Instruction> code) {
+		boolean changed = false;
+		for (final Instruction op : code) {
+			if (!op.hasTarget() || op.opcode == MAKECLOSURE
+					|| op.opcode == CALLKNOWN) continue;
+			for (int hops = 0; hops < code.size(); ++hops) {
+				final Instruction target = instructionAtLabel(code, op.label);
+				if (target == null) break;
+				if (target.opcode == JUMP && !target.label.equals(op.label)) {
+					op.label = target.label;
+					changed = true;
+				} else {
+					if (target.opcode == CONTINUE && op.opcode == JUMP) {
+						op.opcode = CONTINUE;
+						op.label = null;
+						changed = true;
+					}
+					break;
+				}
+			}
+		}
+		return changed;
+	}
+
+	private static boolean removeUnreferencedLabels(List<Instruction> code) {
+		final Set<String> referenced = new HashSet<String>();
+		for (final Instruction op : code)
+			if (op.hasTarget()) referenced.add(op.label);
+
+		boolean changed = false;
+		for (final Iterator<Instruction> i = code.iterator(); i.hasNext();) {
+			final Instruction op = i.next();
+			if (op.opcode == LABEL && !referenced.contains(op.label)) {
+				i.remove();
+				changed = true;
+			}
+		}
+		return changed;
+	}
+
+	private static boolean removeUnreachableCode(List<Instruction> code) {
+		boolean changed = false;
+		boolean reachable = true;
+		for (final Iterator<Instruction> i = code.iterator(); i.hasNext();) {
+			final Instruction op = i.next();
+			if (op.opcode == LABEL) {
+				reachable = true;
+			} else if (!reachable) {
+				i.remove();
+				changed = true;
+			} else if (op.transfersControl()) {
+				reachable = false;
+			}
+		}
+		return changed;
+	}
+
+	private static boolean removeJumpsToNextInstruction(List<Instruction> code) {
+		boolean changed = false;
+		for (int i = 0; i < code.size(); ++i) {
+			final Instruction op = code.get(i);
+			if (op.opcode != JUMP && op.opcode != JUMPIFFALSE) continue;
+			for (int j = i + 1; j < code.size()
+					&& code.get(j).opcode == LABEL; ++j) {
+				if (code.get(j).label.equals(op.label)) {
+					code.remove(i--);
+					changed = true;
+					break;
+				}
+			}
+		}
+		return changed;
+	}
+
+	private static void combineAdjacentInstructions(List<Instruction> code) {
+		for (int i = 0; i + 1 < code.size(); ++i) {
+			final Instruction op = code.get(i);
+			final Instruction next = code.get(i + 1);
+			if (op.opcode == POPALL && next.opcode == PUSHALL) {
+				op.opcode = RESTOREALL;
+				code.remove(i + 1);
+			} else if (op.opcode == INITARGS && next.opcode == SETARGS) {
+				code.remove(i--);
+			}
+		}
+	}
+
+	private void add(Instruction op) {
+		_buffer.add(op);
+	}
+
+	private void add(int opcode) {
+		add(new Instruction(opcode));
+	}
+
+	private void add(int opcode, String label) {
+		final Instruction op = new Instruction(opcode);
+		op.label = label;
+		add(op);
+	}
+
+	private void add(int opcode, Symbol symbol, int depth, int slot) {
+		final Instruction op = new Instruction(opcode);
+		op.symbol = symbol;
+		op.depth = depth;
+		op.slot = slot;
+		add(op);
+	}
+
+	@Override
+	public void emitCall() {
+		add(CALL);
+	}
+
+	@Override
+	public void emitCallWithCurrentContinuation() {
+		add(CALLCC);
+	}
+
+	@Override
+	public void emitContinue() {
+		add(CONTINUE);
+	}
+
+	@Override
+	public void emitDefineVariable(Symbol variable) {
+		add(DEFVAR, variable, 0, 0);
+	}
+
+	@Override
+	public void emitDefineLocalVariable(Symbol variable, int slot) {
+		add(DEFLOCAL, variable, 0, slot);
+	}
+
+	@Override
+	public void emitGetVariable(Symbol variable) {
+		add(GETVAR, variable, 0, 0);
+	}
+
+	@Override
+	public void emitGetLocalVariable(Symbol variable, int depth, int slot) {
+		add(GETLOCAL, variable, depth, slot);
+	}
+
+	@Override
+	public void emitInitArgs() {
+		add(INITARGS);
+	}
+
+	@Override
+	public void emitJump(String label) {
+		add(JUMP, label);
+	}
+
+	@Override
+	public void emitJumpIfFalse(String label) {
+		add(JUMPIFFALSE, label);
+	}
+
+	@Override
+	public void emitLiteral(SchemeObject value) {
+		final Instruction op = new Instruction(LITERAL);
+		op.value = value;
+		add(op);
+	}
+
+	@Override
+	public void emitMakeClosure(String name, String closureLabel,
+			boolean hasRestParameter, List<Symbol> parameterNames,
+			int frameSize) {
+		final Instruction op = new Instruction(MAKECLOSURE);
+		op.name = name;
+		op.label = closureLabel;
+		op.hasRestParameter = hasRestParameter;
+		op.parameterNames = parameterNames;
+		op.frameSize = frameSize;
+		add(op);
+	}
+
+	@Override
+	public void emitPopAll() {
+		add(POPALL);
+	}
+
+	@Override
+	public void emitRebindArguments(int parameterCount) {
+		final Instruction op = new Instruction(REBIND);
+		op.argumentCount = parameterCount;
+		add(op);
+	}
+
+	@Override
+	public void emitCallKnownProcedure(Symbol procedure, String entryLabel) {
+		final Instruction op = new Instruction(CALLKNOWN);
+		op.symbol = procedure;
+		op.label = entryLabel;
+		add(op);
+	}
+
+	@Override
+	public boolean isPrimitive(Symbol procedure, int argumentCount) {
+		return _target.isPrimitive(procedure, argumentCount);
+	}
+
+	@Override
+	public void emitPrimitive(Symbol procedure, int argumentCount,
+			String doneLabel) {
+		final Instruction op = new Instruction(PRIMITIVE);
+		op.symbol = procedure;
+		op.argumentCount = argumentCount;
+		op.label = doneLabel;
+		add(op);
+	}
+
+	@Override
+	public void emitPushAll() {
+		add(PUSHALL);
+	}
+
+	@Override
+	public void emitRestoreAll() {
+		add(RESTOREALL);
+	}
+
+	@Override
+	public void emitPushArg() {
+		add(PUSHARG);
+	}
+
+	@Override
+	public void emitSetArgsToValueRegister() {
+		add(SETARGS);
+	}
+
+	@Override
+	public void emitSetContinuationRegisterToLabel(String label) {
+		add(SETCONT, label);
+	}
+
+	@Override
+	public void emitSetVariable(Symbol variable) {
+		add(SETVAR, variable, 0, 0);
+	}
+
+	@Override
+	public void emitSetLocalVariable(Symbol variable, int depth, int slot) {
+		add(SETLOCAL, variable, depth, slot);
+	}
+
+	@Override
+	public void setLabelPositionToHere(String label) {
+		add(LABEL, label);
+	}
+}
@@ -20,6 +20,8 @@ import java.math.*;
 import java.util.regex.*;
 
 public final class Rational extends SchemeNumber {
+	private static final long serialVersionUID = 1L;
+
 	private final static BigInteger _two = BigInteger.valueOf(2);
 
 	private final BigInteger _n;
@@ -29,7 +31,7 @@ public final class Rational extends SchemeNumber {
 	private static final Pattern _rationalRegex = Pattern
 			.compile("^([+-]?\\d+)/(\\d+)$");
 
-	public Rational(int value) {
+	public Rational(long value) {
 		_n = BigInteger.valueOf(value);
 		_d = BigInteger.ONE;
 		_isExact = true;
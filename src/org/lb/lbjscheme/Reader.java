@@ -157,7 +157,7 @@ public final class Reader {
 
 	private SchemeObject readCharacter() throws SchemeException {
 		final char c = readChar();
-		if (!Character.isLetter(c)) return new SchemeCharacter(c);
+		if (!Character.isLetter(c)) return SchemeCharacter.valueOf(c);
 
 		final StringBuilder sb = new StringBuilder();
 		sb.append(c);
@@ -167,15 +167,15 @@ public final class Reader {
 		final String name = sb.toString();
 		switch (name) {
 		case "cr":
-			return new SchemeCharacter('\r');
+			return SchemeCharacter.valueOf('\r');
 		case "newline":
-			return new SchemeCharacter('\n');
+			return SchemeCharacter.valueOf('\n');
 		case "space":
-			return new SchemeCharacter(' ');
+			return SchemeCharacter.valueOf(' ');
 		case "tab":
-			return new SchemeCharacter('\t');
+			return SchemeCharacter.valueOf('\t');
 		default:
-			if (name.length() == 1) return new SchemeCharacter(name.charAt(0));
+			if (name.length() == 1) return SchemeCharacter.valueOf(name.charAt(0));
 			throw new SchemeException("Invalid character name: \\" + name);
 		}
 	}
@@ -19,6 +19,8 @@ package org.lb.lbjscheme;
 import java.math.*;
 
 public final class Real extends SchemeNumber {
+	private static final long serialVersionUID = 1L;
+
 	private final static BigDecimal _oneHalf = BigDecimal.valueOf(5, 1);
 	private final double _value;
 
@@ -77,7 +79,7 @@ public final class Real extends SchemeNumber {
 
 	@Override
 	public SchemeNumber getDenominator() {
-		return new Fixnum(1);
+		return Fixnum.valueOf(1);
 	}
 
 	@Override
@@ -17,12 +17,30 @@
 package org.lb.lbjscheme;
 
 public final class SchemeCharacter extends SchemeObject {
+	private static final long serialVersionUID = 1L;
+
+	private static final SchemeCharacter[] _cache = new SchemeCharacter[256];
+
+	static {
+		for (int i = 0; i < _cache.length; ++i)
+			_cache[i] = new SchemeCharacter((char) i);
+	}
+
 	private final char _value;
 
-	public SchemeCharacter(char value) {
+	private SchemeCharacter(char value) {
 		_value = value;
 	}
 
+	public static SchemeCharacter valueOf(char value) {
+		if (value < _cache.length) return _cache[value];
+		return new SchemeCharacter(value);
+	}
+
+	private Object readResolve() {
+		return valueOf(_value);
+	}
+
 	public char getValue() {
 		return _value;
 	}
@@ -20,6 +20,8 @@ import java.util.*;
 
 public abstract class SchemeList extends SchemeObject implements
 		Iterable<SchemeObject> {
+	private static final long serialVersionUID = 1L;
+
 	public abstract boolean isDottedList();
 
 	@Override
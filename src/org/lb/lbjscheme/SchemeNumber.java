@@ -17,6 +17,8 @@
 package org.lb.lbjscheme;
 
 public abstract class SchemeNumber extends SchemeObject {
+	private static final long serialVersionUID = 1L;
+
 	@Override
 	public String toString(boolean forDisplay) {
 		try {
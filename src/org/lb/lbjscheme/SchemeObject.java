@@ -16,7 +16,12 @@
 
 package org.lb.lbjscheme;
 
-public abstract class SchemeObject {
+import java.io.Serializable;
+
+// Serializable for heap images, see HeapImage
+public abstract class SchemeObject implements Serializable {
+	private static final long serialVersionUID = 1L;
+
 	@Override
 	public final String toString() {
 		return toString(false);
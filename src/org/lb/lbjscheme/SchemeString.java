@@ -16,7 +16,11 @@
 
 package org.lb.lbjscheme;
 
+import java.util.*;
+
 public final class SchemeString extends SchemeObject {
+	private static final long serialVersionUID = 1L;
+
 	private final char[] _characters;
 
 	public SchemeString(String value) {
@@ -27,6 +31,11 @@ public final class SchemeString extends SchemeObject {
 		_characters = new char[length];
 	}
 
+	// The string uses the array, it is not copied
+	public SchemeString(char[] characters) {
+		_characters = characters;
+	}
+
 	public String getValue() {
 		return String.valueOf(_characters);
 	}
@@ -50,6 +59,60 @@ public final class SchemeString extends SchemeObject {
 		_characters[position] = value;
 	}
 
+	public SchemeString substring(int start, int end) throws SchemeException {
+		if (start < 0 || end < start || end > getLength())
+			throw new SchemeException("String index out of bounds");
+		return new SchemeString(Arrays.copyOfRange(_characters, start, end));
+	}
+
+	public SchemeString copy() {
+		return new SchemeString(_characters.clone());
+	}
+
+	public void fill(char value) {
+		Arrays.fill(_characters, value);
+	}
+
+	public static SchemeString append(List<SchemeString> strings) {
+		int length = 0;
+		for (SchemeString s : strings)
+			length += s.getLength();
+		final char[] ret = new char[length];
+		int position = 0;
+		for (SchemeString s : strings) {
+			System.arraycopy(s._characters, 0, ret, position, s.getLength());
+			position += s.getLength();
+		}
+		return new SchemeString(ret);
+	}
+
+	public SchemeList toList() {
+		SchemeList ret = Nil.getInstance();
+		for (int i = _characters.length - 1; i >= 0; --i)
+			ret = new Pair(SchemeCharacter.valueOf(_characters[i]), ret);
+		return ret;
+	}
+
+	// Lexicographic order of the character codes. Ignoring case only folds
+	// A-Z, like char-downcase does.
+	public int compareTo(SchemeString other, boolean ignoreCase) {
+		final int length = Math.min(getLength(), other.getLength());
+		for (int i = 0; i < length; ++i) {
+			char a = _characters[i];
+			char b = other._characters[i];
+			if (ignoreCase) {
+				a = downcase(a);
+				b = downcase(b);
+			}
+			if (a != b) return a - b;
+		}
+		return getLength() - other.getLength();
+	}
+
+	private static char downcase(char c) {
+		return c >= 'A' && c <= 'Z' ? (char) (c + 32) : c;
+	}
+
 	@Override
 	public boolean isString() {
 		return true;
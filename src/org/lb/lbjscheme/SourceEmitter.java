@@ -34,11 +34,23 @@ public final class SourceEmitter implements Emitter {
 		System.out.println("    DEFVAR " + variable);
 	}
 
+	@Override
+	public void emitDefineLocalVariable(final Symbol variable, int slot) {
+		System.out.println("    DEFLOCAL " + slot + " ; " + variable);
+	}
+
 	@Override
 	public void emitGetVariable(final Symbol variable) {
 		System.out.println("    GETVAR " + variable);
 	}
 
+	@Override
+	public void emitGetLocalVariable(final Symbol variable, int depth,
+			int slot) {
+		System.out.println("    GETLOCAL " + depth + " " + slot + " ; "
+				+ variable);
+	}
+
 	@Override
 	public void emitInitArgs() {
 		System.out.println("    INITARGS");
@@ -61,10 +73,11 @@ public final class SourceEmitter implements Emitter {
 
 	@Override
 	public void emitMakeClosure(String name, String closureLabel,
-			boolean hasRestParameter, List<Symbol> parameterNames) {
+			boolean hasRestParameter, List<Symbol> parameterNames,
+			int frameSize) {
 		System.out.println("    MAKECLOSURE " + name + " " + closureLabel + " "
 				+ (hasRestParameter ? "#t " : "#f ")
-				+ parameterNamesListToString(parameterNames));
+				+ parameterNamesListToString(parameterNames) + " " + frameSize);
 	}
 
 	private static String parameterNamesListToString(List<Symbol> parameterNames) {
@@ -82,11 +95,43 @@ public final class SourceEmitter implements Emitter {
 		System.out.println("    POPCONT");
 	}
 
+	@Override
+	public void emitCallWithCurrentContinuation() {
+		System.out.println("    CALLCC");
+	}
+
+	@Override
+	public void emitRebindArguments(int parameterCount) {
+		System.out.println("    REBIND " + parameterCount);
+	}
+
+	@Override
+	public void emitCallKnownProcedure(Symbol procedure, String entryLabel) {
+		System.out.println("    CALLKNOWN " + procedure + " " + entryLabel);
+	}
+
+	@Override
+	public boolean isPrimitive(Symbol procedure, int argumentCount) {
+		return false;
+	}
+
+	@Override
+	public void emitPrimitive(Symbol procedure, int argumentCount,
+			String doneLabel) {
+		System.out.println("    PRIMITIVE " + procedure + " " + argumentCount
+				+ " " + doneLabel);
+	}
+
 	@Override
 	public void emitPushAll() {
 		System.out.println("    PUSHCONT");
 	}
 
+	@Override
+	public void emitRestoreAll() {
+		System.out.println("    RESTOREALL");
+	}
+
 	@Override
 	public void emitPushArg() {
 		System.out.println("    PUSHARGS");
@@ -107,6 +152,13 @@ public final class SourceEmitter implements Emitter {
 		System.out.println("    SETVAR " + variable);
 	}
 
+	@Override
+	public void emitSetLocalVariable(final Symbol variable, int depth,
+			int slot) {
+		System.out.println("    SETLOCAL " + depth + " " + slot + " ; "
+				+ variable);
+	}
+
 	@Override
 	public void setLabelPositionToHere(final String label) {
 		System.out.println(label + ":");
@@ -16,13 +16,17 @@
 
 package org.lb.lbjscheme;
 
-import java.util.HashMap;
+import java.util.concurrent.ConcurrentHashMap;
 
 public final class Symbol extends SchemeObject {
+	private static final long serialVersionUID = 1L;
+
 	private final String _name;
+	private final boolean _interned;
 
-	private Symbol(String name) {
+	private Symbol(String name, boolean interned) {
 		_name = name;
+		_interned = interned;
 	}
 
 	@Override
@@ -30,14 +34,23 @@ public final class Symbol extends SchemeObject {
 		return _name;
 	}
 
-	private static final HashMap<String, Symbol> _cache = new HashMap<>();
+	private static final ConcurrentHashMap<String, Symbol> _cache = new ConcurrentHashMap<>();
 
 	public static Symbol fromString(String name) {
 		final Symbol fromCache = _cache.get(name);
 		if (fromCache != null) return fromCache;
-		final Symbol ret = new Symbol(name);
-		_cache.put(name, ret);
-		return ret;
+		final Symbol ret = new Symbol(name, true);
+		final Symbol interned = _cache.putIfAbsent(name, ret);
+		return interned != null ? interned : ret;
+	}
+
+	// Symbol that is not eq? to any other, not even one of the same name
+	static Symbol uninterned(String name) {
+		return new Symbol(name, false);
+	}
+
+	private Object readResolve() {
+		return _interned ? fromString(_name) : this;
 	}
 
 	@Override
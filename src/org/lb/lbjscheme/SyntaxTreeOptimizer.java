@@ -0,0 +1,214 @@
+// lbjScheme
+// An experimental Scheme subset interpreter in Java, based on SchemeNet.cs
+// Copyright (c) 2013, Leif Bruder <leifbruder@gmail.com>
+//
+// Permission to use, copy, modify, and/or distribute this software for any
+// purpose with or without fee is hereby granted, provided that the above
+// copyright notice and this permission notice appear in all copies.
+//
+// THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+// WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+// MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+// ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+// WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+// ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+// OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+
+package org.lb.lbjscheme;
+
+import java.util.*;
+import org.lb.lbjscheme.ast.*;
+import org.lb.lbjscheme.builtins.*;
+
+// Simplifies analyzed forms before they are evaluated or compiled: Calls of
+// pure builtins on literals are folded, if forms with a literal condition are
+// replaced by the branch taken, and nested begin forms are flattened.
+//
+// Only the ## names of the builtins are folded. They can not be redefined
+// once the environment is locked, while e.g. + may be bound to anything at
+// the time the code runs.
+public final class SyntaxTreeOptimizer {
+	private static final Symbol _notSymbol = Symbol.fromString("##not");
+	private static final False _false = False.getInstance();
+	private static final True _true = True.getInstance();
+
+	private final Map<Symbol, Builtin> _pureBuiltins = new HashMap<>();
+	private boolean _enabled = true;
+
+	public SyntaxTreeOptimizer() {
+		addPureBuiltin(new Add());
+		addPureBuiltin(new BooleanP());
+		addPureBuiltin(new Ceiling());
+		addPureBuiltin(new CharP());
+		addPureBuiltin(new CharToInteger());
+		addPureBuiltin(new Denominator());
+		addPureBuiltin(new Div());
+		addPureBuiltin(new EqP());
+		addPureBuiltin(new ExactP());
+		addPureBuiltin(new ExactToInexact());
+		addPureBuiltin(new Floor());
+		addPureBuiltin(new Ge());
+		addPureBuiltin(new Gt());
+		addPureBuiltin(new InexactP());
+		addPureBuiltin(new InexactToExact());
+		addPureBuiltin(new IntegerP());
+		addPureBuiltin(new IntegerToChar());
+		addPureBuiltin(new Le());
+		addPureBuiltin(new Lt());
+		addPureBuiltin(new Mul());
+		addPureBuiltin(new NullP());
+		addPureBuiltin(new NumEq());
+		addPureBuiltin(new NumberP());
+		addPureBuiltin(new Numerator());
+		addPureBuiltin(new PairP());
+		addPureBuiltin(new Quotient());
+		addPureBuiltin(new RationalP());
+		addPureBuiltin(new RealP());
+		addPureBuiltin(new Remainder());
+		addPureBuiltin(new Round());
+		addPureBuiltin(new StringP());
+		addPureBuiltin(new Sub());
+		addPureBuiltin(new SymbolP());
+		addPureBuiltin(new Truncate());
+		addPureBuiltin(new ZeroP());
+	}
+
+	private void addPureBuiltin(Builtin builtin) {
+		_pureBuiltins.put(Symbol.fromString(builtin.getName()), builtin);
+	}
+
+	public boolean isEnabled() {
+		return _enabled;
+	}
+
+	public void setEnabled(boolean enabled) {
+		_enabled = enabled;
+	}
+
+	public SyntaxTreeObject optimize(SyntaxTreeObject form) {
+		return _enabled ? optimizeForm(form) : form;
+	}
+
+	public LambdaForm optimize(LambdaForm form) {
+		return _enabled ? optimizeLambdaForm(form) : form;
+	}
+
+	private SyntaxTreeObject optimizeForm(SyntaxTreeObject form) {
+		if (form instanceof Apply) {
+			final Apply apply = (Apply) form;
+			return new Apply(optimizeForm(apply.getProcedure()),
+					optimizeForm(apply.getParameters()));
+		} else if (form instanceof BeginForm) {
+			final BeginForm begin = optimizeBeginForm((BeginForm) form);
+			return begin.getFormsWithoutLast().isEmpty() ? begin.getLastForm()
+					: begin;
+		} else if (form instanceof CallccForm) {
+			return new CallccForm(
+					optimizeForm(((CallccForm) form).getTarget()));
+		} else if (form instanceof DefineForm) {
+			final DefineForm define = (DefineForm) form;
+			return new DefineForm(define.getTarget(),
+					optimizeForm(define.getAnalyzedForm()));
+		} else if (form instanceof Funcall) {
+			return optimizeFuncall((Funcall) form);
+		} else if (form instanceof IfForm) {
+			return optimizeIfForm((IfForm) form);
+		} else if (form instanceof LambdaForm) {
+			return optimizeLambdaForm((LambdaForm) form);
+		} else if (form instanceof LetForm) {
+			final LetForm let = (LetForm) form;
+			final List<SyntaxTreeObject> values = new ArrayList<>();
+			for (final SyntaxTreeObject i : let.getValues())
+				values.add(optimizeForm(i));
+			return new LetForm(let.getVariables(), values,
+					optimizeBeginForm(let.getBody()));
+		} else if (form instanceof LoopForm) {
+			return new LoopForm(((LoopForm) form).getLabel(),
+					optimizeBeginForm(((LoopForm) form).getBody()));
+		} else if (form instanceof SelfTailCall) {
+			final SelfTailCall call = (SelfTailCall) form;
+			return new SelfTailCall(call.getLabel(),
+					(Funcall) optimizeFuncall(call.getCall()));
+		} else if (form instanceof SetForm) {
+			final SetForm set = (SetForm) form;
+			return new SetForm(set.getTarget(), optimizeForm(set.getValue()));
+		}
+		return form;
+	}
+
+	private BeginForm optimizeBeginForm(BeginForm form) {
+		final List<SyntaxTreeObject> forms = new ArrayList<>();
+		for (final SyntaxTreeObject i : form.getFormsWithoutLast())
+			addToSequence(forms, optimizeForm(i));
+		addToSequence(forms, optimizeForm(form.getLastForm()));
+
+		final SyntaxTreeObject last = forms.remove(forms.size() - 1);
+		for (final Iterator<SyntaxTreeObject> i = forms.iterator(); i
+				.hasNext();) {
+			final SyntaxTreeObject o = i.next();
+			if (o instanceof SelfEvaluatingLiteral || o instanceof LambdaForm)
+				i.remove();
+		}
+		return new BeginForm(forms, last);
+	}
+
+	private static void addToSequence(List<SyntaxTreeObject> forms,
+			SyntaxTreeObject form) {
+		if (form instanceof BeginForm) {
+			for (final SyntaxTreeObject i : ((BeginForm) form)
+					.getFormsWithoutLast())
+				addToSequence(forms, i);
+			addToSequence(forms, ((BeginForm) form).getLastForm());
+		} else {
+			forms.add(form);
+		}
+	}
+
+	private SyntaxTreeObject optimizeFuncall(Funcall form) {
+		final SyntaxTreeObject procedure = optimizeForm(form.getProcedure());
+		final List<SyntaxTreeObject> parameters = new ArrayList<>();
+		final List<SchemeObject> values = new ArrayList<>();
+		for (final SyntaxTreeObject i : form.getParameters()) {
+			final SyntaxTreeObject parameter = optimizeForm(i);
+			parameters.add(parameter);
+			if (parameter instanceof SelfEvaluatingLiteral)
+				values.add(((SelfEvaluatingLiteral) parameter).getValue());
+		}
+
+		if (procedure instanceof LiteralSymbol
+				&& values.size() == parameters.size()) {
+			final Symbol name = ((LiteralSymbol) procedure).getSymbol();
+			if (name == _notSymbol && values.size() == 1)
+				return new SelfEvaluatingLiteral(values.get(0) == _false ? _true
+						: _false);
+			final Builtin builtin = _pureBuiltins.get(name);
+			if (builtin != null) {
+				try {
+					return new SelfEvaluatingLiteral(builtin.apply(values));
+				} catch (SchemeException ex) {
+					// Leave the error to run time
+				}
+			}
+		}
+
+		return new Funcall(procedure, parameters);
+	}
+
+	private SyntaxTreeObject optimizeIfForm(IfForm form) {
+		final SyntaxTreeObject condition = optimizeForm(form.getCondition());
+		if (condition instanceof SelfEvaluatingLiteral) {
+			final boolean taken = ((SelfEvaluatingLiteral) condition)
+					.getValue() != _false;
+			return optimizeForm(taken ? form.getThenPart() : form
+					.getElsePart());
+		}
+		return new IfForm(condition, optimizeForm(form.getThenPart()),
+				optimizeForm(form.getElsePart()));
+	}
+
+	private LambdaForm optimizeLambdaForm(LambdaForm form) {
+		return new LambdaForm(form.getName(), form.getParameterNames(),
+				form.HasRestParameter(),
+				optimizeBeginForm(form.getAnalyzedForms()), form.getFrameSize());
+	}
+}
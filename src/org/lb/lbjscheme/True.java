@@ -17,6 +17,8 @@
 package org.lb.lbjscheme;
 
 public final class True extends SchemeObject {
+	private static final long serialVersionUID = 1L;
+
 	private True() {
 	}
 
@@ -26,6 +28,10 @@ public final class True extends SchemeObject {
 		return _instance;
 	}
 
+	private Object readResolve() {
+		return _instance;
+	}
+
 	@Override
 	public boolean isBool() {
 		return true;
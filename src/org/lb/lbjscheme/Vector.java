@@ -19,6 +19,8 @@ package org.lb.lbjscheme;
 import java.util.*;
 
 public final class Vector extends SchemeObject {
+	private static final long serialVersionUID = 1L;
+
 	private final SchemeObject[] _values;
 
 	public Vector(int length) {
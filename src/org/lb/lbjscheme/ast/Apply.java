@@ -17,6 +17,8 @@
 package org.lb.lbjscheme.ast;
 
 public final class Apply extends SyntaxTreeObject {
+	private static final long serialVersionUID = 1L;
+
 	private final SyntaxTreeObject _procedure;
 	private final SyntaxTreeObject _parameters;
 
@@ -19,6 +19,8 @@ package org.lb.lbjscheme.ast;
 import java.util.List;
 
 public final class BeginForm extends SyntaxTreeObject {
+	private static final long serialVersionUID = 1L;
+
 	private final List<SyntaxTreeObject> _formsWithoutLast;
 	private final SyntaxTreeObject _lastForm;
 
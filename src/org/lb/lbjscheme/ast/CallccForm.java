@@ -17,6 +17,8 @@
 package org.lb.lbjscheme.ast;
 
 public final class CallccForm extends SyntaxTreeObject {
+	private static final long serialVersionUID = 1L;
+
 	private final SyntaxTreeObject _target;
 
 	public CallccForm(SyntaxTreeObject target) {
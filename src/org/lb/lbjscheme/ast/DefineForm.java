@@ -16,18 +16,18 @@
 
 package org.lb.lbjscheme.ast;
 
-import org.lb.lbjscheme.Symbol;
-
 public final class DefineForm extends SyntaxTreeObject {
-	private final Symbol _target;
+	private static final long serialVersionUID = 1L;
+
+	private final VariableReference _target;
 	private final SyntaxTreeObject _analyzedForm;
 
-	public DefineForm(Symbol target, SyntaxTreeObject analyzedForm) {
+	public DefineForm(VariableReference target, SyntaxTreeObject analyzedForm) {
 		_target = target;
 		_analyzedForm = analyzedForm;
 	}
 
-	public Symbol getTarget() {
+	public VariableReference getTarget() {
 		return _target;
 	}
 
@@ -19,8 +19,11 @@ package org.lb.lbjscheme.ast;
 import java.util.List;
 
 public final class Funcall extends SyntaxTreeObject {
+	private static final long serialVersionUID = 1L;
+
 	private final SyntaxTreeObject _procedure;
 	private final List<SyntaxTreeObject> _parameters;
+	private final InlineCache _inlineCache = new InlineCache();
 
 	public Funcall(SyntaxTreeObject procedure, List<SyntaxTreeObject> parameters) {
 		_procedure = procedure;
@@ -34,4 +37,8 @@ public final class Funcall extends SyntaxTreeObject {
 	public List<SyntaxTreeObject> getParameters() {
 		return _parameters;
 	}
+
+	public InlineCache getInlineCache() {
+		return _inlineCache;
+	}
 }
@@ -17,6 +17,8 @@
 package org.lb.lbjscheme.ast;
 
 public final class IfForm extends SyntaxTreeObject {
+	private static final long serialVersionUID = 1L;
+
 	private final SyntaxTreeObject _condition;
 	private final SyntaxTreeObject _thenPart;
 	private final SyntaxTreeObject _elsePart;
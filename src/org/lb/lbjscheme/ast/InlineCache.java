@@ -0,0 +1,73 @@
+// lbjScheme
+// An experimental Scheme subset interpreter in Java, based on SchemeNet.cs
+// Copyright (c) 2013, Leif Bruder <leifbruder@gmail.com>
+//
+// Permission to use, copy, modify, and/or distribute this software for any
+// purpose with or without fee is hereby granted, provided that the above
+// copyright notice and this permission notice appear in all copies.
+//
+// THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+// WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+// MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+// ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+// WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+// ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+// OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+
+package org.lb.lbjscheme.ast;
+
+import java.io.Serializable;
+import org.lb.lbjscheme.*;
+
+// Callee of a Funcall site calling a global: The binding of the global, the
+// procedure it held and the builtin or analyzed lambda to call for it.
+// Redefining or setting the global puts another procedure into the binding,
+// which misses and relinks the site. A site whose global keeps changing is
+// relinked a few times and then treated as megamorphic, i.e. not cached any
+// more.
+//
+// The entry is replaced as one, as the forms of the base environment are run
+// by several threads at once.
+public final class InlineCache implements Serializable {
+	private static final long serialVersionUID = 1L;
+
+	private static final int _maxRelinks = 4;
+
+	private transient Entry _entry;
+	private transient int _relinks;
+
+	// The callee linked for the procedure held by the binding, or null
+	public SchemeObject lookup(Binding binding, SchemeObject procedure) {
+		final Entry entry = _entry;
+		if (entry == null || entry._binding != binding
+				|| entry._procedure != procedure) return null;
+		return entry._callee;
+	}
+
+	public boolean isMegamorphic() {
+		return _relinks > _maxRelinks;
+	}
+
+	public void update(Binding binding, SchemeObject procedure,
+			SchemeObject callee) {
+		if (isMegamorphic()) return;
+		if (_entry != null && ++_relinks > _maxRelinks) {
+			_entry = null;
+			return;
+		}
+		_entry = new Entry(binding, procedure, callee);
+	}
+
+	private static final class Entry {
+		private final Binding _binding;
+		private final SchemeObject _procedure;
+		private final SchemeObject _callee;
+
+		public Entry(Binding binding, SchemeObject procedure,
+				SchemeObject callee) {
+			_binding = binding;
+			_procedure = procedure;
+			_callee = callee;
+		}
+	}
+}
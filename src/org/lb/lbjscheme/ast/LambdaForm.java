@@ -20,17 +20,21 @@ import java.util.List;
 import org.lb.lbjscheme.Symbol;
 
 public final class LambdaForm extends SyntaxTreeObject {
+	private static final long serialVersionUID = 1L;
+
 	private final String _name;
 	private final List<Symbol> _parameterNames;
 	private final boolean _hasRestParameter;
 	private final BeginForm _analyzedForms;
+	private final int _frameSize;
 
 	public LambdaForm(String name, List<Symbol> parameterNames,
-			boolean hasRestParameter, BeginForm analyzedForms) {
+			boolean hasRestParameter, BeginForm analyzedForms, int frameSize) {
 		_name = name;
 		_parameterNames = parameterNames;
 		_hasRestParameter = hasRestParameter;
 		_analyzedForms = analyzedForms;
+		_frameSize = frameSize;
 	}
 
 	public String getName() {
@@ -48,4 +52,8 @@ public final class LambdaForm extends SyntaxTreeObject {
 	public BeginForm getAnalyzedForms() {
 		return _analyzedForms;
 	}
+
+	public int getFrameSize() {
+		return _frameSize;
+	}
 }
@@ -0,0 +1,48 @@
+// lbjScheme
+// An experimental Scheme subset interpreter in Java, based on SchemeNet.cs
+// Copyright (c) 2013, Leif Bruder <leifbruder@gmail.com>
+//
+// Permission to use, copy, modify, and/or distribute this software for any
+// purpose with or without fee is hereby granted, provided that the above
+// copyright notice and this permission notice appear in all copies.
+//
+// THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+// WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+// MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+// ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+// WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+// ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+// OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+
+package org.lb.lbjscheme.ast;
+
+import java.util.List;
+
+// Immediately applied lambda whose variables are bound in the frame of the
+// enclosing lambda instead of a newly allocated one
+public final class LetForm extends SyntaxTreeObject {
+	private static final long serialVersionUID = 1L;
+
+	private final List<LocalVariable> _variables;
+	private final List<SyntaxTreeObject> _values;
+	private final BeginForm _body;
+
+	public LetForm(List<LocalVariable> variables,
+			List<SyntaxTreeObject> values, BeginForm body) {
+		_variables = variables;
+		_values = values;
+		_body = body;
+	}
+
+	public List<LocalVariable> getVariables() {
+		return _variables;
+	}
+
+	public List<SyntaxTreeObject> getValues() {
+		return _values;
+	}
+
+	public BeginForm getBody() {
+		return _body;
+	}
+}
@@ -16,21 +16,38 @@
 
 package org.lb.lbjscheme.ast;
 
-import org.lb.lbjscheme.Symbol;
+import org.lb.lbjscheme.*;
 
-public final class LiteralSymbol extends SyntaxTreeObject {
-	private final Symbol _symbol;
+// Variable not bound by any enclosing lambda; resolved to the binding cell of
+// the top-level environment on first use. The forms of the base environment
+// are shared by the environments layered over it and by several threads, so
+// the environment and its cell are replaced as one.
+public final class LiteralSymbol extends VariableReference {
+	private static final long serialVersionUID = 1L;
+
+	private transient ResolvedBinding _resolved;
 
 	public LiteralSymbol(Symbol symbol) {
-		_symbol = symbol;
+		super(symbol);
 	}
 
-	public Symbol getSymbol() {
-		return _symbol;
+	public Binding getBinding(Environment environment) {
+		ResolvedBinding resolved = _resolved;
+		if (resolved == null || resolved._environment != environment) {
+			resolved = new ResolvedBinding(environment,
+					environment.getBinding(getSymbol()));
+			_resolved = resolved;
+		}
+		return resolved._binding;
 	}
 
-	@Override
-	public String toString() {
-		return _symbol.toString();
+	private static final class ResolvedBinding {
+		private final Environment _environment;
+		private final Binding _binding;
+
+		public ResolvedBinding(Environment environment, Binding binding) {
+			_environment = environment;
+			_binding = binding;
+		}
 	}
 }
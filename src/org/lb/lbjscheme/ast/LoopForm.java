@@ -0,0 +1,40 @@
+// lbjScheme
+// An experimental Scheme subset interpreter in Java, based on SchemeNet.cs
+// Copyright (c) 2013, Leif Bruder <leifbruder@gmail.com>
+//
+// Permission to use, copy, modify, and/or distribute this software for any
+// purpose with or without fee is hereby granted, provided that the above
+// copyright notice and this permission notice appear in all copies.
+//
+// THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+// WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+// MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+// ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+// WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+// ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+// OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+
+package org.lb.lbjscheme.ast;
+
+// Body of a lambda that calls itself in tail position. A SelfTailCall with
+// the same label rebinds the parameters in the current frame and runs the
+// body again.
+public final class LoopForm extends SyntaxTreeObject {
+	private static final long serialVersionUID = 1L;
+
+	private final LoopLabel _label;
+	private final BeginForm _body;
+
+	public LoopForm(LoopLabel label, BeginForm body) {
+		_label = label;
+		_body = body;
+	}
+
+	public LoopLabel getLabel() {
+		return _label;
+	}
+
+	public BeginForm getBody() {
+		return _body;
+	}
+}
@@ -19,6 +19,8 @@ package org.lb.lbjscheme.ast;
 import org.lb.lbjscheme.SchemeObject;
 
 public final class SelfEvaluatingLiteral extends SyntaxTreeObject {
+	private static final long serialVersionUID = 1L;
+
 	private final SchemeObject _value;
 
 	public SelfEvaluatingLiteral(SchemeObject value) {
@@ -0,0 +1,40 @@
+// lbjScheme
+// An experimental Scheme subset interpreter in Java, based on SchemeNet.cs
+// Copyright (c) 2013, Leif Bruder <leifbruder@gmail.com>
+//
+// Permission to use, copy, modify, and/or distribute this software for any
+// purpose with or without fee is hereby granted, provided that the above
+// copyright notice and this permission notice appear in all copies.
+//
+// THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+// WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+// MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+// ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+// WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+// ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+// OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+
+package org.lb.lbjscheme.ast;
+
+// Tail call of a lambda to itself through the variable it is bound to. Runs
+// as a jump back to the enclosing LoopForm while the label is valid, else as
+// the original call.
+public final class SelfTailCall extends SyntaxTreeObject {
+	private static final long serialVersionUID = 1L;
+
+	private final LoopLabel _label;
+	private final Funcall _call;
+
+	public SelfTailCall(LoopLabel label, Funcall call) {
+		_label = label;
+		_call = call;
+	}
+
+	public LoopLabel getLabel() {
+		return _label;
+	}
+
+	public Funcall getCall() {
+		return _call;
+	}
+}
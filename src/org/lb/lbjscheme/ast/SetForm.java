@@ -16,18 +16,18 @@
 
 package org.lb.lbjscheme.ast;
 
-import org.lb.lbjscheme.Symbol;
-
 public final class SetForm extends SyntaxTreeObject {
-	private final Symbol _target;
+	private static final long serialVersionUID = 1L;
+
+	private final VariableReference _target;
 	private final SyntaxTreeObject _value;
 
-	public SetForm(Symbol target, SyntaxTreeObject value) {
+	public SetForm(VariableReference target, SyntaxTreeObject value) {
 		_target = target;
 		_value = value;
 	}
 
-	public Symbol getTarget() {
+	public VariableReference getTarget() {
 		return _target;
 	}
 
@@ -16,6 +16,10 @@
 
 package org.lb.lbjscheme.ast;
 
-public abstract class SyntaxTreeObject {
+import java.io.Serializable;
+
+public abstract class SyntaxTreeObject implements Serializable {
+	private static final long serialVersionUID = 1L;
+
 	// TODO: Empty interface; could I just store the AST objects as Object?
 }
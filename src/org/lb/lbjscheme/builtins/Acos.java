@@ -20,6 +20,8 @@ import java.util.List;
 import org.lb.lbjscheme.*;
 
 public final class Acos extends Builtin {
+	private static final long serialVersionUID = 1L;
+
 	@Override
 	public String getName() {
 		return "##acos";
@@ -20,6 +20,8 @@ import java.util.List;
 import org.lb.lbjscheme.*;
 
 public final class Add extends Builtin {
+	private static final long serialVersionUID = 1L;
+
 	@Override
 	public String getName() {
 		return "##+";
@@ -28,7 +30,7 @@ public final class Add extends Builtin {
 	@Override
 	public SchemeObject apply(List<SchemeObject> parameters)
 			throws SchemeException {
-		SchemeNumber ret = new Fixnum(0);
+		SchemeNumber ret = Fixnum.valueOf(0);
 		for (SchemeObject o : parameters)
 			ret = ret.add(getNumber(o));
 		return ret;
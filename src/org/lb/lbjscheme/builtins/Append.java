@@ -0,0 +1,50 @@
+// lbjScheme
+// An experimental Scheme subset interpreter in Java, based on SchemeNet.cs
+// Copyright (c) 2013, Leif Bruder <leifbruder@gmail.com>
+//
+// Permission to use, copy, modify, and/or distribute this software for any
+// purpose with or without fee is hereby granted, provided that the above
+// copyright notice and this permission notice appear in all copies.
+//
+// THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+// WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+// MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+// ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+// WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+// ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+// OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+
+package org.lb.lbjscheme.builtins;
+
+import java.util.List;
+import org.lb.lbjscheme.*;
+
+// Copies all lists but the last one, which becomes the tail of the result
+public final class Append extends Builtin {
+	private static final long serialVersionUID = 1L;
+
+	@Override
+	public String getName() {
+		return "##append";
+	}
+
+	@Override
+	public SchemeObject apply(List<SchemeObject> parameters)
+			throws SchemeException {
+		if (parameters.isEmpty()) return Nil.getInstance();
+		final int last = parameters.size() - 1;
+		final Pair head = new Pair(Nil.getInstance(), Nil.getInstance());
+		Pair tail = head;
+		for (SchemeObject list : parameters.subList(0, last)) {
+			SchemeObject i = list;
+			for (; i instanceof Pair; i = ((Pair) i).getCdr()) {
+				final Pair p = new Pair(((Pair) i).getCar(), Nil.getInstance());
+				tail.setCdr(p);
+				tail = p;
+			}
+			assertIsListEnd(i);
+		}
+		tail.setCdr(parameters.get(last));
+		return head.getCdr();
+	}
+}
@@ -20,6 +20,8 @@ import java.util.List;
 import org.lb.lbjscheme.*;
 
 public final class CharToInteger extends Builtin {
+	private static final long serialVersionUID = 1L;
+
 	@Override
 	public String getName() {
 		return "##char->integer";
@@ -29,6 +31,6 @@ public final class CharToInteger extends Builtin {
 	public SchemeObject apply(List<SchemeObject> parameters)
 			throws SchemeException {
 		assertParameterCount(1, parameters);
-		return new Fixnum(getCharacter(parameters.get(0)));
+		return Fixnum.valueOf(getCharacter(parameters.get(0)));
 	}
 }
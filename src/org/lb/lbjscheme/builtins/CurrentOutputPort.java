@@ -20,6 +20,8 @@ import java.util.List;
 import org.lb.lbjscheme.*;
 
 public final class CurrentOutputPort extends Builtin {
+	private static final long serialVersionUID = 1L;
+
 	private final Environment _global;
 
 	public CurrentOutputPort(Environment global) {
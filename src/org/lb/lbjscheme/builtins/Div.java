@@ -20,6 +20,8 @@ import java.util.List;
 import org.lb.lbjscheme.*;
 
 public final class Div extends Builtin {
+	private static final long serialVersionUID = 1L;
+
 	@Override
 	public String getName() {
 		return "##/";
@@ -30,7 +32,7 @@ public final class Div extends Builtin {
 			throws SchemeException {
 		assertParameterCountMin(1, parameters);
 		SchemeNumber ret = getNumber(parameters.get(0));
-		if (parameters.size() == 1) return new Fixnum(1).div(ret);
+		if (parameters.size() == 1) return Fixnum.valueOf(1).div(ret);
 		if (ret.isExact() && ret.isZero()) return ret; // Short-circuit
 		for (SchemeObject o : parameters.subList(1, parameters.size()))
 			ret = ret.div(getNumber(o));
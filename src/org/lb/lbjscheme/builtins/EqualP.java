@@ -0,0 +1,59 @@
+// lbjScheme
+// An experimental Scheme subset interpreter in Java, based on SchemeNet.cs
+// Copyright (c) 2013, Leif Bruder <leifbruder@gmail.com>
+//
+// Permission to use, copy, modify, and/or distribute this software for any
+// purpose with or without fee is hereby granted, provided that the above
+// copyright notice and this permission notice appear in all copies.
+//
+// THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+// WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+// MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+// ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+// WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+// ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+// OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+
+package org.lb.lbjscheme.builtins;
+
+import java.util.List;
+import org.lb.lbjscheme.*;
+
+public final class EqualP extends Builtin {
+	private static final long serialVersionUID = 1L;
+
+	@Override
+	public String getName() {
+		return "##equal?";
+	}
+
+	@Override
+	public SchemeObject apply(List<SchemeObject> parameters)
+			throws SchemeException {
+		assertParameterCount(2, parameters);
+		return isEqual(parameters.get(0), parameters.get(1)) ? _true : _false;
+	}
+
+	// Recursive on the cars only, so that long lists do not use up the stack
+	public static boolean isEqual(SchemeObject a, SchemeObject b)
+			throws SchemeException {
+		while (a instanceof Pair && b instanceof Pair) {
+			if (!isEqual(((Pair) a).getCar(), ((Pair) b).getCar()))
+				return false;
+			a = ((Pair) a).getCdr();
+			b = ((Pair) b).getCdr();
+		}
+		if (EqvP.isEqv(a, b)) return true;
+		if (a instanceof SchemeString && b instanceof SchemeString)
+			return ((SchemeString) a).compareTo((SchemeString) b, false) == 0;
+		if (a instanceof Vector && b instanceof Vector) {
+			final Vector x = (Vector) a;
+			final Vector y = (Vector) b;
+			if (x.getLength() != y.getLength()) return false;
+			for (int i = 0; i < x.getLength(); ++i)
+				if (!isEqual(x.getAt(i), y.getAt(i))) return false;
+			return true;
+		}
+		return false;
+	}
+}
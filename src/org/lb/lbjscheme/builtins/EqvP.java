@@ -0,0 +1,50 @@
+// lbjScheme
+// An experimental Scheme subset interpreter in Java, based on SchemeNet.cs
+// Copyright (c) 2013, Leif Bruder <leifbruder@gmail.com>
+//
+// Permission to use, copy, modify, and/or distribute this software for any
+// purpose with or without fee is hereby granted, provided that the above
+// copyright notice and this permission notice appear in all copies.
+//
+// THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+// WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+// MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+// ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+// WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+// ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+// OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+
+package org.lb.lbjscheme.builtins;
+
+import java.util.List;
+import org.lb.lbjscheme.*;
+
+public final class EqvP extends Builtin {
+	private static final long serialVersionUID = 1L;
+
+	@Override
+	public String getName() {
+		return "##eqv?";
+	}
+
+	@Override
+	public SchemeObject apply(List<SchemeObject> parameters)
+			throws SchemeException {
+		assertParameterCount(2, parameters);
+		return isEqv(parameters.get(0), parameters.get(1)) ? _true : _false;
+	}
+
+	public static boolean isEqv(SchemeObject a, SchemeObject b)
+			throws SchemeException {
+		if (a == b) return true;
+		if (a instanceof SchemeNumber && b instanceof SchemeNumber) {
+			final SchemeNumber x = (SchemeNumber) a;
+			final SchemeNumber y = (SchemeNumber) b;
+			return x.isExact() == y.isExact() && x.eq(y);
+		}
+		if (a instanceof SchemeCharacter && b instanceof SchemeCharacter)
+			return ((SchemeCharacter) a).getValue() == ((SchemeCharacter) b)
+					.getValue();
+		return false;
+	}
+}
@@ -0,0 +1,49 @@
+// lbjScheme
+// An experimental Scheme subset interpreter in Java, based on SchemeNet.cs
+// Copyright (c) 2013, Leif Bruder <leifbruder@gmail.com>
+//
+// Permission to use, copy, modify, and/or distribute this software for any
+// purpose with or without fee is hereby granted, provided that the above
+// copyright notice and this permission notice appear in all copies.
+//
+// THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+// WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+// MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+// ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+// WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+// ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+// OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+
+package org.lb.lbjscheme.builtins;
+
+import java.util.List;
+import org.lb.lbjscheme.*;
+
+public final class Filter extends HigherOrderBuiltin {
+	private static final long serialVersionUID = 1L;
+
+	@Override
+	public String getName() {
+		return "##filter";
+	}
+
+	@Override
+	public SchemeObject apply(ProcedureCaller caller,
+			List<SchemeObject> parameters) throws SchemeException {
+		assertParameterCount(2, parameters);
+		final SchemeObject f = parameters.get(0);
+		assertIsProcedure(f);
+		final Pair head = new Pair(Nil.getInstance(), Nil.getInstance());
+		Pair tail = head;
+		SchemeObject i = parameters.get(1);
+		for (; i instanceof Pair; i = ((Pair) i).getCdr()) {
+			final SchemeObject o = ((Pair) i).getCar();
+			if (caller.call(f, arguments(o)) == _false) continue;
+			final Pair p = new Pair(o, Nil.getInstance());
+			tail.setCdr(p);
+			tail = p;
+		}
+		assertIsListEnd(i);
+		return head.getCdr();
+	}
+}
@@ -0,0 +1,44 @@
+// lbjScheme
+// An experimental Scheme subset interpreter in Java, based on SchemeNet.cs
+// Copyright (c) 2013, Leif Bruder <leifbruder@gmail.com>
+//
+// Permission to use, copy, modify, and/or distribute this software for any
+// purpose with or without fee is hereby granted, provided that the above
+// copyright notice and this permission notice appear in all copies.
+//
+// THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+// WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+// MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+// ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+// WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+// ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+// OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+
+package org.lb.lbjscheme.builtins;
+
+import java.util.List;
+import org.lb.lbjscheme.*;
+
+// (fold f acc list) calls (f element acc) from left to right
+public final class Fold extends HigherOrderBuiltin {
+	private static final long serialVersionUID = 1L;
+
+	@Override
+	public String getName() {
+		return "##fold";
+	}
+
+	@Override
+	public SchemeObject apply(ProcedureCaller caller,
+			List<SchemeObject> parameters) throws SchemeException {
+		assertParameterCount(3, parameters);
+		final SchemeObject f = parameters.get(0);
+		assertIsProcedure(f);
+		SchemeObject acc = parameters.get(1);
+		SchemeObject i = parameters.get(2);
+		for (; i instanceof Pair; i = ((Pair) i).getCdr())
+			acc = caller.call(f, arguments(((Pair) i).getCar(), acc));
+		assertIsListEnd(i);
+		return acc;
+	}
+}
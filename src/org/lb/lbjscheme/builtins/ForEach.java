@@ -0,0 +1,48 @@
+// lbjScheme
+// An experimental Scheme subset interpreter in Java, based on SchemeNet.cs
+// Copyright (c) 2013, Leif Bruder <leifbruder@gmail.com>
+//
+// Permission to use, copy, modify, and/or distribute this software for any
+// purpose with or without fee is hereby granted, provided that the above
+// copyright notice and this permission notice appear in all copies.
+//
+// THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+// WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+// MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+// ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+// WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+// ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+// OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+
+package org.lb.lbjscheme.builtins;
+
+import java.util.List;
+import org.lb.lbjscheme.*;
+
+public final class ForEach extends HigherOrderBuiltin {
+	private static final long serialVersionUID = 1L;
+
+	@Override
+	public String getName() {
+		return "##for-each";
+	}
+
+	@Override
+	public SchemeObject apply(ProcedureCaller caller,
+			List<SchemeObject> parameters) throws SchemeException {
+		assertParameterCountMin(2, parameters);
+		final SchemeObject f = parameters.get(0);
+		assertIsProcedure(f);
+		final SchemeObject[] lists = parameters.subList(1, parameters.size())
+				.toArray(new SchemeObject[0]);
+		for (;;) {
+			final SchemeObject[] cars = new SchemeObject[lists.length];
+			for (int j = 0; j < lists.length; ++j) {
+				if (!(lists[j] instanceof Pair)) return _undefined;
+				cars[j] = ((Pair) lists[j]).getCar();
+				lists[j] = ((Pair) lists[j]).getCdr();
+			}
+			caller.call(f, arguments(cars));
+		}
+	}
+}
@@ -0,0 +1,59 @@
+// lbjScheme
+// An experimental Scheme subset interpreter in Java, based on SchemeNet.cs
+// Copyright (c) 2013, Leif Bruder <leifbruder@gmail.com>
+//
+// Permission to use, copy, modify, and/or distribute this software for any
+// purpose with or without fee is hereby granted, provided that the above
+// copyright notice and this permission notice appear in all copies.
+//
+// THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+// WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+// MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+// ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+// WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+// ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+// OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+
+package org.lb.lbjscheme.builtins;
+
+import java.util.*;
+import org.lb.lbjscheme.*;
+
+// Builtin taking procedures as parameters. Called without an evaluator, e.g.
+// by the VirtualMachine, it can only call other builtins.
+public abstract class HigherOrderBuiltin extends Builtin {
+	private static final long serialVersionUID = 1L;
+
+	private static final ProcedureCaller _builtinCaller = new ProcedureCaller() {
+		@Override
+		public SchemeObject call(SchemeObject procedure,
+				List<SchemeObject> parameters) throws SchemeException {
+			if (procedure instanceof Builtin)
+				return ((Builtin) procedure).apply(this, parameters);
+			throw new SchemeException("Builtins can not call "
+					+ procedure.toString(false) + " without an evaluator");
+		}
+	};
+
+	@Override
+	public final SchemeObject apply(List<SchemeObject> parameters)
+			throws SchemeException {
+		return apply(_builtinCaller, parameters);
+	}
+
+	@Override
+	public abstract SchemeObject apply(ProcedureCaller caller,
+			List<SchemeObject> parameters) throws SchemeException;
+
+	protected static List<SchemeObject> arguments(SchemeObject... values) {
+		return Arrays.asList(values);
+	}
+
+	protected final void assertIsProcedure(SchemeObject o)
+			throws SchemeException {
+		if (!o.isProcedure())
+			throw new SchemeException(getName()
+					+ ": Invalid parameter type; expected: procedure, got: "
+					+ o.getClass().getSimpleName());
+	}
+}
@@ -20,6 +20,8 @@ import java.util.List;
 import org.lb.lbjscheme.*;
 
 public final class IntegerToChar extends Builtin {
+	private static final long serialVersionUID = 1L;
+
 	@Override
 	public String getName() {
 		return "##integer->char";
@@ -29,6 +31,6 @@ public final class IntegerToChar extends Builtin {
 	public SchemeObject apply(List<SchemeObject> parameters)
 			throws SchemeException {
 		assertParameterCount(1, parameters);
-		return new SchemeCharacter((char) getFixnum(parameters.get(0)));
+		return SchemeCharacter.valueOf((char) getFixnum(parameters.get(0)));
 	}
 }
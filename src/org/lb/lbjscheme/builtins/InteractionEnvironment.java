@@ -20,6 +20,8 @@ import java.util.List;
 import org.lb.lbjscheme.*;
 
 public final class InteractionEnvironment extends Builtin {
+	private static final long serialVersionUID = 1L;
+
 	private final Environment _global;
 
 	public InteractionEnvironment(Environment global) {
@@ -35,6 +37,9 @@ public final class InteractionEnvironment extends Builtin {
 	public SchemeObject apply(List<SchemeObject> parameters)
 			throws SchemeException {
 		assertParameterCountMin(0, parameters);
-		return Environment.newInteractionEnvironment(_global);
+		final Environment ret = Environment.newInteractionEnvironment(null);
+		ret.setInputPort(_global.getInputPort());
+		ret.setOutputPort(_global.getOutputPort());
+		return ret;
 	}
 }
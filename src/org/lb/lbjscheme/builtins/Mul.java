@@ -20,6 +20,8 @@ import java.util.List;
 import org.lb.lbjscheme.*;
 
 public final class Mul extends Builtin {
+	private static final long serialVersionUID = 1L;
+
 	@Override
 	public String getName() {
 		return "##*";
@@ -28,7 +30,7 @@ public final class Mul extends Builtin {
 	@Override
 	public SchemeObject apply(List<SchemeObject> parameters)
 			throws SchemeException {
-		SchemeNumber ret = new Fixnum(1);
+		SchemeNumber ret = Fixnum.valueOf(1);
 		for (SchemeObject o : parameters) {
 			final SchemeNumber number = getNumber(o);
 			if (number.isZero() && number.isExact()) return number;
@@ -21,6 +21,8 @@ import java.util.List;
 import org.lb.lbjscheme.*;
 
 public final class OpenOutputFile extends Builtin {
+	private static final long serialVersionUID = 1L;
+
 	@Override
 	public String getName() {
 		return "##open-output-file";
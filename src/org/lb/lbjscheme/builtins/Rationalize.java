@@ -20,6 +20,8 @@ import java.util.List;
 import org.lb.lbjscheme.*;
 
 public final class Rationalize extends Builtin {
+	private static final long serialVersionUID = 1L;
+
 	private final SchemeNumber _zero = Fixnum.valueOf(0);
 	private final SchemeNumber _one = Fixnum.valueOf(1);
 
@@ -20,6 +20,8 @@ import java.util.List;
 import org.lb.lbjscheme.*;
 
 public final class ReadChar extends Builtin {
+	private static final long serialVersionUID = 1L;
+
 	private final Environment _global;
 
 	public ReadChar(Environment global) {
@@ -43,7 +45,7 @@ public final class ReadChar extends Builtin {
 		} else {
 			ret = getInputPort(parameters.get(0)).readChar();
 		}
-		return (ret == -1) ? EofObject.getInstance() : new SchemeCharacter(
+		return (ret == -1) ? EofObject.getInstance() : SchemeCharacter.valueOf(
 				(char) ret);
 	}
 }
@@ -0,0 +1,43 @@
+// lbjScheme
+// An experimental Scheme subset interpreter in Java, based on SchemeNet.cs
+// Copyright (c) 2013, Leif Bruder <leifbruder@gmail.com>
+//
+// Permission to use, copy, modify, and/or distribute this software for any
+// purpose with or without fee is hereby granted, provided that the above
+// copyright notice and this permission notice appear in all copies.
+//
+// THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+// WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+// MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+// ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+// WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+// ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+// OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+
+package org.lb.lbjscheme.builtins;
+
+import java.util.List;
+import org.lb.lbjscheme.*;
+
+// string=?, string<? etc. and their -ci variants
+public abstract class StringComparison extends Builtin {
+	private static final long serialVersionUID = 1L;
+
+	private final boolean _ignoreCase;
+
+	protected StringComparison(boolean ignoreCase) {
+		_ignoreCase = ignoreCase;
+	}
+
+	// Whether the result of SchemeString.compareTo satisfies the comparison
+	protected abstract boolean accept(int comparison);
+
+	@Override
+	public final SchemeObject apply(List<SchemeObject> parameters)
+			throws SchemeException {
+		assertParameterCount(2, parameters);
+		final SchemeString a = getString(parameters.get(0));
+		final SchemeString b = getString(parameters.get(1));
+		return accept(a.compareTo(b, _ignoreCase)) ? _true : _false;
+	}
+}
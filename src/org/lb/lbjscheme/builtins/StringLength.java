@@ -20,6 +20,8 @@ import java.util.List;
 import org.lb.lbjscheme.*;
 
 public final class StringLength extends Builtin {
+	private static final long serialVersionUID = 1L;
+
 	@Override
 	public String getName() {
 		return "##string-length";
@@ -31,6 +33,6 @@ public final class StringLength extends Builtin {
 		assertParameterCount(1, parameters);
 		final SchemeObject o = parameters.get(0);
 		o.assertIsString(getName());
-		return new Fixnum(((SchemeString) o).getLength());
+		return Fixnum.valueOf(((SchemeString) o).getLength());
 	}
 }
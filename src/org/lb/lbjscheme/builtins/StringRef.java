@@ -20,6 +20,8 @@ import java.util.List;
 import org.lb.lbjscheme.*;
 
 public final class StringRef extends Builtin {
+	private static final long serialVersionUID = 1L;
+
 	@Override
 	public String getName() {
 		return "##string-ref";
@@ -31,7 +33,7 @@ public final class StringRef extends Builtin {
 		assertParameterCount(2, parameters);
 		final SchemeObject str = parameters.get(0);
 		str.assertIsString(getName());
-		return new SchemeCharacter(
+		return SchemeCharacter.valueOf(
 				((SchemeString) str).getAt(getFixnum(parameters.get(1))));
 	}
 }
@@ -20,6 +20,8 @@ import java.util.*;
 import org.lb.lbjscheme.*;
 
 public final class SysCall extends Builtin {
+	private static final long serialVersionUID = 1L;
+
 	@Override
 	public String getName() {
 		return "sys:call";
@@ -20,6 +20,8 @@ import java.util.List;
 import org.lb.lbjscheme.*;
 
 public final class VectorLength extends Builtin {
+	private static final long serialVersionUID = 1L;
+
 	@Override
 	public String getName() {
 		return "##vector-length";
@@ -29,6 +31,6 @@ public final class VectorLength extends Builtin {
 	public SchemeObject apply(List<SchemeObject> parameters)
 			throws SchemeException {
 		assertParameterCount(1, parameters);
-		return new Fixnum(getVector(parameters.get(0)).getLength());
+		return Fixnum.valueOf(getVector(parameters.get(0)).getLength());
 	}
 }
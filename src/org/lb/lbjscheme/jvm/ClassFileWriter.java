@@ -0,0 +1,164 @@
+// lbjScheme
+// An experimental Scheme subset interpreter in Java, based on SchemeNet.cs
+// Copyright (c) 2013, Leif Bruder <leifbruder@gmail.com>
+//
+// Permission to use, copy, modify, and/or distribute this software for any
+// purpose with or without fee is hereby granted, provided that the above
+// copyright notice and this permission notice appear in all copies.
+//
+// THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+// WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+// MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+// ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+// WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+// ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+// OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+
+package org.lb.lbjscheme.jvm;
+
+import java.io.*;
+import java.util.HashMap;
+
+// Minimal writer for Java 5 (version 49) class files. Version 49 is used on
+// purpose: Class files of that version are checked by the type inferring
+// verifier, so no StackMapTable attributes have to be generated.
+final class ClassFileWriter {
+	private static final int _majorVersion = 49;
+
+	private final ByteArrayOutputStream _constantPoolBytes = new ByteArrayOutputStream();
+	private final DataOutputStream _constantPool = new DataOutputStream(
+			_constantPoolBytes);
+	private final HashMap<String, Integer> _constantPoolIndices = new HashMap<>();
+	private int _constantPoolCount = 1;
+
+	private final ByteArrayOutputStream _fieldBytes = new ByteArrayOutputStream();
+	private final DataOutputStream _fields = new DataOutputStream(_fieldBytes);
+	private int _fieldCount = 0;
+
+	private final ByteArrayOutputStream _methodBytes = new ByteArrayOutputStream();
+	private final DataOutputStream _methods = new DataOutputStream(
+			_methodBytes);
+	private int _methodCount = 0;
+
+	private int addConstant(String key, int tag, int... values) {
+		final Integer existing = _constantPoolIndices.get(key);
+		if (existing != null) return existing;
+		try {
+			_constantPool.writeByte(tag);
+			if (tag == 3)
+				_constantPool.writeInt(values[0]);
+			else
+				for (int i : values)
+					_constantPool.writeShort(i);
+		} catch (IOException ex) {
+			throw new RuntimeException(ex);
+		}
+		_constantPoolIndices.put(key, _constantPoolCount);
+		return _constantPoolCount++;
+	}
+
+	public int utf8(String value) {
+		final String key = "Utf8 " + value;
+		final Integer existing = _constantPoolIndices.get(key);
+		if (existing != null) return existing;
+		try {
+			_constantPool.writeByte(1);
+			_constantPool.writeUTF(value);
+		} catch (IOException ex) {
+			throw new RuntimeException(ex);
+		}
+		_constantPoolIndices.put(key, _constantPoolCount);
+		return _constantPoolCount++;
+	}
+
+	public int integer(int value) {
+		return addConstant("Integer " + value, 3, value);
+	}
+
+	public int string(String value) {
+		return addConstant("String " + value, 8, utf8(value));
+	}
+
+	public int classRef(String internalName) {
+		return addConstant("Class " + internalName, 7, utf8(internalName));
+	}
+
+	private int nameAndType(String name, String descriptor) {
+		return addConstant("NameAndType " + name + " " + descriptor, 12,
+				utf8(name), utf8(descriptor));
+	}
+
+	public int fieldRef(String owner, String name, String descriptor) {
+		return addConstant("Field " + owner + " " + name + " " + descriptor, 9,
+				classRef(owner), nameAndType(name, descriptor));
+	}
+
+	public int methodRef(String owner, String name, String descriptor) {
+		return addConstant("Method " + owner + " " + name + " " + descriptor,
+				10, classRef(owner), nameAndType(name, descriptor));
+	}
+
+	public int interfaceMethodRef(String owner, String name, String descriptor) {
+		return addConstant("InterfaceMethod " + owner + " " + name + " "
+				+ descriptor, 11, classRef(owner), nameAndType(name, descriptor));
+	}
+
+	public void addField(int access, String name, String descriptor) {
+		try {
+			_fields.writeShort(access);
+			_fields.writeShort(utf8(name));
+			_fields.writeShort(utf8(descriptor));
+			_fields.writeShort(0);
+		} catch (IOException ex) {
+			throw new RuntimeException(ex);
+		}
+		++_fieldCount;
+	}
+
+	public void addMethod(int access, String name, String descriptor,
+			byte[] code, int maxStack, int maxLocals) {
+		try {
+			_methods.writeShort(access);
+			_methods.writeShort(utf8(name));
+			_methods.writeShort(utf8(descriptor));
+			_methods.writeShort(1);
+			_methods.writeShort(utf8("Code"));
+			_methods.writeInt(12 + code.length);
+			_methods.writeShort(maxStack);
+			_methods.writeShort(maxLocals);
+			_methods.writeInt(code.length);
+			_methods.write(code);
+			_methods.writeShort(0);
+			_methods.writeShort(0);
+		} catch (IOException ex) {
+			throw new RuntimeException(ex);
+		}
+		++_methodCount;
+	}
+
+	public byte[] toByteArray(String thisClass, String superClass) {
+		final int thisClassIndex = classRef(thisClass);
+		final int superClassIndex = classRef(superClass);
+		final ByteArrayOutputStream ret = new ByteArrayOutputStream();
+		final DataOutputStream out = new DataOutputStream(ret);
+		try {
+			out.writeInt(0xCAFEBABE);
+			out.writeShort(0);
+			out.writeShort(_majorVersion);
+			out.writeShort(_constantPoolCount);
+			out.write(_constantPoolBytes.toByteArray());
+			out.writeShort(0x0031); // ACC_PUBLIC | ACC_FINAL | ACC_SUPER
+			out.writeShort(thisClassIndex);
+			out.writeShort(superClassIndex);
+			out.writeShort(0);
+			out.writeShort(_fieldCount);
+			out.write(_fieldBytes.toByteArray());
+			out.writeShort(_methodCount);
+			out.write(_methodBytes.toByteArray());
+			out.writeShort(0);
+		} catch (IOException ex) {
+			throw new RuntimeException(ex);
+		}
+		return ret.toByteArray();
+	}
+}
@@ -0,0 +1,86 @@
+// lbjScheme
+// An experimental Scheme subset interpreter in Java, based on SchemeNet.cs
+// Copyright (c) 2013, Leif Bruder <leifbruder@gmail.com>
+//
+// Permission to use, copy, modify, and/or distribute this software for any
+// purpose with or without fee is hereby granted, provided that the above
+// copyright notice and this permission notice appear in all copies.
+//
+// THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+// WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+// MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+// ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+// WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+// ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+// OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+
+package org.lb.lbjscheme.jvm;
+
+import java.util.*;
+
+// Bytecode of a single method, with forward references to labels
+final class CodeBuffer {
+	public static final class Label {
+		private int _position = -1;
+		private final List<Integer> _branches = new ArrayList<>();
+	}
+
+	private byte[] _code = new byte[1024];
+	private int _length = 0;
+
+	public int length() {
+		return _length;
+	}
+
+	public void u1(int value) {
+		if (_length == _code.length) _code = Arrays.copyOf(_code, _length * 2);
+		_code[_length++] = (byte) value;
+	}
+
+	public void u2(int value) {
+		u1(value >> 8);
+		u1(value);
+	}
+
+	public void op(int opcode, int index) {
+		u1(opcode);
+		u2(index);
+	}
+
+	public void local(int opcode, int shortOpcode, int index) {
+		if (index <= 3)
+			u1(shortOpcode + index);
+		else if (index <= 255) {
+			u1(opcode);
+			u1(index);
+		} else {
+			u1(0xc4); // wide
+			u1(opcode);
+			u2(index);
+		}
+	}
+
+	public void branch(int opcode, Label target) {
+		target._branches.add(_length);
+		u1(opcode);
+		u2(0);
+	}
+
+	public void mark(Label label) {
+		label._position = _length;
+	}
+
+	public byte[] toByteArray(Collection<Label> labels) {
+		for (Label label : labels)
+			for (int i : label._branches) {
+				if (label._position == -1)
+					throw new IllegalStateException("Label was never placed");
+				final int offset = label._position - i;
+				if (offset < Short.MIN_VALUE || offset > Short.MAX_VALUE)
+					throw new IllegalStateException("Branch offset too large");
+				_code[i + 1] = (byte) (offset >> 8);
+				_code[i + 2] = (byte) offset;
+			}
+		return Arrays.copyOf(_code, _length);
+	}
+}
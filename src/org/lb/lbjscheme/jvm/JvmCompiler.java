@@ -0,0 +1,741 @@
+// lbjScheme
+// An experimental Scheme subset interpreter in Java, based on SchemeNet.cs
+// Copyright (c) 2013, Leif Bruder <leifbruder@gmail.com>
+//
+// Permission to use, copy, modify, and/or distribute this software for any
+// purpose with or without fee is hereby granted, provided that the above
+// copyright notice and this permission notice appear in all copies.
+//
+// THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+// WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+// MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+// ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+// WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+// ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+// OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+
+package org.lb.lbjscheme.jvm;
+
+import java.util.*;
+import org.lb.lbjscheme.*;
+import org.lb.lbjscheme.ast.*;
+import org.lb.lbjscheme.jvm.CodeBuffer.Label;
+
+// Compiles analyzed forms into JVM classes, one JvmProcedure subclass per
+// lambda form, whose call method holds the body of the lambda. Variables of
+// the lambda's frame live in local variables of that method, except those
+// that nested lambdas refer to, which live in a Frame as before. Globals,
+// literals and symbols are static fields of the class, set after loading.
+//
+// Calls of compiled procedures are direct virtual calls; calls in tail
+// position return a JvmTailCall instead, and self tail calls of loops jump
+// back to the start of the method. Calls of global variables bound to a
+// builtin with a fast path in Primitives try that first.
+public final class JvmCompiler {
+	private static final String _procedureClass = "org/lb/lbjscheme/jvm/JvmProcedure";
+	private static final String _runtimeClass = "org/lb/lbjscheme/jvm/JvmRuntime";
+	private static final String _tailCallClass = "org/lb/lbjscheme/jvm/JvmTailCall";
+	private static final String _primitivesClass = "org/lb/lbjscheme/jvm/Primitives";
+	private static final String _frameClass = "org/lb/lbjscheme/Frame";
+	private static final String _bindingClass = "org/lb/lbjscheme/Binding";
+	private static final String _schemeObjectClass = "org/lb/lbjscheme/SchemeObject";
+	private static final String _environmentClass = "org/lb/lbjscheme/Environment";
+	private static final String _schemeObject = "Lorg/lb/lbjscheme/SchemeObject;";
+	private static final String _symbol = "Lorg/lb/lbjscheme/Symbol;";
+	private static final String _frame = "Lorg/lb/lbjscheme/Frame;";
+	private static final String _arguments = "[" + _schemeObject;
+	private static final Symbol _undefinedSymbol = Symbol
+			.fromString("undefined");
+	private static final int _maxDirectParameters = 4;
+
+	private static int _nextClassNumber = 0;
+
+	private final Environment _environment;
+	private final CodeUnitLoader _loader = new CodeUnitLoader();
+	private final List<String> _classNames = new ArrayList<>();
+	private final List<byte[]> _classFiles = new ArrayList<>();
+	private final List<List<Object>> _classConstants = new ArrayList<>();
+
+	private JvmCompiler(Environment environment) {
+		_environment = environment;
+	}
+
+	// Compiles a top level form into a procedure without parameters
+	public static JvmProcedure compile(SyntaxTreeObject form,
+			Environment environment) throws SchemeException {
+		final LambdaForm topLevel = new LambdaForm("top-level",
+				new ArrayList<Symbol>(), false, new BeginForm(
+						new ArrayList<SyntaxTreeObject>(), form), 0);
+		final JvmCompiler compiler = new JvmCompiler(environment);
+		return compiler.load(
+				compiler.new LambdaCompiler(topLevel, true).compile(),
+				new Frame(environment));
+	}
+
+	public static JvmProcedure compileLambda(LambdaForm form, Frame captured)
+			throws SchemeException {
+		final JvmCompiler compiler = new JvmCompiler(
+				captured.getEnvironment());
+		return compiler.load(
+				compiler.new LambdaCompiler(form, false).compile(), captured);
+	}
+
+	// Defers compiling until the first call of the procedure
+	public static JvmProcedure compileLambdaOnFirstCall(LambdaForm form,
+			Frame captured) {
+		return new LazyProcedure(form, captured);
+	}
+
+	private static synchronized int nextClassNumber() {
+		return _nextClassNumber++;
+	}
+
+	private JvmProcedure load(String className, Frame captured)
+			throws SchemeException {
+		try {
+			Class<?> ret = null;
+			final List<Class<?>> classes = new ArrayList<>();
+			for (int i = 0; i < _classNames.size(); ++i)
+				classes.add(_loader.define(_classNames.get(i),
+						_classFiles.get(i)));
+			for (int i = 0; i < classes.size(); ++i) {
+				final List<Object> constants = _classConstants.get(i);
+				for (int j = 0; j < constants.size(); ++j)
+					classes.get(i).getField("_c" + j)
+							.set(null, constants.get(j));
+				if (_classNames.get(i).equals(className)) ret = classes.get(i);
+			}
+			return (JvmProcedure) ret.getConstructor(Frame.class)
+					.newInstance(captured);
+		} catch (ReflectiveOperationException | LinkageError ex) {
+			throw new SchemeException("Internal error: Generated code for "
+					+ className + " could not be loaded: " + ex);
+		}
+	}
+
+	private final class LambdaCompiler {
+		private final LambdaForm _form;
+		private final String _className;
+		private final ClassFileWriter _class = new ClassFileWriter();
+		private final CodeBuffer _code = new CodeBuffer();
+		private final List<Label> _labels = new ArrayList<>();
+		private final Map<Label, Integer> _labelStackDepths = new HashMap<>();
+		private final Map<LoopLabel, Label> _loops = new HashMap<>();
+		private final List<Object> _constants = new ArrayList<>();
+		private final Map<Object, Integer> _constantIndices = new IdentityHashMap<>();
+
+		private final int _parameterCount;
+		private final boolean _isDirect;
+		private final boolean[] _isCaptured;
+		private final boolean _hasClosures;
+		private final int _firstSlotLocal;
+		private final int _ownFrame;
+		private int _nextLocal;
+		private int _maxLocals;
+		private int _stackDepth = 0;
+		private int _maxStack = 0;
+
+		public LambdaCompiler(LambdaForm form, boolean isTopLevel) {
+			_form = form;
+			_className = "org/lb/lbjscheme/jvm/generated/"
+					+ (isTopLevel ? "TopLevel" : "Lambda") + nextClassNumber()
+					+ "_" + form.getName().replaceAll("[^A-Za-z0-9_]", "_");
+			_parameterCount = form.getParameterNames().size();
+			_isDirect = !form.HasRestParameter()
+					&& _parameterCount <= _maxDirectParameters;
+			_isCaptured = new boolean[form.getFrameSize()];
+			_hasClosures = findCapturedSlots(form.getAnalyzedForms(), 0);
+			_firstSlotLocal = _isDirect ? 1 : 2;
+			_nextLocal = _firstSlotLocal + form.getFrameSize();
+			_ownFrame = _hasClosures && !isTopLevel ? _nextLocal++ : -1;
+			_maxLocals = _nextLocal;
+		}
+
+		// Marks the slots nested lambdas refer to; returns whether there are
+		// any nested lambdas
+		private boolean findCapturedSlots(SyntaxTreeObject o, int depth) {
+			if (o instanceof FreeVariable) {
+				final FreeVariable variable = (FreeVariable) o;
+				if (variable.getDepth() == depth)
+					_isCaptured[variable.getSlot()] = true;
+				return false;
+			}
+			if (o instanceof LambdaForm) {
+				findCapturedSlots(((LambdaForm) o).getAnalyzedForms(),
+						depth + 1);
+				return true;
+			}
+			boolean ret = false;
+			for (SyntaxTreeObject i : getChildren(o))
+				ret |= findCapturedSlots(i, depth);
+			return ret;
+		}
+
+		public String compile() throws SchemeException {
+			compilePrologue();
+			compile(_form.getAnalyzedForms(), true);
+
+			final byte[] body;
+			try {
+				body = _code.toByteArray(_labels);
+			} catch (IllegalStateException ex) {
+				throw new SchemeException(
+						"Form can not be compiled to JVM bytecode: "
+								+ ex.getMessage());
+			}
+			if (_isDirect)
+				_class.addMethod(0x0001, "call" + _parameterCount,
+						getCallDescriptor(_parameterCount), body,
+						_maxStack, _maxLocals);
+			else
+				_class.addMethod(0x0001, "call", "(" + _arguments + ")"
+						+ _schemeObject, body, _maxStack, _maxLocals);
+			addConstructor();
+			for (int i = 0; i < _constants.size(); ++i)
+				_class.addField(0x0009, "_c" + i,
+						getDescriptor(_constants.get(i)));
+
+			_classNames.add(_className.replace('/', '.'));
+			_classFiles.add(_class.toByteArray(_className, _procedureClass));
+			_classConstants.add(_constants);
+			return _className.replace('/', '.');
+		}
+
+		private void addConstructor() {
+			final CodeBuffer code = new CodeBuffer();
+			code.u1(0x2a); // aload_0
+			code.op(0x13, _class.string(_form.getName())); // ldc_w
+			code.op(0x11, _form.getParameterNames().size()); // sipush
+			code.u1(_form.HasRestParameter() ? 0x04 : 0x03); // iconst_1/0
+			code.u1(0x2b); // aload_1
+			code.op(0xb7, _class.methodRef(_procedureClass, "<init>",
+					"(Ljava/lang/String;IZ" + _frame + ")V"));
+			code.u1(0xb1); // return
+			_class.addMethod(0x0001, "<init>", "(" + _frame + ")V",
+					code.toByteArray(Collections.<Label> emptyList()), 5, 2);
+		}
+
+		// Moves the parameters to their slots and sets up the own frame
+		private void compilePrologue() {
+			if (!_isDirect) {
+				aload(0);
+				aload(1);
+				invoke(0xb6, _procedureClass, "checkParameterCount", "("
+						+ _arguments + ")V");
+				for (int i = 0; i < _parameterCount; ++i) {
+					aload(1);
+					pushInt(i);
+					if (_form.HasRestParameter() && i == _parameterCount - 1)
+						invoke(0xb8, _procedureClass, "restParameter", "("
+								+ _arguments + "I)" + _schemeObject);
+					else
+						op(0x32, -1); // aaload
+					astore(_firstSlotLocal + i);
+				}
+			}
+			for (int i = _parameterCount; i < _isCaptured.length; ++i)
+				if (!_isCaptured[i]) {
+					op(0x01, 1); // aconst_null
+					astore(_firstSlotLocal + i);
+				}
+			if (_ownFrame == -1) return;
+
+			_code.op(0xbb, _class.classRef(_frameClass)); // new
+			adjustStack(1);
+			op(0x59, 1); // dup
+			loadCaptured();
+			pushInt(_isCaptured.length);
+			invoke(0xb7, _frameClass, "<init>", "(" + _frame + "I)V");
+			astore(_ownFrame);
+			for (int i = 0; i < _parameterCount; ++i)
+				if (_isCaptured[i]) {
+					loadOwnFrame();
+					pushInt(i);
+					aload(_firstSlotLocal + i);
+					invoke(0xb6, _frameClass, "define", "(I" + _schemeObject
+							+ ")V");
+				}
+		}
+
+		// Leaves the value of the form on the stack; in tail position, returns
+		// it or jumps back to a loop instead
+		private void compile(SyntaxTreeObject o, boolean tail)
+				throws SchemeException {
+			if (o instanceof BeginForm) {
+				final BeginForm form = (BeginForm) o;
+				for (SyntaxTreeObject i : form.getFormsWithoutLast()) {
+					compile(i, false);
+					op(0x57, -1); // pop
+				}
+				compile(form.getLastForm(), tail);
+				return;
+			}
+
+			if (o instanceof IfForm) {
+				final IfForm form = (IfForm) o;
+				final Label elseLabel = newLabel();
+				final Label end = newLabel();
+				compile(form.getCondition(), false);
+				constant(False.getInstance());
+				branch(0xa5, elseLabel, -2); // if_acmpeq
+				compile(form.getThenPart(), tail);
+				if (!tail) branch(0xa7, end, 0); // goto
+				mark(elseLabel);
+				compile(form.getElsePart(), tail);
+				if (!tail) mark(end);
+				return;
+			}
+
+			if (o instanceof LetForm) {
+				final LetForm form = (LetForm) o;
+				for (int i = 0; i < form.getVariables().size(); ++i) {
+					compile(form.getValues().get(i), false);
+					storeSlot(form.getVariables().get(i).getSlot());
+				}
+				compile(form.getBody(), tail);
+				return;
+			}
+
+			if (o instanceof LoopForm) {
+				final LoopForm form = (LoopForm) o;
+				final Label start = newLabel();
+				// A loop at the method entry can't be compiled on stack
+				// replacement, which starts at the jump target
+				if (_code.length() == 0) op(0x00, 0); // nop
+				mark(start);
+				_loops.put(form.getLabel(), start);
+				compile(form.getBody(), tail);
+				return;
+			}
+
+			if (o instanceof SelfTailCall) {
+				final SelfTailCall form = (SelfTailCall) o;
+				final Label start = _loops.get(form.getLabel());
+				if (tail && start != null && form.getLabel().isValid())
+					compileSelfTailCall(form.getCall().getParameters(), start);
+				else
+					compile(form.getCall(), tail);
+				return;
+			}
+
+			if (o instanceof Funcall) {
+				final Funcall form = (Funcall) o;
+				compileCall(form.getProcedure(), form.getParameters(), tail);
+			} else if (o instanceof Apply) {
+				final Apply form = (Apply) o;
+				compile(form.getProcedure(), false);
+				compile(form.getParameters(), false);
+				invoke(0xb8, _runtimeClass, tail ? "tailApply" : "apply", "("
+						+ _schemeObject + _schemeObject + ")" + _schemeObject);
+			} else
+				compileValue(o);
+			if (tail) op(0xb0, -1); // areturn
+		}
+
+		private void compileValue(SyntaxTreeObject o) throws SchemeException {
+			if (o instanceof SelfEvaluatingLiteral) {
+				constant(((SelfEvaluatingLiteral) o).getValue());
+				return;
+			}
+
+			if (o instanceof LiteralSymbol) {
+				constant(((LiteralSymbol) o).getBinding(_environment));
+				invoke(0xb6, _bindingClass, "getValue", "()" + _schemeObject);
+				return;
+			}
+
+			if (o instanceof LocalVariable) {
+				loadSlot((LocalVariable) o);
+				return;
+			}
+
+			if (o instanceof FreeVariable) {
+				final FreeVariable form = (FreeVariable) o;
+				loadFrame(form.getDepth());
+				pushInt(form.getSlot());
+				constant(form.getSymbol());
+				invoke(0xb6, _frameClass, "get", "(I" + _symbol + ")"
+						+ _schemeObject);
+				return;
+			}
+
+			if (o instanceof LambdaForm) {
+				final String nested = new LambdaCompiler((LambdaForm) o, false)
+						.compile().replace('.', '/');
+				_code.op(0xbb, _class.classRef(nested)); // new
+				adjustStack(1);
+				op(0x59, 1); // dup
+				loadOwnFrame();
+				invoke(0xb7, nested, "<init>", "(" + _frame + ")V");
+				return;
+			}
+
+			if (o instanceof DefineForm) {
+				final DefineForm form = (DefineForm) o;
+				final VariableReference target = form.getTarget();
+				if (target instanceof LocalVariable) {
+					compile(form.getAnalyzedForm(), false);
+					storeSlot(((LocalVariable) target).getSlot());
+				} else {
+					constant(_environment);
+					constant(target.getSymbol());
+					compile(form.getAnalyzedForm(), false);
+					invoke(0xb6, _environmentClass, "define", "(" + _symbol
+							+ _schemeObject + ")V");
+				}
+				constant(_undefinedSymbol);
+				return;
+			}
+
+			if (o instanceof SetForm) {
+				compileSet((SetForm) o);
+				constant(_undefinedSymbol);
+				return;
+			}
+
+			if (o instanceof CallccForm) {
+				compile(((CallccForm) o).getTarget(), false);
+				invoke(0xb8, _runtimeClass, "callWithCurrentContinuation", "("
+						+ _schemeObject + ")" + _schemeObject);
+				return;
+			}
+
+			throw new SchemeException(
+					"Internal error: Don't know how to handle object of type "
+							+ o.getClass());
+		}
+
+		private void compileSet(SetForm form) throws SchemeException {
+			final VariableReference target = form.getTarget();
+			if (target instanceof LocalVariable
+					&& !_isCaptured[((LocalVariable) target).getSlot()]) {
+				final LocalVariable variable = (LocalVariable) target;
+				if (variable.getSlot() >= _parameterCount) {
+					loadSlot(variable);
+					op(0x57, -1); // pop
+				}
+				compile(form.getValue(), false);
+				astore(_firstSlotLocal + variable.getSlot());
+			} else if (target instanceof LocalVariable) {
+				loadOwnFrame();
+				pushInt(((LocalVariable) target).getSlot());
+				constant(target.getSymbol());
+				compile(form.getValue(), false);
+				invoke(0xb6, _frameClass, "set", "(I" + _symbol
+						+ _schemeObject + ")V");
+			} else if (target instanceof FreeVariable) {
+				loadFrame(((FreeVariable) target).getDepth());
+				pushInt(((FreeVariable) target).getSlot());
+				constant(target.getSymbol());
+				compile(form.getValue(), false);
+				invoke(0xb6, _frameClass, "set", "(I" + _symbol
+						+ _schemeObject + ")V");
+			} else {
+				constant(_environment);
+				constant(target.getSymbol());
+				compile(form.getValue(), false);
+				invoke(0xb6, _environmentClass, "set", "(" + _symbol
+						+ _schemeObject + ")V");
+			}
+		}
+
+		private void compileCall(SyntaxTreeObject procedureForm,
+				List<SyntaxTreeObject> parameters, boolean tail)
+				throws SchemeException {
+			final int count = parameters.size();
+			final int procedure = allocateLocals(1 + count);
+			final int first = procedure + 1;
+			compile(procedureForm, false);
+			astore(procedure);
+			for (int i = 0; i < count; ++i) {
+				compile(parameters.get(i), false);
+				astore(first + i);
+			}
+
+			final Label end = newLabel();
+			final String primitive = getPrimitive(procedureForm, count);
+			if (primitive != null) {
+				aload(procedure);
+				for (int i = 0; i < count; ++i)
+					aload(first + i);
+				invoke(0xb8, _primitivesClass, primitive,
+						getCallDescriptor(count + 1));
+				op(0x59, 1); // dup
+				branch(0xc7, end, -1); // ifnonnull
+				op(0x57, -1); // pop
+			}
+
+			if (tail) {
+				aload(procedure);
+				loadArguments(first, count);
+				invoke(0xb8, _runtimeClass, "tailCall", "(" + _schemeObject
+						+ _arguments + ")" + _schemeObject);
+			} else {
+				final Label generic = newLabel();
+				aload(procedure);
+				_code.op(0xc1, _class.classRef(_procedureClass)); // instanceof
+				branch(0x99, generic, -1); // ifeq
+				aload(procedure);
+				_code.op(0xc0, _class.classRef(_procedureClass)); // checkcast
+				if (count <= _maxDirectParameters) {
+					for (int i = 0; i < count; ++i)
+						aload(first + i);
+					invoke(0xb6, _procedureClass, "call" + count,
+							getCallDescriptor(count));
+				} else {
+					loadArguments(first, count);
+					invoke(0xb6, _procedureClass, "call", "(" + _arguments
+							+ ")" + _schemeObject);
+				}
+				invoke(0xb8, _tailCallClass, "trampoline", "(" + _schemeObject
+						+ ")" + _schemeObject);
+				branch(0xa7, end, 0); // goto
+				mark(generic);
+				aload(procedure);
+				loadArguments(first, count);
+				invoke(0xb8, _runtimeClass, "call", "(" + _schemeObject
+						+ _arguments + ")" + _schemeObject);
+			}
+			mark(end);
+			freeLocals(procedure);
+		}
+
+		// The fast path of the builtin the procedure is bound to now, if it
+		// is a global variable
+		private String getPrimitive(SyntaxTreeObject procedure, int count) {
+			if (!(procedure instanceof LiteralSymbol)) return null;
+			final Binding binding = ((LiteralSymbol) procedure)
+					.getBinding(_environment);
+			try {
+				return Primitives.getMethodName(binding.getValue(), count);
+			} catch (SchemeException ex) {
+				return null;
+			}
+		}
+
+		private void compileSelfTailCall(List<SyntaxTreeObject> parameters,
+				Label start) throws SchemeException {
+			final int first = allocateLocals(parameters.size());
+			for (int i = 0; i < parameters.size(); ++i) {
+				compile(parameters.get(i), false);
+				astore(first + i);
+			}
+			for (int i = 0; i < parameters.size(); ++i) {
+				aload(first + i);
+				storeSlot(i);
+			}
+			for (int i = parameters.size(); i < _isCaptured.length; ++i)
+				if (!_isCaptured[i]) {
+					op(0x01, 1); // aconst_null
+					astore(_firstSlotLocal + i);
+				}
+			if (_hasClosures) {
+				loadOwnFrame();
+				pushInt(parameters.size());
+				invoke(0xb6, _frameClass, "clear", "(I)V");
+			}
+			freeLocals(first);
+			branch(0xa7, start, 0); // goto
+		}
+
+		private void loadSlot(LocalVariable variable) {
+			final int slot = variable.getSlot();
+			if (_isCaptured[slot]) {
+				loadOwnFrame();
+				pushInt(slot);
+				constant(variable.getSymbol());
+				invoke(0xb6, _frameClass, "get", "(I" + _symbol + ")"
+						+ _schemeObject);
+				return;
+			}
+			aload(_firstSlotLocal + slot);
+			if (slot < _parameterCount) return;
+			constant(variable.getSymbol());
+			invoke(0xb8, _runtimeClass, "checkDefined", "(" + _schemeObject
+					+ _symbol + ")" + _schemeObject);
+		}
+
+		// Stores the value on the stack
+		private void storeSlot(int slot) {
+			if (!_isCaptured[slot]) {
+				astore(_firstSlotLocal + slot);
+				return;
+			}
+			final int value = allocateLocals(1);
+			astore(value);
+			loadOwnFrame();
+			pushInt(slot);
+			aload(value);
+			invoke(0xb6, _frameClass, "define", "(I" + _schemeObject + ")V");
+			freeLocals(value);
+		}
+
+		private void loadCaptured() {
+			aload(0);
+			// getfield
+			_code.op(0xb4, _class.fieldRef(_className, "_captured", _frame));
+		}
+
+		private void loadOwnFrame() {
+			if (_ownFrame == -1)
+				loadCaptured();
+			else
+				aload(_ownFrame);
+		}
+
+		private void loadFrame(int depth) {
+			loadCaptured();
+			if (depth == 1) return;
+			pushInt(depth - 1);
+			invoke(0xb6, _frameClass, "getOuter", "(I)" + _frame);
+		}
+
+		private void loadArguments(int first, int count) {
+			pushInt(count);
+			_code.op(0xbd, _class.classRef(_schemeObjectClass)); // anewarray
+			for (int i = 0; i < count; ++i) {
+				op(0x59, 1); // dup
+				pushInt(i);
+				aload(first + i);
+				op(0x53, -3); // aastore
+			}
+		}
+
+		private void constant(Object value) {
+			Integer index = _constantIndices.get(value);
+			if (index == null) {
+				index = _constants.size();
+				_constants.add(value);
+				_constantIndices.put(value, index);
+			}
+			_code.op(0xb2, _class.fieldRef(_className, "_c" + index,
+					getDescriptor(value))); // getstatic
+			adjustStack(1);
+		}
+
+		private int allocateLocals(int count) {
+			final int ret = _nextLocal;
+			_nextLocal += count;
+			_maxLocals = Math.max(_maxLocals, _nextLocal);
+			return ret;
+		}
+
+		private void freeLocals(int first) {
+			_nextLocal = first;
+		}
+
+		private Label newLabel() {
+			final Label ret = new Label();
+			_labels.add(ret);
+			return ret;
+		}
+
+		private void branch(int opcode, Label target, int stackDelta) {
+			adjustStack(stackDelta);
+			_code.branch(opcode, target);
+			_labelStackDepths.put(target, _stackDepth);
+		}
+
+		// Code after a label is reached by the branches to it, so it starts
+		// with their stack depth
+		private void mark(Label label) {
+			final Integer depth = _labelStackDepths.get(label);
+			if (depth != null) _stackDepth = depth;
+			_labelStackDepths.put(label, _stackDepth);
+			_code.mark(label);
+		}
+
+		private void op(int opcode, int stackDelta) {
+			_code.u1(opcode);
+			adjustStack(stackDelta);
+		}
+
+		private void aload(int local) {
+			_code.local(0x19, 0x2a, local);
+			adjustStack(1);
+		}
+
+		private void astore(int local) {
+			_code.local(0x3a, 0x4b, local);
+			adjustStack(-1);
+		}
+
+		private void pushInt(int value) {
+			if (value >= -1 && value <= 5)
+				_code.u1(0x03 + value); // iconst_<n>
+			else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+				_code.u1(0x10); // bipush
+				_code.u1(value);
+			} else
+				_code.op(0x11, value); // sipush
+			adjustStack(1);
+		}
+
+		private void invoke(int opcode, String owner, String name,
+				String descriptor) {
+			_code.op(opcode, _class.methodRef(owner, name, descriptor));
+			int delta = descriptor.endsWith(")V") ? 0 : 1;
+			if (opcode != 0xb8) --delta; // the receiver
+			for (int i = 1; descriptor.charAt(i) != ')'; ++i) {
+				--delta;
+				while (descriptor.charAt(i) == '[')
+					++i;
+				if (descriptor.charAt(i) == 'L')
+					i = descriptor.indexOf(';', i);
+			}
+			adjustStack(delta);
+		}
+
+		private void adjustStack(int delta) {
+			_stackDepth += delta;
+			_maxStack = Math.max(_maxStack, _stackDepth);
+		}
+	}
+
+	private static List<SyntaxTreeObject> getChildren(SyntaxTreeObject o) {
+		final List<SyntaxTreeObject> ret = new ArrayList<>();
+		if (o instanceof BeginForm) {
+			ret.addAll(((BeginForm) o).getFormsWithoutLast());
+			ret.add(((BeginForm) o).getLastForm());
+		} else if (o instanceof DefineForm)
+			ret.add(((DefineForm) o).getAnalyzedForm());
+		else if (o instanceof SetForm) {
+			ret.add(((SetForm) o).getTarget());
+			ret.add(((SetForm) o).getValue());
+		} else if (o instanceof Funcall) {
+			ret.add(((Funcall) o).getProcedure());
+			ret.addAll(((Funcall) o).getParameters());
+		} else if (o instanceof Apply) {
+			ret.add(((Apply) o).getProcedure());
+			ret.add(((Apply) o).getParameters());
+		} else if (o instanceof CallccForm)
+			ret.add(((CallccForm) o).getTarget());
+		else if (o instanceof IfForm) {
+			ret.add(((IfForm) o).getCondition());
+			ret.add(((IfForm) o).getThenPart());
+			ret.add(((IfForm) o).getElsePart());
+		} else if (o instanceof LetForm) {
+			ret.addAll(((LetForm) o).getValues());
+			ret.add(((LetForm) o).getBody());
+		} else if (o instanceof LoopForm)
+			ret.add(((LoopForm) o).getBody());
+		else if (o instanceof SelfTailCall)
+			ret.add(((SelfTailCall) o).getCall());
+		return ret;
+	}
+
+	private static String getDescriptor(Object constant) {
+		if (constant instanceof Binding) return "L" + _bindingClass + ";";
+		if (constant instanceof Environment)
+			return "L" + _environmentClass + ";";
+		if (constant instanceof Symbol) return _symbol;
+		return _schemeObject;
+	}
+
+	private static String getCallDescriptor(int parameterCount) {
+		final StringBuilder ret = new StringBuilder("(");
+		for (int i = 0; i < parameterCount; ++i)
+			ret.append(_schemeObject);
+		return ret.append(")").append(_schemeObject).toString();
+	}
+}
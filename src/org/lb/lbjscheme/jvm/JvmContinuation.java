@@ -0,0 +1,80 @@
+// lbjScheme
+// An experimental Scheme subset interpreter in Java, based on SchemeNet.cs
+// Copyright (c) 2013, Leif Bruder <leifbruder@gmail.com>
+//
+// Permission to use, copy, modify, and/or distribute this software for any
+// purpose with or without fee is hereby granted, provided that the above
+// copyright notice and this permission notice appear in all copies.
+//
+// THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+// WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+// MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+// ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+// WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+// ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+// OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+
+package org.lb.lbjscheme.jvm;
+
+import java.util.Arrays;
+import org.lb.lbjscheme.*;
+
+// Continuation captured by call/cc in compiled code. Calls run on the Java
+// stack, so a continuation can only escape: Calling it unwinds the stack to
+// the call/cc that captured it, which must not have returned yet.
+public final class JvmContinuation extends SchemeObject {
+	private static final long serialVersionUID = 1L;
+
+	// Thrown to unwind the stack; without a stack trace, as nobody reads it
+	static final class Escape extends RuntimeException {
+		private static final long serialVersionUID = 1L;
+
+		final JvmContinuation continuation;
+		final SchemeObject value;
+
+		Escape(JvmContinuation continuation, SchemeObject value) {
+			super(null, null, false, false);
+			this.continuation = continuation;
+			this.value = value;
+		}
+	}
+
+	private boolean _valid = true;
+
+	static SchemeObject callWithCurrentContinuation(SchemeObject target)
+			throws SchemeException {
+		final JvmContinuation k = new JvmContinuation();
+		try {
+			return JvmRuntime.call(target, new SchemeObject[] { k });
+		} catch (Escape ex) {
+			if (ex.continuation != k) throw ex;
+			return ex.value;
+		} finally {
+			k._valid = false;
+		}
+	}
+
+	SchemeObject resume(SchemeObject[] arguments) throws SchemeException {
+		if (!_valid)
+			throw new SchemeException(
+					"JvmCompilingEvaluator only supports escaping continuations");
+		throw new Escape(this, arguments.length == 1 ? arguments[0]
+				: Pair.fromIterable(Arrays.asList(arguments)));
+	}
+
+	@Override
+	public boolean isProcedure() {
+		return true;
+	}
+
+	@Override
+	public String toString(boolean forDisplay) {
+		return "<continuation>";
+	}
+
+	@Override
+	public Object toJavaObject() throws SchemeException {
+		throw new SchemeException(
+				"Continuation cannot be converted into a plain Java object");
+	}
+}
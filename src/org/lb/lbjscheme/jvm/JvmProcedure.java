@@ -0,0 +1,129 @@
+// lbjScheme
+// An experimental Scheme subset interpreter in Java, based on SchemeNet.cs
+// Copyright (c) 2013, Leif Bruder <leifbruder@gmail.com>
+//
+// Permission to use, copy, modify, and/or distribute this software for any
+// purpose with or without fee is hereby granted, provided that the above
+// copyright notice and this permission notice appear in all copies.
+//
+// THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+// WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+// MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+// ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+// WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+// ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+// OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+
+package org.lb.lbjscheme.jvm;
+
+import org.lb.lbjscheme.*;
+
+// Base class of the classes generated by the JvmCompiler, one per lambda
+// form. Procedures of up to four parameters and no rest parameter override
+// the call method for their parameter count; all others override
+// call(SchemeObject[]). The other entry points pack their arguments and end
+// up in the parameter count check of call(SchemeObject[]).
+//
+// Any of them may return a JvmTailCall, which the caller has to run through
+// JvmTailCall.trampoline() unless it is in tail position itself.
+public abstract class JvmProcedure extends SchemeObject {
+	private static final long serialVersionUID = 1L;
+
+	private final String _name;
+	private final int _parameterCount;
+	private final boolean _hasRestParameter;
+	protected final Frame _captured;
+
+	protected JvmProcedure(String name, int parameterCount,
+			boolean hasRestParameter, Frame captured) {
+		_name = name;
+		_parameterCount = parameterCount;
+		_hasRestParameter = hasRestParameter;
+		_captured = captured;
+	}
+
+	public String getName() {
+		return _name;
+	}
+
+	public SchemeObject call0() throws SchemeException {
+		return call(new SchemeObject[0]);
+	}
+
+	public SchemeObject call1(SchemeObject a) throws SchemeException {
+		return call(new SchemeObject[] { a });
+	}
+
+	public SchemeObject call2(SchemeObject a, SchemeObject b)
+			throws SchemeException {
+		return call(new SchemeObject[] { a, b });
+	}
+
+	public SchemeObject call3(SchemeObject a, SchemeObject b, SchemeObject c)
+			throws SchemeException {
+		return call(new SchemeObject[] { a, b, c });
+	}
+
+	public SchemeObject call4(SchemeObject a, SchemeObject b, SchemeObject c,
+			SchemeObject d) throws SchemeException {
+		return call(new SchemeObject[] { a, b, c, d });
+	}
+
+	public SchemeObject call(SchemeObject[] arguments) throws SchemeException {
+		checkParameterCount(arguments);
+		switch (arguments.length) {
+		case 0:
+			return call0();
+		case 1:
+			return call1(arguments[0]);
+		case 2:
+			return call2(arguments[0], arguments[1]);
+		case 3:
+			return call3(arguments[0], arguments[1], arguments[2]);
+		case 4:
+			return call4(arguments[0], arguments[1], arguments[2],
+					arguments[3]);
+		default:
+			throw new SchemeException("Internal error: " + _name
+					+ " has no entry point for " + arguments.length
+					+ " parameters");
+		}
+	}
+
+	protected final void checkParameterCount(SchemeObject[] arguments)
+			throws SchemeException {
+		if (_hasRestParameter) {
+			final int required = _parameterCount - 1;
+			if (required > arguments.length)
+				throw new SchemeException(
+						"Invalid parameter count: Expected at least "
+								+ required + ", got " + arguments.length);
+		} else if (_parameterCount != arguments.length)
+			throw new SchemeException("Invalid parameter count: Expected "
+					+ _parameterCount + ", got " + arguments.length);
+	}
+
+	protected static SchemeObject restParameter(SchemeObject[] arguments,
+			int first) {
+		SchemeObject ret = Nil.getInstance();
+		for (int i = arguments.length - 1; i >= first; --i)
+			ret = new Pair(arguments[i], ret);
+		return ret;
+	}
+
+	@Override
+	public boolean isProcedure() {
+		return true;
+	}
+
+	@Override
+	public String toString(boolean forDisplay) {
+		return "<procedure " + _name + ">";
+	}
+
+	@Override
+	public Object toJavaObject() throws SchemeException {
+		throw new SchemeException(
+				"Lambda expression cannot be converted into a plain Java object");
+	}
+}
@@ -0,0 +1,115 @@
+// lbjScheme
+// An experimental Scheme subset interpreter in Java, based on SchemeNet.cs
+// Copyright (c) 2013, Leif Bruder <leifbruder@gmail.com>
+//
+// Permission to use, copy, modify, and/or distribute this software for any
+// purpose with or without fee is hereby granted, provided that the above
+// copyright notice and this permission notice appear in all copies.
+//
+// THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+// WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+// MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+// ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+// WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+// ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+// OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+
+package org.lb.lbjscheme.jvm;
+
+import java.util.*;
+import org.lb.lbjscheme.*;
+
+// The parts of compiled code that are not worth generating inline: calls of
+// anything but compiled procedures, apply, call/cc and the checks of local
+// variables
+public final class JvmRuntime {
+	private static final ProcedureCaller _caller = new ProcedureCaller() {
+		@Override
+		public SchemeObject call(SchemeObject procedure,
+				List<SchemeObject> parameters) throws SchemeException {
+			return JvmRuntime.call(procedure,
+					parameters.toArray(new SchemeObject[parameters.size()]));
+		}
+	};
+
+	public static ProcedureCaller getCaller() {
+		return _caller;
+	}
+
+	public static SchemeObject call(SchemeObject procedure,
+			SchemeObject[] arguments) throws SchemeException {
+		if (procedure instanceof JvmProcedure)
+			return JvmTailCall.trampoline(((JvmProcedure) procedure)
+					.call(arguments));
+		return callOther(procedure, arguments);
+	}
+
+	public static SchemeObject tailCall(SchemeObject procedure,
+			SchemeObject[] arguments) throws SchemeException {
+		if (procedure instanceof JvmProcedure)
+			return new JvmTailCall((JvmProcedure) procedure, arguments);
+		return callOther(procedure, arguments);
+	}
+
+	private static SchemeObject callOther(SchemeObject procedure,
+			SchemeObject[] arguments) throws SchemeException {
+		if (procedure instanceof Builtin)
+			return ((Builtin) procedure).apply(_caller,
+					Arrays.asList(arguments));
+		if (procedure instanceof JvmContinuation)
+			return ((JvmContinuation) procedure).resume(arguments);
+
+		// Can only happen on lambdas returned by (eval)
+		if (procedure instanceof Lambda) {
+			final Lambda l = (Lambda) procedure;
+			return new InterpretingEvaluator(l.getCaptured()).call(l,
+					Arrays.asList(arguments));
+		}
+
+		if (procedure.isNull())
+			throw new SchemeException("Empty list can not be evaluated");
+		if (procedure.isVector())
+			throw new SchemeException("Vectors must be quoted");
+		throw new SchemeException("Don't know how to call object of type "
+				+ procedure.getClass());
+	}
+
+	public static SchemeObject apply(SchemeObject procedure,
+			SchemeObject parameterList) throws SchemeException {
+		return call(procedure, toArguments(procedure, parameterList));
+	}
+
+	public static SchemeObject tailApply(SchemeObject procedure,
+			SchemeObject parameterList) throws SchemeException {
+		return tailCall(procedure, toArguments(procedure, parameterList));
+	}
+
+	private static SchemeObject[] toArguments(SchemeObject procedure,
+			SchemeObject parameterList) throws SchemeException {
+		if (procedure.isNull())
+			throw new SchemeException("Empty list can not be applied");
+		if (!(parameterList instanceof SchemeList))
+			throw new SchemeException(
+					"Invalid apply form: Expected argument list, got "
+							+ parameterList.getClass());
+		final List<SchemeObject> ret = ((SchemeList) parameterList)
+				.toJavaList();
+		return ret.toArray(new SchemeObject[ret.size()]);
+	}
+
+	public static SchemeObject callWithCurrentContinuation(
+			SchemeObject target) throws SchemeException {
+		return JvmContinuation.callWithCurrentContinuation(target);
+	}
+
+	// Local variables of compiled code are null until they are defined
+	public static SchemeObject checkDefined(SchemeObject value, Symbol name)
+			throws SchemeException {
+		if (value == null)
+			throw new SchemeException("Unknown symbol " + name.toString());
+		return value;
+	}
+
+	private JvmRuntime() {
+	}
+}
@@ -0,0 +1,53 @@
+// lbjScheme
+// An experimental Scheme subset interpreter in Java, based on SchemeNet.cs
+// Copyright (c) 2013, Leif Bruder <leifbruder@gmail.com>
+//
+// Permission to use, copy, modify, and/or distribute this software for any
+// purpose with or without fee is hereby granted, provided that the above
+// copyright notice and this permission notice appear in all copies.
+//
+// THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+// WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+// MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+// ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+// WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+// ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+// OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+
+package org.lb.lbjscheme.jvm;
+
+import org.lb.lbjscheme.*;
+
+// Returned by compiled code for a call in tail position instead of making it,
+// so that tail calls don't grow the Java stack
+public final class JvmTailCall extends SchemeObject {
+	private static final long serialVersionUID = 1L;
+
+	private final JvmProcedure _procedure;
+	private final SchemeObject[] _arguments;
+
+	public JvmTailCall(JvmProcedure procedure, SchemeObject[] arguments) {
+		_procedure = procedure;
+		_arguments = arguments;
+	}
+
+	public static SchemeObject trampoline(SchemeObject value)
+			throws SchemeException {
+		while (value instanceof JvmTailCall) {
+			final JvmTailCall call = (JvmTailCall) value;
+			value = call._procedure.call(call._arguments);
+		}
+		return value;
+	}
+
+	@Override
+	public String toString(boolean forDisplay) {
+		return "<tail call>";
+	}
+
+	@Override
+	public Object toJavaObject() throws SchemeException {
+		throw new SchemeException(
+				"Internal error: Tail call escaped its trampoline");
+	}
+}
@@ -0,0 +1,75 @@
+// lbjScheme
+// An experimental Scheme subset interpreter in Java, based on SchemeNet.cs
+// Copyright (c) 2013, Leif Bruder <leifbruder@gmail.com>
+//
+// Permission to use, copy, modify, and/or distribute this software for any
+// purpose with or without fee is hereby granted, provided that the above
+// copyright notice and this permission notice appear in all copies.
+//
+// THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+// WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+// MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+// ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+// WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+// ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+// OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+
+package org.lb.lbjscheme.jvm;
+
+import org.lb.lbjscheme.*;
+import org.lb.lbjscheme.ast.LambdaForm;
+
+// Compiles its lambda form on the first call and forwards all calls to the
+// result, so that the many lambdas of the init scripts a program never calls
+// are never compiled
+final class LazyProcedure extends JvmProcedure {
+	private static final long serialVersionUID = 1L;
+
+	private final LambdaForm _form;
+	private JvmProcedure _compiled;
+
+	LazyProcedure(LambdaForm form, Frame captured) {
+		super(form.getName(), form.getParameterNames().size(), form
+				.HasRestParameter(), captured);
+		_form = form;
+	}
+
+	private JvmProcedure getCompiled() throws SchemeException {
+		if (_compiled == null)
+			_compiled = JvmCompiler.compileLambda(_form, _captured);
+		return _compiled;
+	}
+
+	@Override
+	public SchemeObject call0() throws SchemeException {
+		return getCompiled().call0();
+	}
+
+	@Override
+	public SchemeObject call1(SchemeObject a) throws SchemeException {
+		return getCompiled().call1(a);
+	}
+
+	@Override
+	public SchemeObject call2(SchemeObject a, SchemeObject b)
+			throws SchemeException {
+		return getCompiled().call2(a, b);
+	}
+
+	@Override
+	public SchemeObject call3(SchemeObject a, SchemeObject b, SchemeObject c)
+			throws SchemeException {
+		return getCompiled().call3(a, b, c);
+	}
+
+	@Override
+	public SchemeObject call4(SchemeObject a, SchemeObject b, SchemeObject c,
+			SchemeObject d) throws SchemeException {
+		return getCompiled().call4(a, b, c, d);
+	}
+
+	@Override
+	public SchemeObject call(SchemeObject[] arguments) throws SchemeException {
+		return getCompiled().call(arguments);
+	}
+}
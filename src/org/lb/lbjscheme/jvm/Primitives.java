@@ -0,0 +1,181 @@
+// lbjScheme
+// An experimental Scheme subset interpreter in Java, based on SchemeNet.cs
+// Copyright (c) 2013, Leif Bruder <leifbruder@gmail.com>
+//
+// Permission to use, copy, modify, and/or distribute this software for any
+// purpose with or without fee is hereby granted, provided that the above
+// copyright notice and this permission notice appear in all copies.
+//
+// THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+// WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+// MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+// ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+// WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+// ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+// OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+
+package org.lb.lbjscheme.jvm;
+
+import org.lb.lbjscheme.*;
+import org.lb.lbjscheme.builtins.Add;
+import org.lb.lbjscheme.builtins.Car;
+import org.lb.lbjscheme.builtins.Cdr;
+import org.lb.lbjscheme.builtins.Cons;
+import org.lb.lbjscheme.builtins.EqP;
+import org.lb.lbjscheme.builtins.Ge;
+import org.lb.lbjscheme.builtins.Gt;
+import org.lb.lbjscheme.builtins.Le;
+import org.lb.lbjscheme.builtins.Lt;
+import org.lb.lbjscheme.builtins.Mul;
+import org.lb.lbjscheme.builtins.NullP;
+import org.lb.lbjscheme.builtins.NumEq;
+import org.lb.lbjscheme.builtins.PairP;
+import org.lb.lbjscheme.builtins.Sub;
+
+// Fast paths of the primitives, called by the code the JvmCompiler generates
+// for calls of global variables bound to them at compile time. Each one
+// returns null if the variable is no longer bound to the original builtin or
+// the arguments need the general case, which the generated code then calls.
+public final class Primitives {
+	private static final True _true = True.getInstance();
+	private static final False _false = False.getInstance();
+
+	// Name of the fast path for calling the builtin with the given number of
+	// arguments, or null if there is none
+	static String getMethodName(SchemeObject builtin, int argumentCount) {
+		if (argumentCount == 1) {
+			if (builtin instanceof Car) return "car";
+			if (builtin instanceof Cdr) return "cdr";
+			if (builtin instanceof NullP) return "nullP";
+			if (builtin instanceof PairP) return "pairP";
+		} else if (argumentCount == 2) {
+			if (builtin instanceof Cons) return "cons";
+			if (builtin instanceof EqP) return "eqP";
+			if (builtin instanceof Add) return "add";
+			if (builtin instanceof Sub) return "sub";
+			if (builtin instanceof Mul) return "mul";
+			if (builtin instanceof NumEq) return "numEq";
+			if (builtin instanceof Lt) return "lt";
+			if (builtin instanceof Gt) return "gt";
+			if (builtin instanceof Le) return "le";
+			if (builtin instanceof Ge) return "ge";
+		}
+		return null;
+	}
+
+	public static SchemeObject car(SchemeObject procedure, SchemeObject first) {
+		if (!(procedure instanceof Car && first instanceof Pair)) return null;
+		return ((Pair) first).getCar();
+	}
+
+	public static SchemeObject cdr(SchemeObject procedure, SchemeObject first) {
+		if (!(procedure instanceof Cdr && first instanceof Pair)) return null;
+		return ((Pair) first).getCdr();
+	}
+
+	public static SchemeObject nullP(SchemeObject procedure,
+			SchemeObject first) {
+		if (!(procedure instanceof NullP)) return null;
+		return first.isNull() ? _true : _false;
+	}
+
+	public static SchemeObject pairP(SchemeObject procedure,
+			SchemeObject first) {
+		if (!(procedure instanceof PairP)) return null;
+		return first.isPair() ? _true : _false;
+	}
+
+	public static SchemeObject cons(SchemeObject procedure,
+			SchemeObject first, SchemeObject second) {
+		if (!(procedure instanceof Cons)) return null;
+		return new Pair(first, second);
+	}
+
+	public static SchemeObject eqP(SchemeObject procedure, SchemeObject first,
+			SchemeObject second) {
+		if (!(procedure instanceof EqP)) return null;
+		return first == second ? _true : _false;
+	}
+
+	public static SchemeObject add(SchemeObject procedure, SchemeObject first,
+			SchemeObject second) {
+		if (!(procedure instanceof Add && first instanceof Fixnum
+				&& second instanceof Fixnum)) return null;
+		final long a = ((Fixnum) first).getValue();
+		final long b = ((Fixnum) second).getValue();
+		try {
+			return Fixnum.valueOf(Math.addExact(a, b));
+		} catch (ArithmeticException ex) {
+			return null;
+		}
+	}
+
+	public static SchemeObject sub(SchemeObject procedure, SchemeObject first,
+			SchemeObject second) {
+		if (!(procedure instanceof Sub && first instanceof Fixnum
+				&& second instanceof Fixnum)) return null;
+		final long a = ((Fixnum) first).getValue();
+		final long b = ((Fixnum) second).getValue();
+		try {
+			return Fixnum.valueOf(Math.subtractExact(a, b));
+		} catch (ArithmeticException ex) {
+			return null;
+		}
+	}
+
+	public static SchemeObject mul(SchemeObject procedure, SchemeObject first,
+			SchemeObject second) {
+		if (!(procedure instanceof Mul && first instanceof Fixnum
+				&& second instanceof Fixnum)) return null;
+		final long a = ((Fixnum) first).getValue();
+		final long b = ((Fixnum) second).getValue();
+		try {
+			return Fixnum.valueOf(Math.multiplyExact(a, b));
+		} catch (ArithmeticException ex) {
+			return null;
+		}
+	}
+
+	public static SchemeObject numEq(SchemeObject procedure,
+			SchemeObject first, SchemeObject second) {
+		if (!(procedure instanceof NumEq && first instanceof Fixnum
+				&& second instanceof Fixnum)) return null;
+		return ((Fixnum) first).getValue() == ((Fixnum) second).getValue()
+				? _true : _false;
+	}
+
+	public static SchemeObject lt(SchemeObject procedure, SchemeObject first,
+			SchemeObject second) {
+		if (!(procedure instanceof Lt && first instanceof Fixnum
+				&& second instanceof Fixnum)) return null;
+		return ((Fixnum) first).getValue() < ((Fixnum) second).getValue()
+				? _true : _false;
+	}
+
+	public static SchemeObject gt(SchemeObject procedure, SchemeObject first,
+			SchemeObject second) {
+		if (!(procedure instanceof Gt && first instanceof Fixnum
+				&& second instanceof Fixnum)) return null;
+		return ((Fixnum) first).getValue() > ((Fixnum) second).getValue()
+				? _true : _false;
+	}
+
+	public static SchemeObject le(SchemeObject procedure, SchemeObject first,
+			SchemeObject second) {
+		if (!(procedure instanceof Le && first instanceof Fixnum
+				&& second instanceof Fixnum)) return null;
+		return ((Fixnum) first).getValue() <= ((Fixnum) second).getValue()
+				? _true : _false;
+	}
+
+	public static SchemeObject ge(SchemeObject procedure, SchemeObject first,
+			SchemeObject second) {
+		if (!(procedure instanceof Ge && first instanceof Fixnum
+				&& second instanceof Fixnum)) return null;
+		return ((Fixnum) first).getValue() >= ((Fixnum) second).getValue()
+				? _true : _false;
+	}
+
+	private Primitives() {
+	}
+}
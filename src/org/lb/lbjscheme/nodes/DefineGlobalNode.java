@@ -0,0 +1,39 @@
+// lbjScheme
+// An experimental Scheme subset interpreter in Java, based on SchemeNet.cs
+// Copyright (c) 2013, Leif Bruder <leifbruder@gmail.com>
+//
+// Permission to use, copy, modify, and/or distribute this software for any
+// purpose with or without fee is hereby granted, provided that the above
+// copyright notice and this permission notice appear in all copies.
+//
+// THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+// WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+// MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+// ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+// WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+// ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+// OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+
+package org.lb.lbjscheme.nodes;
+
+import org.lb.lbjscheme.*;
+
+public final class DefineGlobalNode extends Node {
+	private static final Symbol _undefinedSymbol = Symbol
+			.fromString("undefined");
+
+	private final Symbol _symbol;
+	private final Node _value;
+
+	public DefineGlobalNode(Symbol symbol, Node value) {
+		_symbol = symbol;
+		_value = value;
+	}
+
+	@Override
+	public SchemeObject execute(Frame frame) throws SchemeException {
+		final SchemeObject value = _value.execute(frame);
+		frame.getEnvironment().define(_symbol, value);
+		return _undefinedSymbol;
+	}
+}
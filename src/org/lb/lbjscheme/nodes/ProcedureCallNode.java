@@ -0,0 +1,53 @@
+// lbjScheme
+// An experimental Scheme subset interpreter in Java, based on SchemeNet.cs
+// Copyright (c) 2013, Leif Bruder <leifbruder@gmail.com>
+//
+// Permission to use, copy, modify, and/or distribute this software for any
+// purpose with or without fee is hereby granted, provided that the above
+// copyright notice and this permission notice appear in all copies.
+//
+// THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+// WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+// MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+// ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+// WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+// ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+// OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+
+package org.lb.lbjscheme.nodes;
+
+import java.util.List;
+import org.lb.lbjscheme.*;
+
+abstract class ProcedureCallNode extends Node {
+	private final ClosureCompilingEvaluator _evaluator;
+	private final boolean _isTailCall;
+
+	protected ProcedureCallNode(ClosureCompilingEvaluator evaluator,
+			boolean isTailCall) {
+		_evaluator = evaluator;
+		_isTailCall = isTailCall;
+	}
+
+	protected final SchemeObject call(SchemeObject procedure,
+			List<SchemeObject> parameters) throws SchemeException {
+		if (procedure instanceof Builtin)
+			return ((Builtin) procedure).apply(_evaluator, parameters);
+
+		// Ugly hack: Can only happen on lambdas returned by (eval)
+		if (procedure instanceof Lambda)
+			procedure = _evaluator.compileLambda((Lambda) procedure);
+
+		if (procedure instanceof NodeLambda) {
+			final NodeLambda l = (NodeLambda) procedure;
+			final Frame frame = new Frame(l.getCaptured(), l.getFrameSize());
+			frame.expand(l.getParameterNames().size(), l.hasRestParameter(),
+					parameters);
+			if (_isTailCall) return new TailCall(l.getBody(), frame);
+			return TailCall.trampoline(l.getBody().execute(frame));
+		}
+
+		throw new SchemeException("Don't know how to call object of type "
+				+ procedure.getClass());
+	}
+}
@@ -0,0 +1,51 @@
+// lbjScheme
+// An experimental Scheme subset interpreter in Java, based on SchemeNet.cs
+// Copyright (c) 2013, Leif Bruder <leifbruder@gmail.com>
+//
+// Permission to use, copy, modify, and/or distribute this software for any
+// purpose with or without fee is hereby granted, provided that the above
+// copyright notice and this permission notice appear in all copies.
+//
+// THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+// WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+// MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+// ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+// WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+// ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+// OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+
+package org.lb.lbjscheme.nodes;
+
+import org.lb.lbjscheme.*;
+
+public final class TailCall extends SchemeObject {
+	private static final long serialVersionUID = 1L;
+
+	private final Node _body;
+	private final Frame _frame;
+
+	public TailCall(Node body, Frame frame) {
+		_body = body;
+		_frame = frame;
+	}
+
+	public static SchemeObject trampoline(SchemeObject value)
+			throws SchemeException {
+		while (value instanceof TailCall) {
+			final TailCall call = (TailCall) value;
+			value = call._body.execute(call._frame);
+		}
+		return value;
+	}
+
+	@Override
+	public String toString(boolean forDisplay) {
+		return "<tail call>";
+	}
+
+	@Override
+	public Object toJavaObject() throws SchemeException {
+		throw new SchemeException(
+				"Internal error: Tail call escaped its trampoline");
+	}
+}
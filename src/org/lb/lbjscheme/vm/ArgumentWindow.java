@@ -0,0 +1,48 @@
+// lbjScheme
+// An experimental Scheme subset interpreter in Java, based on SchemeNet.cs
+// Copyright (c) 2013, Leif Bruder <leifbruder@gmail.com>
+//
+// Permission to use, copy, modify, and/or distribute this software for any
+// purpose with or without fee is hereby granted, provided that the above
+// copyright notice and this permission notice appear in all copies.
+//
+// THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+// WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+// MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+// ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+// WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+// ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+// OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+
+package org.lb.lbjscheme.vm;
+
+import java.util.*;
+import org.lb.lbjscheme.SchemeObject;
+
+// View of the arguments of a call on the VM stack. The compiler pushes the
+// arguments last to first, so the first argument is on top of the stack.
+// Only valid until the call returns.
+final class ArgumentWindow extends AbstractList<SchemeObject> implements
+		RandomAccess {
+	private final Object[] _stack;
+	private final int _base;
+	private final int _top;
+
+	public ArgumentWindow(Object[] stack, int base, int top) {
+		_stack = stack;
+		_base = base;
+		_top = top;
+	}
+
+	@Override
+	public SchemeObject get(int index) {
+		if (index < 0 || index >= _top - _base)
+			throw new IndexOutOfBoundsException("Index: " + index);
+		return (SchemeObject) _stack[_top - 1 - index];
+	}
+
+	@Override
+	public int size() {
+		return _top - _base;
+	}
+}
@@ -0,0 +1,127 @@
+// lbjScheme
+// An experimental Scheme subset interpreter in Java, based on SchemeNet.cs
+// Copyright (c) 2013, Leif Bruder <leifbruder@gmail.com>
+//
+// Permission to use, copy, modify, and/or distribute this software for any
+// purpose with or without fee is hereby granted, provided that the above
+// copyright notice and this permission notice appear in all copies.
+//
+// THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+// WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+// MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+// ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+// WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+// ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+// OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+
+package org.lb.lbjscheme.vm;
+
+import org.lb.lbjscheme.Symbol;
+
+// Instruction set of the int coded program executed by VirtualMachine.run().
+// Operands follow the opcode in the code array; symbols, literals and closure
+// prototypes are stored in the constant pool and referenced by index.
+public final class Bytecode {
+	public static final int CALL = 0;
+	public static final int CONTINUE = 1;
+	public static final int DEFVAR = 2; // constant (symbol)
+	public static final int DEFLOCAL = 3; // slot
+	public static final int GETVAR = 4; // constant (symbol)
+	public static final int GETLOCAL = 5; // depth, slot, constant (symbol)
+	public static final int INITARGS = 6;
+	public static final int JUMP = 7; // target
+	public static final int JUMPIFFALSE = 8; // target
+	public static final int LITERAL = 9; // constant (value)
+	public static final int MAKECLOSURE = 10; // constant (prototype), target
+	public static final int POPALL = 11;
+	public static final int PUSHALL = 12;
+	public static final int PUSHARG = 13;
+	public static final int SETARGS = 14;
+	public static final int SETCONT = 15; // target
+	public static final int SETVAR = 16; // constant (symbol)
+	public static final int SETLOCAL = 17; // depth, slot, constant (symbol)
+	public static final int RESTOREALL = 18;
+
+	// Superinstructions, fused by CompiledProgram from the most frequent
+	// sequences in the output of benchmarks.OpcodePairHistogram
+	public static final int PUSHLOCAL = 19; // GETLOCAL + PUSHARG
+	public static final int PUSHLITERAL = 20; // LITERAL + PUSHARG
+	public static final int POPALLPUSHARG = 21; // POPALL + PUSHARG
+	public static final int PUSHALLINITARGS = 22; // PUSHALL + INITARGS
+	public static final int CALLCONT = 23; // SETCONT + CALL
+	public static final int CALLVAR = 24; // GETVAR + CALL
+	public static final int CALLVARCONT = 25; // GETVAR + SETCONT + CALL
+
+	// Primitives, operands: constant (symbol), target. If the variable is still
+	// bound to the original builtin, they work on the value register and the
+	// stack and continue at the target. Else they call the procedure and return
+	// to the next instruction, which is a POPALL.
+	public static final int CAR = 26;
+	public static final int CDR = 27;
+	public static final int NULLP = 28;
+	public static final int PAIRP = 29;
+	public static final int CONS = 30;
+	public static final int EQP = 31;
+	public static final int ADD2 = 32;
+	public static final int SUB2 = 33;
+	public static final int NUMEQ2 = 34;
+	public static final int LT2 = 35;
+	public static final int GT2 = 36;
+
+	// Calls of known procedures, operands: constant (symbol), entry. If the
+	// variable is still bound to a closure starting at the entry, the
+	// arguments are bound without checks and execution continues there. Else
+	// it is a normal CALL of the variable's value.
+	public static final int CALLKNOWN = 37;
+	public static final int CALLKNOWNCONT = 38; // target, constant, entry
+
+	// Self tail call: Moves the arguments into the parameter slots of the
+	// current frame and unbinds the others. Followed by a JUMP to the body.
+	public static final int REBIND = 39; // parameter count
+
+	// Calls the value register with the current continuation as argument
+	public static final int CALLCC = 40;
+
+	// Returns the primitive opcode for a call, or -1 if there is none
+	public static int getPrimitive(Symbol procedure, int argumentCount) {
+		String name = procedure.toString();
+		if (name.startsWith("##")) name = name.substring(2);
+		if (argumentCount == 1) {
+			switch (name) {
+			case "car":
+				return CAR;
+			case "cdr":
+				return CDR;
+			case "null?":
+				return NULLP;
+			case "pair?":
+				return PAIRP;
+			}
+		} else if (argumentCount == 2) {
+			switch (name) {
+			case "cons":
+				return CONS;
+			case "eq?":
+				return EQP;
+			case "+":
+				return ADD2;
+			case "-":
+				return SUB2;
+			case "=":
+				return NUMEQ2;
+			case "<":
+				return LT2;
+			case ">":
+				return GT2;
+			}
+		}
+		return -1;
+	}
+
+	public static int getPrimitiveArgumentCount(int opcode) {
+		return opcode < CONS ? 1 : 2;
+	}
+
+	private Bytecode() {
+	}
+}
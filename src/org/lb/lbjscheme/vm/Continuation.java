@@ -0,0 +1,58 @@
+// lbjScheme
+// An experimental Scheme subset interpreter in Java, based on SchemeNet.cs
+// Copyright (c) 2013, Leif Bruder <leifbruder@gmail.com>
+//
+// Permission to use, copy, modify, and/or distribute this software for any
+// purpose with or without fee is hereby granted, provided that the above
+// copyright notice and this permission notice appear in all copies.
+//
+// THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+// WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+// MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+// ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+// WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+// ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+// OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+
+package org.lb.lbjscheme.vm;
+
+import org.lb.lbjscheme.*;
+
+// Continuation captured by CALLCC. It doesn't copy the stacks of the
+// VirtualMachine, it keeps references to the arrays and their fill levels.
+// The VirtualMachine copies an array before it overwrites anything below the
+// level captured here.
+public final class Continuation extends SchemeObject {
+	private static final long serialVersionUID = 1L;
+
+	final Object[] stack;
+	final int stackPointer;
+	final int[] returnStack;
+	final int returnStackPointer;
+	final int continueRegister;
+
+	Continuation(Object[] stack, int stackPointer, int[] returnStack,
+			int returnStackPointer, int continueRegister) {
+		this.stack = stack;
+		this.stackPointer = stackPointer;
+		this.returnStack = returnStack;
+		this.returnStackPointer = returnStackPointer;
+		this.continueRegister = continueRegister;
+	}
+
+	@Override
+	public boolean isProcedure() {
+		return true;
+	}
+
+	@Override
+	public String toString(boolean forDisplay) {
+		return "<continuation>";
+	}
+
+	@Override
+	public Object toJavaObject() throws SchemeException {
+		throw new SchemeException(
+				"Continuation cannot be converted into a plain Java object");
+	}
+}
@@ -0,0 +1,41 @@
+// lbjScheme
+// An experimental Scheme subset interpreter in Java, based on SchemeNet.cs
+// Copyright (c) 2013, Leif Bruder <leifbruder@gmail.com>
+//
+// Permission to use, copy, modify, and/or distribute this software for any
+// purpose with or without fee is hereby granted, provided that the above
+// copyright notice and this permission notice appear in all copies.
+//
+// THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+// WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+// MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+// ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+// WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+// ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+// OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+
+package org.lb.lbjscheme.vm;
+
+import org.lb.lbjscheme.*;
+
+public final class GetLocalVariable extends Opcode {
+	private final Symbol _variable;
+	private final int _depth;
+	private final int _slot;
+
+	public GetLocalVariable(Symbol variable, int depth, int slot) {
+		_variable = variable;
+		_depth = depth;
+		_slot = slot;
+	}
+
+	@Override
+	public void execute() throws SchemeException {
+		_vm.executeGetLocalVariable(_variable, _depth, _slot);
+	}
+
+	@Override
+	public String toString() {
+		return "GETLOCAL " + _depth + " " + _slot + " ; " + _variable;
+	}
+}
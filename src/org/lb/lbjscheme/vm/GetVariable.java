@@ -20,6 +20,8 @@ import org.lb.lbjscheme.*;
 
 public final class GetVariable extends Opcode {
 	private final Symbol _variable;
+	private Environment _environment;
+	private Binding _binding;
 
 	public GetVariable(Symbol variable) {
 		_variable = variable;
@@ -27,7 +29,12 @@ public final class GetVariable extends Opcode {
 
 	@Override
 	public void execute() throws SchemeException {
-		_vm.executeGetVariable(_variable);
+		final Environment environment = _vm.getEnvironment();
+		if (environment != _environment) {
+			_binding = environment.getBinding(_variable);
+			_environment = environment;
+		}
+		_vm.executeGetVariable(_binding);
 	}
 
 	@Override
@@ -24,14 +24,17 @@ public final class MakeClosure extends LabeledOpcode {
 	private final String _label;
 	private final boolean _hasRestParameter;
 	private final List<Symbol> _parameterNames;
+	private final int _frameSize;
 	private int _position;
 
 	public MakeClosure(String name, String closureLabel,
-			boolean hasRestParameter, List<Symbol> parameterNames) {
+			boolean hasRestParameter, List<Symbol> parameterNames,
+			int frameSize) {
 		_name = name;
 		_label = closureLabel;
 		_hasRestParameter = hasRestParameter;
 		_parameterNames = parameterNames;
+		_frameSize = frameSize;
 		_position = -1;
 	}
 
@@ -48,7 +51,7 @@ public final class MakeClosure extends LabeledOpcode {
 	@Override
 	public void execute() {
 		_vm.executeMakeClosure(_name, _position, _hasRestParameter,
-				_parameterNames);
+				_parameterNames, _frameSize);
 	}
 
 	@Override
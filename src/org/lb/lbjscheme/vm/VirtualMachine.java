@@ -18,64 +18,333 @@ package org.lb.lbjscheme.vm;
 
 import java.util.*;
 import org.lb.lbjscheme.*;
+import org.lb.lbjscheme.builtins.Add;
+import org.lb.lbjscheme.builtins.Car;
+import org.lb.lbjscheme.builtins.Cdr;
+import org.lb.lbjscheme.builtins.Cons;
+import org.lb.lbjscheme.builtins.EqP;
+import org.lb.lbjscheme.builtins.Gt;
+import org.lb.lbjscheme.builtins.Lt;
+import org.lb.lbjscheme.builtins.NullP;
+import org.lb.lbjscheme.builtins.NumEq;
+import org.lb.lbjscheme.builtins.PairP;
+import org.lb.lbjscheme.builtins.Sub;
 
+// Register machine executing CompiledPrograms. All saved state lives on two
+// arrays: The object stack holds saved environments and the arguments of
+// pending calls, the int stack holds return addresses, argument window bases
+// and saved stack pointers.
+//
+// Continuations share both arrays with the machine instead of copying them.
+// Everything below the watermarks may belong to a continuation, so an array
+// is copied before the machine overwrites an entry there.
 public final class VirtualMachine {
+	private static final True _true = True.getInstance();
 	private static final False _false = False.getInstance();
 	private final Environment globalEnvironment;
-	private final Stack<Environment> _environmentStack = new Stack<Environment>();
-	private final Stack<Integer> _continueStack = new Stack<Integer>();
-	private final Stack<LinkedList<SchemeObject>> _argumentsStack = new Stack<LinkedList<SchemeObject>>();
+	private Object[] _stack = new Object[1024];
+	private int _stackPointer;
+	private int[] _returnStack = new int[1024];
+	private int _returnStackPointer;
+	private int _stackWatermark;
+	private int _returnStackWatermark;
+
+	private Binding[] _bindings = new Binding[0];
+	private Map<String, Long> _pairHistogram;
 
 	private int ip;
-	private Environment environmentRegister;
+	private Frame environmentRegister;
 	private int continueRegister;
 	private SchemeObject valueRegister;
-	private LinkedList<SchemeObject> argumentsRegister;
+	private int argumentsBase;
 
 	public VirtualMachine(final Environment globalEnv) {
 		globalEnvironment = globalEnv;
 	}
 
+	private void push(Object value) {
+		if (_stackPointer < _stackWatermark) unshareStack();
+		if (_stackPointer == _stack.length) {
+			_stack = Arrays.copyOf(_stack, _stackPointer * 2);
+			_stackWatermark = 0;
+		}
+		_stack[_stackPointer++] = value;
+	}
+
+	private void unshareStack() {
+		final Object[] stack = new Object[_stack.length];
+		System.arraycopy(_stack, 0, stack, 0, _stackPointer);
+		_stack = stack;
+		_stackWatermark = 0;
+	}
+
+	private void unshareReturnStack() {
+		final int[] stack = new int[_returnStack.length];
+		System.arraycopy(_returnStack, 0, stack, 0, _returnStackPointer);
+		_returnStack = stack;
+		_returnStackWatermark = 0;
+	}
+
+	// Clears the references for the garbage collector, except those that may
+	// belong to a continuation
+	private void clearStack(int from, int to) {
+		if (from < _stackWatermark) from = _stackWatermark;
+		if (from < to) Arrays.fill(_stack, from, to, null);
+	}
+
+	private void dropTopOfStack() {
+		if (--_stackPointer >= _stackWatermark) _stack[_stackPointer] = null;
+	}
+
+	private void dropArguments() {
+		clearStack(argumentsBase, _stackPointer);
+		_stackPointer = argumentsBase;
+	}
+
 	void executeCall() throws SchemeException {
-		final List<SchemeObject> parameters = argumentsRegister;
+		ip = call();
+	}
+
+	private int call() throws SchemeException {
+		final List<SchemeObject> parameters = new ArgumentWindow(_stack,
+				argumentsBase, _stackPointer);
 
 		if (valueRegister instanceof Builtin) {
 			valueRegister = ((Builtin) valueRegister).apply(parameters);
-			ip = continueRegister;
-			return;
+			dropArguments();
+			return continueRegister;
 		}
 
 		if (valueRegister instanceof CompiledLambda) {
 			final CompiledLambda closure = (CompiledLambda) valueRegister;
-			environmentRegister = new Environment(closure.captured);
-			environmentRegister.expand(closure.parameterNames,
+			environmentRegister = new Frame(closure.captured,
+					closure.frameSize);
+			environmentRegister.expand(closure.parameterNames.size(),
 					closure.hasRestParameter, parameters);
-			ip = closure.pc;
-			return;
+			dropArguments();
+			return closure.pc;
 		}
 
-		// TODO: Lambdas from (eval)?
+		if (valueRegister instanceof Continuation)
+			return reinstateContinuation((Continuation) valueRegister,
+					parameters);
+
+		// Lambdas created by eval, which uses the interpreter
+		if (valueRegister instanceof Lambda) {
+			final Lambda l = (Lambda) valueRegister;
+			valueRegister = new InterpretingEvaluator(l.getCaptured()).call(l,
+					parameters);
+			dropArguments();
+			return continueRegister;
+		}
 
 		throw new SchemeException("Internal error: Invalid CALL target: "
 				+ valueRegister.getClass().getSimpleName());
 	}
 
+	void executeCallWithCurrentContinuation() throws SchemeException {
+		ip = callWithCurrentContinuation();
+	}
+
+	// Calls the procedure in the value register with the continuation of the
+	// CALLCC as its only argument. Nothing is copied: The continuation shares
+	// the stacks up to their current fill levels.
+	private int callWithCurrentContinuation() throws SchemeException {
+		final Continuation k = new Continuation(_stack, _stackPointer,
+				_returnStack, _returnStackPointer, continueRegister);
+		if (_stackWatermark < _stackPointer) _stackWatermark = _stackPointer;
+		if (_returnStackWatermark < _returnStackPointer)
+			_returnStackWatermark = _returnStackPointer;
+		argumentsBase = _stackPointer;
+		push(k);
+		return call();
+	}
+
+	// Returns the arguments to the CALLCC that captured the continuation. An
+	// escape to a continuation captured on the arrays still in use only
+	// resets the stack pointers, as nothing below the watermarks has been
+	// overwritten since. Other arrays are taken over as a whole and copied on
+	// the first write.
+	private int reinstateContinuation(Continuation k,
+			List<SchemeObject> parameters) {
+		valueRegister = parameters.size() == 1 ? parameters.get(0) : Pair
+				.fromIterable(new ArrayList<SchemeObject>(parameters));
+
+		if (k.stack == _stack) {
+			clearStack(k.stackPointer, _stackPointer);
+		} else {
+			_stack = k.stack;
+			_stackWatermark = _stack.length;
+		}
+		_stackPointer = k.stackPointer;
+		if (k.returnStack != _returnStack) {
+			_returnStack = k.returnStack;
+			_returnStackWatermark = _returnStack.length;
+		}
+		_returnStackPointer = k.returnStackPointer;
+		continueRegister = k.continueRegister;
+		return continueRegister;
+	}
+
+	void executeCallKnownProcedure(Binding binding, int entry)
+			throws SchemeException {
+		ip = callKnownProcedure(binding.getValue(), entry);
+	}
+
+	// The Compiler has checked the argument count against the closure body at
+	// the entry, so the arguments go into the new frame without expand()
+	private int callKnownProcedure(SchemeObject procedure, int entry)
+			throws SchemeException {
+		valueRegister = procedure;
+		if (!(procedure instanceof CompiledLambda)
+				|| ((CompiledLambda) procedure).pc != entry) return call();
+
+		final CompiledLambda closure = (CompiledLambda) procedure;
+		final Frame frame = new Frame(closure.captured, closure.frameSize);
+		for (int i = 0, j = _stackPointer - 1; j >= argumentsBase; ++i, --j)
+			frame.define(i, (SchemeObject) _stack[j]);
+		environmentRegister = frame;
+		dropArguments();
+		return entry;
+	}
+
+	void executePrimitive(int opcode, Binding binding, int position)
+			throws SchemeException {
+		final SchemeObject procedure = binding.getValue();
+		if (applyPrimitive(opcode, procedure))
+			ip = position;
+		else
+			ip = callPrimitive(procedure,
+					Bytecode.getPrimitiveArgumentCount(opcode), ip + 1);
+	}
+
+	// Fast path of the primitive opcodes. Returns false without changing
+	// anything if the variable is no longer bound to the original builtin or
+	// the arguments need the general case.
+	private boolean applyPrimitive(int opcode, SchemeObject procedure) {
+		final SchemeObject first = valueRegister;
+		switch (opcode) {
+		case Bytecode.CAR:
+			if (!(procedure instanceof Car && first instanceof Pair))
+				return false;
+			valueRegister = ((Pair) first).getCar();
+			return true;
+		case Bytecode.CDR:
+			if (!(procedure instanceof Cdr && first instanceof Pair))
+				return false;
+			valueRegister = ((Pair) first).getCdr();
+			return true;
+		case Bytecode.NULLP:
+			if (!(procedure instanceof NullP)) return false;
+			valueRegister = first.isNull() ? _true : _false;
+			return true;
+		case Bytecode.PAIRP:
+			if (!(procedure instanceof PairP)) return false;
+			valueRegister = first.isPair() ? _true : _false;
+			return true;
+		}
+
+		final SchemeObject second = (SchemeObject) _stack[_stackPointer - 1];
+		switch (opcode) {
+		case Bytecode.CONS:
+			if (!(procedure instanceof Cons)) return false;
+			valueRegister = new Pair(first, second);
+			break;
+		case Bytecode.EQP:
+			if (!(procedure instanceof EqP)) return false;
+			valueRegister = first == second ? _true : _false;
+			break;
+		default:
+			if (!(first instanceof Fixnum && second instanceof Fixnum))
+				return false;
+			final long a = ((Fixnum) first).getValue();
+			final long b = ((Fixnum) second).getValue();
+			switch (opcode) {
+			case Bytecode.ADD2:
+				if (!(procedure instanceof Add)) return false;
+				try {
+					valueRegister = Fixnum.valueOf(Math.addExact(a, b));
+				} catch (ArithmeticException ex) {
+					return false;
+				}
+				break;
+			case Bytecode.SUB2:
+				if (!(procedure instanceof Sub)) return false;
+				try {
+					valueRegister = Fixnum.valueOf(Math.subtractExact(a, b));
+				} catch (ArithmeticException ex) {
+					return false;
+				}
+				break;
+			case Bytecode.NUMEQ2:
+				if (!(procedure instanceof NumEq)) return false;
+				valueRegister = a == b ? _true : _false;
+				break;
+			case Bytecode.LT2:
+				if (!(procedure instanceof Lt)) return false;
+				valueRegister = a < b ? _true : _false;
+				break;
+			case Bytecode.GT2:
+				if (!(procedure instanceof Gt)) return false;
+				valueRegister = a > b ? _true : _false;
+				break;
+			default:
+				return false;
+			}
+		}
+		dropTopOfStack();
+		return true;
+	}
+
+	// Slow path of the primitive opcodes: Calls whatever the variable is bound
+	// to now. The callee returns to the POPALL at returnAddress.
+	private int callPrimitive(SchemeObject procedure, int argumentCount,
+			int returnAddress) throws SchemeException {
+		SchemeObject second = null;
+		if (argumentCount == 2) {
+			second = (SchemeObject) _stack[_stackPointer - 1];
+			dropTopOfStack();
+		}
+		pushAll();
+		argumentsBase = _stackPointer;
+		if (second != null) push(second);
+		push(valueRegister);
+		valueRegister = procedure;
+		continueRegister = returnAddress;
+		return call();
+	}
+
 	void executeContinue() {
 		ip = continueRegister;
 	}
 
 	void executeDefineVariable(Symbol variable) throws SchemeException {
-		environmentRegister.define(variable, valueRegister);
+		environmentRegister.getEnvironment().define(variable, valueRegister);
+		ip++;
+	}
+
+	void executeDefineLocalVariable(int slot) {
+		environmentRegister.define(slot, valueRegister);
 		ip++;
 	}
 
-	void executeGetVariable(Symbol variable) throws SchemeException {
-		valueRegister = environmentRegister.get(variable);
+	void executeGetVariable(Binding binding) throws SchemeException {
+		valueRegister = binding.getValue();
 		ip++;
 	}
 
+	void executeGetLocalVariable(Symbol variable, int depth, int slot)
+			throws SchemeException {
+		valueRegister = environmentRegister.getOuter(depth).get(slot, variable);
+		ip++;
+	}
+
+	Environment getEnvironment() {
+		return environmentRegister.getEnvironment();
+	}
+
 	void executeInitArgs() {
-		argumentsRegister = new LinkedList<SchemeObject>();
+		argumentsBase = _stackPointer;
 		ip++;
 	}
 
@@ -93,79 +362,357 @@ public final class VirtualMachine {
 	}
 
 	void executeMakeClosure(String name, int position,
-			boolean hasRestParameter, List<Symbol> parameterNames) {
+			boolean hasRestParameter, List<Symbol> parameterNames,
+			int frameSize) {
 		valueRegister = new CompiledLambda(name, environmentRegister, position,
-				parameterNames, hasRestParameter);
+				parameterNames, hasRestParameter, frameSize);
 		ip++;
 	}
 
 	void executePopAll() {
-		environmentRegister = _environmentStack.pop();
-		continueRegister = _continueStack.pop();
-		argumentsRegister = _argumentsStack.pop();
+		popAll();
 		ip++;
 	}
 
+	private void popAll() {
+		argumentsBase = _returnStack[--_returnStackPointer];
+		continueRegister = _returnStack[--_returnStackPointer];
+		final int savedStackPointer = _returnStack[--_returnStackPointer];
+		environmentRegister = (Frame) _stack[savedStackPointer];
+		clearStack(savedStackPointer, _stackPointer);
+		_stackPointer = savedStackPointer;
+	}
+
+	void executeRestoreAll() {
+		restoreAll();
+		ip++;
+	}
+
+	// Same as POPALL followed by PUSHALL: Restores the registers, but leaves
+	// the saved copy on the stack
+	private void restoreAll() {
+		argumentsBase = _returnStack[_returnStackPointer - 1];
+		continueRegister = _returnStack[_returnStackPointer - 2];
+		final int savedStackPointer = _returnStack[_returnStackPointer - 3];
+		environmentRegister = (Frame) _stack[savedStackPointer];
+		clearStack(savedStackPointer + 1, _stackPointer);
+		_stackPointer = savedStackPointer + 1;
+	}
+
 	void executePushAll() {
-		_argumentsStack.push(argumentsRegister);
-		_continueStack.push(continueRegister);
-		_environmentStack.push(environmentRegister);
+		pushAll();
 		ip++;
 	}
 
+	private void pushAll() {
+		if (_returnStackPointer < _returnStackWatermark) unshareReturnStack();
+		if (_returnStackPointer + 3 > _returnStack.length) {
+			_returnStack = Arrays.copyOf(_returnStack, _returnStack.length * 2);
+			_returnStackWatermark = 0;
+		}
+		_returnStack[_returnStackPointer++] = _stackPointer;
+		_returnStack[_returnStackPointer++] = continueRegister;
+		_returnStack[_returnStackPointer++] = argumentsBase;
+		push(environmentRegister);
+	}
+
 	void executePushArg() {
-		argumentsRegister.addFirst(valueRegister);
+		push(valueRegister);
 		ip++;
 	}
 
+	void executeRebindArguments(int parameterCount) {
+		rebindArguments(parameterCount);
+		ip++;
+	}
+
+	private void rebindArguments(int parameterCount) {
+		for (int i = 0, j = _stackPointer - 1; j >= argumentsBase; ++i, --j)
+			environmentRegister.define(i, (SchemeObject) _stack[j]);
+		environmentRegister.clear(parameterCount);
+		dropArguments();
+	}
+
 	void executeSetArgumentRegisterToValue() {
-		// TODO: Check
-		argumentsRegister = new LinkedList<SchemeObject>();
-		for (SchemeObject i : (SchemeList) valueRegister)
-			argumentsRegister.add(i);
+		setArgumentRegisterToValue();
 		ip++;
 	}
 
+	private void setArgumentRegisterToValue() {
+		// TODO: Check
+		final List<SchemeObject> arguments = ((SchemeList) valueRegister)
+				.toJavaList();
+		argumentsBase = _stackPointer;
+		for (int i = arguments.size() - 1; i >= 0; --i)
+			push(arguments.get(i));
+	}
+
 	void executeSetContinuationRegisterToPosition(int position) {
 		continueRegister = position;
 		ip++;
 	}
 
 	void executeSetVariable(Symbol variable) throws SchemeException {
-		environmentRegister.set(variable, valueRegister);
+		environmentRegister.getEnvironment().set(variable, valueRegister);
 		ip++;
 	}
 
-	public SchemeObject run(final CompiledProgram prog) throws SchemeException {
-		return run(prog, 0);
+	void executeSetLocalVariable(Symbol variable, int depth, int slot)
+			throws SchemeException {
+		environmentRegister.getOuter(depth).set(slot, variable, valueRegister);
+		ip++;
 	}
 
-	public SchemeObject run(final CompiledProgram prog, final int initialIp)
+	private void reset(final CompiledProgram prog, final int initialIp)
 			throws SchemeException {
 		if (!prog.isRunnable())
 			throw new SchemeException(
 					"Internal error: Program is not runnable yet");
 		ip = initialIp;
-		environmentRegister = globalEnvironment;
+		environmentRegister = new Frame(globalEnvironment);
 		continueRegister = -1;
 		valueRegister = Nil.getInstance();
-		argumentsRegister = new LinkedList<SchemeObject>();
-		_argumentsStack.clear();
-		_continueStack.clear();
-		_environmentStack.clear();
-		final int numStatements = prog.getNumberOfStatements();
-
-		prog.setVm(this);
-		while (ip < numStatements && ip >= 0)
-			prog.executeOpcode(ip);
+		if (_stackWatermark == 0)
+			Arrays.fill(_stack, 0, _stackPointer, null);
+		else
+			_stack = new Object[_stack.length];
+		if (_returnStackWatermark != 0)
+			_returnStack = new int[_returnStack.length];
+		_stackPointer = 0;
+		_returnStackPointer = 0;
+		_stackWatermark = 0;
+		_returnStackWatermark = 0;
+		argumentsBase = 0;
+	}
 
-		if (!_argumentsStack.isEmpty() || !_continueStack.isEmpty()
-				|| !_environmentStack.isEmpty())
+	private SchemeObject checkFinalState() throws SchemeException {
+		if (_returnStackPointer != 0)
 			throw new SchemeException(
 					"Bad program: Stack not empty after last instruction");
-		if (!argumentsRegister.isEmpty())
+		if (_stackPointer != 0)
 			throw new SchemeException(
 					"Bad program: Arguments register not empty after last instruction");
 		return valueRegister;
 	}
+
+	private Binding getBinding(Object[] constants, int index) {
+		if (_bindings.length < constants.length)
+			_bindings = Arrays.copyOf(_bindings, constants.length);
+		Binding ret = _bindings[index];
+		if (ret == null) {
+			ret = globalEnvironment.getBinding((Symbol) constants[index]);
+			_bindings[index] = ret;
+		}
+		return ret;
+	}
+
+	public SchemeObject run(final CompiledProgram prog) throws SchemeException {
+		return run(prog, 0);
+	}
+
+	// Executes the int coded program, starting at code offset initialIp
+	public SchemeObject run(final CompiledProgram prog, final int initialIp)
+			throws SchemeException {
+		reset(prog, initialIp);
+		final int[] code = prog.getCode();
+		final Object[] constants = prog.getConstants();
+		final int codeLength = prog.getCodeLength();
+		int ip = initialIp;
+
+		while (ip < codeLength && ip >= 0) {
+			switch (code[ip]) {
+			case Bytecode.CALL:
+				ip = call();
+				break;
+			case Bytecode.CONTINUE:
+				ip = continueRegister;
+				break;
+			case Bytecode.DEFVAR:
+				environmentRegister.getEnvironment().define(
+						(Symbol) constants[code[ip + 1]], valueRegister);
+				ip += 2;
+				break;
+			case Bytecode.DEFLOCAL:
+				environmentRegister.define(code[ip + 1], valueRegister);
+				ip += 2;
+				break;
+			case Bytecode.GETVAR:
+				valueRegister = getBinding(constants, code[ip + 1]).getValue();
+				ip += 2;
+				break;
+			case Bytecode.GETLOCAL:
+				valueRegister = environmentRegister.getOuter(code[ip + 1]).get(
+						code[ip + 2], (Symbol) constants[code[ip + 3]]);
+				ip += 4;
+				break;
+			case Bytecode.INITARGS:
+				argumentsBase = _stackPointer;
+				ip++;
+				break;
+			case Bytecode.JUMP:
+				ip = code[ip + 1];
+				break;
+			case Bytecode.JUMPIFFALSE:
+				ip = valueRegister == _false ? code[ip + 1] : ip + 2;
+				break;
+			case Bytecode.LITERAL:
+				valueRegister = (SchemeObject) constants[code[ip + 1]];
+				ip += 2;
+				break;
+			case Bytecode.MAKECLOSURE:
+				final CompiledLambda prototype = (CompiledLambda) constants[code[ip + 1]];
+				valueRegister = new CompiledLambda(prototype.name,
+						environmentRegister, code[ip + 2],
+						prototype.parameterNames, prototype.hasRestParameter,
+						prototype.frameSize);
+				ip += 3;
+				break;
+			case Bytecode.POPALL:
+				popAll();
+				ip++;
+				break;
+			case Bytecode.PUSHALL:
+				pushAll();
+				ip++;
+				break;
+			case Bytecode.RESTOREALL:
+				restoreAll();
+				ip++;
+				break;
+			case Bytecode.PUSHARG:
+				push(valueRegister);
+				ip++;
+				break;
+			case Bytecode.SETARGS:
+				setArgumentRegisterToValue();
+				ip++;
+				break;
+			case Bytecode.SETCONT:
+				continueRegister = code[ip + 1];
+				ip += 2;
+				break;
+			case Bytecode.SETVAR:
+				environmentRegister.getEnvironment().set(
+						(Symbol) constants[code[ip + 1]], valueRegister);
+				ip += 2;
+				break;
+			case Bytecode.SETLOCAL:
+				environmentRegister.getOuter(code[ip + 1]).set(code[ip + 2],
+						(Symbol) constants[code[ip + 3]], valueRegister);
+				ip += 4;
+				break;
+			case Bytecode.PUSHLOCAL:
+				valueRegister = environmentRegister.getOuter(code[ip + 1]).get(
+						code[ip + 2], (Symbol) constants[code[ip + 3]]);
+				push(valueRegister);
+				ip += 4;
+				break;
+			case Bytecode.PUSHLITERAL:
+				valueRegister = (SchemeObject) constants[code[ip + 1]];
+				push(valueRegister);
+				ip += 2;
+				break;
+			case Bytecode.POPALLPUSHARG:
+				popAll();
+				push(valueRegister);
+				ip++;
+				break;
+			case Bytecode.PUSHALLINITARGS:
+				pushAll();
+				argumentsBase = _stackPointer;
+				ip++;
+				break;
+			case Bytecode.CALLCONT:
+				continueRegister = code[ip + 1];
+				ip = call();
+				break;
+			case Bytecode.CALLVAR:
+				valueRegister = getBinding(constants, code[ip + 1]).getValue();
+				ip = call();
+				break;
+			case Bytecode.CALLVARCONT:
+				valueRegister = getBinding(constants, code[ip + 1]).getValue();
+				continueRegister = code[ip + 2];
+				ip = call();
+				break;
+			case Bytecode.CALLKNOWN:
+				ip = callKnownProcedure(getBinding(constants, code[ip + 1])
+						.getValue(), code[ip + 2]);
+				break;
+			case Bytecode.CALLKNOWNCONT:
+				continueRegister = code[ip + 1];
+				ip = callKnownProcedure(getBinding(constants, code[ip + 2])
+						.getValue(), code[ip + 3]);
+				break;
+			case Bytecode.CALLCC:
+				ip = callWithCurrentContinuation();
+				break;
+			case Bytecode.REBIND:
+				rebindArguments(code[ip + 1]);
+				ip += 2;
+				break;
+			case Bytecode.CAR:
+			case Bytecode.CDR:
+			case Bytecode.NULLP:
+			case Bytecode.PAIRP:
+			case Bytecode.CONS:
+			case Bytecode.EQP:
+			case Bytecode.ADD2:
+			case Bytecode.SUB2:
+			case Bytecode.NUMEQ2:
+			case Bytecode.LT2:
+			case Bytecode.GT2:
+				final SchemeObject procedure = getBinding(constants,
+						code[ip + 1]).getValue();
+				if (applyPrimitive(code[ip], procedure))
+					ip = code[ip + 2];
+				else
+					ip = callPrimitive(procedure,
+							Bytecode.getPrimitiveArgumentCount(code[ip]), ip + 3);
+				break;
+			default:
+				throw new SchemeException("Internal error: Invalid opcode "
+						+ code[ip] + " at " + ip);
+			}
+		}
+
+		return checkFinalState();
+	}
+
+	// Executes the Opcode objects of the program, starting at opcode number
+	// initialIp. Slower than run(), kept for debugging and comparison.
+	public SchemeObject runOpcodes(final CompiledProgram prog,
+			final int initialIp) throws SchemeException {
+		reset(prog, initialIp);
+		final int numStatements = prog.getNumberOfStatements();
+
+		prog.setVm(this);
+		int previousIp = -1;
+		while (ip < numStatements && ip >= 0) {
+			if (_pairHistogram != null) countPair(prog, previousIp, ip);
+			previousIp = ip;
+			prog.executeOpcode(ip);
+		}
+
+		return checkFinalState();
+	}
+
+	// Makes runOpcodes() count how often each pair of adjacent opcodes is
+	// executed in sequence. These are the candidates for superinstructions.
+	public void setPairHistogram(Map<String, Long> histogram) {
+		_pairHistogram = histogram;
+	}
+
+	private void countPair(CompiledProgram prog, int previousIp, int ip) {
+		// CALL and CALLCC only fall through when a builtin returns; the
+		// instruction after them is a return address and can't be fused
+		if (previousIp + 1 != ip) return;
+		final Opcode previous = prog.getOpcode(previousIp);
+		if (previous instanceof Call
+				|| previous instanceof CallWithCurrentContinuation) return;
+		final String pair = previous.getClass().getSimpleName() + " "
+				+ prog.getOpcode(ip).getClass().getSimpleName();
+		final Long count = _pairHistogram.get(pair);
+		_pairHistogram.put(pair, count == null ? 1 : count + 1);
+	}
 }
@@ -26,4 +26,18 @@ public final class AnalyzingEvaluatorTest extends EvaluatorTest {
 		global.setOutputPort(new OutputPort(new OutputStreamWriter(System.out)));
 		interp = new AnalyzingEvaluator(global);
 	}
+
+	public void testInlineCacheFollowsRedefinition() throws SchemeException {
+		final AnalyzingEvaluator e = (AnalyzingEvaluator) interp;
+		e.eval("(define (foo) 1)");
+		e.eval("(define (bar) (foo))");
+		e.eval("(define (loop n) (if (= n 0) (bar) (begin (bar) (loop (- n 1)))))");
+		final long hits = e.getInlineCacheHits();
+		assertEquals("1", e.eval("(loop 100)").toString());
+		assertTrue(e.getInlineCacheHits() - hits > 100);
+		e.eval("(define (foo) 2)");
+		assertEquals("2", e.eval("(loop 100)").toString());
+		e.eval("(set! foo (lambda () 3))");
+		assertEquals("3", e.eval("(loop 100)").toString());
+	}
 }
@@ -0,0 +1,97 @@
+// lbjScheme
+// An experimental Scheme subset interpreter in Java, based on SchemeNet.cs
+// Copyright (c) 2013, Leif Bruder <leifbruder@gmail.com>
+//
+// Permission to use, copy, modify, and/or distribute this software for any
+// purpose with or without fee is hereby granted, provided that the above
+// copyright notice and this permission notice appear in all copies.
+//
+// THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+// WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+// MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+// ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+// WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+// ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+// OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+
+package tests.integrationtests;
+
+import java.io.*;
+import org.lb.lbjscheme.*;
+
+// Continuations are only supported by the compiling evaluators
+public class CompilingEvaluatorTest extends EvaluatorTest {
+	protected boolean optimize() {
+		return true;
+	}
+
+	@Override
+	public void setUp() throws SchemeException {
+		interp = new CompilingEvaluator(new InputPort(new StringReader("")),
+				new OutputPort(new OutputStreamWriter(System.out)), optimize());
+	}
+
+	private void evalTest(String expression, String expected)
+			throws SchemeException {
+		assertEquals(expected, interp.eval(expression).toString(false));
+	}
+
+	public void testEscapingContinuations() throws SchemeException {
+		evalTest("(call-with-current-continuation procedure?)", "#t");
+		evalTest("(+ 1 (call/cc (lambda (k) (+ 10 (k 2)))))", "3");
+		interp.eval("(define (find-first p lst) (call/cc (lambda (return) (for-each (lambda (x) (if (p x) (return x))) lst) #f)))");
+		evalTest("(find-first negative? '(1 -2 3 -4))", "-2");
+		evalTest("(find-first negative? '(1 2))", "#f");
+		evalTest("(call-with-values (lambda () (call/cc (lambda (k) (k 1 2)))) +)", "3");
+		interp.eval("(define list-length (lambda (obj) (call-with-current-continuation (lambda (return) (letrec ((r (lambda (obj) (cond ((null? obj) 0) ((pair? obj) (+ (r (cdr obj)) 1)) (else (return #f)))))) (r obj))))))");
+		evalTest("(list-length '(1 2 3 4))", "4");
+		evalTest("(list-length '(a b . c))", "#f");
+	}
+
+	public void testEscapeFromDeepRecursion() throws SchemeException {
+		interp.eval("(define (deep n k) (if (= n 0) (k 'out) (+ 1 (deep (- n 1) k))))");
+		evalTest("(call/cc (lambda (k) (deep 10000 k)))", "out");
+		evalTest("(list (call/cc (lambda (k) (deep 10 k))) (deep 10 (lambda (x) 0)))", "(out 10)");
+	}
+
+	public void testReenteredContinuations() throws SchemeException {
+		evalTest("(let ((k #f) (acc '())) (let ((v (call/cc (lambda (c) (set! k c) 0)))) (set! acc (cons v acc)) (if (< v 3) (k (+ v 1)) acc)))", "(3 2 1 0)");
+		interp.eval("(define (make-generator lst) (define return #f) (define resume #f) (lambda () (call/cc (lambda (r) (set! return r) (if resume (resume #f) (begin (for-each (lambda (x) (call/cc (lambda (next) (set! resume next) (return x)))) lst) (return 'done)))))))");
+		interp.eval("(define g (make-generator '(1 2 3)))");
+		evalTest("(let loop ((i 0) (acc '())) (if (= i 5) (reverse acc) (loop (+ i 1) (cons (g) acc))))", "(1 2 3 done done)");
+	}
+
+	// Each reentry binds the let again, and the closures keep their binding
+	public void testReenteredLetBindsNewVariables() throws SchemeException {
+		interp.eval("(define (f) (let ((k #f) (cl '())) (let ((x (call/cc (lambda (c) (set! k c) 0)))) (set! cl (cons (lambda () x) cl)) (if (< x 2) (k (+ x 1)))) (map (lambda (c) (c)) cl)))");
+		evalTest("(f)", "(2 1 0)");
+	}
+
+	// The continuation is captured through the library call/cc, which the
+	// loop can't see; its frame must not be reused by the later iterations
+	public void testReenteredLoopIteration() throws SchemeException {
+		interp.eval("(define k #f)");
+		interp.eval("(define (grab c) (set! k c) #f)");
+		interp.eval("(define (g) (let ((again #f)) (let loop ((i 0) (acc '())) (if (= i 3) (if again acc (begin (set! again #t) (k 'again))) (let ((v (if (= i 2) (call/cc grab) #f))) (loop (+ i 1) (cons (list i v) acc)))))))");
+		evalTest("(g)", "((2 again) (1 #f) (0 #f))");
+	}
+
+	// The init script is compiled without its macros, which would otherwise
+	// replace the native analysis of the derived forms
+	public void testDerivedFormsOfInitScript() throws SchemeException {
+		interp.eval("(define it 5)");
+		evalTest("(or #f it)", "5");
+		evalTest("(case 2 ((1) 'one) (else it))", "5");
+		interp.eval("(do ((i 0 (+ i 1))) ((= i 3)))");
+		evalTest("(do ((i 0 (+ i 1)) (acc '() (cons i acc))) ((= i 3) acc))", "(2 1 0)");
+	}
+
+	public void testReentryOfEarlierTopLevelForm() throws SchemeException {
+		interp.eval("(define saved #f)");
+		interp.eval("(define count 0)");
+		evalTest("(+ 100 (call/cc (lambda (k) (set! saved k) 1)))", "101");
+		interp.eval("(set! count (+ count 1))");
+		evalTest("(saved 5)", "105");
+		evalTest("count", "1");
+	}
+}
@@ -41,6 +41,25 @@ public abstract class EvaluatorTest extends TestCase {
 		literalTest("42");
 		literalTest("-42");
 		literalTest("12345678901234567890123456789012345678901234567890");
+		literalTest("1381234567890");
+	}
+
+	public void testEvalInInteractionEnvironment() throws SchemeException {
+		evalTest("(eval '(let ((x 2)) (* x x)) (interaction-environment))",
+				"4");
+	}
+
+	public void testFixnumOverflow() throws SchemeException {
+		evalTest("(+ 2147483647 1)", "2147483648");
+		evalTest("(* 1381234567890 1000)", "1381234567890000");
+		evalTest("(+ 9223372036854775807 1)", "9223372036854775808");
+		evalTest("(- -9223372036854775808 1)", "-9223372036854775809");
+		evalTest("(* 4294967296 4294967296)", "18446744073709551616");
+		evalTest("(quotient -9223372036854775808 -1)", "9223372036854775808");
+		evalTest("(- (+ 9223372036854775807 1) 1)", "9223372036854775807");
+		evalTest("(let loop ((i 0) (n 9223372036854775800)) "
+				+ "(if (= i 10) n (loop (+ i 1) (+ n 1))))",
+				"9223372036854775810");
 	}
 
 	public void testRationalLiterals() throws SchemeException {
@@ -99,6 +118,32 @@ public abstract class EvaluatorTest extends TestCase {
 		}
 	}
 
+	private void assertIsConstant(String expression, String name) {
+		try {
+			interp.eval(expression);
+			fail("Binding " + name + " should throw an error");
+		} catch (SchemeException ex) {
+			assertEquals("Symbol '" + name
+					+ "' is constant and must not be changed", ex.getMessage());
+		}
+	}
+
+	public void testSpecialFormsCanNotBeRebound() {
+		assertIsConstant("(let ((if list)) (if 1 2 3))", "if");
+		assertIsConstant("((lambda (quote) quote) 1)", "quote");
+		assertIsConstant("(define (f) (define begin 1) begin) (f)", "begin");
+		assertIsConstant("(define lambda 1)", "lambda");
+	}
+
+	public void testSetOfUndefinedVariable() throws SchemeException {
+		try {
+			interp.eval("(set! undefined-var-abc 5)");
+			fail("set! of an undefined symbol should throw an error");
+		} catch (SchemeException ex) {
+			assertEquals("Unknown symbol undefined-var-abc", ex.getMessage());
+		}
+	}
+
 	public void testGlobalVariable() throws SchemeException {
 		interp.eval("(define asd 42)");
 		evalTest("asd", "42");
@@ -111,6 +156,52 @@ public abstract class EvaluatorTest extends TestCase {
 		evalTest("asd", "3.1415");
 	}
 
+	public void testRedefineGlobalVariable() throws SchemeException {
+		interp.eval("(define (foo) (bar))");
+		interp.eval("(define (bar) 1)");
+		evalTest("(foo)", "1");
+		interp.eval("(define (bar) 2)");
+		evalTest("(foo)", "2");
+		interp.eval("(define (first-of lst) (car lst))");
+		interp.eval("(set! car cdr)");
+		evalTest("(first-of '(1 2))", "(2)");
+		evalTest("(##car '(1 2))", "1");
+	}
+
+	public void testRedefineCalledProcedure() throws SchemeException {
+		interp.eval("(define (f) 1)");
+		interp.eval("(define (g) (list (f) (f)))");
+		evalTest("(g)", "(1 1)");
+		interp.eval("(define (f) 2)");
+		evalTest("(g)", "(2 2)");
+		interp.eval("(define (f . args) args)");
+		evalTest("(g)", "(() ())");
+		interp.eval("(define f (lambda (x) x))");
+		try {
+			interp.eval("(g)");
+			fail("Calling f with an invalid number of parameters should throw an error");
+		} catch (SchemeException ex) {
+			assertTrue(true);
+		}
+	}
+
+	public void testSetCalledProcedure() throws SchemeException {
+		interp.eval("(define (f x) (* x 2))");
+		interp.eval("(define (g x) (f x))");
+		evalTest("(g 2)", "4");
+		interp.eval("(set! f (lambda (x) (* x 3)))");
+		evalTest("(g 2)", "6");
+		interp.eval("(define (f x) (* x 4))");
+		evalTest("(g 2)", "8");
+	}
+
+	public void testRecursiveProcedure() throws SchemeException {
+		interp.eval("(define (fib n) (if (< n 2) n (+ (fib (- n 1)) (fib (- n 2)))))");
+		evalTest("(fib 15)", "610");
+		interp.eval("(define (fibs n) (if (= n 0) '() (cons (fib n) (fibs (- n 1)))))");
+		evalTest("(fibs 5)", "(5 3 2 1 1)");
+	}
+
 	public void testInexactRationals() throws SchemeException {
 		interp.eval("(define a 3/4)");
 		interp.eval("(define b (exact->inexact a))");
@@ -153,6 +244,100 @@ public abstract class EvaluatorTest extends TestCase {
 		evalTest("(call-with-values * -)", "-1");
 	}
 
+	public void testInternalDefines() throws SchemeException {
+		interp.eval("(define (foo n) (define (ev? x) (if (= x 0) #t (od? (- x 1)))) (define (od? x) (if (= x 0) #f (ev? (- x 1)))) (ev? n))");
+		evalTest("(foo 10)", "#t");
+		evalTest("(foo 7)", "#f");
+		interp.eval("(define x 'global)");
+		interp.eval("(define (bar) (begin (define x 'local)) x)");
+		evalTest("(bar)", "local");
+		evalTest("x", "global");
+	}
+
+	public void testClosedOverVariables() throws SchemeException {
+		interp.eval("(define (make-counter) (let ((n 0)) (lambda () (set! n (+ n 1)) n)))");
+		interp.eval("(define c1 (make-counter))");
+		interp.eval("(define c2 (make-counter))");
+		interp.eval("(c1)");
+		interp.eval("(c1)");
+		evalTest("(c1)", "3");
+		evalTest("(c2)", "1");
+		evalTest("((((lambda (a) (lambda (b) (lambda (c) (list a b c)))) 1) 2) 3)", "(1 2 3)");
+	}
+
+	public void testLetInsideLambda() throws SchemeException {
+		interp.eval("(define (foo x) (let ((y (* x 2))) (let ((y (+ y 1)) (z y)) (define w (+ y z)) (list x y z w))))");
+		evalTest("(foo 3)", "(3 7 6 13)");
+		interp.eval("(define (make-adders n) (let loop ((i 0) (acc '())) (if (= i n) acc (loop (+ i 1) (cons (let ((k i)) (lambda (x) (+ x k))) acc)))))");
+		evalTest("(map (lambda (f) (f 10)) (make-adders 3))", "(12 11 10)");
+	}
+
+	public void testSelfTailCalls() throws SchemeException {
+		interp.eval("(define (sum n) (let loop ((i 0) (acc 0)) (if (= i n) acc (loop (+ i 1) (+ acc i)))))");
+		evalTest("(sum 100000)", "4999950000");
+		interp.eval("(define (swap n a b) (define (iter n a b) (if (= n 0) (list a b) (iter (- n 1) b a))) (iter n a b))");
+		evalTest("(swap 3 'x 'y)", "(y x)");
+		interp.eval("(define (thunks n) (let loop ((i 0) (acc '())) (if (= i n) acc (loop (+ i 1) (cons (lambda () i) acc)))))");
+		evalTest("(map (lambda (f) (f)) (thunks 3))", "(2 1 0)");
+		interp.eval("(define (fresh n) (let loop ((i 0)) (define x (if (= i 0) 'first 'later)) (if (= i n) x (loop (+ i 1)))))");
+		evalTest("(fresh 2)", "later");
+		evalTest("(do ((i 0 (+ i 1)) (acc '() (cons i acc))) ((= i 3) acc))", "(2 1 0)");
+	}
+
+	public void testStringProcedures() throws SchemeException {
+		evalTest("(substring \"hello world\" 6 11)", "\"world\"");
+		evalTest("(string-append \"a\" \"\" \"bc\")", "\"abc\"");
+		evalTest("(string-append)", "\"\"");
+		evalTest("(string->list \"ab\")", "(#\\a #\\b)");
+		evalTest("(list->string '(#\\a #\\b))", "\"ab\"");
+		evalTest("(let ((s (string-copy \"abc\"))) (string-fill! s #\\z) s)",
+				"\"zzz\"");
+		evalTest("(list (string<? \"abc\" \"abd\") (string<? \"ab\" \"abc\") (string>? \"ab\" \"abc\") (string=? \"ab\" \"ab\") (string<=? \"b\" \"a\") (string>=? \"b\" \"a\"))",
+				"(#t #t #f #t #f #t)");
+		evalTest("(list (string-ci=? \"aBc\" \"AbC\") (string-ci<? \"ABC\" \"abd\") (string-ci>? \"b\" \"A\") (string-ci<=? \"a\" \"A\") (string-ci>=? \"a\" \"B\"))",
+				"(#t #t #t #t #f)");
+		try {
+			interp.eval("(substring \"abc\" 2 1)");
+			fail("substring with an invalid range should throw an error");
+		} catch (SchemeException ex) {
+			assertTrue(true);
+		}
+	}
+
+	public void testListProcedures() throws SchemeException {
+		evalTest("(length '(1 2 3))", "3");
+		evalTest("(reverse '(1 2 3))", "(3 2 1)");
+		evalTest("(append '(1) '() '(2 3) 4)", "(1 2 3 . 4)");
+		evalTest("(list-tail '(1 2 3) 1)", "(2 3)");
+		evalTest("(list-ref '(1 2 3) 2)", "3");
+		evalTest("(memv 2.0 '(1 2 2.0 3))", "(2.0 3)");
+		evalTest("(member '(b) '(a (b) c))", "((b) c)");
+		evalTest("(assq 'b '((a 1) (b 2)))", "(b 2)");
+		evalTest("(assoc \"b\" '((\"a\" . 1) (\"b\" . 2)))", "(\"b\" . 2)");
+		evalTest("(assv 3 '((1 . a)))", "#f");
+		try {
+			interp.eval("(length '(1 . 2))");
+			fail("length of an improper list should throw an error");
+		} catch (SchemeException ex) {
+			assertTrue(true);
+		}
+	}
+
+	public void testHigherOrderListProcedures() throws SchemeException {
+		interp.eval("(define (square x) (* x x))");
+		evalTest("(map square '(1 2 3))", "(1 4 9)");
+		evalTest("(map + '(1 2 3) '(10 20))", "(11 22)");
+		evalTest("(map (lambda (x y z) (list x y z)) '(1 2) '(a b) '(#t #f))",
+				"((1 a #t) (2 b #f))");
+		evalTest("(let ((acc '())) (for-each (lambda (x) (set! acc (cons x acc))) '(1 2 3)) acc)",
+				"(3 2 1)");
+		evalTest("(fold cons '() '(1 2 3))", "(3 2 1)");
+		evalTest("(filter odd? '(1 2 3 4 5))", "(1 3 5)");
+		evalTest("(list (any odd? '(2 4 5)) (any odd? '()) (every odd? '(1 3)) (every odd? '(1 2)))",
+				"(#t #f #t #f)");
+		evalTest("(map (lambda (l) (map square l)) '((1 2) (3)))", "((1 4) (9))");
+	}
+
 	public void testR5rsTests() throws Exception {
 		final String script = readWholeFile("r5rs_tests.scm");
 		if (script.equals("")) fail("r5rs_tests.scm not found");
@@ -0,0 +1,88 @@
+// lbjScheme
+// An experimental Scheme subset interpreter in Java, based on SchemeNet.cs
+// Copyright (c) 2013, Leif Bruder <leifbruder@gmail.com>
+//
+// Permission to use, copy, modify, and/or distribute this software for any
+// purpose with or without fee is hereby granted, provided that the above
+// copyright notice and this permission notice appear in all copies.
+//
+// THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+// WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+// MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+// ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+// WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+// ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+// OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+
+package tests.integrationtests;
+
+import java.io.OutputStreamWriter;
+import org.lb.lbjscheme.*;
+
+// Continuations captured in compiled code can only escape
+public final class JvmCompilingEvaluatorTest extends EvaluatorTest {
+	@Override
+	public void setUp() throws SchemeException {
+		final Environment global = Environment.newInteractionEnvironment(null);
+		global.setOutputPort(new OutputPort(new OutputStreamWriter(System.out)));
+		interp = new JvmCompilingEvaluator(global);
+	}
+
+	private void evalTest(String expression, String expected)
+			throws SchemeException {
+		assertEquals(expected, interp.eval(expression).toString(false));
+	}
+
+	public void testEscapingContinuations() throws SchemeException {
+		evalTest("(call-with-current-continuation procedure?)", "#t");
+		evalTest("(+ 1 (call/cc (lambda (k) (+ 10 (k 2)))))", "3");
+		interp.eval("(define (find-first p lst) (call/cc (lambda (return) (for-each (lambda (x) (if (p x) (return x))) lst) #f)))");
+		evalTest("(find-first negative? '(1 -2 3 -4))", "-2");
+		evalTest("(find-first negative? '(1 2))", "#f");
+		evalTest("(call-with-values (lambda () (call/cc (lambda (k) (k 1 2)))) +)", "3");
+		interp.eval("(define list-length (lambda (obj) (call-with-current-continuation (lambda (return) (letrec ((r (lambda (obj) (cond ((null? obj) 0) ((pair? obj) (+ (r (cdr obj)) 1)) (else (return #f)))))) (r obj))))))");
+		evalTest("(list-length '(1 2 3 4))", "4");
+		evalTest("(list-length '(a b . c))", "#f");
+	}
+
+	public void testEscapeFromNestedCallcc() throws SchemeException {
+		evalTest("(call/cc (lambda (outer) (+ 1 (call/cc (lambda (inner) (outer 5))))))", "5");
+	}
+
+	public void testReenteringContinuationFails() throws SchemeException {
+		interp.eval("(define saved #f)");
+		evalTest("(+ 100 (call/cc (lambda (k) (set! saved k) 1)))", "101");
+		try {
+			interp.eval("(saved 5)");
+			fail("Reentering a continuation must fail");
+		} catch (SchemeException ex) {
+			assertEquals(
+					"JvmCompilingEvaluator only supports escaping continuations",
+					ex.getMessage());
+		}
+	}
+
+	public void testDeepRecursionInTailPosition() throws SchemeException {
+		interp.eval("(define (even2? n) (if (= n 0) #t (odd2? (- n 1))))");
+		interp.eval("(define (odd2? n) (if (= n 0) #f (even2? (- n 1))))");
+		evalTest("(even2? 100001)", "#f");
+		evalTest("(let loop ((i 0) (acc 0)) (if (= i 100000) acc (loop (+ i 1) (+ acc i))))", "4999950000");
+	}
+
+	public void testClosuresOverLocalVariables() throws SchemeException {
+		interp.eval("(define (make-counter) (define n 0) (lambda () (set! n (+ n 1)) n))");
+		interp.eval("(define c (make-counter))");
+		interp.eval("(c)");
+		evalTest("(c)", "2");
+		evalTest("((lambda (a b c d e . rest) (list e rest)) 1 2 3 4 5 6 7)", "(5 (6 7))");
+		evalTest("(let ((f (lambda (x) (lambda (y) (lambda (z) (list x y z)))))) (((f 1) 2) 3))", "(1 2 3)");
+	}
+
+	public void testRedefinedPrimitive() throws SchemeException {
+		interp.eval("(define (f x) (car x))");
+		evalTest("(f '(1 2))", "1");
+		interp.eval("(set! car cdr)");
+		evalTest("(f '(1 2))", "(2)");
+		evalTest("(+ 4611686018427387904 4611686018427387904)", "9223372036854775808");
+	}
+}
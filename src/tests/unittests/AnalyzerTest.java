@@ -0,0 +1,147 @@
+// lbjScheme
+// An experimental Scheme subset interpreter in Java, based on SchemeNet.cs
+// Copyright (c) 2013, Leif Bruder <leifbruder@gmail.com>
+//
+// Permission to use, copy, modify, and/or distribute this software for any
+// purpose with or without fee is hereby granted, provided that the above
+// copyright notice and this permission notice appear in all copies.
+//
+// THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+// WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+// MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+// ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+// WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+// ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+// OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+
+package tests.unittests;
+
+import java.io.*;
+import junit.framework.TestCase;
+import org.lb.lbjscheme.*;
+import org.lb.lbjscheme.Reader;
+import org.lb.lbjscheme.ast.*;
+
+public final class AnalyzerTest extends TestCase {
+	private Analyzer analyzer;
+
+	@Override
+	protected void setUp() throws SchemeException {
+		analyzer = new Analyzer();
+	}
+
+	private SyntaxTreeObject analyze(String expression)
+			throws SchemeException, EOFException {
+		return analyzer.analyze(new Reader(new InputPort(new StringReader(
+				expression))).read());
+	}
+
+	public void testBindImmediatelyAppliedLambdaInPlace() throws Exception {
+		final LambdaForm form = (LambdaForm) analyze("(lambda (x) (let ((y x)) (let ((y y) (z 1)) (list x y z))))");
+		assertEquals(4, form.getFrameSize());
+		assertEquals(3, analyzer.getLambdaCount());
+		assertEquals(2, analyzer.getLambdasBoundInPlace());
+
+		final LetForm outer = (LetForm) form.getAnalyzedForms().getLastForm();
+		assertEquals(1, outer.getVariables().get(0).getSlot());
+		final LetForm inner = (LetForm) outer.getBody().getLastForm();
+		assertEquals(2, inner.getVariables().get(0).getSlot());
+		assertEquals(1, ((LocalVariable) inner.getValues().get(0)).getSlot());
+	}
+
+	public void testSelfTailCallsBecomeLoops() throws Exception {
+		analyze("(define (len lst) (define (iter l acc) (if (null? l) acc (iter (cdr l) (+ acc 1)))) (iter lst 0))");
+		assertEquals(1, analyzer.getLoopCount());
+		final LambdaForm form = (LambdaForm) analyze("(lambda (n) (let loop ((i 0)) (if (< i n) (loop (+ i 1)) i)))");
+		assertEquals(2, analyzer.getLoopCount());
+		final LetForm let = (LetForm) form.getAnalyzedForms().getLastForm();
+		final SetForm set = (SetForm) let.getBody().getFormsWithoutLast()
+				.get(0);
+		final LoopForm loop = (LoopForm) ((LambdaForm) set.getValue())
+				.getAnalyzedForms().getLastForm();
+		final IfForm body = (IfForm) loop.getBody().getLastForm();
+		assertTrue(((SelfTailCall) body.getThenPart()).getLabel().isValid());
+	}
+
+	public void testNoLoopsForReassignedOrCapturedFrames() throws Exception {
+		analyze("(lambda () (define (f n) (if (= n 0) 0 (f (- n 1)))) (set! f car) (f 1))");
+		analyze("(lambda () (define (f n) (if (= n 0) 0 (f (- n 1)))) (define (f n) n) (f 1))");
+		analyze("(lambda () (define (f n acc) (if (= n 0) acc (f (- n 1) (cons (lambda () n) acc)))) (f 3 '()))");
+		analyze("(lambda () (define (f n) (if (= n 0) 0 (+ 1 (f (- n 1))))) (f 3))");
+		assertEquals(0, analyzer.getLoopCount());
+	}
+
+	public void testReentrantContinuations() throws Exception {
+		analyzer.setReentrantContinuations(true);
+		analyze("(lambda (n) (let loop ((i 0)) (if (< i n) (let ((x (* i i))) (loop (+ i 1))) i)))");
+		assertEquals(1, analyzer.getLoopCount());
+		assertEquals(1, analyzer.getLambdasBoundInPlace());
+
+		analyze("(lambda (n) (let loop ((i 0)) (if (< i n) (begin (f i) (loop (+ i 1))))))");
+		assertEquals(1, analyzer.getLoopCount());
+
+		analyze("(lambda () (let ((x (f))) (display x) (g x)))");
+		assertEquals(2, analyzer.getLambdasBoundInPlace());
+		final LambdaForm form = (LambdaForm) analyze("(lambda () (let ((x (f))) (let ((y x)) (g y) x)))");
+		assertEquals(2, analyzer.getLambdasBoundInPlace());
+		assertEquals(0, form.getFrameSize());
+		assertTrue(form.getAnalyzedForms().getLastForm() instanceof Funcall);
+		analyze("(lambda () (let ((x 1)) (lambda () x)))");
+		assertEquals(2, analyzer.getLambdasBoundInPlace());
+	}
+
+	public void testCachedMacroExpansions() throws Exception {
+		final MacroExpansionCache cache = analyzer.getMacroExpansionCache();
+		analyze("(defmacro twice (x) `(+ ,x ,x))");
+		analyze("(twice 1)");
+		analyze("(twice 1)");
+		analyze("(twice 2)");
+		assertEquals(1, cache.getHits());
+		assertEquals(2, cache.getMisses());
+
+		analyze("(defmacro answer () 42)");
+		assertEquals("42", ((SelfEvaluatingLiteral) analyze("(answer)"))
+				.getValue().toString(false));
+		analyze("(defmacro answer () 43)");
+		assertEquals("43", ((SelfEvaluatingLiteral) analyze("(answer)"))
+				.getValue().toString(false));
+		assertEquals(1, cache.getHits());
+	}
+
+	public void testDerivedFormsNeedNoClosures() throws Exception {
+		final LambdaForm form = (LambdaForm) analyze("(lambda (x) (or (case x ((1) 'one) (else #f)) (cond ((= x 2) 'two) (else `(,x ,@'(other)))) (and x #f)))");
+		assertEquals(1, analyzer.getLambdaCount());
+		assertEquals(3, form.getFrameSize());
+		assertEquals(0, analyzer.getMacroExpansionCache().getMisses());
+
+		final LetForm or = (LetForm) form.getAnalyzedForms().getLastForm();
+		final IfForm test = (IfForm) or.getBody().getLastForm();
+		assertSame(or.getVariables().get(0), test.getCondition());
+		assertTrue(or.getValues().get(0) instanceof LetForm);
+	}
+
+	public void testDoLoop() throws Exception {
+		analyze("(lambda (n) (do ((i 0 (+ i 1)) (acc '() (cons i acc))) ((= i n) acc)))");
+		assertEquals(1, analyzer.getLoopCount());
+	}
+
+	public void testRedefinedDerivedForm() throws Exception {
+		analyze("(defmacro and args #t)");
+		final LambdaForm form = (LambdaForm) analyze("(lambda (x) (and x #f))");
+		assertEquals("#t", ((SelfEvaluatingLiteral) form.getAnalyzedForms()
+				.getLastForm()).getValue().toString(false));
+		assertTrue(analyze("(let ((and 1)) (and 2))") instanceof Funcall);
+	}
+
+	public void testKeepClosureWhereNoFrameExists() throws Exception {
+		assertTrue(analyze("((lambda (x) x) 1)") instanceof Funcall);
+		assertEquals(0, analyzer.getLambdasBoundInPlace());
+	}
+
+	public void testKeepClosureOnRestParameterOrArgumentMismatch()
+			throws Exception {
+		analyze("(lambda () ((lambda x x) 1) ((lambda (x) x) 1 2))");
+		assertEquals(3, analyzer.getLambdaCount());
+		assertEquals(0, analyzer.getLambdasBoundInPlace());
+	}
+}
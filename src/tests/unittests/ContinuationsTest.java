@@ -0,0 +1,45 @@
+// lbjScheme
+// An experimental Scheme subset interpreter in Java, based on SchemeNet.cs
+// Copyright (c) 2013, Leif Bruder <leifbruder@gmail.com>
+//
+// Permission to use, copy, modify, and/or distribute this software for any
+// purpose with or without fee is hereby granted, provided that the above
+// copyright notice and this permission notice appear in all copies.
+//
+// THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+// WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+// MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+// ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+// WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+// ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+// OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+
+package tests.unittests;
+
+import junit.framework.TestCase;
+import org.lb.lbjscheme.*;
+
+public final class ContinuationsTest extends TestCase {
+	private TestCompiler compiler;
+
+	@Override
+	protected void setUp() throws SchemeException {
+		compiler = new TestCompiler();
+	}
+
+	// call/cc and call-with-current-continuation are procedures of the init
+	// script calling the sys:call/cc special form
+	public void testCallWithCurrentContinuation() throws SchemeException {
+		final String code = compiler.compile("(list (sys:call/cc f))");
+		assertTrue(code, code.contains("GETVAR f\nCONT = "));
+		assertTrue(code, code.contains("\nCALLCC\nPOPALL\n"));
+	}
+
+	public void testTailCallWithCurrentContinuation() throws SchemeException {
+		final String code = compiler.compile("(lambda (f) (sys:call/cc f))");
+		assertTrue(code, code.contains("INITARGS\nGETLOCAL "));
+		assertTrue(code, code.contains("\nCALLCC\n"));
+		assertFalse(code, code.contains("CONT = "));
+		assertFalse(code, code.contains("PUSHALL"));
+	}
+}
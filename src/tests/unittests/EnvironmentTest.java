@@ -0,0 +1,146 @@
+// lbjScheme
+// An experimental Scheme subset interpreter in Java, based on SchemeNet.cs
+// Copyright (c) 2013, Leif Bruder <leifbruder@gmail.com>
+//
+// Permission to use, copy, modify, and/or distribute this software for any
+// purpose with or without fee is hereby granted, provided that the above
+// copyright notice and this permission notice appear in all copies.
+//
+// THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+// WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+// MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+// ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+// WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+// ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+// OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+
+package tests.unittests;
+
+import java.io.StringWriter;
+import java.util.*;
+import junit.framework.TestCase;
+import org.lb.lbjscheme.*;
+
+public final class EnvironmentTest extends TestCase {
+	private static SchemeObject get(Environment env, String name)
+			throws SchemeException {
+		return env.get(Symbol.fromString(name));
+	}
+
+	public void testLayersAreIndependent() throws SchemeException {
+		final Environment g1 = Environment.newInteractionEnvironment(null);
+		final Environment g2 = Environment.newInteractionEnvironment(null);
+		final Evaluator e1 = new InterpretingEvaluator(g1);
+		final Evaluator e2 = new InterpretingEvaluator(g2);
+		e1.eval("(define x 1)");
+		e1.eval("(set! car cdr)");
+		assertEquals("(2)", e1.eval("(car '(1 2))").toString());
+		assertEquals("1", e2.eval("(car '(1 2))").toString());
+		assertFalse(g2.isDefined(Symbol.fromString("x")));
+		assertNotSame(get(g1, "car"), get(Environment.getBaseEnvironment(),
+				"car"));
+		assertSame(get(g2, "car"), get(Environment.getBaseEnvironment(),
+				"car"));
+	}
+
+	public void testBaseIsFrozen() throws SchemeException {
+		final Environment base = Environment.getBaseEnvironment();
+		try {
+			base.define(Symbol.fromString("x"), Nil.getInstance());
+			fail("The base environment should not be changed");
+		} catch (SchemeException ex) {
+			assertTrue(true);
+		}
+		assertFalse(base.isDefined(Symbol.fromString("x")));
+	}
+
+	public void testBuiltinsOfTheBaseAreProtected() throws SchemeException {
+		final Evaluator e = new InterpretingEvaluator(
+				Environment.newInteractionEnvironment(null));
+		try {
+			e.eval("(define ##car cdr)");
+			fail("##car should not be redefined");
+		} catch (SchemeException ex) {
+			assertTrue(true);
+		}
+	}
+
+	public void testAnalyzedFormsAreShared() throws SchemeException {
+		final Environment g1 = Environment.newInteractionEnvironment(null);
+		final Environment g2 = Environment.newInteractionEnvironment(null);
+		new AnalyzingEvaluator(g1);
+		new AnalyzingEvaluator(g2);
+		final AnalyzedLambda reduce1 = (AnalyzedLambda) get(g1, "reduce");
+		final AnalyzedLambda reduce2 = (AnalyzedLambda) get(g2, "reduce");
+		assertNotSame(reduce1, reduce2);
+		assertSame(reduce1.getForms(), reduce2.getForms());
+	}
+
+	public void testLayersHaveTheirOwnPorts() throws SchemeException {
+		final Environment g1 = Environment.newInteractionEnvironment(null);
+		final Environment g2 = Environment.newInteractionEnvironment(null);
+		final StringWriter out1 = new StringWriter();
+		final StringWriter out2 = new StringWriter();
+		g1.setOutputPort(new OutputPort(out1));
+		g2.setOutputPort(new OutputPort(out2));
+		new AnalyzingEvaluator(g1).eval("(display \"a\") (newline)");
+		new AnalyzingEvaluator(g2).eval("(write \"b\")");
+		assertEquals("a\n", out1.toString());
+		assertEquals("\"b\"", out2.toString());
+	}
+
+	public void testInteractionEnvironmentIsANewLayer()
+			throws SchemeException {
+		final Environment global = Environment.newInteractionEnvironment(null);
+		final Evaluator e = new AnalyzingEvaluator(global);
+		e.eval("(define e (interaction-environment))");
+		e.eval("(eval '(define y 42) e)");
+		assertEquals("42", e.eval("(eval 'y e)").toString());
+		assertFalse(global.isDefined(Symbol.fromString("y")));
+	}
+
+	public void testReportEnvironment() throws SchemeException {
+		final Evaluator e = new AnalyzingEvaluator(
+				Environment.newInteractionEnvironment(null));
+		e.eval("(define r (scheme-report-environment 5))");
+		assertEquals("6", e.eval("(eval '(apply + (list 1 2 3)) r)")
+				.toString());
+		e.eval("(eval '(define car cdr) r)");
+		assertEquals("1", e.eval(
+				"(eval '(car '(1 2)) (scheme-report-environment 5))")
+				.toString());
+	}
+
+	public void testEvaluatorsInSeveralThreads() throws Exception {
+		final List<String> results = Collections
+				.synchronizedList(new ArrayList<String>());
+		final List<Thread> threads = new ArrayList<>();
+		for (int i = 0; i < 8; ++i) {
+			final int n = i;
+			threads.add(new Thread() {
+				@Override
+				public void run() {
+					try {
+						final Evaluator e = new AnalyzingEvaluator(Environment
+								.newInteractionEnvironment(null));
+						e.eval("(define (f x) (* x " + n + "))");
+						SchemeObject result = null;
+						for (int j = 0; j < 200; ++j)
+							result = e.eval("(apply + (map f (do ((i 0 (+ i 1)) (acc '() (cons i acc))) ((= i 10) acc))))");
+						results.add(n + ":" + result);
+					} catch (SchemeException ex) {
+						results.add(n + ":" + ex.getMessage());
+					}
+				}
+			});
+		}
+		for (Thread t : threads)
+			t.start();
+		for (Thread t : threads)
+			t.join();
+
+		assertEquals(8, results.size());
+		for (int i = 0; i < 8; ++i)
+			assertTrue(results.contains(i + ":" + 45 * i));
+	}
+}
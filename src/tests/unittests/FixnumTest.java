@@ -0,0 +1,71 @@
+// lbjScheme
+// An experimental Scheme subset interpreter in Java, based on SchemeNet.cs
+// Copyright (c) 2013, Leif Bruder <leifbruder@gmail.com>
+//
+// Permission to use, copy, modify, and/or distribute this software for any
+// purpose with or without fee is hereby granted, provided that the above
+// copyright notice and this permission notice appear in all copies.
+//
+// THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+// WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+// MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+// ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+// WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+// ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+// OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+
+package tests.unittests;
+
+import java.math.BigInteger;
+import junit.framework.TestCase;
+import org.lb.lbjscheme.*;
+
+public final class FixnumTest extends TestCase {
+	public void testSmallValuesAreShared() {
+		assertSame(Fixnum.valueOf(0), Fixnum.valueOf(0));
+		assertSame(Fixnum.valueOf(-1024), Fixnum.valueOf(-1024));
+		assertSame(Fixnum.valueOf(1024), Fixnum.valueOf(1024));
+		assertSame(Fixnum.valueOf(42), Fixnum.valueOf("42", 10));
+	}
+
+	public void testLargeValues() {
+		assertEquals(1025, Fixnum.valueOf(1025).getValue());
+		assertEquals(-1025, Fixnum.valueOf(-1025).getValue());
+		assertEquals(Long.MAX_VALUE, Fixnum.valueOf(Long.MAX_VALUE).getValue());
+	}
+
+	public void testArithmeticUsesCache() throws SchemeException {
+		assertSame(Fixnum.valueOf(5), Fixnum.valueOf(2).add(Fixnum.valueOf(3)));
+		assertSame(Fixnum.valueOf(-1), Fixnum.valueOf(2).sub(Fixnum.valueOf(3)));
+	}
+
+	public void testValuesBeyondInt() throws SchemeException {
+		final SchemeNumber n = Fixnum.valueOf(Integer.MAX_VALUE).add(
+				Fixnum.valueOf(1));
+		assertTrue(n instanceof Fixnum);
+		assertEquals("2147483648", n.toString());
+		assertTrue(Fixnum.valueOf("1381234567890", 10) instanceof Fixnum);
+	}
+
+	public void testOverflowPromotesToBignum() throws SchemeException {
+		final Fixnum max = Fixnum.valueOf(Long.MAX_VALUE);
+		final Fixnum min = Fixnum.valueOf(Long.MIN_VALUE);
+		assertEquals("9223372036854775808", max.add(Fixnum.valueOf(1))
+				.toString());
+		assertEquals("-9223372036854775809", min.sub(Fixnum.valueOf(1))
+				.toString());
+		assertEquals("18446744073709551614", max.mul(Fixnum.valueOf(2))
+				.toString());
+		assertEquals("9223372036854775808", min.idiv(Fixnum.valueOf(-1))
+				.toString());
+		assertTrue(max.add(Fixnum.valueOf(1)) instanceof Bignum);
+	}
+
+	public void testBignumsAreDemoted() throws SchemeException {
+		final SchemeNumber n = Fixnum.valueOf(Long.MAX_VALUE).add(
+				Fixnum.valueOf(1));
+		assertSame(Fixnum.valueOf(1), n.sub(Fixnum.valueOf(Long.MAX_VALUE)));
+		assertTrue(Bignum.valueOf(BigInteger.valueOf(Long.MIN_VALUE))
+				.getLevel() == 1);
+	}
+}
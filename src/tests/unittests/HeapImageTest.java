@@ -0,0 +1,83 @@
+// lbjScheme
+// An experimental Scheme subset interpreter in Java, based on SchemeNet.cs
+// Copyright (c) 2013, Leif Bruder <leifbruder@gmail.com>
+//
+// Permission to use, copy, modify, and/or distribute this software for any
+// purpose with or without fee is hereby granted, provided that the above
+// copyright notice and this permission notice appear in all copies.
+//
+// THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+// WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+// MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+// ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+// WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+// ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+// OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+
+package tests.unittests;
+
+import java.io.*;
+import junit.framework.TestCase;
+import org.lb.lbjscheme.*;
+
+public final class HeapImageTest extends TestCase {
+	private byte[] image;
+
+	@Override
+	protected void setUp() throws Exception {
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		HeapImage.write(Environment.evalInteractionEnvironment(null), out);
+		image = out.toByteArray();
+	}
+
+	private Environment restore() throws IOException {
+		return HeapImage.read(new ByteArrayInputStream(image));
+	}
+
+	public void testInterpretRestoredEnvironment() throws Exception {
+		final Evaluator e = new InterpretingEvaluator(restore());
+		assertEquals("(1 4 9)", e.eval("(map (lambda (x) (* x x)) '(1 2 3))")
+				.toString());
+		assertEquals("3", e.eval("(let loop ((i 0)) (if (< i 3) (loop (+ i 1)) i))")
+				.toString());
+		assertEquals("#t", e.eval("(eq? car ##car)").toString());
+	}
+
+	public void testRestoredLambdasAreAnalyzed() throws Exception {
+		final Environment global = restore();
+		final SchemeObject reduce = global.get(Symbol.fromString("reduce"));
+		assertTrue(reduce instanceof Lambda);
+		assertNotNull(((Lambda) reduce).getAnalyzedForm());
+
+		final Evaluator e = new AnalyzingEvaluator(global);
+		assertTrue(global.get(Symbol.fromString("reduce")) instanceof AnalyzedLambda);
+		assertEquals("9", e.eval("(reduce + 0 (map (lambda (x) (+ x 1)) '(1 2 3)))")
+				.toString());
+	}
+
+	public void testRestoredCopiesAreIndependent() throws Exception {
+		final Evaluator e1 = new InterpretingEvaluator(restore());
+		final Evaluator e2 = new InterpretingEvaluator(restore());
+		e1.eval("(define answer 42)");
+		e1.eval("(set! map car)");
+		assertEquals("42", e1.eval("answer").toString());
+		try {
+			e2.eval("answer");
+			fail("A define must not be visible in another copy");
+		} catch (SchemeException ex) {
+			assertTrue(true);
+		}
+		assertEquals("(1 2)", e2.eval("(map (lambda (x) x) '(1 2))")
+				.toString());
+	}
+
+	public void testStaleImage() throws Exception {
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		final ObjectOutputStream o = new ObjectOutputStream(out);
+		o.writeUTF("lbjScheme heap image");
+		o.writeInt(1);
+		o.writeInt(Environment.getInteractionInitScript().hashCode() + 1);
+		o.close();
+		assertNull(HeapImage.read(new ByteArrayInputStream(out.toByteArray())));
+	}
+}
@@ -0,0 +1,81 @@
+// lbjScheme
+// An experimental Scheme subset interpreter in Java, based on SchemeNet.cs
+// Copyright (c) 2013, Leif Bruder <leifbruder@gmail.com>
+//
+// Permission to use, copy, modify, and/or distribute this software for any
+// purpose with or without fee is hereby granted, provided that the above
+// copyright notice and this permission notice appear in all copies.
+//
+// THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+// WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+// MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+// ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+// WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+// ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+// OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+
+package tests.unittests;
+
+import junit.framework.TestCase;
+import org.lb.lbjscheme.*;
+
+public final class KnownProcedureCallsTest extends TestCase {
+	private TestCompiler compiler;
+
+	@Override
+	protected void setUp() throws SchemeException {
+		compiler = new TestCompiler();
+	}
+
+	private void assertKnownCall(String expression, String procedure)
+			throws SchemeException {
+		final String code = compiler.compile(expression);
+		assertTrue(code, code.contains("CALLKNOWN " + procedure + " "));
+		assertFalse(code, code.contains("GETVAR " + procedure + "\n"));
+	}
+
+	private void assertNormalCall(String expression, String procedure)
+			throws SchemeException {
+		final String code = compiler.compile(expression);
+		assertFalse(code, code.contains("CALLKNOWN " + procedure + " "));
+		assertTrue(code, code.contains("GETVAR " + procedure + "\n"));
+	}
+
+	public void testCallsOfDefinedProcedures() throws SchemeException {
+		compiler.compile("(define (two a b) (list a b))");
+		assertKnownCall("(two 1 2)", "two");
+		assertKnownCall("(list (two 1 2))", "two");
+		assertNormalCall("(two 1)", "two");
+	}
+
+	public void testRecursiveCalls() throws SchemeException {
+		assertKnownCall(
+				"(define (fib n) (if (< n 2) n (+ (fib (- n 1)) (fib (- n 2)))))",
+				"fib");
+	}
+
+	public void testRedefinition() throws SchemeException {
+		compiler.compile("(define (f) 1)");
+		compiler.compile("(define (f . args) args)");
+		assertNormalCall("(f)", "f");
+		compiler.compile("(define (f x) x)");
+		assertKnownCall("(f 1)", "f");
+		compiler.compile("(define f (lambda (x y) x))");
+		assertKnownCall("(f 1 2)", "f");
+		compiler.compile("(define f car)");
+		assertNormalCall("(f 1)", "f");
+	}
+
+	public void testAssignment() throws SchemeException {
+		compiler.compile("(define (f x) (* x 2))");
+		assertKnownCall("(f 1)", "f");
+		compiler.compile("(set! f car)");
+		assertNormalCall("(f 1)", "f");
+		compiler.compile("(define (f x) (* x 4))");
+		assertNormalCall("(f 1)", "f");
+	}
+
+	public void testUndefinedProcedures() throws SchemeException {
+		assertNormalCall("(g 1)", "g");
+	}
+}
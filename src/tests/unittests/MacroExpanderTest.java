@@ -0,0 +1,79 @@
+// lbjScheme
+// An experimental Scheme subset interpreter in Java, based on SchemeNet.cs
+// Copyright (c) 2013, Leif Bruder <leifbruder@gmail.com>
+//
+// Permission to use, copy, modify, and/or distribute this software for any
+// purpose with or without fee is hereby granted, provided that the above
+// copyright notice and this permission notice appear in all copies.
+//
+// THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+// WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+// MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+// ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+// WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+// ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+// OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+
+package tests.unittests;
+
+import java.io.*;
+import junit.framework.TestCase;
+import org.lb.lbjscheme.*;
+import org.lb.lbjscheme.Reader;
+
+public final class MacroExpanderTest extends TestCase {
+	private MacroExpander expander;
+
+	@Override
+	protected void setUp() throws SchemeException {
+		expander = new MacroExpander();
+	}
+
+	private static SchemeObject read(String expression)
+			throws SchemeException, EOFException {
+		return new Reader(new InputPort(new StringReader(expression))).read();
+	}
+
+	private String expand(String expression) throws Exception {
+		final Pair form = (Pair) read(expression);
+		final Macro macro = expander.getMacro((Symbol) form.getCar());
+		return expander.expand(macro, form).toString();
+	}
+
+	public void testTransformerIsAnalyzedOnce() throws Exception {
+		expander.defineMacro(read("(defmacro swap! (a b) (let ((tmp (gensym))) `(let ((,tmp ,a)) (set! ,a ,b) (set! ,b ,tmp)))))"));
+		final Macro macro = expander.getMacro(Symbol.fromString("swap!"));
+		assertNull(macro.getTransformer());
+		assertTrue(expand("(swap! x y)").matches(
+				"\\(let \\(\\((\\S+) x\\)\\) \\(set! x y\\) \\(set! y \\1\\)\\)"));
+		final AnalyzedLambda transformer = macro.getTransformer();
+		assertNotNull(transformer);
+		expand("(swap! p q)");
+		assertSame(transformer, macro.getTransformer());
+	}
+
+	public void testBuiltinMacros() throws Exception {
+		assertEquals("(let ((a 1)) (let* ((b a)) b))",
+				expand("(let* ((a 1) (b a)) b)"));
+		assertEquals("(##cons (quasiquote a) (quasiquote ((unquote b))))", expand("`(a ,b)"));
+	}
+
+	public void testMacroUsedByAnotherTransformer() throws Exception {
+		expander.defineMacro(read("(defmacro choose (c a b) `(if ,c ,a ,b))"));
+		expander.defineMacro(read("(defmacro my-if (c a b) (choose (symbol? c) `(if ,c ,a ,b) `(if (not ,c) ,b ,a)))"));
+		assertEquals("(if x 1 2)", expand("(my-if x 1 2)"));
+		assertEquals("(if (not (f)) 2 1)", expand("(my-if (f) 1 2)"));
+	}
+
+	public void testRedefinedMacro() throws Exception {
+		expander.defineMacro(read("(defmacro answer () 42)"));
+		assertEquals("42", expand("(answer)"));
+		expander.defineMacro(read("(defmacro answer () 43)"));
+		assertEquals("43", expand("(answer)"));
+	}
+
+	public void testNoMacro() throws Exception {
+		assertNull(expander.getMacro(Symbol.fromString("car")));
+		assertNull(expander.getMacro(Symbol.fromString("no-such-thing")));
+	}
+}
@@ -0,0 +1,76 @@
+// lbjScheme
+// An experimental Scheme subset interpreter in Java, based on SchemeNet.cs
+// Copyright (c) 2013, Leif Bruder <leifbruder@gmail.com>
+//
+// Permission to use, copy, modify, and/or distribute this software for any
+// purpose with or without fee is hereby granted, provided that the above
+// copyright notice and this permission notice appear in all copies.
+//
+// THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+// WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+// MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+// ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+// WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+// ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+// OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+
+package tests.unittests;
+
+import java.io.*;
+import java.util.*;
+import junit.framework.TestCase;
+import org.lb.lbjscheme.*;
+import org.lb.lbjscheme.Reader;
+
+public final class MacroExpansionCacheTest extends TestCase {
+	private final Macro macro = new Macro("m", new ArrayList<Symbol>(),
+			false, null, null);
+	private final Macro other = new Macro("other", new ArrayList<Symbol>(),
+			false, null, null);
+
+	private static SchemeObject read(String expression)
+			throws SchemeException, EOFException {
+		return new Reader(new InputPort(new StringReader(expression))).read();
+	}
+
+	public void testStructuralLookup() throws Exception {
+		final MacroExpansionCache cache = new MacroExpansionCache(10);
+		cache.put(macro, read("(m (a 1) \"s\" #\\c 2.5)"), read("x"));
+		assertEquals("x",
+				cache.get(macro, read("(m (a 1) \"s\" #\\c 2.5)")).toString());
+		assertNull(cache.get(macro, read("(m (a 1) \"t\" #\\c 2.5)")));
+		assertNull(cache.get(macro, read("(m (a 1.0) \"s\" #\\c 2.5)")));
+		assertNull(cache.get(other, read("(m (a 1) \"s\" #\\c 2.5)")));
+		assertEquals(1, cache.getHits());
+		assertEquals(3, cache.getMisses());
+		assertEquals(0.25, cache.getHitRate(), 1e-9);
+	}
+
+	public void testStoredFormsAreCopies() throws Exception {
+		final MacroExpansionCache cache = new MacroExpansionCache(10);
+		final Pair form = (Pair) read("(m (a b))");
+		final SchemeObject argument = ((Pair) form.getCdr()).getCar();
+		cache.put(macro, form, new Pair(argument, argument));
+		((Pair) argument).setCar(Symbol.fromString("z"));
+		assertNull(cache.get(macro, form));
+
+		final Pair expansion = (Pair) cache.get(macro, read("(m (a b))"));
+		assertEquals("((a b) a b)", expansion.toString());
+		assertSame(expansion.getCar(), expansion.getCdr());
+	}
+
+	public void testSizeBoundAndInvalidation() throws Exception {
+		final MacroExpansionCache cache = new MacroExpansionCache(2);
+		cache.put(macro, read("(m 1)"), read("1"));
+		cache.put(macro, read("(m 2)"), read("2"));
+		cache.get(macro, read("(m 1)"));
+		cache.put(other, read("(other 3)"), read("3"));
+		assertEquals(2, cache.size());
+		assertNotNull(cache.get(macro, read("(m 1)")));
+		assertNull(cache.get(macro, read("(m 2)")));
+
+		cache.invalidate("m");
+		assertEquals(1, cache.size());
+		assertNotNull(cache.get(other, read("(other 3)")));
+	}
+}
@@ -0,0 +1,48 @@
+// lbjScheme
+// An experimental Scheme subset interpreter in Java, based on SchemeNet.cs
+// Copyright (c) 2013, Leif Bruder <leifbruder@gmail.com>
+//
+// Permission to use, copy, modify, and/or distribute this software for any
+// purpose with or without fee is hereby granted, provided that the above
+// copyright notice and this permission notice appear in all copies.
+//
+// THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+// WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+// MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+// ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+// WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+// ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+// OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+
+package tests.unittests;
+
+import java.io.*;
+import junit.framework.TestCase;
+import org.lb.lbjscheme.*;
+
+public final class PeepholeOptimizerTest extends TestCase {
+	private static final String program = "(define (f n) (let loop ((i 0) (acc '())) (if (= i n) (reverse acc) (loop (+ i 1) (cons (lambda () (if (odd? i) (* i 10) i)) acc))))) (map (lambda (g) (g)) (f 5))";
+
+	private static CompilingEvaluator newEvaluator(boolean optimize)
+			throws SchemeException {
+		return new CompilingEvaluator(new InputPort(new StringReader("")),
+				new OutputPort(new StringWriter()), optimize);
+	}
+
+	public void testOptimizedCodeGivesSameResults() throws SchemeException {
+		final String expected = newEvaluator(false).eval(program).toString();
+		assertEquals("(0 10 2 30 4)", expected);
+		assertEquals(expected, newEvaluator(true).eval(program).toString());
+	}
+
+	public void testStatistics() throws SchemeException {
+		final PeepholeOptimizer disabled = newEvaluator(false).getOptimizer();
+		assertEquals(0, disabled.getRemovedInstructions());
+		assertEquals(disabled.getInstructionsIn(),
+				disabled.getInstructionsOut());
+
+		final PeepholeOptimizer enabled = newEvaluator(true).getOptimizer();
+		assertEquals(disabled.getInstructionsIn(), enabled.getInstructionsIn());
+		assertTrue(enabled.getRemovedInstructions() > 0);
+	}
+}
@@ -0,0 +1,70 @@
+// lbjScheme
+// An experimental Scheme subset interpreter in Java, based on SchemeNet.cs
+// Copyright (c) 2013, Leif Bruder <leifbruder@gmail.com>
+//
+// Permission to use, copy, modify, and/or distribute this software for any
+// purpose with or without fee is hereby granted, provided that the above
+// copyright notice and this permission notice appear in all copies.
+//
+// THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+// WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+// MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+// ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+// WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+// ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+// OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+
+package tests.unittests;
+
+import java.io.*;
+import junit.framework.TestCase;
+import org.lb.lbjscheme.*;
+
+public final class PrimitiveOpcodesTest extends TestCase {
+	private Evaluator interp;
+
+	@Override
+	protected void setUp() throws SchemeException {
+		interp = new CompilingEvaluator(new InputPort(new StringReader("")),
+				new OutputPort(new StringWriter()));
+	}
+
+	private void evalTest(String expression, String expected)
+			throws SchemeException {
+		assertEquals(expected, interp.eval(expression).toString(false));
+	}
+
+	public void testPrimitives() throws SchemeException {
+		evalTest("(car '(1 2))", "1");
+		evalTest("(cdr '(1 2))", "(2)");
+		evalTest("(list (null? '()) (null? 1) (pair? '(1)) (pair? 1))",
+				"(#t #f #t #f)");
+		evalTest("(cons 1 (cons 2 '()))", "(1 2)");
+		evalTest("(list (eq? 'a 'a) (eq? 'a 'b))", "(#t #f)");
+		evalTest("(list (+ 1 2) (- 1 2) (= 1 1) (< 1 2) (> 1 2))",
+				"(3 -1 #t #t #f)");
+	}
+
+	public void testGeneralCases() throws SchemeException {
+		evalTest("(+ 2147483647 1)", "2147483648");
+		evalTest("(- 1.5 1)", "0.5");
+		evalTest("(< 1/2 1)", "#t");
+		try {
+			interp.eval("(car 1)");
+			fail("car of a non-pair should throw an error");
+		} catch (SchemeException ex) {
+			assertTrue(true);
+		}
+	}
+
+	public void testRedefinedPrimitives() throws SchemeException {
+		interp.eval("(define (add-one x) (+ x 1))");
+		evalTest("(add-one 1)", "2");
+		interp.eval("(define (+ a b) (list 'plus a b))");
+		evalTest("(add-one 1)", "(plus 1 1)");
+		evalTest("(list (add-one 1) (add-one 2))", "((plus 1 1) (plus 2 1))");
+		interp.eval("(set! car cdr)");
+		evalTest("(car '(1 2))", "(2)");
+		evalTest("(##car '(1 2))", "1");
+	}
+}
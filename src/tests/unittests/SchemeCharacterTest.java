@@ -0,0 +1,44 @@
+// lbjScheme
+// An experimental Scheme subset interpreter in Java, based on SchemeNet.cs
+// Copyright (c) 2013, Leif Bruder <leifbruder@gmail.com>
+//
+// Permission to use, copy, modify, and/or distribute this software for any
+// purpose with or without fee is hereby granted, provided that the above
+// copyright notice and this permission notice appear in all copies.
+//
+// THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+// WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+// MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+// ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+// WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+// ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+// OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+
+package tests.unittests;
+
+import junit.framework.TestCase;
+import org.lb.lbjscheme.*;
+
+public final class SchemeCharacterTest extends TestCase {
+	public void testLatin1CharactersAreShared() {
+		assertSame(SchemeCharacter.valueOf('a'), SchemeCharacter.valueOf('a'));
+		assertSame(SchemeCharacter.valueOf('\u00ff'),
+				SchemeCharacter.valueOf('\u00ff'));
+	}
+
+	public void testOtherCharacters() {
+		assertEquals('\u20ac', SchemeCharacter.valueOf('\u20ac').getValue());
+	}
+
+	public void testWrite() {
+		assertEquals("#\\space", SchemeCharacter.valueOf(' ').toString(false));
+		assertEquals("#\\a", SchemeCharacter.valueOf('a').toString(false));
+	}
+
+	public void testReaderUsesCache() throws SchemeException {
+		final Evaluator e = new AnalyzingEvaluator(
+				Environment.newInteractionEnvironment(null));
+		assertSame(SchemeCharacter.valueOf('x'), e.eval("#\\x"));
+		assertSame(SchemeCharacter.valueOf(' '), e.eval("#\\space"));
+	}
+}
@@ -0,0 +1,81 @@
+// lbjScheme
+// An experimental Scheme subset interpreter in Java, based on SchemeNet.cs
+// Copyright (c) 2013, Leif Bruder <leifbruder@gmail.com>
+//
+// Permission to use, copy, modify, and/or distribute this software for any
+// purpose with or without fee is hereby granted, provided that the above
+// copyright notice and this permission notice appear in all copies.
+//
+// THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+// WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+// MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+// ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+// WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+// ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+// OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+
+package tests.unittests;
+
+import java.io.*;
+import junit.framework.TestCase;
+import org.lb.lbjscheme.*;
+import org.lb.lbjscheme.Reader;
+import org.lb.lbjscheme.ast.*;
+
+public final class SyntaxTreeOptimizerTest extends TestCase {
+	private Analyzer analyzer;
+	private SyntaxTreeOptimizer optimizer;
+
+	@Override
+	protected void setUp() throws SchemeException {
+		analyzer = new Analyzer();
+		optimizer = new SyntaxTreeOptimizer();
+	}
+
+	private SyntaxTreeObject optimize(String expression)
+			throws SchemeException, EOFException {
+		return optimizer.optimize(analyzer.analyze(new Reader(new InputPort(
+				new StringReader(expression))).read()));
+	}
+
+	private void literalTest(String expression, String expected)
+			throws SchemeException, EOFException {
+		final SyntaxTreeObject form = optimize(expression);
+		assertTrue(form instanceof SelfEvaluatingLiteral);
+		assertEquals(expected, ((SelfEvaluatingLiteral) form).getValue()
+				.toString(false));
+	}
+
+	public void testFoldPureBuiltins() throws Exception {
+		literalTest("(##+ 1 (##* 2 3))", "7");
+		literalTest("(##< 1 2)", "#t");
+		literalTest("(##null? '())", "#t");
+		literalTest("(##not (##zero? 0))", "#f");
+	}
+
+	public void testKeepRedefinableAndFailingCalls() throws Exception {
+		assertTrue(optimize("(+ 1 2)") instanceof Funcall);
+		assertTrue(optimize("(##/ 1 0)") instanceof Funcall);
+		assertTrue(optimize("(##+ 1 x)") instanceof Funcall);
+	}
+
+	public void testDeadBranches() throws Exception {
+		literalTest("(if #f 1 2)", "2");
+		literalTest("(if '() 1 2)", "1");
+		literalTest("(when (##> 1 2) 1)", "#f");
+		literalTest("(cond ((##= 1 2) 'a) (else 'b))", "b");
+		assertTrue(optimize("(if x 1 2)") instanceof IfForm);
+	}
+
+	public void testFlattenBeginForms() throws Exception {
+		final SyntaxTreeObject form = optimize("(begin 1 (begin (f) 2 (begin (g))) (h))");
+		assertTrue(form instanceof BeginForm);
+		assertEquals(2, ((BeginForm) form).getFormsWithoutLast().size());
+		assertTrue(optimize("(begin (begin 1) (f))") instanceof Funcall);
+	}
+
+	public void testDisabled() throws Exception {
+		optimizer.setEnabled(false);
+		assertTrue(optimize("(if #f 1 2)") instanceof IfForm);
+	}
+}
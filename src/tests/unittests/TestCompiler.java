@@ -0,0 +1,51 @@
+// lbjScheme
+// An experimental Scheme subset interpreter in Java, based on SchemeNet.cs
+// Copyright (c) 2013, Leif Bruder <leifbruder@gmail.com>
+//
+// Permission to use, copy, modify, and/or distribute this software for any
+// purpose with or without fee is hereby granted, provided that the above
+// copyright notice and this permission notice appear in all copies.
+//
+// THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+// WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+// MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+// ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+// WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+// ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+// OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+
+package tests.unittests;
+
+import java.io.*;
+import org.lb.lbjscheme.*;
+import org.lb.lbjscheme.Compiler;
+import org.lb.lbjscheme.Reader;
+
+// Compiles forms into one program without running them and returns the
+// opcodes generated for each, one per line
+public final class TestCompiler {
+	private final Analyzer _analyzer;
+	private final CompiledProgram _program = new CompiledProgram();
+	private final Compiler _compiler = new Compiler(_program);
+
+	public TestCompiler() throws SchemeException {
+		_analyzer = new Analyzer();
+	}
+
+	public String compile(String forms) throws SchemeException {
+		final int start = _program.getNumberOfStatements();
+		final Reader r = new Reader(new InputPort(new StringReader(forms)));
+		while (true) {
+			try {
+				_compiler.compile(_analyzer.analyze(r.read()), false);
+			} catch (EOFException ex) {
+				break;
+			}
+		}
+
+		final StringBuilder ret = new StringBuilder();
+		for (int i = start; i < _program.getNumberOfStatements(); ++i)
+			ret.append(_program.getOpcode(i)).append('\n');
+		return ret.toString();
+	}
+}